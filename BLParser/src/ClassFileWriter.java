@@ -0,0 +1,570 @@
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Minimal writer for JVM class files, just enough for
+ * {@code ProgramCompiler}: a constant pool of UTF-8, int, class, string and
+ * method reference entries, and methods whose code is built with
+ * {@code Code}. Classes are written as version 49 (Java 5) class files, so
+ * the verifier infers stack types and no StackMapTable is needed.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+final class ClassFileWriter {
+
+    /**
+     * Class file major version written.
+     */
+    private static final int VERSION = 49;
+
+    /**
+     * Constant pool tag of a UTF-8 string.
+     */
+    private static final int CONSTANT_UTF8 = 1;
+
+    /**
+     * Constant pool tag of an int constant.
+     */
+    private static final int CONSTANT_INTEGER = 3;
+
+    /**
+     * Constant pool tag of a class reference.
+     */
+    private static final int CONSTANT_CLASS = 7;
+
+    /**
+     * Constant pool tag of a string literal.
+     */
+    private static final int CONSTANT_STRING = 8;
+
+    /**
+     * Constant pool tag of a class method reference.
+     */
+    private static final int CONSTANT_METHODREF = 10;
+
+    /**
+     * Constant pool tag of an interface method reference.
+     */
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    /**
+     * Constant pool tag of a name and type.
+     */
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * Largest constant pool index, method count or code length.
+     */
+    private static final int MAX_U2 = 0xFFFF;
+
+    /**
+     * Access flags public and final.
+     */
+    static final int ACC_PUBLIC_FINAL = 0x0011;
+
+    /**
+     * Access flags private and static.
+     */
+    static final int ACC_PRIVATE_STATIC = 0x000A;
+
+    /**
+     * Access flags public, final and super, for the class itself.
+     */
+    private static final int ACC_CLASS = 0x0031;
+
+    /**
+     * Access flag public.
+     */
+    static final int ACC_PUBLIC = 0x0001;
+
+    /**
+     * The constant pool entries written so far, without the count.
+     */
+    private final ByteArrayOutputStream pool;
+
+    /**
+     * Index of each constant pool entry, by tag and contents.
+     */
+    private final HashMap<String, Integer> poolIndex;
+
+    /**
+     * Number of constant pool entries plus one.
+     */
+    private int poolCount;
+
+    /**
+     * The methods written so far, without the count.
+     */
+    private final ByteArrayOutputStream methods;
+
+    /**
+     * Number of methods written.
+     */
+    private int methodCount;
+
+    /**
+     * Constant pool index of this class.
+     */
+    private final int thisClass;
+
+    /**
+     * Constant pool index of the superclass.
+     */
+    private final int superClass;
+
+    /**
+     * Constant pool indices of the implemented interfaces.
+     */
+    private final int[] interfaces;
+
+    /**
+     * Writes {@code value} as two big-endian bytes.
+     *
+     * @param out
+     *            the output
+     * @param value
+     *            the value
+     */
+    private static void u2(ByteArrayOutputStream out, int value) {
+        out.write(value >>> Byte.SIZE);
+        out.write(value);
+    }
+
+    /**
+     * Writes {@code value} as four big-endian bytes.
+     *
+     * @param out
+     *            the output
+     * @param value
+     *            the value
+     */
+    private static void u4(ByteArrayOutputStream out, int value) {
+        u2(out, value >>> (2 * Byte.SIZE));
+        u2(out, value);
+    }
+
+    /**
+     * Returns the index of the constant pool entry with {@code tag} and
+     * payload {@code bytes}, adding it if it is new.
+     *
+     * @param key
+     *            tag and contents identifying the entry
+     * @param tag
+     *            the entry tag
+     * @param bytes
+     *            the entry payload, after the tag
+     * @return the entry index
+     */
+    private int entry(String key, int tag, byte[] bytes) {
+        Integer index = this.poolIndex.get(key);
+        if (index == null) {
+            if (this.poolCount > MAX_U2) {
+                throw new IllegalStateException("Constant pool overflow");
+            }
+            index = this.poolCount;
+            this.pool.write(tag);
+            this.pool.write(bytes, 0, bytes.length);
+            this.poolIndex.put(key, index);
+            this.poolCount++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the payload of an entry made of two constant pool indices.
+     *
+     * @param first
+     *            the first index
+     * @param second
+     *            the second index
+     * @return the four-byte payload
+     */
+    private static byte[] pair(int first, int second) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u2(out, first);
+        u2(out, second);
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the index of a method reference entry.
+     *
+     * @param tag
+     *            CONSTANT_METHODREF or CONSTANT_INTERFACE_METHODREF
+     * @param owner
+     *            internal name of the class or interface
+     * @param name
+     *            the method name
+     * @param descriptor
+     *            the method descriptor
+     * @return the entry index
+     */
+    private int methodEntry(int tag, String owner, String name,
+            String descriptor) {
+        int nameAndType = this.entry(
+                CONSTANT_NAME_AND_TYPE + ":" + name + ":" + descriptor,
+                CONSTANT_NAME_AND_TYPE,
+                pair(this.utf8(name), this.utf8(descriptor)));
+        return this.entry(tag + ":" + owner + "." + name + descriptor, tag,
+                pair(this.classRef(owner), nameAndType));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            internal name of the class
+     * @param superName
+     *            internal name of the superclass
+     * @param interfaceNames
+     *            internal names of the implemented interfaces
+     */
+    ClassFileWriter(String name, String superName,
+            String... interfaceNames) {
+        this.pool = new ByteArrayOutputStream();
+        this.poolIndex = new HashMap<>();
+        this.poolCount = 1;
+        this.methods = new ByteArrayOutputStream();
+        this.methodCount = 0;
+        this.thisClass = this.classRef(name);
+        this.superClass = this.classRef(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            this.interfaces[i] = this.classRef(interfaceNames[i]);
+        }
+    }
+
+    /**
+     * Returns the constant pool index of UTF-8 string {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return the entry index
+     */
+    int utf8(String s) {
+        final int oneByte = 0x80, twoBytes = 0x800;
+        final int lead2 = 0xC0, lead3 = 0xE0, cont = 0x80, low6 = 0x3F;
+        final int shift6 = 6, shift12 = 12;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != 0 && c < oneByte) {
+                out.write(c);
+            } else if (c < twoBytes) {
+                out.write(lead2 | (c >>> shift6));
+                out.write(cont | (c & low6));
+            } else {
+                out.write(lead3 | (c >>> shift12));
+                out.write(cont | ((c >>> shift6) & low6));
+                out.write(cont | (c & low6));
+            }
+        }
+        int length = out.size();
+        if (length > MAX_U2) {
+            throw new IllegalStateException("String constant too long");
+        }
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        u2(entry, length);
+        entry.write(out.toByteArray(), 0, length);
+        return this.entry(CONSTANT_UTF8 + ":" + s, CONSTANT_UTF8,
+                entry.toByteArray());
+    }
+
+    /**
+     * Returns the constant pool index of int constant {@code value}.
+     *
+     * @param value
+     *            the value
+     * @return the entry index
+     */
+    int integer(int value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u4(out, value);
+        return this.entry(CONSTANT_INTEGER + ":" + value, CONSTANT_INTEGER,
+                out.toByteArray());
+    }
+
+    /**
+     * Returns the constant pool index of class {@code internalName}.
+     *
+     * @param internalName
+     *            internal name of the class
+     * @return the entry index
+     */
+    int classRef(String internalName) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u2(out, this.utf8(internalName));
+        return this.entry(CONSTANT_CLASS + ":" + internalName, CONSTANT_CLASS,
+                out.toByteArray());
+    }
+
+    /**
+     * Returns the constant pool index of string literal {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return the entry index
+     */
+    int string(String s) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u2(out, this.utf8(s));
+        return this.entry(CONSTANT_STRING + ":" + s, CONSTANT_STRING,
+                out.toByteArray());
+    }
+
+    /**
+     * Returns the constant pool index of class method
+     * {@code owner.name descriptor}.
+     *
+     * @param owner
+     *            internal name of the class
+     * @param name
+     *            the method name
+     * @param descriptor
+     *            the method descriptor
+     * @return the entry index
+     */
+    int methodRef(String owner, String name, String descriptor) {
+        return this.methodEntry(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Returns the constant pool index of interface method
+     * {@code owner.name descriptor}.
+     *
+     * @param owner
+     *            internal name of the interface
+     * @param name
+     *            the method name
+     * @param descriptor
+     *            the method descriptor
+     * @return the entry index
+     */
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return this.methodEntry(CONSTANT_INTERFACE_METHODREF, owner, name,
+                descriptor);
+    }
+
+    /**
+     * Adds a method with body {@code code}.
+     *
+     * @param access
+     *            the access flags
+     * @param name
+     *            the method name
+     * @param descriptor
+     *            the method descriptor
+     * @param maxStack
+     *            the maximum operand stack depth
+     * @param maxLocals
+     *            the number of local variable slots
+     * @param code
+     *            the method body
+     * @updates this
+     */
+    void addMethod(int access, String name, String descriptor, int maxStack,
+            int maxLocals, Code code) {
+        byte[] bytes = code.toBytes();
+        u2(this.methods, access);
+        u2(this.methods, this.utf8(name));
+        u2(this.methods, this.utf8(descriptor));
+        u2(this.methods, 1);
+        u2(this.methods, this.utf8("Code"));
+        final int fixedCodeAttributeLength = 12;
+        u4(this.methods, fixedCodeAttributeLength + bytes.length);
+        u2(this.methods, maxStack);
+        u2(this.methods, maxLocals);
+        u4(this.methods, bytes.length);
+        this.methods.write(bytes, 0, bytes.length);
+        u2(this.methods, 0);
+        u2(this.methods, 0);
+        this.methodCount++;
+    }
+
+    /**
+     * Returns the class file.
+     *
+     * @return the class file bytes
+     */
+    byte[] toBytes() {
+        if (this.methodCount > MAX_U2) {
+            throw new IllegalStateException("Too many methods");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int magic = 0xCAFEBABE;
+        u4(out, magic);
+        u2(out, 0);
+        u2(out, VERSION);
+        u2(out, this.poolCount);
+        out.write(this.pool.toByteArray(), 0, this.pool.size());
+        u2(out, ACC_CLASS);
+        u2(out, this.thisClass);
+        u2(out, this.superClass);
+        u2(out, this.interfaces.length);
+        for (int i : this.interfaces) {
+            u2(out, i);
+        }
+        u2(out, 0);
+        u2(out, this.methodCount);
+        out.write(this.methods.toByteArray(), 0, this.methods.size());
+        u2(out, 0);
+        return out.toByteArray();
+    }
+
+    /**
+     * Bytecode of one method, with forward and backward branches to labels.
+     */
+    static final class Code {
+
+        /**
+         * The instructions written so far.
+         */
+        private final ByteArrayOutputStream bytes;
+
+        /**
+         * Position of each label, or -1 if not yet bound.
+         */
+        private int[] labels;
+
+        /**
+         * Number of labels created.
+         */
+        private int labelCount;
+
+        /**
+         * Branches to patch: opcode position, then label, for each.
+         */
+        private int[] branches;
+
+        /**
+         * Number of branches written.
+         */
+        private int branchCount;
+
+        /**
+         * Constructor.
+         */
+        Code() {
+            final int initialLabels = 16;
+            this.bytes = new ByteArrayOutputStream();
+            this.labels = new int[initialLabels];
+            this.labelCount = 0;
+            this.branches = new int[2 * initialLabels];
+            this.branchCount = 0;
+        }
+
+        /**
+         * Writes opcode {@code opcode}.
+         *
+         * @param opcode
+         *            the opcode
+         * @updates this
+         */
+        void op(int opcode) {
+            this.bytes.write(opcode);
+        }
+
+        /**
+         * Writes opcode {@code opcode} with a two-byte operand.
+         *
+         * @param opcode
+         *            the opcode
+         * @param operand
+         *            the operand, usually a constant pool index
+         * @updates this
+         */
+        void op(int opcode, int operand) {
+            this.bytes.write(opcode);
+            u2(this.bytes, operand);
+        }
+
+        /**
+         * Writes {@code invokeinterface} of the no-argument interface method
+         * with constant pool index {@code method}.
+         *
+         * @param method
+         *            the interface method reference
+         * @updates this
+         */
+        void invokeInterface(int method) {
+            final int invokeinterface = 0xB9;
+            this.op(invokeinterface, method);
+            this.bytes.write(1);
+            this.bytes.write(0);
+        }
+
+        /**
+         * Returns a new, unbound label.
+         *
+         * @return the label
+         * @updates this
+         */
+        int newLabel() {
+            if (this.labelCount == this.labels.length) {
+                this.labels = Arrays.copyOf(this.labels, 2 * this.labelCount);
+            }
+            this.labels[this.labelCount] = -1;
+            this.labelCount++;
+            return this.labelCount - 1;
+        }
+
+        /**
+         * Binds {@code label} to the current position.
+         *
+         * @param label
+         *            the label
+         * @updates this
+         */
+        void bind(int label) {
+            this.labels[label] = this.bytes.size();
+        }
+
+        /**
+         * Writes branch {@code opcode} to {@code label}.
+         *
+         * @param opcode
+         *            a branch opcode with a two-byte offset
+         * @param label
+         *            the target label
+         * @updates this
+         */
+        void branch(int opcode, int label) {
+            if (this.branchCount == this.branches.length) {
+                this.branches = Arrays.copyOf(this.branches,
+                        2 * this.branchCount);
+            }
+            this.branches[this.branchCount] = this.bytes.size();
+            this.branches[this.branchCount + 1] = label;
+            this.branchCount += 2;
+            this.op(opcode, 0);
+        }
+
+        /**
+         * Returns the bytecode with every branch offset filled in.
+         *
+         * @return the method bytecode
+         */
+        byte[] toBytes() {
+            byte[] code = this.bytes.toByteArray();
+            if (code.length > MAX_U2) {
+                throw new IllegalStateException("Method too large");
+            }
+            for (int i = 0; i < this.branchCount; i += 2) {
+                int at = this.branches[i];
+                int target = this.labels[this.branches[i + 1]];
+                assert target >= 0 : "Violation of: every label is bound";
+                int offset = target - at;
+                if (offset != (short) offset) {
+                    throw new IllegalStateException("Branch too far");
+                }
+                code[at + 1] = (byte) (offset >>> Byte.SIZE);
+                code[at + 2] = (byte) offset;
+            }
+            return code;
+        }
+
+    }
+
+}
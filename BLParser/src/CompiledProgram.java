@@ -0,0 +1,26 @@
+/**
+ * A BL program compiled to JVM bytecode by {@code ProgramCompiler}. Instances
+ * are immutable and may be run by several threads at once, each with its own
+ * {@code CreatureActions}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public interface CompiledProgram {
+
+    /**
+     * Returns the name of the program.
+     *
+     * @return the program name
+     */
+    String name();
+
+    /**
+     * Executes the program body once against {@code actions}.
+     *
+     * @param actions
+     *            the creature the program controls
+     */
+    void run(CreatureActions actions);
+
+}
@@ -0,0 +1,128 @@
+import components.statement.Statement.Condition;
+
+/**
+ * What a running BL program can do and observe: the primitive instructions
+ * and the tests behind the conditions. {@code ProgramCompiler} calls these
+ * methods directly from generated code, so a small final implementation is
+ * likely to be inlined into it.
+ *
+ * <p>
+ * The negated conditions ({@code next-is-not-empty} and so on) are compiled
+ * as the opposite branch on the positive test, {@code true} needs no test at
+ * all, and {@code skip} does nothing unless overridden. BL programs usually
+ * loop forever; an implementation stops one by throwing an unchecked
+ * exception, which {@code CompiledProgram.run} passes on to its caller.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public interface CreatureActions {
+
+    /**
+     * Moves one cell forward.
+     */
+    void move();
+
+    /**
+     * Turns left.
+     */
+    void turnLeft();
+
+    /**
+     * Turns right.
+     */
+    void turnRight();
+
+    /**
+     * Infects the creature in the next cell.
+     */
+    void infect();
+
+    /**
+     * Does nothing for one turn.
+     */
+    default void skip() {
+    }
+
+    /**
+     * Reports whether the next cell is empty.
+     *
+     * @return true iff the next cell is empty
+     */
+    boolean nextIsEmpty();
+
+    /**
+     * Reports whether the next cell is a wall.
+     *
+     * @return true iff the next cell is a wall
+     */
+    boolean nextIsWall();
+
+    /**
+     * Reports whether the next cell holds a friend.
+     *
+     * @return true iff the next cell holds a friend
+     */
+    boolean nextIsFriend();
+
+    /**
+     * Reports whether the next cell holds an enemy.
+     *
+     * @return true iff the next cell holds an enemy
+     */
+    boolean nextIsEnemy();
+
+    /**
+     * Returns a random choice.
+     *
+     * @return true or false, at random
+     */
+    boolean random();
+
+    /**
+     * Reports whether {@code c} holds, asking the tests above; interpreters
+     * evaluate conditions with this, and generated code calls the tests
+     * directly.
+     *
+     * @param c
+     *            the condition
+     * @return true iff c holds
+     */
+    default boolean holds(Condition c) {
+        boolean result;
+        switch (c) {
+            case NEXT_IS_EMPTY:
+                result = this.nextIsEmpty();
+                break;
+            case NEXT_IS_NOT_EMPTY:
+                result = !this.nextIsEmpty();
+                break;
+            case NEXT_IS_WALL:
+                result = this.nextIsWall();
+                break;
+            case NEXT_IS_NOT_WALL:
+                result = !this.nextIsWall();
+                break;
+            case NEXT_IS_FRIEND:
+                result = this.nextIsFriend();
+                break;
+            case NEXT_IS_NOT_FRIEND:
+                result = !this.nextIsFriend();
+                break;
+            case NEXT_IS_ENEMY:
+                result = this.nextIsEnemy();
+                break;
+            case NEXT_IS_NOT_ENEMY:
+                result = !this.nextIsEnemy();
+                break;
+            case RANDOM:
+                result = this.random();
+                break;
+            default:
+                result = true;
+                break;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,365 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import components.program.Program;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares running a BL program compiled by {@code ProgramCompiler} with
+ * interpreting it by walking its statement tree. Both run the same programs
+ * against the same {@code StepBudget}, which answers conditions from a fixed
+ * pseudo-random sequence and stops the program after a number of primitive
+ * instructions; each sample is the time per primitive instruction.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ExecutionBenchmark {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of timed runs per executor and workload.
+     */
+    private static final int DEFAULT_SAMPLES = 21;
+
+    /**
+     * Number of untimed runs made first to warm up each executor.
+     */
+    private static final int WARM_UP = 20;
+
+    /**
+     * Primitive instructions executed per run.
+     */
+    private static final int STEPS = 2_000_000;
+
+    /**
+     * Number of instructions in the wide program.
+     */
+    private static final int WIDE_INSTRUCTIONS = 50;
+
+    /**
+     * Number of statements in each block of the wide program.
+     */
+    private static final int WIDE_STATEMENTS = 20;
+
+    /**
+     * Nesting depth of the deep program.
+     */
+    private static final int DEEP_NESTING = 40;
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private ExecutionBenchmark() {
+    }
+
+    /**
+     * Thrown by {@code StepBudget} to stop a program; shared and without a
+     * stack trace, so stopping costs nothing to speak of.
+     */
+    private static final class OutOfSteps extends RuntimeException {
+
+        /**
+         * Serial version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The one instance.
+         */
+        static final OutOfSteps INSTANCE = new OutOfSteps();
+
+        /**
+         * Constructor.
+         */
+        private OutOfSteps() {
+            super("out of steps", null, false, false);
+        }
+
+    }
+
+    /**
+     * Actions that count primitive instructions and stop the program after
+     * a fixed number of them, answering every condition from a xorshift
+     * sequence so that runs are repeatable.
+     */
+    static final class StepBudget implements CreatureActions {
+
+        /**
+         * Primitive instructions left before the program is stopped.
+         */
+        private long remaining;
+
+        /**
+         * State of the pseudo-random sequence.
+         */
+        private int seed;
+
+        /**
+         * Constructor.
+         *
+         * @param steps
+         *            the number of primitive instructions to allow
+         */
+        StepBudget(long steps) {
+            final int initialSeed = 0x2545F491;
+            this.remaining = steps;
+            this.seed = initialSeed;
+        }
+
+        /**
+         * Counts one primitive instruction.
+         */
+        private void step() {
+            this.remaining--;
+            if (this.remaining < 0) {
+                throw OutOfSteps.INSTANCE;
+            }
+        }
+
+        /**
+         * Returns the next pseudo-random answer.
+         *
+         * @return true or false
+         */
+        private boolean next() {
+            final int a = 13, b = 17, c = 5;
+            int x = this.seed;
+            x ^= x << a;
+            x ^= x >>> b;
+            x ^= x << c;
+            this.seed = x;
+            return x < 0;
+        }
+
+        @Override
+        public void move() {
+            this.step();
+        }
+
+        @Override
+        public void turnLeft() {
+            this.step();
+        }
+
+        @Override
+        public void turnRight() {
+            this.step();
+        }
+
+        @Override
+        public void infect() {
+            this.step();
+        }
+
+        @Override
+        public void skip() {
+            this.step();
+        }
+
+        @Override
+        public boolean nextIsEmpty() {
+            return this.next();
+        }
+
+        @Override
+        public boolean nextIsWall() {
+            return this.next();
+        }
+
+        @Override
+        public boolean nextIsFriend() {
+            return this.next();
+        }
+
+        @Override
+        public boolean nextIsEnemy() {
+            return this.next();
+        }
+
+        @Override
+        public boolean random() {
+            return this.next();
+        }
+
+    }
+
+    /**
+     * Executes {@code s} against {@code actions} by walking the tree,
+     * looking up each called instruction in {@code context}.
+     *
+     * @param s
+     *            the statement
+     * @param context
+     *            the instruction bodies, by name
+     * @param actions
+     *            the creature
+     * @requires [every instruction s calls is primitive or in context]
+     */
+    static void interpret(StatementNode s,
+            java.util.Map<String, StatementNode> context,
+            CreatureActions actions) {
+        switch (s.kind()) {
+            case BLOCK:
+                for (int i = 0; i < s.childCount(); i++) {
+                    interpret(s.child(i), context, actions);
+                }
+                break;
+            case IF:
+                if (actions.holds(s.condition())) {
+                    interpret(s.child(0), context, actions);
+                }
+                break;
+            case IF_ELSE:
+                if (actions.holds(s.condition())) {
+                    interpret(s.child(0), context, actions);
+                } else {
+                    interpret(s.child(1), context, actions);
+                }
+                break;
+            case WHILE:
+                while (actions.holds(s.condition())) {
+                    interpret(s.child(0), context, actions);
+                }
+                break;
+            default:
+                switch (s.name()) {
+                    case "move":
+                        actions.move();
+                        break;
+                    case "turnleft":
+                        actions.turnLeft();
+                        break;
+                    case "turnright":
+                        actions.turnRight();
+                        break;
+                    case "infect":
+                        actions.infect();
+                        break;
+                    case "skip":
+                        actions.skip();
+                        break;
+                    default:
+                        interpret(context.get(s.name()), context, actions);
+                        break;
+                }
+                break;
+        }
+    }
+
+    /**
+     * Runs {@code executor} until it has executed {@code steps} primitive
+     * instructions, repeating the program body as needed.
+     *
+     * @param executor
+     *            runs the program body once against the given actions
+     * @param steps
+     *            the number of primitive instructions to execute
+     */
+    private static void runFor(Consumer<CreatureActions> executor,
+            long steps) {
+        StepBudget budget = new StepBudget(steps);
+        try {
+            while (true) {
+                executor.accept(budget);
+            }
+        } catch (OutOfSteps e) {
+            return;
+        }
+    }
+
+    /**
+     * Runs {@code program} until it has executed {@code steps} primitive
+     * instructions, repeating its body as needed, with every condition
+     * answered from a fixed pseudo-random sequence.
+     *
+     * @param program
+     *            the program
+     * @param steps
+     *            the number of primitive instructions to execute
+     */
+    static void runFor(CompiledProgram program, long steps) {
+        runFor(program::run, steps);
+    }
+
+    /**
+     * Returns the nanoseconds {@code executor} takes to execute
+     * {@code STEPS} primitive instructions.
+     *
+     * @param executor
+     *            runs the program body once against the given actions
+     * @return the elapsed time in nanoseconds
+     */
+    private static long timeRun(Consumer<CreatureActions> executor) {
+        long start = System.nanoTime();
+        runFor(executor, STEPS);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the median time per primitive instruction, in nanoseconds, of
+     * {@code samples} runs of {@code executor}.
+     *
+     * @param executor
+     *            runs the program body once against the given actions
+     * @param samples
+     *            the number of timed runs
+     * @return the median time per step in nanoseconds
+     */
+    private static double medianStepNanos(Consumer<CreatureActions> executor,
+            int samples) {
+        for (int i = 0; i < WARM_UP; i++) {
+            timeRun(executor);
+        }
+        long[] times = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            times[i] = timeRun(executor);
+        }
+        Arrays.sort(times);
+        return (double) times[samples / 2] / STEPS;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; the optional argument is the number of timed runs per
+     * executor and workload.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0])
+                : DEFAULT_SAMPLES;
+        String[] names = { "small", "wide", "deep" };
+        String[] sources = { ParserBenchmark.smallProgram(),
+            ParserBenchmark.wideProgram(WIDE_INSTRUCTIONS, WIDE_STATEMENTS),
+            ParserBenchmark.deepProgram(DEEP_NESTING) };
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(String.format("%-8s %14s %16s %8s", "workload",
+                "tree ns/step", "compiled ns/step", "speedup"));
+        for (int w = 0; w < sources.length; w++) {
+            Program p = new Program1Parse1();
+            p.parse(SourceTokenizer.tokens(sources[w]));
+            java.util.Map<String, StatementNode> context = StatementNode
+                    .contextOf(p);
+            StatementNode body = StatementNode.bodyOf(p);
+            CompiledProgram compiled = ProgramCompiler.compile(p);
+
+            double tree = medianStepNanos(a -> interpret(body, context, a),
+                    samples);
+            double generated = medianStepNanos(compiled::run, samples);
+            out.println(String.format("%-8s %14.2f %16.2f %7.1fx", names[w],
+                    tree, generated, tree / generated));
+        }
+        out.close();
+    }
+
+}
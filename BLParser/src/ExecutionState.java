@@ -0,0 +1,896 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import components.program.Program;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement.Condition;
+import components.utilities.Reporter;
+
+/**
+ * The execution state of many creatures, each running one of a fixed table
+ * of {@code ProgramCode} programs one primitive instruction per
+ * {@code step}, with a binary checkpoint that can be written and restored
+ * quickly.
+ *
+ * <p>
+ * The state is kept as parallel arrays rather than an object per creature:
+ * the program id, program counter and call depth of every creature, a
+ * fixed-size slot of return addresses for each creature's call stack, and a
+ * fixed number of {@code long} registers per creature for the client's own
+ * use (position, direction, species and so on). A checkpoint is a short
+ * header followed by each array in turn, so writing it is a few long
+ * sequential writes through a {@code FileChannel} and restoring it is a bulk
+ * copy out of the mapped file. The header records the name and fingerprint
+ * of every program, and {@code restore} refuses a checkpoint taken with
+ * different programs.
+ *
+ * <p>
+ * Checkpoint layout, little-endian:
+ *
+ * <pre>
+ * int MAGIC, int creatures, int maxDepth, int registers, int programs
+ * per program: int name length, UTF-8 name, long fingerprint
+ * int[creatures] program ids
+ * int[creatures] program counters
+ * int[creatures] call depths
+ * int[creatures * maxDepth] return addresses
+ * long[creatures * registers] registers
+ * </pre>
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ExecutionState {
+
+    /**
+     * First four bytes of every checkpoint: "BLS1".
+     */
+    public static final int MAGIC = 0x424C5331;
+
+    /**
+     * Returned by {@code step} when the creature executed no primitive
+     * instruction.
+     */
+    public static final int NO_ACTION = -1;
+
+    /**
+     * Most instruction words {@code step} executes looking for a primitive
+     * instruction, so that a loop that calls none cannot hang the caller.
+     */
+    public static final int MAX_WORDS_PER_STEP = 10_000;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Size of the buffer checkpoints are written through.
+     */
+    private static final int BLOCK_BYTES = 1 << 22;
+
+    /**
+     * Largest region of a checkpoint mapped at once.
+     */
+    private static final long MAP_BYTES = 1L << 30;
+
+    /**
+     * The conditions, by ordinal.
+     */
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    /**
+     * The programs, by id.
+     */
+    private final ProgramCode[] programs;
+
+    /**
+     * Number of creatures.
+     */
+    private final int creatures;
+
+    /**
+     * Number of return addresses each call stack holds.
+     */
+    private final int maxDepth;
+
+    /**
+     * Number of registers per creature.
+     */
+    private final int registerCount;
+
+    /**
+     * Program id of each creature.
+     */
+    private final int[] programIds;
+
+    /**
+     * Program counter of each creature.
+     */
+    private final int[] pcs;
+
+    /**
+     * Call depth of each creature.
+     */
+    private final int[] depths;
+
+    /**
+     * Return addresses; creature i uses [i * maxDepth, (i + 1) * maxDepth).
+     */
+    private final int[] stacks;
+
+    /**
+     * Registers; creature i uses [i * registerCount, (i + 1) *
+     * registerCount).
+     */
+    private final long[] registers;
+
+    /**
+     * Writes through a fixed direct buffer to a channel in large blocks.
+     */
+    private static final class BlockWriter {
+
+        /**
+         * The channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The buffer.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            the channel to write to
+         */
+        BlockWriter(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BLOCK_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Makes room for at least {@code bytes} bytes in the buffer.
+         *
+         * @param bytes
+         *            the bytes needed
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        private void room(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes) {
+                this.flush();
+            }
+        }
+
+        /**
+         * Writes {@code value}.
+         *
+         * @param value
+         *            the value
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void putInt(int value) throws IOException {
+            this.room(Integer.BYTES);
+            this.buffer.putInt(value);
+        }
+
+        /**
+         * Writes {@code value}.
+         *
+         * @param value
+         *            the value
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void putLong(long value) throws IOException {
+            this.room(Long.BYTES);
+            this.buffer.putLong(value);
+        }
+
+        /**
+         * Writes {@code bytes}.
+         *
+         * @param bytes
+         *            the bytes
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void put(byte[] bytes) throws IOException {
+            int done = 0;
+            while (done < bytes.length) {
+                this.room(1);
+                int n = Math.min(this.buffer.remaining(), bytes.length - done);
+                this.buffer.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        /**
+         * Writes {@code values}.
+         *
+         * @param values
+         *            the values
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void put(int[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                this.room(Integer.BYTES);
+                int n = Math.min(this.buffer.remaining() / Integer.BYTES,
+                        values.length - done);
+                this.buffer.asIntBuffer().put(values, done, n);
+                this.buffer.position(
+                        this.buffer.position() + n * Integer.BYTES);
+                done += n;
+            }
+        }
+
+        /**
+         * Writes {@code values}.
+         *
+         * @param values
+         *            the values
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void put(long[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                this.room(Long.BYTES);
+                int n = Math.min(this.buffer.remaining() / Long.BYTES,
+                        values.length - done);
+                this.buffer.asLongBuffer().put(values, done, n);
+                this.buffer.position(this.buffer.position() + n * Long.BYTES);
+                done += n;
+            }
+        }
+
+        /**
+         * Writes out everything in the buffer.
+         *
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+    }
+
+    /**
+     * Reads from a file channel by mapping it a region at a time.
+     */
+    private static final class MappedReader {
+
+        /**
+         * The channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Size of the file.
+         */
+        private final long size;
+
+        /**
+         * File position of the start of the current region.
+         */
+        private long base;
+
+        /**
+         * The current region.
+         */
+        private MappedByteBuffer region;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            the channel to read from
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.map(0);
+        }
+
+        /**
+         * Maps the region starting at file position {@code at}.
+         *
+         * @param at
+         *            the file position
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        private void map(long at) throws IOException {
+            this.base = at;
+            this.region = this.channel.map(FileChannel.MapMode.READ_ONLY, at,
+                    Math.min(MAP_BYTES, this.size - at));
+            this.region.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Makes at least {@code bytes} bytes readable in the current region.
+         *
+         * @param bytes
+         *            the bytes needed
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        private void need(int bytes) throws IOException {
+            if (this.region.remaining() < bytes) {
+                long at = this.base + this.region.position();
+                Reporter.assertElseFatalError(this.size - at >= bytes,
+                        "Error: checkpoint is truncated");
+                this.map(at);
+            }
+        }
+
+        /**
+         * Reads an int.
+         *
+         * @return the value
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        int getInt() throws IOException {
+            this.need(Integer.BYTES);
+            return this.region.getInt();
+        }
+
+        /**
+         * Reads a long.
+         *
+         * @return the value
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        long getLong() throws IOException {
+            this.need(Long.BYTES);
+            return this.region.getLong();
+        }
+
+        /**
+         * Fills {@code bytes}.
+         *
+         * @param bytes
+         *            the destination
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        void get(byte[] bytes) throws IOException {
+            this.need(bytes.length);
+            this.region.get(bytes);
+        }
+
+        /**
+         * Fills {@code values}.
+         *
+         * @param values
+         *            the destination
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        void get(int[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                this.need(Integer.BYTES);
+                int n = Math.min(this.region.remaining() / Integer.BYTES,
+                        values.length - done);
+                this.region.asIntBuffer().get(values, done, n);
+                this.region.position(
+                        this.region.position() + n * Integer.BYTES);
+                done += n;
+            }
+        }
+
+        /**
+         * Fills {@code values}.
+         *
+         * @param values
+         *            the destination
+         * @throws IOException
+         *             if the channel cannot be mapped
+         */
+        void get(long[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                this.need(Long.BYTES);
+                int n = Math.min(this.region.remaining() / Long.BYTES,
+                        values.length - done);
+                this.region.asLongBuffer().get(values, done, n);
+                this.region.position(this.region.position() + n * Long.BYTES);
+                done += n;
+            }
+        }
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor; every creature starts at the beginning of program 0.
+     *
+     * @param creatures
+     *            the number of creatures
+     * @param maxDepth
+     *            the number of return addresses each call stack holds
+     * @param registerCount
+     *            the number of registers per creature
+     * @param programs
+     *            the programs, by id
+     * @requires <pre>
+     * creatures >= 0  and  maxDepth >= 0  and  registerCount >= 0  and
+     * |programs| > 0  and  creatures * maxDepth <= Integer.MAX_VALUE  and
+     * creatures * registerCount <= Integer.MAX_VALUE
+     * </pre>
+     */
+    public ExecutionState(int creatures, int maxDepth, int registerCount,
+            ProgramCode... programs) {
+        assert creatures >= 0 : "Violation of: creatures >= 0";
+        assert maxDepth >= 0 : "Violation of: maxDepth >= 0";
+        assert registerCount >= 0 : "Violation of: registerCount >= 0";
+        assert programs.length > 0 : "Violation of: |programs| > 0";
+        this.programs = programs.clone();
+        this.creatures = creatures;
+        this.maxDepth = maxDepth;
+        this.registerCount = registerCount;
+        this.programIds = new int[creatures];
+        this.pcs = new int[creatures];
+        this.depths = new int[creatures];
+        this.stacks = new int[Math.multiplyExact(creatures, maxDepth)];
+        this.registers = new long[Math.multiplyExact(creatures,
+                registerCount)];
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the number of creatures.
+     *
+     * @return the number of creatures
+     */
+    public int creatures() {
+        return this.creatures;
+    }
+
+    /**
+     * Returns the program with id {@code id}.
+     *
+     * @param id
+     *            the program id
+     * @return the program
+     * @requires 0 <= id < [number of programs]
+     */
+    public ProgramCode program(int id) {
+        return this.programs[id];
+    }
+
+    /**
+     * Starts creature {@code creature} at the beginning of the program with
+     * id {@code programId}.
+     *
+     * @param creature
+     *            the creature
+     * @param programId
+     *            the program id
+     * @requires 0 <= creature < creatures  and
+     *           0 <= programId < [number of programs]
+     */
+    public void start(int creature, int programId) {
+        assert 0 <= programId
+                && programId < this.programs.length : ""
+                        + "Violation of: 0 <= programId < [number of programs]";
+        this.programIds[creature] = programId;
+        this.pcs[creature] = 0;
+        this.depths[creature] = 0;
+    }
+
+    /**
+     * Returns the program id of creature {@code creature}.
+     *
+     * @param creature
+     *            the creature
+     * @return its program id
+     */
+    public int programId(int creature) {
+        return this.programIds[creature];
+    }
+
+    /**
+     * Returns the program counter of creature {@code creature}.
+     *
+     * @param creature
+     *            the creature
+     * @return its program counter
+     */
+    public int pc(int creature) {
+        return this.pcs[creature];
+    }
+
+    /**
+     * Returns the call depth of creature {@code creature}.
+     *
+     * @param creature
+     *            the creature
+     * @return its call depth
+     */
+    public int depth(int creature) {
+        return this.depths[creature];
+    }
+
+    /**
+     * Returns register {@code r} of creature {@code creature}.
+     *
+     * @param creature
+     *            the creature
+     * @param r
+     *            the register
+     * @return its value
+     * @requires 0 <= r < registerCount
+     */
+    public long register(int creature, int r) {
+        assert 0 <= r && r < this.registerCount : ""
+                + "Violation of: 0 <= r < registerCount";
+        return this.registers[creature * this.registerCount + r];
+    }
+
+    /**
+     * Sets register {@code r} of creature {@code creature} to
+     * {@code value}.
+     *
+     * @param creature
+     *            the creature
+     * @param r
+     *            the register
+     * @param value
+     *            the new value
+     * @requires 0 <= r < registerCount
+     */
+    public void setRegister(int creature, int r, long value) {
+        assert 0 <= r && r < this.registerCount : ""
+                + "Violation of: 0 <= r < registerCount";
+        this.registers[creature * this.registerCount + r] = value;
+    }
+
+    /**
+     * Runs creature {@code creature} until it executes one primitive
+     * instruction, asking {@code actions} for its conditions and telling it
+     * the primitive instruction, and returns that instruction; or, if no
+     * primitive instruction comes within {@code MAX_WORDS_PER_STEP} words,
+     * stops and returns {@code NO_ACTION}. The state is saved before
+     * {@code actions} is told the instruction, so an exception it throws
+     * leaves the creature ready for its next step.
+     *
+     * @param creature
+     *            the creature
+     * @param actions
+     *            the creature's surroundings
+     * @return the primitive instruction executed, or NO_ACTION
+     * @updates this
+     * @ensures <pre>
+     * if [the creature's call depth stays within maxDepth] then
+     *  [step returns the creature's next primitive instruction]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public int step(int creature, CreatureActions actions) {
+        int[] code = this.programs[this.programIds[creature]].code;
+        int pc = this.pcs[creature];
+        int depth = this.depths[creature];
+        int stack = creature * this.maxDepth;
+        int primitive = NO_ACTION;
+        for (int i = 0; i < MAX_WORDS_PER_STEP
+                && primitive == NO_ACTION; i++) {
+            int word = code[pc];
+            switch (word & ProgramCode.OP_MASK) {
+                case ProgramCode.PRIMITIVE:
+                    primitive = word >>> ProgramCode.OP_BITS;
+                    pc++;
+                    break;
+                case ProgramCode.CALL:
+                    if (depth == this.maxDepth) {
+                        Reporter.fatalErrorToConsole("Error: creature "
+                                + creature + " exceeded call depth "
+                                + this.maxDepth);
+                    }
+                    this.stacks[stack + depth] = pc + 1;
+                    depth++;
+                    pc = word >>> ProgramCode.OP_BITS;
+                    break;
+                case ProgramCode.RETURN:
+                    depth--;
+                    pc = this.stacks[stack + depth];
+                    break;
+                case ProgramCode.JUMP:
+                    pc = word >>> ProgramCode.OP_BITS;
+                    break;
+                default:
+                    Condition c = CONDITIONS[(word >>> ProgramCode.OP_BITS)
+                            & ProgramCode.OP_MASK];
+                    if (actions.holds(c)) {
+                        pc++;
+                    } else {
+                        pc = word >>> ProgramCode.CONDITION_ADDRESS_SHIFT;
+                    }
+                    break;
+            }
+        }
+        this.pcs[creature] = pc;
+        this.depths[creature] = depth;
+        switch (primitive) {
+            case ProgramCode.MOVE:
+                actions.move();
+                break;
+            case ProgramCode.TURN_LEFT:
+                actions.turnLeft();
+                break;
+            case ProgramCode.TURN_RIGHT:
+                actions.turnRight();
+                break;
+            case ProgramCode.INFECT:
+                actions.infect();
+                break;
+            case ProgramCode.SKIP:
+                actions.skip();
+                break;
+            default:
+                break;
+        }
+        return primitive;
+    }
+
+    /**
+     * Writes a checkpoint of this to {@code file}, replacing it if it
+     * exists. The checkpoint is written to a temporary file in the same
+     * directory, forced to the device, and then moved over {@code file} in
+     * one atomic rename, so a crash leaves either the old checkpoint or the
+     * new one, never a partial one.
+     *
+     * @param file
+     *            the checkpoint file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void checkpoint(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(),
+                target.getFileName().toString(), ".tmp");
+        try {
+            this.write(temporary);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of this to {@code file} and forces it, with its
+     * metadata, to the device.
+     *
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BlockWriter out = new BlockWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(this.creatures);
+            out.putInt(this.maxDepth);
+            out.putInt(this.registerCount);
+            out.putInt(this.programs.length);
+            for (ProgramCode program : this.programs) {
+                byte[] name = program.name().getBytes(StandardCharsets.UTF_8);
+                out.putInt(name.length);
+                out.put(name);
+                out.putLong(program.fingerprint());
+            }
+            out.put(this.programIds);
+            out.put(this.pcs);
+            out.put(this.depths);
+            out.put(this.stacks);
+            out.put(this.registers);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Returns the state saved in checkpoint {@code file}, which must have
+     * been taken with {@code programs}.
+     *
+     * @param file
+     *            the checkpoint file
+     * @param programs
+     *            the programs, by id
+     * @return the restored state
+     * @throws IOException
+     *             if the file cannot be read
+     * @ensures <pre>
+     * if [file is a checkpoint taken with the same programs in the same
+     *     order] then
+     *  restore = [the state the checkpoint was taken of]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static ExecutionState restore(Path file, ProgramCode... programs)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            Reporter.assertElseFatalError(
+                    channel.size() >= Integer.BYTES * 5L,
+                    "Error: checkpoint is truncated");
+            MappedReader in = new MappedReader(channel);
+            Reporter.assertElseFatalError(in.getInt() == MAGIC,
+                    "Error: not a BL checkpoint");
+            int creatures = in.getInt();
+            int maxDepth = in.getInt();
+            int registerCount = in.getInt();
+            int programCount = in.getInt();
+            Reporter.assertElseFatalError(
+                    creatures >= 0 && maxDepth >= 0 && registerCount >= 0,
+                    "Error: checkpoint header is corrupt");
+            Reporter.assertElseFatalError(programCount == programs.length,
+                    "Error: checkpoint was taken with " + programCount
+                            + " programs, not " + programs.length);
+            /*
+             * Check the sizes in the header against the file before
+             * allocating anything they determine
+             */
+            long expected = Integer.BYTES * 5L;
+            long stackWords = (long) creatures * maxDepth;
+            long registerWords = (long) creatures * registerCount;
+            Reporter.assertElseFatalError(
+                    stackWords <= Integer.MAX_VALUE - 8
+                            && registerWords <= Integer.MAX_VALUE - 8,
+                    "Error: checkpoint header is corrupt");
+            expected += creatures * 3L * Integer.BYTES
+                    + stackWords * Integer.BYTES + registerWords * Long.BYTES;
+            for (ProgramCode program : programs) {
+                int length = in.getInt();
+                expected += Integer.BYTES + (long) length + Long.BYTES;
+                Reporter.assertElseFatalError(
+                        length >= 0 && expected <= channel.size(),
+                        "Error: checkpoint header is corrupt");
+                byte[] name = new byte[length];
+                in.get(name);
+                long fingerprint = in.getLong();
+                String saved = new String(name, StandardCharsets.UTF_8);
+                Reporter.assertElseFatalError(
+                        saved.equals(program.name())
+                                && fingerprint == program.fingerprint(),
+                        "Error: checkpoint was taken with a different "
+                                + "version of program " + saved);
+            }
+            Reporter.assertElseFatalError(expected == channel.size(),
+                    "Error: checkpoint is " + channel.size()
+                            + " bytes, not " + expected);
+            ExecutionState state = new ExecutionState(creatures, maxDepth,
+                    registerCount, programs);
+            in.get(state.programIds);
+            in.get(state.pcs);
+            in.get(state.depths);
+            in.get(state.stacks);
+            in.get(state.registers);
+            for (int i = 0; i < creatures; i++) {
+                int id = state.programIds[i];
+                Reporter.assertElseFatalError(
+                        0 <= id && id < programs.length
+                                && 0 <= state.pcs[i]
+                                && state.pcs[i] < programs[id].length()
+                                && 0 <= state.depths[i]
+                                && state.depths[i] <= maxDepth,
+                        "Error: checkpoint state of creature " + i
+                                + " is corrupt");
+                for (int d = 0; d < state.depths[i]; d++) {
+                    int address = state.stacks[i * maxDepth + d];
+                    Reporter.assertElseFatalError(
+                            0 <= address && address < programs[id].length(),
+                            "Error: checkpoint call stack of creature " + i
+                                    + " is corrupt");
+                }
+            }
+            return state;
+        }
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; times stepping, checkpointing and restoring creatures
+     * running the benchmark workloads. The optional arguments are the number
+     * of creatures and the checkpoint file.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if the checkpoint cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        final int defaultCreatures = 10_000_000, depth = 8, registerCount = 2,
+                wideInstructions = 6, wideStatements = 10, deepNesting = 20;
+        final double nanosPerSecond = 1e9;
+        int creatures = args.length > 0 ? Integer.parseInt(args[0])
+                : defaultCreatures;
+        Path file = args.length > 1 ? Path.of(args[1])
+                : Path.of(System.getProperty("java.io.tmpdir"),
+                        "creatures.bls");
+
+        String[] sources = { ParserBenchmark.smallProgram(),
+            ParserBenchmark.wideProgram(wideInstructions, wideStatements),
+            ParserBenchmark.deepProgram(deepNesting) };
+        ProgramCode[] programs = new ProgramCode[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            Program p = new Program1Parse1();
+            p.parse(SourceTokenizer.tokens(sources[i]));
+            programs[i] = ProgramCode.compile(p);
+        }
+
+        ExecutionState state = new ExecutionState(creatures, depth,
+                registerCount, programs);
+        CreatureActions actions = new ExecutionBenchmark.StepBudget(
+                Long.MAX_VALUE);
+        long start = System.nanoTime();
+        for (int i = 0; i < creatures; i++) {
+            state.start(i, i % programs.length);
+            state.step(i, actions);
+            state.setRegister(i, 0, i);
+        }
+        long stepped = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        state.checkpoint(file);
+        long written = System.nanoTime() - start;
+        start = System.nanoTime();
+        ExecutionState restored = restore(file, programs);
+        long read = System.nanoTime() - start;
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(String.format("%,d creatures, %,d byte checkpoint",
+                restored.creatures(), file.toFile().length()));
+        out.println(String.format("%-12s %10s %16s", "operation", "ms",
+                "creatures/s"));
+        String[] names = { "step", "checkpoint", "restore" };
+        long[] times = { stepped, written, read };
+        for (int i = 0; i < names.length; i++) {
+            out.println(String.format("%-12s %10.1f %,16.0f", names[i],
+                    times[i] / 1e6, creatures * nanosPerSecond / times[i]));
+        }
+        out.close();
+        file.toFile().delete();
+    }
+
+}
@@ -0,0 +1,401 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import components.queue.Queue;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * A named set of BL instructions, compiled once from source into an indexed
+ * binary form so programs can use them without parsing them again. A program
+ * names the libraries it uses with {@code USES name} clauses after
+ * {@code PROGRAM name IS}; see {@code LibraryPath}.
+ *
+ * <p>
+ * Library source has the form
+ *
+ * <pre>
+ * LIBRARY name IS
+ *   INSTRUCTION ... END ...
+ *   ...
+ * END name
+ * </pre>
+ *
+ * and the binary form is
+ *
+ * <pre>
+ * library = MAGIC name symbols count { id offset } body-length { block }
+ * </pre>
+ *
+ * where the index entry for each instruction gives its symbol id and the
+ * offset of its body within the bodies that follow, and strings, symbols and
+ * blocks are as in {@code ProgramCodec}. Loading reads only the index; each
+ * body is decoded the first time it is looked up.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class InstructionLibrary {
+
+    /**
+     * First four bytes of every compiled library ("BLL1").
+     */
+    public static final int MAGIC = 0x424C4C31;
+
+    /**
+     * File name extension of compiled libraries.
+     */
+    public static final String EXTENSION = ".bll";
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The compiled library.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Name of this library.
+     */
+    private final String name;
+
+    /**
+     * Names by symbol id.
+     */
+    private final List<String> symbols;
+
+    /**
+     * Instruction names, in library order.
+     */
+    private final String[] instructionNames;
+
+    /**
+     * Position in {@code instructionNames} of each instruction, by name.
+     */
+    private final HashMap<String, Integer> index;
+
+    /**
+     * Offset in {@code bytes} of each instruction body, in library order.
+     */
+    private final int[] offsets;
+
+    /**
+     * Decoded instruction bodies, or null until first looked up.
+     */
+    private final StatementNode[] bodies;
+
+    /**
+     * Constructor from the compiled form; reads the index.
+     *
+     * @param bytes
+     *            the compiled library; not copied
+     */
+    private InstructionLibrary(byte[] bytes) {
+        this.bytes = bytes;
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            Reporter.assertElseFatalError(in.getInt() == MAGIC,
+                    "Error: not a compiled BL library");
+            this.name = ProgramCodec.readString(in);
+            this.symbols = ProgramCodec.readSymbols(in);
+            int count = ProgramCodec.readVarInt(in);
+            Reporter.assertElseFatalError(count <= this.symbols.size(),
+                    "Error: invalid library index");
+            this.instructionNames = new String[count];
+            this.index = new HashMap<>();
+            this.offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                int id = ProgramCodec.readVarInt(in);
+                Reporter.assertElseFatalError(id < this.symbols.size(),
+                        "Error: invalid symbol id " + id);
+                this.instructionNames[i] = this.symbols.get(id);
+                this.offsets[i] = ProgramCodec.readVarInt(in);
+                Reporter.assertElseFatalError(
+                        this.index.put(this.instructionNames[i], i) == null,
+                        "Error: Instruction \"" + this.instructionNames[i]
+                                + "\" cannot be already defined");
+            }
+            int bodyLength = ProgramCodec.readVarInt(in);
+            Reporter.assertElseFatalError(bodyLength == in.remaining(),
+                    "Error: invalid library length");
+            for (int i = 0; i < count; i++) {
+                Reporter.assertElseFatalError(this.offsets[i] < bodyLength,
+                        "Error: invalid library index");
+                this.offsets[i] += in.position();
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(
+                    "Truncated compiled BL library", e);
+        }
+        this.bodies = new StatementNode[this.offsets.length];
+    }
+
+    /**
+     * Returns the compiled form of the library {@code name} with the given
+     * instructions.
+     *
+     * @param name
+     *            the library name
+     * @param instructions
+     *            the instruction bodies, by name in library order
+     * @return the compiled library
+     */
+    private static byte[] encode(String name,
+            LinkedHashMap<String, StatementNode> instructions) {
+        SymbolTable symbols = new SymbolTable();
+        for (Map.Entry<String, StatementNode> instruction : instructions
+                .entrySet()) {
+            symbols.intern(instruction.getKey());
+            ProgramCodec.internCalls(instruction.getValue(), symbols);
+        }
+
+        ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+        int[] offsets = new int[instructions.size()];
+        int i = 0;
+        for (StatementNode body : instructions.values()) {
+            offsets[i] = bodies.size();
+            ProgramCodec.writeBlock(bodies, body, symbols);
+            i++;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC);
+        out.write(magic.array(), 0, Integer.BYTES);
+        ProgramCodec.writeString(out, name);
+        ProgramCodec.writeSymbols(out, symbols);
+        ProgramCodec.writeVarInt(out, instructions.size());
+        i = 0;
+        for (String instruction : instructions.keySet()) {
+            ProgramCodec.writeVarInt(out, symbols.id(instruction));
+            ProgramCodec.writeVarInt(out, offsets[i]);
+            i++;
+        }
+        ProgramCodec.writeVarInt(out, bodies.size());
+        out.write(bodies.toByteArray(), 0, bodies.size());
+        return out.toByteArray();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Parses the library source in {@code source} and compiles it.
+     *
+     * @param source
+     *            the library text
+     * @return the compiled library
+     * @ensures <pre>
+     * if [source is a syntactically valid BL library] then
+     *  compile = [the library in source]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static InstructionLibrary compile(CharSequence source) {
+        assert source != null : "Violation of: source is not null";
+
+        Queue<String> tokens = SourceTokenizer.tokens(source);
+        ParseState state = new ParseState(ParseLimits.UNLIMITED);
+
+        String keyword = tokens.dequeue();
+        Reporter.assertElseFatalError(keyword.equals("LIBRARY"),
+                "Error: Keyword \"LIBRARY\" expected, found: \"" + keyword
+                        + "\"");
+        String name = tokens.dequeue();
+        Reporter.assertElseFatalError(Tokenizer.isIdentifier(name),
+                "Error: library name expected, found: \"" + name + "\"");
+        String is = tokens.dequeue();
+        Reporter.assertElseFatalError(is.equals("IS"),
+                "Error: Keyword \"IS\" expected, found: \"" + is + "\"");
+
+        LinkedHashMap<String, StatementNode> instructions;
+        instructions = new LinkedHashMap<>();
+        LinkedHashMap<String, StatementNode> unshared = new LinkedHashMap<>();
+        while (tokens.front().equals("INSTRUCTION")) {
+            Statement body = new Statement1Parse1();
+            String instruction = Program1Parse1.parseInstruction(tokens, body,
+                    state, unshared);
+            Reporter.assertElseFatalError(
+                    !instructions.containsKey(instruction),
+                    "Error: Instruction \"" + instruction
+                            + "\" cannot be already defined");
+            instructions.put(instruction, StatementNode.of(body));
+        }
+
+        String end = tokens.dequeue();
+        Reporter.assertElseFatalError(end.equals("END"),
+                "Error: Keyword \"END\" expected, found: \"" + end + "\"");
+        String endName = tokens.dequeue();
+        Reporter.assertElseFatalError(endName.equals(name),
+                "Error: IDENTIFIER at end of library must equal library name");
+        Reporter.assertElseFatalError(
+                tokens.front().equals(Tokenizer.END_OF_INPUT),
+                "Error: END-OF-INPUT expected, found: \"" + tokens.front()
+                        + "\"");
+        return new InstructionLibrary(encode(name, instructions));
+    }
+
+    /**
+     * Returns the library whose compiled form is {@code bytes}.
+     *
+     * @param bytes
+     *            the compiled library
+     * @return the library
+     * @ensures <pre>
+     * if [bytes is a library written by toBytes] then
+     *  fromBytes = [the library in bytes]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static InstructionLibrary fromBytes(byte[] bytes) {
+        assert bytes != null : "Violation of: bytes is not null";
+        return new InstructionLibrary(bytes.clone());
+    }
+
+    /**
+     * Reads the compiled library in {@code file}.
+     *
+     * @param file
+     *            the compiled library file
+     * @return the library
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static InstructionLibrary load(Path file) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        return new InstructionLibrary(Files.readAllBytes(file));
+    }
+
+    /**
+     * Returns the compiled form of this library.
+     *
+     * @return the compiled library
+     */
+    public byte[] toBytes() {
+        return this.bytes.clone();
+    }
+
+    /**
+     * Writes the compiled form of this library to {@code file}.
+     *
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        Files.write(file, this.bytes);
+    }
+
+    /**
+     * Returns the name of this library.
+     *
+     * @return the library name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the names of the instructions in this library, in library
+     * order.
+     *
+     * @return the instruction names
+     */
+    public List<String> instructionNames() {
+        return Collections.unmodifiableList(
+                new ArrayList<>(Arrays.asList(this.instructionNames)));
+    }
+
+    /**
+     * Reports whether this library defines instruction {@code name}.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff name is an instruction of this
+     */
+    public boolean hasInstruction(String name) {
+        return this.index.containsKey(name);
+    }
+
+    /**
+     * Returns the body of instruction {@code name}, decoding it the first
+     * time it is looked up.
+     *
+     * @param name
+     *            the instruction name
+     * @return the instruction body
+     * @requires hasInstruction(name)
+     */
+    public synchronized StatementNode instruction(String name) {
+        assert this.hasInstruction(name) : ""
+                + "Violation of: hasInstruction(name)";
+
+        int i = this.index.get(name);
+        if (this.bodies[i] == null) {
+            ByteBuffer in = ByteBuffer.wrap(this.bytes);
+            in.position(this.offsets[i]);
+            try {
+                this.bodies[i] = ProgramCodec.readBlock(in, this.symbols);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException(
+                        "Truncated compiled BL library", e);
+            }
+        }
+        return this.bodies[i];
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; compiles the library source named by the first argument
+     * into the file named by the second, or into a file next to the source
+     * with extension {@code EXTENSION}.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Reporter.assertElseFatalError(args.length >= 1,
+                "Usage: InstructionLibrary source [output]");
+        SimpleWriter out = new SimpleWriter1L();
+        Path source = Paths.get(args[0]);
+        InstructionLibrary library = compile(SpanFormatter.readSource(source));
+        Path output;
+        if (args.length > 1) {
+            output = Paths.get(args[1]);
+        } else {
+            output = source.resolveSibling(library.name() + EXTENSION);
+        }
+        library.write(output);
+        out.println("*** Compiled " + library.instructionNames.length
+                + " instructions of library " + library.name() + " to "
+                + output + " ***");
+        out.close();
+    }
+
+}
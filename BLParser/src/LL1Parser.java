@@ -0,0 +1,643 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.map.Map;
+import components.program.Program;
+import components.queue.Queue;
+import components.statement.Statement;
+import components.statement.Statement.Condition;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Table-driven LL(1) parser for BL. Each token is classified once into a
+ * token-kind int; the parser then runs a single loop over an explicit stack
+ * of grammar symbols, choosing productions from an int table indexed by
+ * nonterminal and token kind. Building the {@code Statement} trees is done by
+ * action symbols pushed along with each production's right-hand side.
+ *
+ * <pre>
+ * PROGRAM  -&gt; PROGRAM id IS INSTRS BEGIN BLOCK END id EOI
+ * INSTRS   -&gt; INSTR INSTRS | (empty)
+ * INSTR    -&gt; INSTRUCTION id IS BLOCK END id
+ * BLOCK    -&gt; STMT BLOCK | (empty)
+ * STMT     -&gt; IF cond THEN BLOCK IF_TAIL | WHILE cond DO BLOCK END WHILE | id
+ * IF_TAIL  -&gt; END IF | ELSE BLOCK END IF
+ * </pre>
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+final class LL1Parser {
+
+    /*
+     * Token kinds (terminals) ------------------------------------------------
+     */
+
+    /**
+     * Keyword PROGRAM.
+     */
+    private static final int T_PROGRAM = 0;
+
+    /**
+     * Keyword IS.
+     */
+    private static final int T_IS = 1;
+
+    /**
+     * Keyword INSTRUCTION.
+     */
+    private static final int T_INSTRUCTION = 2;
+
+    /**
+     * Keyword BEGIN.
+     */
+    private static final int T_BEGIN = 3;
+
+    /**
+     * Keyword END.
+     */
+    private static final int T_END = 4;
+
+    /**
+     * Keyword IF.
+     */
+    private static final int T_IF = 5;
+
+    /**
+     * Keyword THEN.
+     */
+    private static final int T_THEN = 6;
+
+    /**
+     * Keyword ELSE.
+     */
+    private static final int T_ELSE = 7;
+
+    /**
+     * Keyword WHILE.
+     */
+    private static final int T_WHILE = 8;
+
+    /**
+     * Keyword DO.
+     */
+    private static final int T_DO = 9;
+
+    /**
+     * An identifier.
+     */
+    private static final int T_ID = 10;
+
+    /**
+     * A condition.
+     */
+    private static final int T_COND = 11;
+
+    /**
+     * {@code Tokenizer.END_OF_INPUT}.
+     */
+    private static final int T_EOI = 12;
+
+    /**
+     * Any other token.
+     */
+    private static final int T_ERROR = 13;
+
+    /**
+     * Number of token kinds.
+     */
+    private static final int TERMINALS = 14;
+
+    /**
+     * Token kind descriptions, for error messages.
+     */
+    private static final String[] TERMINAL_NAMES = { "PROGRAM", "IS",
+        "INSTRUCTION", "BEGIN", "END", "IF", "THEN", "ELSE", "WHILE", "DO",
+        "an identifier", "a condition", "end of input", "a valid token" };
+
+    /*
+     * Nonterminals -----------------------------------------------------------
+     */
+
+    /**
+     * First nonterminal symbol.
+     */
+    private static final int N_BASE = 16;
+
+    /**
+     * A whole program.
+     */
+    private static final int N_PROGRAM = N_BASE;
+
+    /**
+     * A sequence of instructions.
+     */
+    private static final int N_INSTRS = N_BASE + 1;
+
+    /**
+     * One instruction.
+     */
+    private static final int N_INSTR = N_BASE + 2;
+
+    /**
+     * A block.
+     */
+    private static final int N_BLOCK = N_BASE + 3;
+
+    /**
+     * One statement.
+     */
+    private static final int N_STMT = N_BASE + 4;
+
+    /**
+     * The rest of an IF after its THEN block.
+     */
+    private static final int N_IF_TAIL = N_BASE + 5;
+
+    /**
+     * Number of nonterminals.
+     */
+    private static final int NONTERMINALS = 6;
+
+    /*
+     * Actions ----------------------------------------------------------------
+     */
+
+    /**
+     * First action symbol.
+     */
+    private static final int A_BASE = 32;
+
+    /**
+     * Record the program name just matched.
+     */
+    private static final int A_PROGRAM_NAME = A_BASE;
+
+    /**
+     * Check the program's closing name and complete the program.
+     */
+    private static final int A_PROGRAM_END = A_BASE + 1;
+
+    /**
+     * Record the instruction name just matched.
+     */
+    private static final int A_INSTRUCTION_NAME = A_BASE + 2;
+
+    /**
+     * Check the instruction's closing name and add it to the context.
+     */
+    private static final int A_INSTRUCTION_END = A_BASE + 3;
+
+    /**
+     * Start a new block.
+     */
+    private static final int A_OPEN = A_BASE + 4;
+
+    /**
+     * Append a CALL of the identifier just matched.
+     */
+    private static final int A_CALL = A_BASE + 5;
+
+    /**
+     * Record the condition just matched and enter a nested block.
+     */
+    private static final int A_CONDITION = A_BASE + 6;
+
+    /**
+     * Complete an IF.
+     */
+    private static final int A_IF = A_BASE + 7;
+
+    /**
+     * Complete an IF_ELSE.
+     */
+    private static final int A_IF_ELSE = A_BASE + 8;
+
+    /**
+     * Complete a WHILE.
+     */
+    private static final int A_WHILE = A_BASE + 9;
+
+    /*
+     * Productions and parse table -------------------------------------------
+     */
+
+    /**
+     * Right-hand sides of the productions, in order.
+     */
+    private static final int[][] PRODUCTIONS = {
+        /* 0 */ { T_PROGRAM, T_ID, A_PROGRAM_NAME, T_IS, N_INSTRS, T_BEGIN,
+            A_OPEN, N_BLOCK, T_END, T_ID, A_PROGRAM_END, T_EOI },
+        /* 1 */ { N_INSTR, N_INSTRS },
+        /* 2 */ {},
+        /* 3 */ { T_INSTRUCTION, T_ID, A_INSTRUCTION_NAME, T_IS, A_OPEN,
+            N_BLOCK, T_END, T_ID, A_INSTRUCTION_END },
+        /* 4 */ { N_STMT, N_BLOCK },
+        /* 5 */ {},
+        /* 6 */ { T_IF, T_COND, A_CONDITION, T_THEN, A_OPEN, N_BLOCK,
+            N_IF_TAIL },
+        /* 7 */ { T_WHILE, T_COND, A_CONDITION, T_DO, A_OPEN, N_BLOCK, T_END,
+            T_WHILE, A_WHILE },
+        /* 8 */ { T_ID, A_CALL },
+        /* 9 */ { T_END, T_IF, A_IF },
+        /* 10 */ { T_ELSE, A_OPEN, N_BLOCK, T_END, T_IF, A_IF_ELSE }, };
+
+    /**
+     * Parse table: the production to expand for each nonterminal and
+     * lookahead token kind, or -1 for a syntax error.
+     */
+    private static final int[][] TABLE = new int[NONTERMINALS][TERMINALS];
+
+    /**
+     * Token kind of each keyword and condition.
+     */
+    private static final HashMap<String, Integer> KINDS = new HashMap<>();
+
+    /**
+     * Conditions by condition string.
+     */
+    private static final HashMap<String, Condition> CONDITIONS =
+            new HashMap<>();
+
+    static {
+        for (int[] row : TABLE) {
+            Arrays.fill(row, -1);
+        }
+        TABLE[N_PROGRAM - N_BASE][T_PROGRAM] = 0;
+        TABLE[N_INSTRS - N_BASE][T_INSTRUCTION] = 1;
+        TABLE[N_INSTRS - N_BASE][T_BEGIN] = 2;
+        TABLE[N_INSTR - N_BASE][T_INSTRUCTION] = 3;
+        /*
+         * A block is maximally long: it ends at any token that cannot start a
+         * statement, and whatever follows is checked by the enclosing rule.
+         */
+        Arrays.fill(TABLE[N_BLOCK - N_BASE], 5);
+        TABLE[N_BLOCK - N_BASE][T_IF] = 4;
+        TABLE[N_BLOCK - N_BASE][T_WHILE] = 4;
+        TABLE[N_BLOCK - N_BASE][T_ID] = 4;
+        TABLE[N_STMT - N_BASE][T_IF] = 6;
+        TABLE[N_STMT - N_BASE][T_WHILE] = 7;
+        TABLE[N_STMT - N_BASE][T_ID] = 8;
+        TABLE[N_IF_TAIL - N_BASE][T_END] = 9;
+        TABLE[N_IF_TAIL - N_BASE][T_ELSE] = 10;
+
+        for (int t = T_PROGRAM; t <= T_DO; t++) {
+            KINDS.put(TERMINAL_NAMES[t], t);
+        }
+        KINDS.put(Tokenizer.END_OF_INPUT, T_EOI);
+        for (Condition c : Condition.values()) {
+            String s = c.name().toLowerCase().replace('_', '-');
+            KINDS.put(s, T_COND);
+            CONDITIONS.put(s, c);
+        }
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The input tokens.
+     */
+    private final Queue<String> tokens;
+
+    /**
+     * Resource accounting for this parse.
+     */
+    private final ParseState state;
+
+    /**
+     * Statement used to create new statements.
+     */
+    private final Statement factory;
+
+    /**
+     * Grammar symbols still to be matched or expanded; the top is at
+     * {@code symbols[depth - 1]}.
+     */
+    private int[] symbols;
+
+    /**
+     * Number of symbols on the stack.
+     */
+    private int depth;
+
+    /**
+     * Blocks under construction, innermost last.
+     */
+    private final ArrayList<Statement> blocks;
+
+    /**
+     * Conditions of the IFs and WHILEs under construction, innermost last.
+     */
+    private final ArrayList<Condition> conditions;
+
+    /**
+     * Names of the program and instruction under construction.
+     */
+    private final ArrayList<String> names;
+
+    /**
+     * Context of the program being parsed, or null if parsing a statement.
+     */
+    private Map<String, Statement> context;
+
+    /**
+     * The token most recently matched.
+     */
+    private String matched;
+
+    /**
+     * Constructor.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param state
+     *            the resource accounting for this parse
+     * @param factory
+     *            statement used to create new statements
+     */
+    private LL1Parser(Queue<String> tokens, ParseState state,
+            Statement factory) {
+        final int initialDepth = 64;
+        this.tokens = tokens;
+        this.state = state;
+        this.factory = factory;
+        this.symbols = new int[initialDepth];
+        this.depth = 0;
+        this.blocks = new ArrayList<>();
+        this.conditions = new ArrayList<>();
+        this.names = new ArrayList<>();
+        this.context = null;
+        this.matched = null;
+    }
+
+    /**
+     * Returns the token kind of {@code token}.
+     *
+     * @param token
+     *            the token
+     * @return the token kind
+     */
+    private static int kind(String token) {
+        Integer k = KINDS.get(token);
+        int kind;
+        if (k != null) {
+            kind = k;
+        } else if (Tokenizer.isIdentifier(token)) {
+            kind = T_ID;
+        } else {
+            kind = T_ERROR;
+        }
+        return kind;
+    }
+
+    /**
+     * Pushes {@code symbol} onto the stack.
+     *
+     * @param symbol
+     *            the symbol
+     */
+    private void push(int symbol) {
+        if (this.depth == this.symbols.length) {
+            this.symbols = Arrays.copyOf(this.symbols,
+                    2 * this.depth);
+        }
+        this.symbols[this.depth] = symbol;
+        this.depth++;
+    }
+
+    /**
+     * Removes and returns the innermost block under construction.
+     *
+     * @return the block
+     */
+    private Statement popBlock() {
+        return this.blocks.remove(this.blocks.size() - 1);
+    }
+
+    /**
+     * Appends {@code s} to the innermost block under construction.
+     *
+     * @param s
+     *            the statement to append
+     */
+    private void append(Statement s) {
+        Statement block = this.blocks.get(this.blocks.size() - 1);
+        block.addToBlock(block.lengthOfBlock(), s);
+    }
+
+    /**
+     * Completes an IF, IF_ELSE or WHILE from the blocks and condition on the
+     * stacks and appends it to the enclosing block.
+     *
+     * @param action
+     *            A_IF, A_IF_ELSE, or A_WHILE
+     */
+    private void completeCompound(int action) {
+        Condition c = this.conditions.remove(this.conditions.size() - 1);
+        Statement s = this.factory.newInstance();
+        if (action == A_IF_ELSE) {
+            Statement elseBlock = this.popBlock();
+            s.assembleIfElse(c, this.popBlock(), elseBlock);
+        } else if (action == A_IF) {
+            s.assembleIf(c, this.popBlock());
+        } else {
+            s.assembleWhile(c, this.popBlock());
+        }
+        this.state.exitNested();
+        this.append(s);
+    }
+
+    /**
+     * Performs the action {@code action}.
+     *
+     * @param action
+     *            the action symbol
+     */
+    private void perform(int action) {
+        switch (action) {
+            case A_PROGRAM_NAME:
+                this.state.checkIdentifier(this.matched);
+                this.names.add(this.matched);
+                break;
+            case A_PROGRAM_END:
+                Reporter.assertElseFatalError(
+                        this.matched.equals(this.names.get(0)),
+                        "Error: IDENTIFIER at end of program must equal "
+                                + "program name");
+                break;
+            case A_INSTRUCTION_NAME:
+                this.state.countInstruction();
+                this.names.add(this.state.internIdentifier(this.matched));
+                break;
+            case A_INSTRUCTION_END: {
+                String name = this.names.remove(this.names.size() - 1);
+                Reporter.assertElseFatalError(name.equals(this.matched),
+                        "start identifier does not match end identifier.");
+                Reporter.assertElseFatalError(!this.context.hasKey(name),
+                        "Error: Instruction \"" + name
+                                + "\" cannot be already defined");
+                this.context.add(name, this.popBlock());
+                break;
+            }
+            case A_OPEN:
+                this.blocks.add(this.factory.newInstance());
+                break;
+            case A_CALL: {
+                Statement call = this.factory.newInstance();
+                call.assembleCall(this.state.internIdentifier(this.matched));
+                this.append(call);
+                break;
+            }
+            case A_CONDITION:
+                this.state.enterNested();
+                this.conditions.add(CONDITIONS.get(this.matched));
+                break;
+            default:
+                this.completeCompound(action);
+                break;
+        }
+    }
+
+    /**
+     * Runs the parser until the stack is empty.
+     *
+     * @param start
+     *            the start symbol
+     */
+    private void run(int start) {
+        this.push(start);
+        String token = this.tokens.front();
+        int lookahead = kind(token);
+        while (this.depth > 0) {
+            this.depth--;
+            int symbol = this.symbols[this.depth];
+            if (symbol < N_BASE) {
+                Reporter.assertElseFatalError(symbol == lookahead,
+                        "Error: expected " + TERMINAL_NAMES[symbol]
+                                + ", found: \"" + token + "\"");
+                if (symbol == T_EOI) {
+                    /*
+                     * Leave END_OF_INPUT in tokens, as Program1Parse1 does.
+                     */
+                    this.matched = token;
+                } else {
+                    this.matched = this.tokens.dequeue();
+                    token = this.tokens.front();
+                    lookahead = kind(token);
+                }
+            } else if (symbol < A_BASE) {
+                int production = TABLE[symbol - N_BASE][lookahead];
+                Reporter.assertElseFatalError(production >= 0,
+                        "Error: unexpected token: \"" + token + "\"");
+                if (symbol == N_STMT) {
+                    this.state.tick();
+                }
+                int[] rhs = PRODUCTIONS[production];
+                for (int i = rhs.length - 1; i >= 0; i--) {
+                    this.push(rhs[i]);
+                }
+            } else {
+                this.perform(symbol);
+            }
+        }
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Parses a BL program from {@code tokens} into {@code p}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param p
+     *            the parsed program
+     * @param state
+     *            the resource accounting for this parse
+     * @replaces p
+     * @updates tokens, state
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [#tokens is a syntactically valid BL program within the limits of
+     *     state] then
+     *  p = [the program corresponding to #tokens]  and
+     *  tokens = <Tokenizer.END_OF_INPUT>
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    static void parseProgram(Queue<String> tokens, Program p,
+            ParseState state) {
+        LL1Parser parser = new LL1Parser(tokens, state, p.newBody());
+        parser.context = p.newContext();
+        parser.run(N_PROGRAM);
+        p.setName(parser.names.get(0));
+        p.swapContext(parser.context);
+        Statement body = parser.popBlock();
+        p.swapBody(body);
+    }
+
+    /**
+     * Parses a single BL statement from {@code tokens} into {@code s}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param s
+     *            the parsed statement
+     * @param state
+     *            the resource accounting for this parse
+     * @replaces s
+     * @updates tokens, state
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a statement string is a proper prefix of #tokens] then
+     *  s = [Statement corresponding to statement string at start of #tokens]  and
+     *  #tokens = [statement string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    static void parseStatement(Queue<String> tokens, Statement s,
+            ParseState state) {
+        LL1Parser parser = new LL1Parser(tokens, state, s);
+        parser.perform(A_OPEN);
+        parser.run(N_STMT);
+        Statement statement = parser.popBlock().removeFromBlock(0);
+        s.transferFrom(statement);
+    }
+
+    /**
+     * Parses a maximally long sequence of BL statements from {@code tokens}
+     * into the BLOCK {@code s}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param s
+     *            the parsed block
+     * @param state
+     *            the resource accounting for this parse
+     * @replaces s
+     * @updates tokens, state
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [there is a block string b that is a proper prefix of #tokens] then
+     *  s = [BLOCK Statement corresponding to b]  and
+     *  #tokens = b * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    static void parseBlock(Queue<String> tokens, Statement s,
+            ParseState state) {
+        LL1Parser parser = new LL1Parser(tokens, state, s);
+        parser.perform(A_OPEN);
+        parser.run(N_BLOCK);
+        s.transferFrom(parser.popBlock());
+    }
+
+}
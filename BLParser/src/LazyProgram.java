@@ -0,0 +1,534 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import components.map.Map;
+import components.program.Program;
+import components.queue.Queue;
+import components.statement.Statement;
+import components.statement.Statement.Kind;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * BL program whose instruction bodies are parsed on demand. {@code scan}
+ * only finds where the program's INSTRUCTIONs and BEGIN body are in the
+ * source; each body is tokenized and parsed the first time it is read, so
+ * listing instructions or following the calls reachable from BEGIN costs time
+ * in proportion to what is used rather than to the size of the file. Parsed
+ * bodies are immutable {@code StatementNode}s, and all methods are safe to
+ * call from multiple threads.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class LazyProgram {
+
+    /**
+     * A body that has been located but possibly not yet parsed.
+     */
+    private static final class LazyBody {
+
+        /**
+         * Start of the body in the source.
+         */
+        private final int start;
+
+        /**
+         * End (exclusive) of the body in the source.
+         */
+        private final int end;
+
+        /**
+         * The parsed body, or null until it is first read.
+         */
+        private volatile StatementNode node;
+
+        /**
+         * Constructor from the location of the body.
+         *
+         * @param start
+         *            start of the body in the source
+         * @param end
+         *            end (exclusive) of the body in the source
+         */
+        LazyBody(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.node = null;
+        }
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The program text.
+     */
+    private final String source;
+
+    /**
+     * Limits enforced when scanning and when parsing each body.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * Name of the program.
+     */
+    private final String name;
+
+    /**
+     * Instruction names in source order.
+     */
+    private final List<String> instructionNames;
+
+    /**
+     * Location of each instruction body, by name.
+     */
+    private final HashMap<String, LazyBody> instructions;
+
+    /**
+     * Location of the BEGIN body.
+     */
+    private final LazyBody body;
+
+    /**
+     * Reads the tokens of a source one at a time, without allocating them,
+     * enforcing the token, depth and deadline limits as it goes. Used only
+     * while {@code scan} runs, by the thread running it, so the shared
+     * {@code LazyProgram} holds no mutable scanning state.
+     */
+    private static final class Scanner {
+
+        /**
+         * The program text.
+         */
+        private final String source;
+
+        /**
+         * The state of the scan, checked against the limits.
+         */
+        private final ParseState state;
+
+        /**
+         * The most tokens the scan may read.
+         */
+        private final int maxTokens;
+
+        /**
+         * Number of tokens read so far.
+         */
+        private int tokens;
+
+        /**
+         * Position just past the token most recently read by {@code next}.
+         */
+        private int pos;
+
+        /**
+         * Start of the token most recently read by {@code next}.
+         */
+        private int tokenStart;
+
+        /**
+         * Reads the next token of the source, returning false at the end of
+         * the source.
+         *
+         * @return true iff there was another token
+         * @updates pos, tokenStart, tokens, state
+         * @ensures [throws ParseLimitException if more than maxTokens tokens
+         *          have been read or the deadline has passed]
+         */
+        private boolean next() {
+            this.tokenStart = SourceTokenizer.skipWhitespace(this.source,
+                    this.pos);
+            boolean found = this.tokenStart < this.source.length();
+            if (found) {
+                this.tokens++;
+                if (this.tokens > this.maxTokens) {
+                    throw new ParseLimitException(
+                            ParseLimitException.Limit.TOKENS, this.maxTokens);
+                }
+                this.state.tick();
+                this.pos = SourceTokenizer.tokenEnd(this.source,
+                        this.tokenStart);
+            } else {
+                this.pos = this.tokenStart;
+            }
+            return found;
+        }
+
+        /**
+         * Reports whether the token most recently read by {@code next} is
+         * {@code word}, without allocating a string.
+         *
+         * @param word
+         *            the expected token
+         * @return true iff the current token is word
+         */
+        private boolean at(String word) {
+            return this.pos - this.tokenStart == word.length()
+                    && this.source.regionMatches(this.tokenStart, word, 0,
+                            word.length());
+        }
+
+        /**
+         * Returns the token most recently read by {@code next}.
+         *
+         * @return the current token
+         */
+        private String token() {
+            return this.source.substring(this.tokenStart, this.pos);
+        }
+
+        /**
+         * Reads the next token and reports a fatal error unless it is
+         * {@code word}.
+         *
+         * @param word
+         *            the expected token
+         */
+        private void expect(String word) {
+            Reporter.assertElseFatalError(this.next() && this.at(word),
+                    "Error: Keyword \"" + word + "\" expected");
+        }
+
+        /**
+         * Skips over a block, stopping after the END that closes it, and
+         * returns the location of the block.
+         *
+         * @return the location of the block, not yet parsed
+         * @updates pos, tokenStart, tokens, state
+         * @ensures [throws ParseLimitException if IF and WHILE statements in
+         *          the block are nested more than maxDepth deep]
+         */
+        private LazyBody skipBlock() {
+            int start = SourceTokenizer.skipWhitespace(this.source, this.pos);
+            int depth = 0;
+            boolean closed = false;
+            while (!closed) {
+                Reporter.assertElseFatalError(this.next(),
+                        "Error: Keyword \"END\" expected, found end of input");
+                if (this.at("IF") || this.at("WHILE")) {
+                    this.state.enterNested();
+                    depth++;
+                } else if (this.at("END")) {
+                    if (depth == 0) {
+                        closed = true;
+                    } else {
+                        this.state.exitNested();
+                        depth--;
+                        this.next();
+                    }
+                }
+            }
+            return new LazyBody(start, Math.max(start, this.tokenStart));
+        }
+
+        /**
+         * Constructor; starts at the beginning of {@code source}.
+         *
+         * @param source
+         *            the program text
+         * @param state
+         *            the state to check limits against
+         * @param maxTokens
+         *            the most tokens the scan may read
+         */
+        Scanner(String source, ParseState state, int maxTokens) {
+            this.source = source;
+            this.state = state;
+            this.maxTokens = maxTokens;
+            this.tokens = 0;
+            this.pos = 0;
+            this.tokenStart = 0;
+        }
+
+    }
+
+    /**
+     * Returns the parsed form of {@code b}, parsing it if this is the first
+     * time it has been read.
+     *
+     * @param b
+     *            the body
+     * @return the parsed body
+     */
+    private StatementNode materialize(LazyBody b) {
+        StatementNode node = b.node;
+        if (node == null) {
+            synchronized (b) {
+                node = b.node;
+                if (node == null) {
+                    Queue<String> tokens = SourceTokenizer.tokens(
+                            this.source.substring(b.start, b.end), null,
+                            this.limits.maxTokens());
+                    ParseState state = new ParseState(this.limits);
+                    Statement s = new Statement1Parse1();
+                    Statement1Parse1.parseBlock(tokens, s, state);
+                    Reporter.assertElseFatalError(
+                            tokens.front().equals(Tokenizer.END_OF_INPUT),
+                            "Error: Keyword \"END\" expected, found: \""
+                                    + tokens.front() + "\"");
+                    node = StatementNode.of(s);
+                    b.node = node;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Adds to {@code names} every instruction called anywhere in
+     * {@code node}.
+     *
+     * @param node
+     *            the statement to search
+     * @param names
+     *            the instruction names found so far
+     * @updates names
+     */
+    private void addCalls(StatementNode node, Set<String> names) {
+        if (node.kind() == Kind.CALL) {
+            if (this.instructions.containsKey(node.name())) {
+                names.add(node.name());
+            }
+        } else {
+            for (int i = 0; i < node.childCount(); i++) {
+                this.addCalls(node.child(i), names);
+            }
+        }
+    }
+
+    /**
+     * Constructor; scans {@code source} for the program's structure.
+     *
+     * @param source
+     *            the program text
+     * @param limits
+     *            the limits to enforce
+     */
+    private LazyProgram(String source, ParseLimits limits) {
+        this.source = source;
+        this.limits = limits;
+        this.instructionNames = new ArrayList<>();
+        this.instructions = new HashMap<>();
+        ParseState state = new ParseState(limits);
+        Scanner in = new Scanner(source, state, limits.maxTokens());
+
+        in.expect("PROGRAM");
+        Reporter.assertElseFatalError(in.next(),
+                "Error: program name expected");
+        this.name = in.token();
+        state.checkIdentifier(this.name);
+        Reporter.assertElseFatalError(Tokenizer.isIdentifier(this.name),
+                "Invalid identifier");
+        in.expect("IS");
+
+        Reporter.assertElseFatalError(in.next(),
+                "Error: Keyword \"BEGIN\" expected, found end of input");
+        while (in.at("INSTRUCTION")) {
+            state.countInstruction();
+            Reporter.assertElseFatalError(in.next(),
+                    "Error: instruction name expected");
+            String instruction = state.internIdentifier(in.token());
+            Reporter.assertElseFatalError(Tokenizer.isIdentifier(instruction),
+                    "Invalid identifier");
+            Reporter.assertElseFatalError(
+                    !this.instructions.containsKey(instruction),
+                    "Error: Instruction \"" + instruction
+                            + "\" cannot be already defined");
+            in.expect("IS");
+            LazyBody b = in.skipBlock();
+            Reporter.assertElseFatalError(
+                    in.next() && in.token().equals(instruction),
+                    "start identifier does not match end identifier.");
+            this.instructionNames.add(instruction);
+            this.instructions.put(instruction, b);
+            Reporter.assertElseFatalError(in.next(),
+                    "Error: Keyword \"BEGIN\" expected, found end of input");
+        }
+        Reporter.assertElseFatalError(in.at("BEGIN"),
+                "Error: Keyword \"BEGIN\" expected, found: \"" + in.token()
+                        + "\"");
+        this.body = in.skipBlock();
+        Reporter.assertElseFatalError(
+                in.next() && in.token().equals(this.name),
+                "Error: IDENTIFIER at end of program must equal program name");
+        Reporter.assertElseFatalError(!in.next(),
+                "Error: END-OF-INPUT expected, found: \"" + in.token()
+                        + "\"");
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Scans the BL program in {@code source} without parsing any bodies.
+     *
+     * @param source
+     *            the program text
+     * @return the lazily parsed program
+     * @ensures <pre>
+     * if [the outline of source -- PROGRAM, names, INSTRUCTION and END
+     *     nesting, BEGIN -- is valid] then
+     *  scan = [program whose bodies will be parsed from source on demand]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static LazyProgram scan(CharSequence source) {
+        return scan(source, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Scans the BL program in {@code source} without parsing any bodies,
+     * enforcing {@code limits} while scanning -- on the whole source for
+     * tokens, instructions, identifier length, nesting depth and the
+     * deadline -- and again on each body as it is parsed.
+     *
+     * @param source
+     *            the program text
+     * @param limits
+     *            the limits to enforce
+     * @return the lazily parsed program
+     */
+    public static LazyProgram scan(CharSequence source, ParseLimits limits) {
+        assert source != null : "Violation of: source is not null";
+        assert limits != null : "Violation of: limits is not null";
+        return new LazyProgram(source.toString(), limits);
+    }
+
+    /**
+     * Returns the name of this program.
+     *
+     * @return the program name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the names of the instructions, in source order, without
+     * parsing any bodies.
+     *
+     * @return the instruction names
+     */
+    public List<String> instructionNames() {
+        return Collections.unmodifiableList(this.instructionNames);
+    }
+
+    /**
+     * Reports whether this program defines instruction {@code name}.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff name is an instruction of this
+     */
+    public boolean hasInstruction(String name) {
+        return this.instructions.containsKey(name);
+    }
+
+    /**
+     * Reports whether the body of instruction {@code name} has been parsed.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff the body has been parsed
+     * @requires hasInstruction(name)
+     */
+    public boolean isMaterialized(String name) {
+        assert this.hasInstruction(name) : ""
+                + "Violation of: hasInstruction(name)";
+        return this.instructions.get(name).node != null;
+    }
+
+    /**
+     * Returns the body of instruction {@code name}, parsing it if this is the
+     * first time it has been read.
+     *
+     * @param name
+     *            the instruction name
+     * @return the instruction body
+     * @requires hasInstruction(name)
+     * @ensures <pre>
+     * if [the body of name is a valid block] then
+     *  instruction = [the body of name]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public StatementNode instruction(String name) {
+        assert this.hasInstruction(name) : ""
+                + "Violation of: hasInstruction(name)";
+        return this.materialize(this.instructions.get(name));
+    }
+
+    /**
+     * Returns the BEGIN body, parsing it if this is the first time it has
+     * been read.
+     *
+     * @return the program body
+     */
+    public StatementNode body() {
+        return this.materialize(this.body);
+    }
+
+    /**
+     * Returns the names of the instructions reachable from the BEGIN body
+     * through calls, parsing only the bodies of those instructions.
+     *
+     * @return the reachable instruction names, in discovery order
+     */
+    public Set<String> reachableInstructions() {
+        Set<String> reached = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        Set<String> found = new LinkedHashSet<>();
+        this.addCalls(this.body(), found);
+        pending.addAll(found);
+        reached.addAll(found);
+        while (!pending.isEmpty()) {
+            found.clear();
+            this.addCalls(this.instruction(pending.removeFirst()), found);
+            for (String called : found) {
+                if (reached.add(called)) {
+                    pending.addLast(called);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Parses every remaining body and copies this program into {@code p}.
+     *
+     * @param p
+     *            the program to fill in
+     * @replaces p
+     * @ensures p = [the program in the source of this]
+     */
+    public void toProgram(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        Map<String, Statement> context = p.newContext();
+        for (String instruction : this.instructionNames) {
+            Statement b = p.newBody();
+            this.instruction(instruction).toStatement(b);
+            context.add(instruction, b);
+        }
+        Statement b = p.newBody();
+        this.body().toStatement(b);
+        p.setName(this.name);
+        p.swapContext(context);
+        p.swapBody(b);
+    }
+
+}
@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Where {@code Program1Parse1} finds the libraries named in {@code USES}
+ * clauses: libraries added directly, then files {@code name.bll} in each
+ * directory of the path, in order. A library is loaded at most once per
+ * path, however many programs use it. Safe for use by several threads.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class LibraryPath {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Directories searched for compiled libraries, in order.
+     */
+    private final List<Path> directories;
+
+    /**
+     * Libraries added or loaded so far, by name.
+     */
+    private final HashMap<String, InstructionLibrary> libraries;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor searching {@code directories}, in order.
+     *
+     * @param directories
+     *            the directories holding compiled libraries
+     */
+    public LibraryPath(Path... directories) {
+        this.directories = new ArrayList<>();
+        for (Path directory : directories) {
+            assert directory != null : "Violation of: directory is not null";
+            this.directories.add(directory);
+        }
+        this.libraries = new HashMap<>();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code library} to this path, ahead of any library of the same
+     * name in the directories.
+     *
+     * @param library
+     *            the library to add
+     * @updates this
+     */
+    public synchronized void add(InstructionLibrary library) {
+        assert library != null : "Violation of: library is not null";
+        this.libraries.put(library.name(), library);
+    }
+
+    /**
+     * Returns the library called {@code name}, loading it from the first
+     * directory that has it if it has not been added or loaded already.
+     *
+     * @param name
+     *            the library name
+     * @return the library
+     * @ensures <pre>
+     * if [name is an identifier]  and  [this has a library called name] then
+     *  resolve = [that library]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public synchronized InstructionLibrary resolve(String name) {
+        assert name != null : "Violation of: name is not null";
+
+        //a library name never reaches the file system unless it is a plain
+        //identifier, so it cannot name a file outside the directories
+        Reporter.assertElseFatalError(Tokenizer.isIdentifier(name),
+                "Error: \"" + name + "\" is not a library name");
+        InstructionLibrary library = this.libraries.get(name);
+        for (int i = 0; library == null && i < this.directories.size(); i++) {
+            Path file = this.directories.get(i)
+                    .resolve(name + InstructionLibrary.EXTENSION);
+            if (Files.isRegularFile(file)) {
+                try {
+                    library = InstructionLibrary.load(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                Reporter.assertElseFatalError(library.name().equals(name),
+                        "Error: " + file + " holds library \""
+                                + library.name() + "\", not \"" + name
+                                + "\"");
+                this.libraries.put(name, library);
+            }
+        }
+        Reporter.assertElseFatalError(library != null,
+                "Error: Library \"" + name + "\" not found");
+        return library;
+    }
+
+}
@@ -0,0 +1,105 @@
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-consing table for {@code StatementNode}s: returns one canonical node
+ * for each distinct subtree, so structurally equal subtrees built against the
+ * same table are the same object. Because children are canonical before their
+ * parent is interned, each lookup compares children by reference only.
+ *
+ * <p>
+ * The table holds its nodes weakly: a subtree stays canonical only while some
+ * program or other node still refers to it, so a table shared by a long
+ * sequence of parses is bounded by the subtrees still in use rather than by
+ * everything ever parsed against it.
+ *
+ * <p>
+ * All methods are synchronized, so parses running on different threads, such
+ * as those started by {@code Program1Parse1Async} or
+ * {@code ProgramRegistry.reload}, may share one table; they then take turns
+ * interning.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class NodeTable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Canonical node for each distinct subtree still in use, held weakly.
+     */
+    private final WeakHashMap<StatementNode,
+            WeakReference<StatementNode>> nodes;
+
+    /**
+     * Number of nodes offered to {@code intern}.
+     */
+    private long requests;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public NodeTable() {
+        this.nodes = new WeakHashMap<>();
+        this.requests = 0;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the canonical node equal to {@code node}, making {@code node}
+     * canonical if there is none yet.
+     *
+     * @param node
+     *            the node to intern
+     * @return the canonical node equal to node
+     * @updates this
+     * @requires [the children of node are canonical in this]
+     * @ensures intern equals node and [intern is canonical in this]
+     */
+    public synchronized StatementNode intern(StatementNode node) {
+        assert node != null : "Violation of: node is not null";
+
+        this.requests++;
+        WeakReference<StatementNode> entry = this.nodes.get(node);
+        StatementNode canonical = null;
+        if (entry != null) {
+            canonical = entry.get();
+        }
+        if (canonical == null) {
+            canonical = node;
+            this.nodes.put(node, new WeakReference<>(node));
+        }
+        return canonical;
+    }
+
+    /**
+     * Returns the number of distinct subtrees in this that have not yet been
+     * freed.
+     *
+     * @return the number of canonical nodes
+     */
+    public synchronized int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Returns the number of nodes offered to {@code intern}, i.e. the number
+     * of nodes there would be without sharing.
+     *
+     * @return the number of intern requests
+     */
+    public synchronized long requests() {
+        return this.requests;
+    }
+
+}
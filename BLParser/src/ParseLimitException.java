@@ -0,0 +1,68 @@
+/**
+ * Thrown when parsing stops because the input exceeds one of the configured
+ * {@code ParseLimits}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ParseLimitException extends RuntimeException {
+
+    /**
+     * The limits that can be exceeded.
+     */
+    public enum Limit {
+        /**
+         * Too many tokens.
+         */
+        TOKENS,
+        /**
+         * Too many INSTRUCTION definitions.
+         */
+        INSTRUCTIONS,
+        /**
+         * IF/WHILE statements nested too deeply.
+         */
+        DEPTH,
+        /**
+         * An identifier that is too long.
+         */
+        IDENTIFIER_LENGTH,
+        /**
+         * The parse took too long.
+         */
+        DEADLINE
+    }
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The limit that was exceeded.
+     */
+    private final Limit limit;
+
+    /**
+     * Constructor from the exceeded limit and its configured value.
+     *
+     * @param limit
+     *            the limit that was exceeded
+     * @param max
+     *            the configured value of that limit
+     */
+    public ParseLimitException(Limit limit, long max) {
+        super("Error: parse limit " + limit + " exceeded (max " + max + ")");
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the limit that was exceeded.
+     *
+     * @return the exceeded limit
+     */
+    public Limit limit() {
+        return this.limit;
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Immutable set of resource limits enforced by {@code Program1Parse1} and
+ * {@code Statement1Parse1} when parsing untrusted BL input.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ParseLimits {
+
+    /**
+     * Limits that never trigger.
+     */
+    public static final ParseLimits UNLIMITED = new ParseLimits(
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Maximum number of tokens in the input, not counting END_OF_INPUT. It
+     * bounds memory only when the parser does the tokenizing; a token queue
+     * built by the caller is checked after the fact.
+     */
+    private final int maxTokens;
+
+    /**
+     * Maximum number of INSTRUCTION definitions in a program.
+     */
+    private final int maxInstructions;
+
+    /**
+     * Maximum nesting depth of IF and WHILE statements.
+     */
+    private final int maxDepth;
+
+    /**
+     * Maximum length of an identifier.
+     */
+    private final int maxIdentifierLength;
+
+    /**
+     * Maximum wall-clock time for one parse, in milliseconds.
+     */
+    private final long timeoutMillis;
+
+    /**
+     * Constructor from the individual limits.
+     *
+     * @param maxTokens
+     *            maximum number of tokens in the input
+     * @param maxInstructions
+     *            maximum number of INSTRUCTION definitions
+     * @param maxDepth
+     *            maximum nesting depth of IF and WHILE statements
+     * @param maxIdentifierLength
+     *            maximum length of an identifier
+     * @param timeoutMillis
+     *            maximum wall-clock time for one parse, in milliseconds
+     * @requires all limits > 0
+     */
+    public ParseLimits(int maxTokens, int maxInstructions, int maxDepth,
+            int maxIdentifierLength, long timeoutMillis) {
+        assert maxTokens > 0 : "Violation of: maxTokens > 0";
+        assert maxInstructions > 0 : "Violation of: maxInstructions > 0";
+        assert maxDepth > 0 : "Violation of: maxDepth > 0";
+        assert maxIdentifierLength > 0 : ""
+                + "Violation of: maxIdentifierLength > 0";
+        assert timeoutMillis > 0 : "Violation of: timeoutMillis > 0";
+
+        this.maxTokens = maxTokens;
+        this.maxInstructions = maxInstructions;
+        this.maxDepth = maxDepth;
+        this.maxIdentifierLength = maxIdentifierLength;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns the maximum number of tokens in the input.
+     *
+     * @return the token limit
+     */
+    public int maxTokens() {
+        return this.maxTokens;
+    }
+
+    /**
+     * Returns the maximum number of INSTRUCTION definitions.
+     *
+     * @return the instruction limit
+     */
+    public int maxInstructions() {
+        return this.maxInstructions;
+    }
+
+    /**
+     * Returns the maximum nesting depth of IF and WHILE statements.
+     *
+     * @return the depth limit
+     */
+    public int maxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Returns the maximum length of an identifier.
+     *
+     * @return the identifier length limit
+     */
+    public int maxIdentifierLength() {
+        return this.maxIdentifierLength;
+    }
+
+    /**
+     * Returns the maximum wall-clock time for one parse, in milliseconds.
+     *
+     * @return the time limit
+     */
+    public long timeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+}
@@ -0,0 +1,280 @@
+import components.queue.Queue;
+
+/**
+ * Mutable bookkeeping for a single parse: tracks resource use against a
+ * {@code ParseLimits} so the recursive-descent methods in
+ * {@code Program1Parse1} and {@code Statement1Parse1} can fail fast, and
+ * interns identifiers in the program's {@code SymbolTable}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+final class ParseState {
+
+    /**
+     * The deadline is only checked once every this many statements, so the
+     * check costs one increment and mask on the hot path.
+     */
+    private static final int DEADLINE_CHECK_MASK = 0xFF;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /**
+     * The limits being enforced.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * Identifiers seen so far.
+     */
+    private final SymbolTable symbols;
+
+    /**
+     * Hash-consing table for statement subtrees, or null if subtrees are not
+     * being shared.
+     */
+    private final NodeTable nodes;
+
+    /**
+     * Whether a deadline applies at all.
+     */
+    private final boolean hasDeadline;
+
+    /**
+     * Value of {@code System.nanoTime()} after which the parse must stop.
+     */
+    private final long deadline;
+
+    /**
+     * Current IF/WHILE nesting depth.
+     */
+    private int depth;
+
+    /**
+     * Number of INSTRUCTION definitions parsed so far.
+     */
+    private int instructions;
+
+    /**
+     * Number of statements parsed so far.
+     */
+    private int ticks;
+
+    /**
+     * Constructor; starts the deadline clock.
+     *
+     * @param limits
+     *            the limits to enforce
+     */
+    ParseState(ParseLimits limits) {
+        this(limits, null);
+    }
+
+    /**
+     * Constructor that also hash-conses every parsed subtree in
+     * {@code nodes}; starts the deadline clock.
+     *
+     * @param limits
+     *            the limits to enforce
+     * @param nodes
+     *            the hash-consing table, or null to not share subtrees
+     */
+    ParseState(ParseLimits limits, NodeTable nodes) {
+        assert limits != null : "Violation of: limits is not null";
+
+        this.limits = limits;
+        this.nodes = nodes;
+        this.symbols = new SymbolTable();
+        this.hasDeadline = limits.timeoutMillis() < Long.MAX_VALUE
+                / NANOS_PER_MILLI;
+        this.deadline = this.hasDeadline
+                ? System.nanoTime() + limits.timeoutMillis() * NANOS_PER_MILLI
+                : 0;
+        this.depth = 0;
+        this.instructions = 0;
+        this.ticks = 0;
+    }
+
+    /**
+     * Returns the symbol table for this parse.
+     *
+     * @return the symbol table
+     */
+    SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Reports whether parsed subtrees are being hash-consed.
+     *
+     * @return true iff this has a node table
+     */
+    boolean isSharing() {
+        return this.nodes != null;
+    }
+
+    /**
+     * Returns the canonical node equal to {@code node} from the node table.
+     *
+     * @param node
+     *            the node just built
+     * @return the canonical node equal to node
+     * @requires isSharing()
+     */
+    StatementNode share(StatementNode node) {
+        assert this.nodes != null : "Violation of: isSharing()";
+        return this.nodes.intern(node);
+    }
+
+    /**
+     * Returns a copy of {@code node}, built elsewhere, whose called names are
+     * interned in {@code symbols()} and whose subtrees, if subtrees are being
+     * shared, come from the node table.
+     *
+     * @param node
+     *            the tree to adopt
+     * @return the adopted tree, equal to node
+     * @updates symbols()
+     */
+    StatementNode adopt(StatementNode node) {
+        StatementNode copy;
+        switch (node.kind()) {
+            case BLOCK: {
+                StatementNode[] statements = new StatementNode[node
+                        .childCount()];
+                for (int i = 0; i < statements.length; i++) {
+                    statements[i] = this.adopt(node.child(i));
+                }
+                copy = StatementNode.block(statements);
+                break;
+            }
+            case IF:
+                copy = StatementNode.ifNode(node.condition(),
+                        this.adopt(node.child(0)));
+                break;
+            case IF_ELSE:
+                copy = StatementNode.ifElseNode(node.condition(),
+                        this.adopt(node.child(0)), this.adopt(node.child(1)));
+                break;
+            case WHILE:
+                copy = StatementNode.whileNode(node.condition(),
+                        this.adopt(node.child(0)));
+                break;
+            default:
+                copy = StatementNode
+                        .call(this.symbols.canonical(node.name()));
+                break;
+        }
+        if (this.nodes != null) {
+            copy = this.nodes.intern(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Checks that {@code identifier} is within the identifier length limit
+     * and returns its canonical copy from the symbol table.
+     *
+     * @param identifier
+     *            the identifier just read
+     * @return the canonical string equal to identifier
+     * @ensures <pre>
+     * identifier = [canonical copy of identifier in symbols()]  or
+     *  [throws ParseLimitException if |identifier| > maxIdentifierLength]
+     * </pre>
+     */
+    String internIdentifier(String identifier) {
+        this.checkIdentifier(identifier);
+        return this.symbols.canonical(identifier);
+    }
+
+    /**
+     * Checks that {@code tokens} is within the token limit. By the time a
+     * caller has a queue to check, all of it is already in memory, so this
+     * rejects the input but does not bound the work already done; callers
+     * that start from text or a reader should tokenize with
+     * {@code SourceTokenizer.tokens(..., maxTokens)}, which stops early.
+     *
+     * @param tokens
+     *            the tokens about to be parsed
+     * @ensures [throws ParseLimitException if |tokens| - 1 > maxTokens]
+     */
+    void checkTokens(Queue<String> tokens) {
+        if (tokens.length() - 1 > this.limits.maxTokens()) {
+            throw new ParseLimitException(ParseLimitException.Limit.TOKENS,
+                    this.limits.maxTokens());
+        }
+    }
+
+    /**
+     * Checks that {@code identifier} is within the identifier length limit.
+     *
+     * @param identifier
+     *            the identifier just read
+     * @ensures [throws ParseLimitException if |identifier| >
+     *          maxIdentifierLength]
+     */
+    void checkIdentifier(String identifier) {
+        if (identifier.length() > this.limits.maxIdentifierLength()) {
+            throw new ParseLimitException(
+                    ParseLimitException.Limit.IDENTIFIER_LENGTH,
+                    this.limits.maxIdentifierLength());
+        }
+    }
+
+    /**
+     * Records the start of one more INSTRUCTION definition.
+     *
+     * @ensures [throws ParseLimitException if more than maxInstructions have
+     *          been started]
+     */
+    void countInstruction() {
+        this.instructions++;
+        if (this.instructions > this.limits.maxInstructions()) {
+            throw new ParseLimitException(
+                    ParseLimitException.Limit.INSTRUCTIONS,
+                    this.limits.maxInstructions());
+        }
+    }
+
+    /**
+     * Records entry into the body of an IF or WHILE statement.
+     *
+     * @ensures [throws ParseLimitException if the nesting depth now exceeds
+     *          maxDepth]
+     */
+    void enterNested() {
+        this.depth++;
+        if (this.depth > this.limits.maxDepth()) {
+            throw new ParseLimitException(ParseLimitException.Limit.DEPTH,
+                    this.limits.maxDepth());
+        }
+    }
+
+    /**
+     * Records exit from the body of an IF or WHILE statement.
+     */
+    void exitNested() {
+        assert this.depth > 0 : "Violation of: depth > 0";
+        this.depth--;
+    }
+
+    /**
+     * Records one more statement and, every few statements, checks the
+     * deadline.
+     *
+     * @ensures [throws ParseLimitException if the deadline has passed]
+     */
+    void tick() {
+        this.ticks++;
+        if (this.hasDeadline && (this.ticks & DEADLINE_CHECK_MASK) == 0
+                && System.nanoTime() - this.deadline > 0) {
+            throw new ParseLimitException(ParseLimitException.Limit.DEADLINE,
+                    this.limits.timeoutMillis());
+        }
+    }
+
+}
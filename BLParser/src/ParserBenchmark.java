@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+import components.program.Program;
+import components.queue.Queue;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the {@code ParserEngine}s on generated programs of three shapes:
+ * small (a few short instructions), wide (many instructions with long
+ * blocks) and deep (deeply nested IF and WHILE statements). Tokenizing is not
+ * timed; each sample is one call to {@code parse}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ParserBenchmark {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of timed parses per engine and workload.
+     */
+    private static final int DEFAULT_SAMPLES = 200;
+
+    /**
+     * Number of untimed parses run first to warm up each engine.
+     */
+    private static final int WARM_UP = 200;
+
+    /**
+     * Number of instructions in the wide program.
+     */
+    private static final int WIDE_INSTRUCTIONS = 500;
+
+    /**
+     * Number of statements in each block of the wide program.
+     */
+    private static final int WIDE_STATEMENTS = 40;
+
+    /**
+     * Nesting depth of the deep program.
+     */
+    private static final int DEEP_NESTING = 400;
+
+    /**
+     * Nanoseconds per microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private ParserBenchmark() {
+    }
+
+    /**
+     * Returns a small program: a few short instructions and a short body.
+     *
+     * @return the program text
+     */
+    static String smallProgram() {
+        return "PROGRAM Small IS\n"
+                + "  INSTRUCTION step IS\n"
+                + "    IF next-is-empty THEN move ELSE turnleft END IF\n"
+                + "  END step\n"
+                + "  INSTRUCTION hunt IS\n"
+                + "    WHILE next-is-enemy DO infect END WHILE\n"
+                + "  END hunt\n"
+                + "BEGIN\n"
+                + "  WHILE true DO hunt step END WHILE\n"
+                + "END Small\n";
+    }
+
+    /**
+     * Returns a wide program: many instructions whose bodies are long blocks
+     * of calls and shallow IFs.
+     *
+     * @param instructions
+     *            the number of instructions
+     * @param statements
+     *            the number of statements in each block
+     * @return the program text
+     */
+    static String wideProgram(int instructions, int statements) {
+        final String[] primitives = { "move", "turnleft", "turnright",
+            "infect", "skip" };
+        StringBuilder text = new StringBuilder("PROGRAM Wide IS\n");
+        for (int i = 0; i < instructions; i++) {
+            text.append("  INSTRUCTION i").append(i).append(" IS\n");
+            for (int j = 0; j < statements; j++) {
+                if (j % 4 == 0 && i > 0) {
+                    text.append("    IF next-is-wall THEN i").append(i - 1)
+                            .append(" END IF\n");
+                } else {
+                    text.append("    ")
+                            .append(primitives[(i + j) % primitives.length])
+                            .append('\n');
+                }
+            }
+            text.append("  END i").append(i).append('\n');
+        }
+        text.append("BEGIN\n  i").append(instructions - 1)
+                .append("\nEND Wide\n");
+        return text.toString();
+    }
+
+    /**
+     * Returns a deep program: IF_ELSE and WHILE statements nested
+     * {@code depth} levels.
+     *
+     * @param depth
+     *            the nesting depth
+     * @return the program text
+     */
+    static String deepProgram(int depth) {
+        StringBuilder text = new StringBuilder("PROGRAM Deep IS\nBEGIN\n");
+        for (int i = 0; i < depth; i++) {
+            if (i % 2 == 0) {
+                text.append("IF random THEN move\n");
+            } else {
+                text.append("WHILE next-is-empty DO turnleft\n");
+            }
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            if (i % 2 == 0) {
+                text.append("ELSE infect END IF\n");
+            } else {
+                text.append("END WHILE\n");
+            }
+        }
+        text.append("END Deep\n");
+        return text.toString();
+    }
+
+    /**
+     * Returns the median time in nanoseconds of {@code samples} parses of
+     * {@code source} with {@code engine}.
+     *
+     * @param engine
+     *            the parser engine
+     * @param source
+     *            the program text
+     * @param samples
+     *            the number of timed parses
+     * @return the median parse time in nanoseconds
+     */
+    static long medianParseNanos(ParserEngine engine, String source,
+            int samples) {
+        for (int i = 0; i < WARM_UP; i++) {
+            engine.newProgram().parse(SourceTokenizer.tokens(source));
+        }
+        long[] times = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            Queue<String> tokens = SourceTokenizer.tokens(source);
+            Program p = engine.newProgram();
+            long start = System.nanoTime();
+            p.parse(tokens);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[samples / 2];
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; the optional argument is the number of timed parses per
+     * engine and workload.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0])
+                : DEFAULT_SAMPLES;
+        String[] names = { "small", "wide", "deep" };
+        String[] sources = { smallProgram(),
+            wideProgram(WIDE_INSTRUCTIONS, WIDE_STATEMENTS),
+            deepProgram(DEEP_NESTING) };
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println(String.format("%-8s %10s %20s %12s", "workload",
+                "tokens", "engine", "median us"));
+        for (int w = 0; w < sources.length; w++) {
+            int tokens = SourceTokenizer.tokens(sources[w]).length();
+            ParserEngine fastest = null;
+            long best = Long.MAX_VALUE;
+            for (ParserEngine engine : ParserEngine.values()) {
+                long nanos = medianParseNanos(engine, sources[w], samples);
+                out.println(String.format("%-8s %10d %20s %12.1f", names[w],
+                        tokens, engine, nanos / NANOS_PER_MICRO));
+                if (nanos < best) {
+                    best = nanos;
+                    fastest = engine;
+                }
+            }
+            out.println("  fastest for " + names[w] + ": " + fastest);
+        }
+        out.close();
+    }
+
+}
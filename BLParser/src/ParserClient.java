@@ -0,0 +1,198 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Client for {@code ParserDaemon}. One client holds one connection, over which
+ * it may send any number of requests.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ParserClient implements Closeable {
+
+    /**
+     * A response from the daemon.
+     */
+    public static final class Reply {
+
+        /**
+         * Whether the request succeeded.
+         */
+        private final boolean ok;
+
+        /**
+         * The payload: the requested output, or the diagnostic.
+         */
+        private final byte[] payload;
+
+        /**
+         * Constructor.
+         *
+         * @param ok
+         *            whether the request succeeded
+         * @param payload
+         *            the payload
+         */
+        Reply(boolean ok, byte[] payload) {
+            this.ok = ok;
+            this.payload = payload;
+        }
+
+        /**
+         * Reports whether the request succeeded.
+         *
+         * @return true iff the daemon answered {@code OK}
+         */
+        public boolean ok() {
+            return this.ok;
+        }
+
+        /**
+         * Returns the payload: the requested output if {@code ok()}, the
+         * diagnostic otherwise.
+         *
+         * @return the payload
+         */
+        public byte[] payload() {
+            return this.payload.clone();
+        }
+
+        /**
+         * Returns the payload decoded as UTF-8 text.
+         *
+         * @return the payload text
+         */
+        public String text() {
+            return new String(this.payload, StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The connection to the daemon.
+     */
+    private final SocketChannel channel;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor; connects to the daemon listening on {@code socketPath}.
+     *
+     * @param socketPath
+     *            the path of the daemon's socket file
+     * @throws IOException
+     *             if the connection fails
+     */
+    public ParserClient(Path socketPath) throws IOException {
+        assert socketPath != null : "Violation of: socketPath is not null";
+        this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        this.channel.connect(UnixDomainSocketAddress.of(socketPath));
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Sends one request and waits for its reply.
+     *
+     * @param op
+     *            the operation: {@code ParserDaemon.PRETTY_PRINT},
+     *            {@code ENCODE}, or {@code CHECK}
+     * @param kind
+     *            the payload kind: {@code ParserDaemon.PATH} or
+     *            {@code SOURCE}
+     * @param text
+     *            the file path, relative to the daemon's root, or program
+     *            source
+     * @return the reply
+     * @throws IOException
+     *             if the connection fails
+     */
+    public Reply request(byte op, byte kind, String text) throws IOException {
+        assert text != null : "Violation of: text is not null";
+        ParserDaemon.writeFrame(this.channel, new byte[] { op, kind },
+                text.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer status = ParserDaemon.readFully(this.channel, 1);
+        byte[] payload = ParserDaemon.readPayload(this.channel);
+        return new Reply(status.get() == ParserDaemon.OK, payload);
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException
+     *             if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method. Usage:
+     * {@code ParserClient socket [-p | -b | -c] file...}, printing each file
+     * (-p, the default), writing its binary encoding (-b), or checking it
+     * (-c). Paths are sent absolute, so the daemon may run in any directory.
+     * Exits with status 1 if any file fails.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if the daemon cannot be reached
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: ParserClient socket [-p | -b | -c] file...");
+            System.exit(2);
+        }
+        byte op = ParserDaemon.PRETTY_PRINT;
+        int first = 1;
+        if (args[1].equals("-b")) {
+            op = ParserDaemon.ENCODE;
+            first++;
+        } else if (args[1].equals("-c")) {
+            op = ParserDaemon.CHECK;
+            first++;
+        } else if (args[1].equals("-p")) {
+            first++;
+        }
+        boolean failed = false;
+        try (ParserClient client = new ParserClient(Paths.get(args[0]))) {
+            for (int i = first; i < args.length; i++) {
+                String file = Paths.get(args[i]).toAbsolutePath().toString();
+                Reply reply = client.request(op, ParserDaemon.PATH, file);
+                if (reply.ok()) {
+                    System.out.write(reply.payload);
+                    if (op == ParserDaemon.CHECK) {
+                        System.out.println();
+                    }
+                } else {
+                    failed = true;
+                    System.err.println(args[i] + ": " + reply.text());
+                }
+            }
+            System.out.flush();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+}
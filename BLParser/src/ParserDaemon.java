@@ -0,0 +1,485 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+
+import components.map.Map;
+import components.program.Program;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+
+/**
+ * Long-running parser that answers requests over a Unix domain socket, so
+ * clients pay JVM startup and JIT warm-up once instead of on every file.
+ *
+ * <p>
+ * Each connection carries any number of requests, answered in order. A
+ * request frame is an operation byte, a payload kind byte, a 4-byte length
+ * and the payload: either a file path or BL source, both UTF-8. Paths are
+ * resolved against a root directory given when the daemon starts and may
+ * not lead outside it, and the files they name are read as UTF-8 too. Every
+ * parse is held to the daemon's {@code ParseLimits}. The socket file is
+ * readable and writable by its owner only. A response
+ * frame is a status byte, a 4-byte length and the payload: the pretty-printed
+ * program, its {@code ProgramCodec} encoding, or a one-line summary for
+ * {@code OK}, and the diagnostic message for {@code ERROR}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ParserDaemon implements Closeable {
+
+    /**
+     * Operation: reply with the pretty-printed program.
+     */
+    public static final byte PRETTY_PRINT = 1;
+
+    /**
+     * Operation: reply with the {@code ProgramCodec} encoding.
+     */
+    public static final byte ENCODE = 2;
+
+    /**
+     * Operation: check the program and reply with a summary.
+     */
+    public static final byte CHECK = 3;
+
+    /**
+     * Payload kind: the path, relative to the daemon's root, of a file
+     * containing the program.
+     */
+    public static final byte PATH = 0;
+
+    /**
+     * Payload kind: the program text itself.
+     */
+    public static final byte SOURCE = 1;
+
+    /**
+     * Response status: the request succeeded.
+     */
+    public static final byte OK = 0;
+
+    /**
+     * Response status: the request failed; the payload is the diagnostic.
+     */
+    public static final byte ERROR = 1;
+
+    /**
+     * Limits {@code main} parses with: generous for hand-written programs,
+     * but small enough that one request cannot take over the daemon, and
+     * no deeper than {@code ProgramCodec} will decode.
+     */
+    public static final ParseLimits DEFAULT_LIMITS = new ParseLimits(
+            1_000_000, 10_000, ProgramCodec.MAX_DEPTH, 1_000, 10_000);
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Largest payload accepted in either direction.
+     */
+    private static final int MAX_PAYLOAD = 1 << 26;
+
+    /**
+     * Number of parses run before the daemon starts accepting connections.
+     */
+    private static final int WARM_UP_ROUNDS = 2000;
+
+    /**
+     * Program parsed during warm-up; uses every kind of statement.
+     */
+    private static final String WARM_UP_SOURCE = "PROGRAM WarmUp IS\n"
+            + "  INSTRUCTION step IS\n"
+            + "    IF next-is-empty THEN move ELSE turnleft END IF\n"
+            + "  END step\n"
+            + "  INSTRUCTION hunt IS\n"
+            + "    WHILE next-is-enemy DO infect END WHILE\n"
+            + "    IF random THEN step END IF\n"
+            + "  END hunt\n"
+            + "BEGIN\n"
+            + "  WHILE true DO hunt step turnright END WHILE\n"
+            + "END WarmUp\n";
+
+    /**
+     * File type bits of a {@code unix:mode} attribute.
+     */
+    private static final int S_IFMT = 0170000;
+
+    /**
+     * File type of a socket in a {@code unix:mode} attribute.
+     */
+    private static final int S_IFSOCK = 0140000;
+
+    /**
+     * Path of the socket file.
+     */
+    private final Path socketPath;
+
+    /**
+     * Real path of the directory PATH requests are confined to, or null if
+     * PATH requests are refused.
+     */
+    private final Path root;
+
+    /**
+     * Limits every parse is held to.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * The listening channel.
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * Executor running one task per connection.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Reads exactly {@code n} bytes from {@code channel}.
+     *
+     * @param channel
+     *            the channel
+     * @param n
+     *            the number of bytes
+     * @return a buffer holding the bytes, flipped for reading
+     * @throws IOException
+     *             if the channel fails or ends first
+     */
+    static ByteBuffer readFully(SocketChannel channel, int n)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(n);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a frame: {@code header}, the length of {@code payload}, and
+     * {@code payload}.
+     *
+     * @param channel
+     *            the channel
+     * @param header
+     *            the header bytes
+     * @param payload
+     *            the payload
+     * @throws IOException
+     *             if the channel fails
+     */
+    static void writeFrame(SocketChannel channel, byte[] header,
+            byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer
+                .allocate(header.length + Integer.BYTES + payload.length);
+        frame.put(header).putInt(payload.length).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Reads a frame length and then that many payload bytes.
+     *
+     * @param channel
+     *            the channel
+     * @return the payload
+     * @throws IOException
+     *             if the channel fails or ends first, or the length is
+     *             invalid
+     */
+    static byte[] readPayload(SocketChannel channel) throws IOException {
+        int length = readFully(channel, Integer.BYTES).getInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        return readFully(channel, length).array();
+    }
+
+    /**
+     * Returns the real path of the file {@code name} names under
+     * {@code root}.
+     *
+     * @param name
+     *            the path from a PATH request
+     * @return the file to read
+     * @throws IOException
+     *             if the file does not exist or is too large to reply about
+     * @ensures <pre>
+     * if [root is not null and name, with every link followed, names a
+     *     regular file under root] then
+     *  resolve = [that file]
+     * else
+     *  [throws a RuntimeException or IOException]
+     * </pre>
+     */
+    private Path resolve(String name) throws IOException {
+        if (this.root == null) {
+            throw new IllegalArgumentException(
+                    "PATH requests are not accepted");
+        }
+        Path file = this.root.resolve(name).toRealPath();
+        if (!file.startsWith(this.root) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException(
+                    "Not a file under the daemon's root: " + name);
+        }
+        if (Files.size(file) > MAX_PAYLOAD) {
+            throw new IOException("File too large: " + name);
+        }
+        return file;
+    }
+
+    /**
+     * Returns the reply to one request.
+     *
+     * @param op
+     *            the operation
+     * @param kind
+     *            the payload kind
+     * @param payload
+     *            the path or source
+     * @return the reply payload
+     * @throws IOException
+     *             if the file cannot be read
+     * @ensures <pre>
+     * if [the request is valid and names a syntactically valid program] then
+     *  reply = [the requested form of the program]
+     * else
+     *  [throws a RuntimeException describing the error]
+     * </pre>
+     */
+    private byte[] reply(byte op, byte kind, byte[] payload)
+            throws IOException {
+        String text = new String(payload, StandardCharsets.UTF_8);
+        if (kind == PATH) {
+            text = new String(Files.readAllBytes(this.resolve(text)),
+                    StandardCharsets.UTF_8);
+        } else if (kind != SOURCE) {
+            throw new IllegalArgumentException(
+                    "Unknown payload kind: " + kind);
+        }
+        Program p = new Program1Parse1(this.limits);
+        p.parse(SourceTokenizer.tokens(text, null, this.limits.maxTokens()));
+        byte[] reply;
+        if (op == PRETTY_PRINT) {
+            reply = ProgramText.programString(p)
+                    .getBytes(StandardCharsets.UTF_8);
+        } else if (op == ENCODE) {
+            reply = ProgramCodec.encode(p);
+        } else if (op == CHECK) {
+            Map<String, Statement> context = p.newContext();
+            p.swapContext(context);
+            int instructions = context.size();
+            p.swapContext(context);
+            reply = ("OK: program " + p.name() + ", " + instructions
+                    + " instructions").getBytes(StandardCharsets.UTF_8);
+        } else {
+            throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+        return reply;
+    }
+
+    /**
+     * Answers requests on {@code client} until it closes the connection.
+     * Failures to read a file or parse a program, including programs that
+     * exceed the limits or the thread's stack, are sent to the client as
+     * diagnostics; the connection stays open.
+     *
+     * @param client
+     *            the connection
+     */
+    private void serve(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            while (true) {
+                ByteBuffer header = readFully(channel, 2);
+                byte op = header.get();
+                byte kind = header.get();
+                byte[] payload = readPayload(channel);
+                byte status = OK;
+                byte[] reply;
+                try {
+                    reply = this.reply(op, kind, payload);
+                } catch (IOException | RuntimeException e) {
+                    status = ERROR;
+                    String message = e.getMessage() == null ? e.toString()
+                            : e.getMessage();
+                    reply = message.getBytes(StandardCharsets.UTF_8);
+                } catch (StackOverflowError e) {
+                    status = ERROR;
+                    reply = "Error: program is nested too deeply"
+                            .getBytes(StandardCharsets.UTF_8);
+                }
+                writeFrame(channel, new byte[] { status }, reply);
+            }
+        } catch (IOException e) {
+            // the client closed the connection or it failed; either way the
+            // conversation is over
+        }
+    }
+
+    /**
+     * Removes the file at {@code socketPath} if it is a socket left behind
+     * by a daemon that is no longer running.
+     *
+     * @param socketPath
+     *            the path of the socket file
+     * @throws IOException
+     *             if the file exists and is not a socket, or a daemon is
+     *             still listening on it
+     * @ensures [no file exists at socketPath]
+     */
+    private static void removeStaleSocket(Path socketPath)
+            throws IOException {
+        if (Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+            int mode = (Integer) Files.getAttribute(socketPath, "unix:mode",
+                    LinkOption.NOFOLLOW_LINKS);
+            if ((mode & S_IFMT) != S_IFSOCK) {
+                throw new IOException("Not a socket: " + socketPath);
+            }
+            boolean live;
+            try (SocketChannel probe = SocketChannel
+                    .open(UnixDomainSocketAddress.of(socketPath))) {
+                live = probe.isConnected();
+            } catch (IOException e) {
+                live = false;
+            }
+            if (live) {
+                throw new IOException(
+                        "A daemon is already listening on " + socketPath);
+            }
+            Files.delete(socketPath);
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor; binds the socket at {@code socketPath}, replacing a stale
+     * socket file but no other file, makes it accessible to its owner only,
+     * and warms up the parser. A client could connect in the moment before
+     * the permissions are set, so the socket belongs in a directory others
+     * cannot reach.
+     *
+     * @param socketPath
+     *            the path of the socket file
+     * @param root
+     *            the directory PATH requests are confined to, or null to
+     *            refuse PATH requests
+     * @param limits
+     *            the limits every parse is held to
+     * @param executor
+     *            the executor running one task per connection
+     * @throws IOException
+     *             if root does not exist, or the socket cannot be bound
+     */
+    public ParserDaemon(Path socketPath, Path root, ParseLimits limits,
+            ExecutorService executor) throws IOException {
+        assert socketPath != null : "Violation of: socketPath is not null";
+        assert limits != null : "Violation of: limits is not null";
+        assert executor != null : "Violation of: executor is not null";
+
+        this.socketPath = socketPath;
+        this.root = root == null ? null : root.toRealPath();
+        this.limits = limits;
+        this.executor = executor;
+        byte[] sample = WARM_UP_SOURCE.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            this.reply(PRETTY_PRINT, SOURCE, sample);
+            this.reply(ENCODE, SOURCE, sample);
+        }
+        removeStaleSocket(socketPath);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        this.server.bind(UnixDomainSocketAddress.of(socketPath));
+        Files.setPosixFilePermissions(socketPath,
+                PosixFilePermissions.fromString("rw-------"));
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Accepts connections until this daemon is closed.
+     *
+     * @throws IOException
+     *             if accepting fails for a reason other than closing
+     */
+    public void serve() throws IOException {
+        try {
+            while (true) {
+                SocketChannel client = this.server.accept();
+                this.executor.execute(() -> this.serve(client));
+            }
+        } catch (ClosedChannelException e) {
+            // close() was called; stop accepting
+        }
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Connections
+     * already accepted are answered until their clients close them.
+     *
+     * @throws IOException
+     *             if the socket cannot be closed or removed
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+        Files.deleteIfExists(this.socketPath);
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; serves on the socket named by the first argument, or
+     * {@code bl-parser.sock} in the working directory, with
+     * {@code DEFAULT_LIMITS}. PATH requests are accepted for files under the
+     * directory named by the second argument, and refused if there is none.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if the socket cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        Path socket = Paths.get(args.length > 0 ? args[0] : "bl-parser.sock");
+        Path root = args.length > 1 ? Paths.get(args[1]) : null;
+        ParserDaemon daemon = new ParserDaemon(socket, root, DEFAULT_LIMITS,
+                Program1Parse1Async.defaultExecutor());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // exiting anyway
+            }
+        }));
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("*** Listening on " + socket + " ***");
+        out.close();
+        daemon.serve();
+    }
+
+}
@@ -0,0 +1,88 @@
+import components.program.Program;
+import components.statement.Statement;
+
+/**
+ * Selects a parser implementation, so the same inputs can be run through
+ * either engine.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public enum ParserEngine {
+
+    /**
+     * The hand-written recursive-descent parser, {@code Program1Parse1} and
+     * {@code Statement1Parse1}.
+     */
+    RECURSIVE_DESCENT {
+
+        @Override
+        public Program newProgram(ParseLimits limits) {
+            return new Program1Parse1(limits);
+        }
+
+        @Override
+        public Statement newStatement(ParseLimits limits) {
+            return new Statement1Parse1(limits);
+        }
+
+    },
+
+    /**
+     * The table-driven LL(1) parser, {@code Program1Parse2} and
+     * {@code Statement1Parse2}.
+     */
+    TABLE_DRIVEN {
+
+        @Override
+        public Program newProgram(ParseLimits limits) {
+            return new Program1Parse2(limits);
+        }
+
+        @Override
+        public Statement newStatement(ParseLimits limits) {
+            return new Statement1Parse2(limits);
+        }
+
+    };
+
+    /**
+     * Returns a new, empty program whose {@code parse} uses this engine and
+     * enforces {@code limits}.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     * @return the new program
+     */
+    public abstract Program newProgram(ParseLimits limits);
+
+    /**
+     * Returns a new, empty statement whose {@code parse} and
+     * {@code parseBlock} use this engine and enforce {@code limits}.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     * @return the new statement
+     */
+    public abstract Statement newStatement(ParseLimits limits);
+
+    /**
+     * Returns a new, empty program whose {@code parse} uses this engine.
+     *
+     * @return the new program
+     */
+    public Program newProgram() {
+        return this.newProgram(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Returns a new, empty statement whose {@code parse} and
+     * {@code parseBlock} use this engine.
+     *
+     * @return the new statement
+     */
+    public Statement newStatement() {
+        return this.newStatement(ParseLimits.UNLIMITED);
+    }
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Interface implemented by the classes {@code ProgramCompiler} generates for
+ * a {@code ProgramProfile}: the compiled program body, counting each
+ * statement it executes into the array it is given.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+interface ProfiledCode {
+
+    /**
+     * Executes the program body once against {@code actions}, adding one to
+     * {@code counts[id]} each time the statement numbered {@code id} is
+     * executed.
+     *
+     * @param actions
+     *            the creature the program controls
+     * @param counts
+     *            the execution counts, by statement id
+     * @updates counts
+     * @requires |counts| = [number of statements in the profile]
+     */
+    void run(CreatureActions actions, long[] counts);
+
+}
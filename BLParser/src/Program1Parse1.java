@@ -1,5 +1,11 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
 import components.map.Map;
-import components.map.Map.Pair;
 import components.program.Program;
 import components.program.Program1;
 import components.queue.Queue;
@@ -23,6 +29,40 @@ public final class Program1Parse1 extends Program1 {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Resource limits enforced by {@code parse}.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * Identifiers of this program, as of its most recent parse.
+     */
+    private SymbolTable symbols;
+
+    /**
+     * Hash-consing table shared by every parse, or null if subtrees are not
+     * being shared.
+     */
+    private final NodeTable nodes;
+
+    /**
+     * Hash-consed instruction bodies of this program, in source order, while
+     * it is held in shared form; otherwise null.
+     */
+    private LinkedHashMap<String, StatementNode> sharedContext;
+
+    /**
+     * Hash-consed body of this program while it is held in shared form, in
+     * which case the body and context of the kernel are empty; otherwise
+     * null.
+     */
+    private StatementNode sharedBody;
+
+    /**
+     * Where the libraries named in USES clauses are found.
+     */
+    private final LibraryPath libraries;
+
     /**
      * Parses a single BL instruction from {@code tokens} returning the
      * instruction name as the value of the function and the body of the
@@ -31,31 +71,42 @@ public final class Program1Parse1 extends Program1 {
      * @param tokens
      *            the input tokens
      * @param body
-     *            the instruction body
+     *            the instruction body, or null to build only the hash-consed
+     *            body
+     * @param state
+     *            the resource accounting for this parse
+     * @param shared
+     *            hash-consed instruction bodies parsed so far
      * @return the instruction name
      * @replaces body
-     * @updates tokens
+     * @updates tokens, state, shared
      * @requires <pre>
      * [<"INSTRUCTION"> is a prefix of tokens]  and
-     *  [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     *  [<Tokenizer.END_OF_INPUT> is a suffix of tokens]  and
+     *  [body is not null or state is sharing subtrees]
      * </pre>
      * @ensures <pre>
      * if [an instruction string is a proper prefix of #tokens]  and
      *    [the beginning name of this instruction equals its ending name]  and
      *    [the name of this instruction does not equal the name of a primitive
-     *     instruction in the BL language] then
+     *     instruction in the BL language]  and
+     *    [the name of this instruction is not already a key of shared] then
      *  parseInstruction = [name of instruction at start of #tokens]  and
      *  body = [Statement corresponding to the block string that is the body of
      *          the instruction string at start of #tokens]  and
+     *  [if state is sharing subtrees, shared maps the name to the
+     *   hash-consed body]  and
      *  #tokens = [instruction string at start of #tokens] * tokens
      * else
      *  [report an appropriate error message to the console and terminate client]
      * </pre>
      */
-    private static String parseInstruction(Queue<String> tokens,
-            Statement body) {
+    static String parseInstruction(Queue<String> tokens,
+            Statement body, ParseState state,
+            LinkedHashMap<String, StatementNode> shared) {
         assert tokens != null : "Violation of: tokens is not null";
-        assert body != null : "Violation of: body is not null";
+        assert body != null || state.isSharing() : ""
+                + "Violation of: body is not null or state is sharing";
         assert tokens.length() > 0 && tokens.front().equals("INSTRUCTION") : ""
                 + "Violation of: <\"INSTRUCTION\"> is proper prefix of tokens";
 
@@ -66,13 +117,14 @@ public final class Program1Parse1 extends Program1 {
         String start = tokens.dequeue();
         Reporter.assertElseFatalError(Tokenizer.isIdentifier(start),
                 "Invalid identifier");
+        start = state.internIdentifier(start);
 
         //check for IS
         Reporter.assertElseFatalError(tokens.dequeue().equals("IS"),
                 "Invalid token");
 
         //parse body of instruction
-        body.parseBlock(tokens);
+        StatementNode node = Statement1Parse1.parseBlock(tokens, body, state);
 
         //check for END
         Reporter.assertElseFatalError(tokens.dequeue().equals("END"),
@@ -85,7 +137,13 @@ public final class Program1Parse1 extends Program1 {
         Reporter.assertElseFatalError(start.equals(end),
                 "start identifier does not match end identifier.");
 
-        return end;
+        if (node != null) {
+            Reporter.assertElseFatalError(!shared.containsKey(start),
+                    "Error: Instruction \"" + start
+                            + "\" cannot be already defined");
+            shared.put(start, node);
+        }
+        return start;
     }
 
     /*
@@ -96,7 +154,61 @@ public final class Program1Parse1 extends Program1 {
      * No-argument constructor.
      */
     public Program1Parse1() {
+        this(ParseLimits.UNLIMITED, null, new LibraryPath());
+    }
+
+    /**
+     * Constructor that enforces {@code limits} in {@code parse}.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     */
+    public Program1Parse1(ParseLimits limits) {
+        this(limits, null, new LibraryPath());
+    }
+
+    /**
+     * Constructor that enforces {@code limits} in {@code parse} and, unless
+     * {@code nodes} is null, hash-conses every parsed subtree in
+     * {@code nodes} instead of building {@code Statement} trees. The program
+     * is then held only in that shared form, available from
+     * {@code sharedContext} and {@code sharedBody}; subtrees parsed against
+     * the same table, even by different programs, are the same object when
+     * they are equal. The {@code Statement} trees are built from the shared
+     * form the first time {@code swapBody} or {@code swapContext} is called.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     * @param nodes
+     *            the hash-consing table, or null to not share subtrees
+     */
+    public Program1Parse1(ParseLimits limits, NodeTable nodes) {
+        this(limits, nodes, new LibraryPath());
+    }
+
+    /**
+     * Constructor that enforces {@code limits} and shares subtrees in
+     * {@code nodes} as above, and resolves the libraries named in USES
+     * clauses through {@code libraries}.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     * @param nodes
+     *            the hash-consing table, or null to not share subtrees
+     * @param libraries
+     *            where to find used libraries
+     */
+    public Program1Parse1(ParseLimits limits, NodeTable nodes,
+            LibraryPath libraries) {
         super();
+        assert limits != null : "Violation of: limits is not null";
+        assert libraries != null : "Violation of: libraries is not null";
+        this.limits = limits;
+        this.nodes = nodes;
+        this.libraries = libraries;
+        this.symbols = new SymbolTable();
+        this.sharedContext = null;
+        this.sharedBody = null;
     }
 
     /*
@@ -107,7 +219,8 @@ public final class Program1Parse1 extends Program1 {
     public void parse(SimpleReader in) {
         assert in != null : "Violation of: in is not null";
         assert in.isOpen() : "Violation of: in.is_open";
-        Queue<String> tokens = Tokenizer.tokens(in);
+        Queue<String> tokens = SourceTokenizer.tokens(in,
+                this.limits.maxTokens());
         this.parse(tokens);
     }
 
@@ -117,7 +230,66 @@ public final class Program1Parse1 extends Program1 {
         assert tokens.length() > 0 : ""
                 + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
 
+        this.parse(tokens, null);
+    }
+
+    /**
+     * Parses the BL program in {@code source} into this and returns a
+     * {@code SourceMap} giving the position in source of every INSTRUCTION
+     * and of the BEGIN body.
+     *
+     * @param source
+     *            the program text
+     * @return the positions of the parsed regions in source
+     * @replaces this
+     * @ensures <pre>
+     * if [source is a syntactically valid BL program] then
+     *  this = [the program corresponding to source]  and
+     *  parseWithSpans = [positions of the instructions and body in source]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public SourceMap parseWithSpans(CharSequence source) {
+        assert source != null : "Violation of: source is not null";
+
+        SourceMap spans = new SourceMap();
+        Queue<String> tokens = SourceTokenizer.tokens(source, spans,
+                this.limits.maxTokens());
+        this.parse(tokens, spans);
+        return spans;
+    }
+
+    /**
+     * Parses a BL program from {@code tokens} into this, recording the token
+     * ranges of its instructions and body in {@code spans} unless it is
+     * {@code null}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param spans
+     *            the source map to record regions in, or null
+     * @replaces this
+     * @updates tokens, spans
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a program string is a proper prefix of #tokens] then
+     *  this = [Program corresponding to that program string]  and
+     *  [spans records the instructions and body of that program]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    private void parse(Queue<String> tokens, SourceMap spans) {
+        int tokenCount = tokens.length();
         Program newProgram = new Program1Parse1();
+        ParseState state = new ParseState(this.limits, this.nodes);
+        state.checkTokens(tokens);
+        boolean sharing = state.isSharing();
+        LinkedHashMap<String, StatementNode> shared = null;
+        if (sharing) {
+            shared = new LinkedHashMap<>();
+        }
 
         //check first token is PROGRAM
         String programToken = tokens.dequeue();
@@ -127,27 +299,75 @@ public final class Program1Parse1 extends Program1 {
 
         //retrieve and validate program identifier
         String programIdentifier = tokens.dequeue();
+        state.checkIdentifier(programIdentifier);
         String is = tokens.dequeue();
         Reporter.assertElseFatalError(is.equals("IS"),
                 "Error: Keyword \"IS\" expected, found: \"" + is + "\"");
 
-        //create new context for program
-        Map<String, Statement> context = newProgram.newContext();
+        //resolve used libraries; each instruction name may come from only one
+        List<InstructionLibrary> used = new ArrayList<>();
+        HashMap<String, InstructionLibrary> provider = new HashMap<>();
+        while (tokens.front().equals("USES")) {
+            tokens.dequeue();
+            String libraryName = tokens.dequeue();
+            Reporter.assertElseFatalError(Tokenizer.isIdentifier(libraryName),
+                    "Error: library name expected, found: \"" + libraryName
+                            + "\"");
+            state.checkIdentifier(libraryName);
+            InstructionLibrary library = this.libraries.resolve(libraryName);
+            Reporter.assertElseFatalError(!used.contains(library),
+                    "Error: Library \"" + libraryName
+                            + "\" cannot be already used");
+            for (String name : library.instructionNames()) {
+                InstructionLibrary other = provider.put(name, library);
+                if (other != null) {
+                    Reporter.fatalErrorToConsole("Error: Instruction \""
+                            + name + "\" is defined by both library \""
+                            + other.name() + "\" and library \""
+                            + libraryName + "\"");
+                }
+            }
+            used.add(library);
+            if (spans != null) {
+                spans.addLibrary(libraryName);
+            }
+        }
+
+        //create new context for program, unless it is kept in shared form
+        Map<String, Statement> context = null;
+        if (!sharing) {
+            context = newProgram.newContext();
+        }
 
         //parse instructions until BEGIN
         String instrOrBeginToken = tokens.front();
         while (instrOrBeginToken.equals("INSTRUCTION")) {
-            Statement body = newProgram.newBody();
-            String instructionName = parseInstruction(tokens, body);
+            state.countInstruction();
+            Statement body = null;
+            if (!sharing) {
+                body = newProgram.newBody();
+            }
+            int firstToken = tokenCount - tokens.length();
+            String instructionName = parseInstruction(tokens, body, state,
+                    shared);
+            if (spans != null) {
+                spans.addInstruction(instructionName, firstToken,
+                        tokenCount - tokens.length());
+            }
             //check for duplicate instructions
-            for (Pair<String, Statement> element : context) {
+            if (provider.containsKey(instructionName)) {
+                Reporter.fatalErrorToConsole("Error: Instruction \""
+                        + instructionName + "\" is already defined by "
+                        + "library \"" + provider.get(instructionName).name()
+                        + "\"");
+            }
+            if (!sharing) {
                 Reporter.assertElseFatalError(
-                        !element.key().equals(instructionName),
+                        !context.hasKey(instructionName),
                         "Error: Instruction \"" + instructionName
                                 + "\" cannot be already defined");
-
+                context.add(instructionName, body);
             }
-            context.add(instructionName, body);
             instrOrBeginToken = tokens.front();
 
         }
@@ -159,8 +379,16 @@ public final class Program1Parse1 extends Program1 {
 
         //parse main program body
         instrOrBeginToken = tokens.dequeue();
-        Statement programBody = newProgram.newBody();
-        programBody.parseBlock(tokens);
+        Statement programBody = null;
+        if (!sharing) {
+            programBody = newProgram.newBody();
+        }
+        int firstBodyToken = tokenCount - tokens.length();
+        StatementNode sharedProgramBody = Statement1Parse1.parseBlock(tokens,
+                programBody, state);
+        if (spans != null) {
+            spans.setBody(firstBodyToken, tokenCount - tokens.length());
+        }
 
         //ensure program ends with END followed by program identifier
         String endToken = tokens.dequeue();
@@ -179,10 +407,222 @@ public final class Program1Parse1 extends Program1 {
                 "Error: END-OF-INPUT expected, found: " + "\"" + tokens.front()
                         + "\"");
 
+        /*
+         * Add each library instruction that is called, directly or through
+         * other library instructions: every called name is in the symbol
+         * table, and adopting a body interns the names it calls in turn
+         */
+        SymbolTable names = state.symbols();
+        for (int id = 0; id < names.size() && !provider.isEmpty(); id++) {
+            String name = names.name(id);
+            InstructionLibrary library = provider.get(name);
+            if (library != null && (sharing ? !shared.containsKey(name)
+                    : !context.hasKey(name))) {
+                StatementNode node = state.adopt(library.instruction(name));
+                if (sharing) {
+                    shared.put(name, node);
+                } else {
+                    Statement body = newProgram.newBody();
+                    node.toStatement(body);
+                    context.add(name, body);
+                }
+                if (spans != null) {
+                    spans.addLibraryInstruction(name);
+                }
+            }
+        }
+
         //initialize program with parsed info
+        if (sharing) {
+            programBody = newProgram.newBody();
+            context = newProgram.newContext();
+        }
         this.setName(programIdentifier);
-        this.swapBody(programBody);
-        this.swapContext(context);
+        super.swapBody(programBody);
+        super.swapContext(context);
+        this.symbols = state.symbols();
+        this.sharedContext = shared;
+        this.sharedBody = sharedProgramBody;
+    }
+
+    /**
+     * Returns the symbol table built by the most recent {@code parse}: every
+     * instruction name and called name in this program, each with a dense id.
+     * The names in the context and in CALL statements are the table's
+     * canonical strings. CALL statements hold only the name, not the id; a
+     * client that wants to index by id looks each name up with
+     * {@code symbols().id} once, when it prepares the program, not on every
+     * call.
+     *
+     * @return the symbol table of this program
+     */
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Returns the hash-consed instruction bodies of this program, by name in
+     * source order. If the program is no longer held in shared form, they are
+     * rebuilt from its context and interned again.
+     *
+     * @return the shared instruction bodies
+     * @requires [this was constructed with a NodeTable]
+     */
+    public java.util.Map<String, StatementNode> sharedContext() {
+        assert this.nodes != null : ""
+                + "Violation of: this was constructed with a NodeTable";
+        LinkedHashMap<String, StatementNode> shared = this.sharedContext;
+        if (this.sharedBody == null) {
+            ParseState state = new ParseState(ParseLimits.UNLIMITED,
+                    this.nodes);
+            shared = new LinkedHashMap<>();
+            Map<String, Statement> context = this.newContext();
+            super.swapContext(context);
+            for (Map.Pair<String, Statement> instruction : context) {
+                shared.put(instruction.key(),
+                        state.adopt(StatementNode.of(instruction.value())));
+            }
+            super.swapContext(context);
+        }
+        return Collections.unmodifiableMap(shared);
+    }
+
+    /**
+     * Returns the hash-consed body of this program. If the program is no
+     * longer held in shared form, it is rebuilt from the body and interned
+     * again.
+     *
+     * @return the shared body
+     * @requires [this was constructed with a NodeTable]
+     */
+    public StatementNode sharedBody() {
+        assert this.nodes != null : ""
+                + "Violation of: this was constructed with a NodeTable";
+        StatementNode shared = this.sharedBody;
+        if (shared == null) {
+            Statement body = this.newBody();
+            super.swapBody(body);
+            shared = new ParseState(ParseLimits.UNLIMITED, this.nodes)
+                    .adopt(StatementNode.of(body));
+            super.swapBody(body);
+        }
+        return shared;
+    }
+
+    /**
+     * Reports whether this and {@code other} are equal programs. When both
+     * are still held in shared form against the same {@code NodeTable}, equal
+     * subtrees are the same object, so this compares each instruction body
+     * and the program body by reference, without walking them; otherwise it
+     * is {@code equals}.
+     *
+     * @param other
+     *            the program to compare with
+     * @return true iff this = other
+     */
+    public boolean equalsShared(Program1Parse1 other) {
+        assert other != null : "Violation of: other is not null";
+
+        boolean result;
+        if (this.sharedBody != null && other.sharedBody != null
+                && this.nodes == other.nodes) {
+            result = this.name().equals(other.name())
+                    && this.sharedBody == other.sharedBody
+                    && this.sharedContext.size() == other.sharedContext
+                            .size();
+            for (Entry<String, StatementNode> instruction : this.sharedContext
+                    .entrySet()) {
+                result = result && instruction.getValue() == other.sharedContext
+                        .get(instruction.getKey());
+            }
+        } else {
+            result = this.equals(other);
+        }
+        return result;
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Builds the {@code Statement} trees of the body and context from the
+     * shared form if this is still held in it, and leaves the shared form.
+     *
+     * @updates this
+     * @ensures [this is no longer held in shared form]  and  this = #this
+     */
+    private void materialize() {
+        if (this.sharedBody != null) {
+            Statement body = this.newBody();
+            this.sharedBody.toStatement(body);
+            Map<String, Statement> context = this.newContext();
+            for (Entry<String, StatementNode> instruction : this.sharedContext
+                    .entrySet()) {
+                Statement instructionBody = this.newBody();
+                instruction.getValue().toStatement(instructionBody);
+                context.add(instruction.getKey(), instructionBody);
+            }
+            super.swapBody(body);
+            super.swapContext(context);
+            this.sharedBody = null;
+            this.sharedContext = null;
+        }
+    }
+
+    @Override
+    public void swapBody(Statement b) {
+        assert b != null : "Violation of: b is not null";
+        this.materialize();
+        super.swapBody(b);
+    }
+
+    @Override
+    public void swapContext(Map<String, Statement> c) {
+        assert c != null : "Violation of: c is not null";
+        this.materialize();
+        super.swapContext(c);
+    }
+
+    @Override
+    public Program newInstance() {
+        return new Program1Parse1(this.limits, this.nodes, this.libraries);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.symbols = new SymbolTable();
+        this.sharedBody = null;
+        this.sharedContext = null;
+    }
+
+    @Override
+    public void transferFrom(Program source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Program1Parse1 : ""
+                + "Violation of: source is of dynamic type Program1Parse1";
+
+        /*
+         * The parsed state moves with the value; the limits, node table and
+         * library path configure the object and stay where they are
+         */
+        Program1Parse1 localSource = (Program1Parse1) source;
+        if (localSource.nodes != this.nodes) {
+            localSource.materialize();
+        }
+        SymbolTable names = localSource.symbols;
+        StatementNode body = localSource.sharedBody;
+        LinkedHashMap<String, StatementNode> context;
+        context = localSource.sharedContext;
+        super.transferFrom(localSource);
+        localSource.symbols = new SymbolTable();
+        localSource.sharedBody = null;
+        localSource.sharedContext = null;
+        this.symbols = names;
+        this.sharedBody = body;
+        this.sharedContext = context;
     }
 
     /*
@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import components.program.Program;
+import components.queue.Queue;
+
+/**
+ * Asynchronous, non-blocking front end for {@code Program1Parse1}. The file is
+ * read with an {@code AsynchronousFileChannel} and tokenizing and parsing run
+ * on an executor, so the calling thread never blocks on I/O.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class Program1Parse1Async {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Largest file that can be read into a single buffer.
+     */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Executor used when the client does not supply one; created on first
+     * use.
+     */
+    private static ExecutorService defaultExecutor = null;
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private Program1Parse1Async() {
+    }
+
+    /**
+     * Creates the default executor: one virtual thread per task when the
+     * running JVM supports virtual threads, otherwise a cached pool of daemon
+     * platform threads.
+     *
+     * @return the new executor
+     */
+    private static ExecutorService createDefaultExecutor() {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "bl-parser");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Reads {@code buffer.remaining()} bytes from {@code channel}, starting at
+     * file position {@code position}, and completes {@code done} with the
+     * flipped buffer once it is full or the end of the file is reached.
+     *
+     * @param channel
+     *            the channel to read from
+     * @param buffer
+     *            the buffer to fill
+     * @param position
+     *            the file position to read at
+     * @param done
+     *            the future to complete
+     */
+    private static void readFully(AsynchronousFileChannel channel,
+            ByteBuffer buffer, long position,
+            CompletableFuture<ByteBuffer> done) {
+        channel.read(buffer, position, null,
+                new CompletionHandler<Integer, Void>() {
+                    @Override
+                    public void completed(Integer count, Void attachment) {
+                        if (count < 0 || !buffer.hasRemaining()) {
+                            buffer.flip();
+                            done.complete(buffer);
+                        } else if (!done.isDone()) {
+                            readFully(channel, buffer, position + count, done);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable e, Void attachment) {
+                        done.completeExceptionally(e);
+                    }
+                });
+    }
+
+    /**
+     * Tokenizes and parses the BL program in {@code source}.
+     *
+     * @param source
+     *            the UTF-8 encoded program text
+     * @param limits
+     *            the limits to enforce
+     * @return the parsed program
+     * @ensures <pre>
+     * if [source is a syntactically valid BL program] then
+     *  parse = [the program corresponding to source]
+     * else
+     *  [reports an appropriate error message and throws RuntimeException]
+     * </pre>
+     */
+    private static Program parse(ByteBuffer source, ParseLimits limits) {
+        Queue<String> tokens = SourceTokenizer.tokens(
+                StandardCharsets.UTF_8.decode(source), null,
+                limits.maxTokens());
+        Program p = new Program1Parse1(limits);
+        p.parse(tokens);
+        return p;
+    }
+
+    /**
+     * Closes {@code channel}, ignoring any error.
+     *
+     * @param channel
+     *            the channel to close
+     */
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing useful can be done; the read has already ended
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the executor used by {@code parseAsync(Path)}: virtual threads
+     * when available.
+     *
+     * @return the default executor
+     */
+    public static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = createDefaultExecutor();
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Parses the BL program in {@code file} asynchronously on the default
+     * executor.
+     *
+     * @param file
+     *            the file containing the BL program
+     * @return a future for the parsed program
+     * @ensures <pre>
+     * [parseAsync completes with the program in file, or exceptionally with
+     *  the I/O or syntax error encountered]
+     * </pre>
+     */
+    public static CompletableFuture<Program> parseAsync(Path file) {
+        return parseAsync(file, defaultExecutor());
+    }
+
+    /**
+     * Parses the BL program in {@code file} asynchronously, reading the file
+     * and running the parser on {@code executor}. Cancelling the returned
+     * future closes the file and abandons any work not yet started.
+     *
+     * @param file
+     *            the file containing the BL program
+     * @param executor
+     *            the executor for I/O completions and parsing
+     * @return a future for the parsed program
+     * @ensures <pre>
+     * [parseAsync completes with the program in file, or exceptionally with
+     *  the I/O or syntax error encountered]
+     * </pre>
+     */
+    public static CompletableFuture<Program> parseAsync(Path file,
+            ExecutorService executor) {
+        assert file != null : "Violation of: file is not null";
+        assert executor != null : "Violation of: executor is not null";
+
+        return parseAsync(file, executor, () -> ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Parses the BL program in {@code file} asynchronously as above,
+     * enforcing the limits {@code limits} supplies when the parse starts.
+     *
+     * @param file
+     *            the file containing the BL program
+     * @param executor
+     *            the executor for I/O completions and parsing
+     * @param limits
+     *            supplies the limits to enforce
+     * @return a future for the parsed program
+     */
+    private static CompletableFuture<Program> parseAsync(Path file,
+            ExecutorService executor, Supplier<ParseLimits> limits) {
+        AsynchronousFileChannel channel;
+        long size;
+        try {
+            channel = AsynchronousFileChannel.open(file,
+                    Collections.singleton(StandardOpenOption.READ), executor);
+            size = channel.size();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (size > MAX_FILE_SIZE) {
+            closeQuietly(channel);
+            return CompletableFuture.failedFuture(
+                    new IOException("File too large to parse: " + file));
+        }
+
+        CompletableFuture<Program> result = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> read = new CompletableFuture<>();
+        result.whenComplete((p, e) -> {
+            read.cancel(false);
+            closeQuietly(channel);
+        });
+        read.whenCompleteAsync((source, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else if (!result.isDone()) {
+                try {
+                    result.complete(parse(source, limits.get()));
+                } catch (RuntimeException parseError) {
+                    result.completeExceptionally(parseError);
+                }
+            }
+        }, executor);
+        readFully(channel, ByteBuffer.allocate((int) size), 0, read);
+        return result;
+    }
+
+    /**
+     * Parses the BL program in {@code file} asynchronously on
+     * {@code executor}, completing exceptionally with a
+     * {@code TimeoutException} if the parse has not finished within
+     * {@code timeout}. The parse itself is given whatever is left of the
+     * timeout as its {@code ParseLimits} deadline, so it stops soon after the
+     * future times out instead of running on in the background; it is not
+     * started at all if the future has already timed out.
+     *
+     * @param file
+     *            the file containing the BL program
+     * @param executor
+     *            the executor for I/O completions and parsing
+     * @param timeout
+     *            how long to wait before giving up
+     * @param unit
+     *            the unit of timeout
+     * @return a future for the parsed program
+     * @requires timeout > 0
+     * @ensures <pre>
+     * [parseAsync completes with the program in file, or exceptionally with
+     *  the I/O or syntax error encountered or a TimeoutException]
+     * </pre>
+     */
+    public static CompletableFuture<Program> parseAsync(Path file,
+            ExecutorService executor, long timeout, TimeUnit unit) {
+        assert timeout > 0 : "Violation of: timeout > 0";
+        assert unit != null : "Violation of: unit is not null";
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Supplier<ParseLimits> limits = () -> {
+            long left = TimeUnit.NANOSECONDS
+                    .toMillis(deadline - System.nanoTime());
+            ParseLimits u = ParseLimits.UNLIMITED;
+            return new ParseLimits(u.maxTokens(), u.maxInstructions(),
+                    u.maxDepth(), u.maxIdentifierLength(), Math.max(left, 1));
+        };
+        return parseAsync(file, executor, limits).orTimeout(timeout, unit);
+    }
+
+}
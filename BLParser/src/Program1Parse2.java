@@ -0,0 +1,112 @@
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Tokenizer;
+
+/**
+ * Layered implementation of secondary method {@code parse} for {@code Program}
+ * using the table-driven {@code LL1Parser} engine.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class Program1Parse2 extends Program1 {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Resource limits enforced by {@code parse}.
+     */
+    private final ParseLimits limits;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Program1Parse2() {
+        this(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor that enforces {@code limits} in {@code parse}.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     */
+    public Program1Parse2(ParseLimits limits) {
+        super();
+        assert limits != null : "Violation of: limits is not null";
+        this.limits = limits;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void parse(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        Queue<String> tokens = SourceTokenizer.tokens(in,
+                this.limits.maxTokens());
+        this.parse(tokens);
+    }
+
+    @Override
+    public void parse(Queue<String> tokens) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+
+        ParseState state = new ParseState(this.limits);
+        state.checkTokens(tokens);
+        LL1Parser.parseProgram(tokens, this, state);
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Parse input file
+         */
+        out.println("*** Parsing input file ***");
+        Program p = new Program1Parse2();
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        p.parse(tokens);
+        /*
+         * Pretty print the program
+         */
+        out.println("*** Pretty print of parsed program ***");
+        p.prettyPrint(out);
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,407 @@
+import java.util.HashMap;
+
+import components.map.Map;
+import components.program.Program;
+import components.statement.Statement.Condition;
+import components.utilities.Reporter;
+
+/**
+ * A BL program flattened to an array of int instruction words for
+ * {@code ExecutionState}, which runs it one primitive instruction at a time
+ * and so must be able to stop anywhere and resume later. All the state of a
+ * running program is then a program counter and a stack of return
+ * addresses.
+ *
+ * <p>
+ * The body starts at address 0 and ends with a jump back to 0, since a BL
+ * program repeats its body forever; each instruction follows, ending with a
+ * return. Each word holds an operation in its low {@code OP_BITS} bits and
+ * its operands above them:
+ *
+ * <pre>
+ * PRIMITIVE  primitive &lt;&lt; 4
+ * CALL       address &lt;&lt; 4
+ * RETURN
+ * JUMP       address &lt;&lt; 4
+ * JUMP_UNLESS  address &lt;&lt; 8 | condition &lt;&lt; 4
+ * </pre>
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramCode {
+
+    /**
+     * Primitive instruction move.
+     */
+    public static final int MOVE = 0;
+
+    /**
+     * Primitive instruction turnleft.
+     */
+    public static final int TURN_LEFT = 1;
+
+    /**
+     * Primitive instruction turnright.
+     */
+    public static final int TURN_RIGHT = 2;
+
+    /**
+     * Primitive instruction infect.
+     */
+    public static final int INFECT = 3;
+
+    /**
+     * Primitive instruction skip.
+     */
+    public static final int SKIP = 4;
+
+    /*
+     * Package-private members used by ExecutionState -------------------------
+     */
+
+    /**
+     * Number of low bits of a word holding the operation.
+     */
+    static final int OP_BITS = 4;
+
+    /**
+     * Mask of the operation bits of a word.
+     */
+    static final int OP_MASK = (1 << OP_BITS) - 1;
+
+    /**
+     * Shift of the address in a JUMP_UNLESS word.
+     */
+    static final int CONDITION_ADDRESS_SHIFT = 2 * OP_BITS;
+
+    /**
+     * Operation executing a primitive instruction.
+     */
+    static final int PRIMITIVE = 0;
+
+    /**
+     * Operation calling an instruction.
+     */
+    static final int CALL = 1;
+
+    /**
+     * Operation returning from an instruction.
+     */
+    static final int RETURN = 2;
+
+    /**
+     * Operation jumping unconditionally.
+     */
+    static final int JUMP = 3;
+
+    /**
+     * Operation jumping if a condition is false.
+     */
+    static final int JUMP_UNLESS = 4;
+
+    /**
+     * The instruction words.
+     */
+    final int[] code;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Largest address a JUMP_UNLESS word can hold.
+     */
+    private static final int MAX_ADDRESS = Integer.MAX_VALUE
+            >>> (CONDITION_ADDRESS_SHIFT - 1);
+
+    /**
+     * Number of each primitive instruction, by name.
+     */
+    private static final java.util.Map<String, Integer> PRIMITIVES;
+
+    static {
+        PRIMITIVES = new HashMap<>();
+        PRIMITIVES.put("move", MOVE);
+        PRIMITIVES.put("turnleft", TURN_LEFT);
+        PRIMITIVES.put("turnright", TURN_RIGHT);
+        PRIMITIVES.put("infect", INFECT);
+        PRIMITIVES.put("skip", SKIP);
+    }
+
+    /**
+     * Name of the program.
+     */
+    private final String name;
+
+    /**
+     * Hash of the name and the instruction words.
+     */
+    private final long fingerprint;
+
+    /**
+     * Builds the instruction words of one program.
+     */
+    private static final class Assembler {
+
+        /**
+         * The words written so far.
+         */
+        private int[] words = new int[64];
+
+        /**
+         * Number of words written.
+         */
+        private int length;
+
+        /**
+         * Address of each instruction, by name, once written.
+         */
+        private final java.util.Map<String, Integer> addresses;
+
+        /**
+         * Addresses of the CALL words, in order.
+         */
+        private int[] calls = new int[16];
+
+        /**
+         * Names called by the CALL words, in order.
+         */
+        private String[] callNames = new String[16];
+
+        /**
+         * Number of CALL words.
+         */
+        private int callCount;
+
+        /**
+         * Constructor.
+         */
+        Assembler() {
+            this.addresses = new HashMap<>();
+        }
+
+        /**
+         * Appends {@code word} and returns its address.
+         *
+         * @param word
+         *            the instruction word
+         * @return its address
+         */
+        int emit(int word) {
+            if (this.length == this.words.length) {
+                this.words = java.util.Arrays.copyOf(this.words,
+                        2 * this.length);
+            }
+            Reporter.assertElseFatalError(this.length < MAX_ADDRESS,
+                    "Error: program too large");
+            this.words[this.length] = word;
+            this.length++;
+            return this.length - 1;
+        }
+
+        /**
+         * Appends the words for {@code s}.
+         *
+         * @param s
+         *            the statement
+         */
+        void statement(StatementNode s) {
+            switch (s.kind()) {
+                case BLOCK:
+                    for (int i = 0; i < s.childCount(); i++) {
+                        this.statement(s.child(i));
+                    }
+                    break;
+                case IF: {
+                    int test = this.test(s.condition());
+                    this.statement(s.child(0));
+                    this.patch(test, this.length);
+                    break;
+                }
+                case IF_ELSE: {
+                    int test = this.test(s.condition());
+                    this.statement(s.child(0));
+                    int skip = this.emit(JUMP);
+                    this.patch(test, this.length);
+                    this.statement(s.child(1));
+                    this.patch(skip, this.length);
+                    break;
+                }
+                case WHILE: {
+                    int top = this.length;
+                    int test = this.test(s.condition());
+                    this.statement(s.child(0));
+                    this.emit(JUMP | (top << OP_BITS));
+                    this.patch(test, this.length);
+                    break;
+                }
+                default: {
+                    Integer primitive = PRIMITIVES.get(s.name());
+                    if (primitive != null) {
+                        this.emit(PRIMITIVE | (primitive << OP_BITS));
+                    } else {
+                        if (this.callCount == this.calls.length) {
+                            this.calls = java.util.Arrays.copyOf(this.calls,
+                                    2 * this.callCount);
+                            this.callNames = java.util.Arrays.copyOf(
+                                    this.callNames, 2 * this.callCount);
+                        }
+                        this.calls[this.callCount] = this.emit(CALL);
+                        this.callNames[this.callCount] = s.name();
+                        this.callCount++;
+                    }
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Appends a JUMP_UNLESS on {@code c} with its address still to be
+         * patched, or nothing if c is TRUE, and returns its address or -1.
+         *
+         * @param c
+         *            the condition
+         * @return the address of the word, or -1
+         */
+        private int test(Condition c) {
+            int at = -1;
+            if (c != Condition.TRUE) {
+                at = this.emit(JUMP_UNLESS | (c.ordinal() << OP_BITS));
+            }
+            return at;
+        }
+
+        /**
+         * Sets the target of the jump at {@code at}, if any, to
+         * {@code target}.
+         *
+         * @param at
+         *            the address of a JUMP or JUMP_UNLESS word, or -1
+         * @param target
+         *            the address to jump to
+         */
+        private void patch(int at, int target) {
+            if (at >= 0) {
+                int word = this.words[at];
+                if ((word & OP_MASK) == JUMP) {
+                    this.words[at] = word | (target << OP_BITS);
+                } else {
+                    this.words[at] = word
+                            | (target << CONDITION_ADDRESS_SHIFT);
+                }
+            }
+        }
+
+        /**
+         * Records that instruction {@code name} starts here.
+         *
+         * @param name
+         *            the instruction name
+         */
+        void startInstruction(String name) {
+            this.addresses.put(name, this.length);
+        }
+
+        /**
+         * Fills in the CALL addresses and returns the words.
+         *
+         * @return the instruction words
+         */
+        int[] finish() {
+            for (int i = 0; i < this.callCount; i++) {
+                Integer address = this.addresses.get(this.callNames[i]);
+                Reporter.assertElseFatalError(address != null,
+                        "Error: Instruction \"" + this.callNames[i]
+                                + "\" is not defined");
+                this.words[this.calls[i]] |= address << OP_BITS;
+            }
+            return java.util.Arrays.copyOf(this.words, this.length);
+        }
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            the program name
+     * @param code
+     *            the instruction words
+     */
+    private ProgramCode(String name, int[] code) {
+        this.name = name;
+        this.code = code;
+        final long multiplier = 0x9E3779B97F4A7C15L;
+        long h = name.hashCode();
+        for (int word : code) {
+            h = (h ^ word) * multiplier;
+        }
+        this.fingerprint = h ^ (h >>> (Long.SIZE / 2));
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns {@code p} flattened to instruction words.
+     *
+     * @param p
+     *            the program
+     * @return the program code
+     * @ensures <pre>
+     * if [every instruction p calls is primitive or in p.context] then
+     *  [compile executes the same primitive instructions, given the same
+     *   conditions, as repeating the body of p]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static ProgramCode compile(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        java.util.Map<String, StatementNode> instructions = StatementNode
+                .contextOf(p);
+        StatementNode main = StatementNode.bodyOf(p);
+
+        Assembler out = new Assembler();
+        out.statement(main);
+        out.emit(JUMP);
+        for (String instruction : instructions.keySet()) {
+            out.startInstruction(instruction);
+            out.statement(instructions.get(instruction));
+            out.emit(RETURN);
+        }
+        return new ProgramCode(p.name(), out.finish());
+    }
+
+    /**
+     * Returns the name of the program.
+     *
+     * @return the program name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of instruction words.
+     *
+     * @return the code length
+     */
+    public int length() {
+        return this.code.length;
+    }
+
+    /**
+     * Returns a hash of the name and instruction words, used to check that a
+     * checkpoint is restored with the same programs it was taken with.
+     *
+     * @return the fingerprint
+     */
+    public long fingerprint() {
+        return this.fingerprint;
+    }
+
+}
@@ -0,0 +1,479 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import components.map.Map;
+import components.program.Program;
+import components.statement.Statement;
+import components.statement.Statement.Condition;
+import components.statement.Statement.Kind;
+import components.utilities.Reporter;
+
+/**
+ * Compact binary form of BL programs. Names are written once, in a symbol
+ * table, and every CALL refers to its name by id; a statement is a single
+ * varint tag (the kind and either the condition or the CALL id) followed by
+ * its blocks, and a block is a varint length followed by its statements. A
+ * typical CALL therefore takes one byte.
+ *
+ * <pre>
+ * program     = MAGIC name symbols instruction-count { id block } block
+ * symbols     = count { string }
+ * block       = count { statement }
+ * statement   = tag [ block [ block ] ]
+ * tag         = (id | condition) &lt;&lt; 2 | (CALL | IF | IF_ELSE | WHILE)
+ * string      = length utf-8-bytes
+ * </pre>
+ *
+ * All counts, lengths, ids and tags are unsigned LEB128 varints of at most
+ * 31 bits. Decoding rejects IF and WHILE statements nested more than
+ * {@code MAX_DEPTH} deep, so that crafted input cannot overflow the stack.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramCodec {
+
+    /**
+     * First four bytes of every encoded program ("BLC1").
+     */
+    public static final int MAGIC = 0x424C4331;
+
+    /**
+     * Deepest nesting of IF and WHILE statements that decoding accepts; low
+     * enough that decoding and building the {@code Statement}s fit in a
+     * thread's default stack.
+     */
+    public static final int MAX_DEPTH = 500;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Tag code of a CALL.
+     */
+    private static final int CALL = 0;
+
+    /**
+     * Tag code of an IF.
+     */
+    private static final int IF = 1;
+
+    /**
+     * Tag code of an IF_ELSE.
+     */
+    private static final int IF_ELSE = 2;
+
+    /**
+     * Tag code of a WHILE.
+     */
+    private static final int WHILE = 3;
+
+    /**
+     * Number of low tag bits holding the code.
+     */
+    private static final int CODE_BITS = 2;
+
+    /**
+     * Mask of the low tag bits holding the code.
+     */
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    /**
+     * Low seven bits of a varint byte.
+     */
+    private static final int VARINT_BITS = 0x7F;
+
+    /**
+     * Continuation bit of a varint byte.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * Conditions by ordinal.
+     */
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private ProgramCodec() {
+    }
+
+    /**
+     * Writes the statement {@code node}.
+     *
+     * @param out
+     *            the output
+     * @param node
+     *            the statement, not a BLOCK
+     * @param symbols
+     *            the symbol table holding every called name
+     * @updates out
+     */
+    private static void writeStatement(ByteArrayOutputStream out,
+            StatementNode node, SymbolTable symbols) {
+        switch (node.kind()) {
+            case IF:
+                writeVarInt(out, node.condition().ordinal() << CODE_BITS | IF);
+                writeBlock(out, node.child(0), symbols);
+                break;
+            case IF_ELSE:
+                writeVarInt(out,
+                        node.condition().ordinal() << CODE_BITS | IF_ELSE);
+                writeBlock(out, node.child(0), symbols);
+                writeBlock(out, node.child(1), symbols);
+                break;
+            case WHILE:
+                writeVarInt(out,
+                        node.condition().ordinal() << CODE_BITS | WHILE);
+                writeBlock(out, node.child(0), symbols);
+                break;
+            default:
+                writeVarInt(out, symbols.id(node.name()) << CODE_BITS | CALL);
+                break;
+        }
+    }
+
+    /**
+     * Reads a statement.
+     *
+     * @param in
+     *            the input
+     * @param names
+     *            names by symbol id
+     * @param depth
+     *            the nesting depth of the block holding the statement
+     * @return the statement
+     * @updates in
+     */
+    private static StatementNode readStatement(ByteBuffer in,
+            List<String> names, int depth) {
+        int tag = readVarInt(in);
+        int code = tag & CODE_MASK;
+        int operand = tag >>> CODE_BITS;
+        StatementNode node;
+        if (code == CALL) {
+            Reporter.assertElseFatalError(operand < names.size(),
+                    "Error: invalid symbol id " + operand);
+            node = StatementNode.call(names.get(operand));
+        } else {
+            Reporter.assertElseFatalError(operand < CONDITIONS.length,
+                    "Error: invalid condition " + operand);
+            Condition c = CONDITIONS[operand];
+            StatementNode first = readBlock(in, names, depth + 1);
+            if (code == IF) {
+                node = StatementNode.ifNode(c, first);
+            } else if (code == IF_ELSE) {
+                node = StatementNode.ifElseNode(c, first,
+                        readBlock(in, names, depth + 1));
+            } else {
+                node = StatementNode.whileNode(c, first);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Reads a BLOCK written by {@code writeBlock} that is nested
+     * {@code depth} IF and WHILE statements deep.
+     *
+     * @param in
+     *            the input
+     * @param names
+     *            names by symbol id
+     * @param depth
+     *            the nesting depth of the block
+     * @return the block
+     * @updates in
+     */
+    private static StatementNode readBlock(ByteBuffer in, List<String> names,
+            int depth) {
+        Reporter.assertElseFatalError(depth <= MAX_DEPTH,
+                "Error: statements nested more than " + MAX_DEPTH + " deep");
+        int length = readVarInt(in);
+        Reporter.assertElseFatalError(length <= in.remaining(),
+                "Error: truncated block");
+        StatementNode[] statements = new StatementNode[length];
+        for (int i = 0; i < length; i++) {
+            statements[i] = readStatement(in, names, depth);
+        }
+        return StatementNode.block(statements);
+    }
+
+    /*
+     * Package-private members used by other binary formats ------------------
+     */
+
+    /**
+     * Adds every name called in {@code node} to {@code symbols}.
+     *
+     * @param node
+     *            the statement
+     * @param symbols
+     *            the symbol table
+     * @updates symbols
+     */
+    static void internCalls(StatementNode node, SymbolTable symbols) {
+        if (node.kind() == Kind.CALL) {
+            symbols.intern(node.name());
+        } else {
+            for (int i = 0; i < node.childCount(); i++) {
+                internCalls(node.child(i), symbols);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code value} as an unsigned LEB128 varint.
+     *
+     * @param out
+     *            the output
+     * @param value
+     *            the value, at least 0
+     * @updates out
+     */
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        int v = value;
+        while ((v & ~VARINT_BITS) != 0) {
+            out.write(v & VARINT_BITS | VARINT_MORE);
+            v >>>= Byte.SIZE - 1;
+        }
+        out.write(v);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @param in
+     *            the input
+     * @return the value
+     * @updates in
+     * @ensures <pre>
+     * if [in starts with a varint of at most 31 bits] then
+     *  readVarInt = [that varint]  and  [in is advanced past it]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            Reporter.assertElseFatalError(shift < Integer.SIZE,
+                    "Error: malformed varint");
+            b = in.get();
+            value |= (b & VARINT_BITS) << shift;
+            shift += Byte.SIZE - 1;
+        } while ((b & VARINT_MORE) != 0);
+        Reporter.assertElseFatalError(value >= 0, "Error: malformed varint");
+        return value;
+    }
+
+    /**
+     * Writes {@code s} as a varint length and its UTF-8 bytes.
+     *
+     * @param out
+     *            the output
+     * @param s
+     *            the string
+     * @updates out
+     */
+    static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a string written by {@code writeString}.
+     *
+     * @param in
+     *            the input
+     * @return the string
+     * @updates in
+     */
+    static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        Reporter.assertElseFatalError(length <= in.remaining(),
+                "Error: truncated string");
+        String s = new String(in.array(), in.arrayOffset() + in.position(),
+                length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    /**
+     * Writes the names of {@code symbols} in id order.
+     *
+     * @param out
+     *            the output
+     * @param symbols
+     *            the symbol table
+     * @updates out
+     */
+    static void writeSymbols(ByteArrayOutputStream out, SymbolTable symbols) {
+        writeVarInt(out, symbols.size());
+        for (int id = 0; id < symbols.size(); id++) {
+            writeString(out, symbols.name(id));
+        }
+    }
+
+    /**
+     * Reads names written by {@code writeSymbols}.
+     *
+     * @param in
+     *            the input
+     * @return the names by id
+     * @updates in
+     */
+    static List<String> readSymbols(ByteBuffer in) {
+        int count = readVarInt(in);
+        List<String> names = new ArrayList<>(Math.min(count, in.remaining()));
+        for (int id = 0; id < count; id++) {
+            names.add(readString(in).intern());
+        }
+        return names;
+    }
+
+    /**
+     * Writes the BLOCK {@code block}.
+     *
+     * @param out
+     *            the output
+     * @param block
+     *            the block
+     * @param symbols
+     *            the symbol table holding every called name
+     * @updates out
+     * @requires block is a BLOCK
+     */
+    static void writeBlock(ByteArrayOutputStream out, StatementNode block,
+            SymbolTable symbols) {
+        writeVarInt(out, block.childCount());
+        for (int i = 0; i < block.childCount(); i++) {
+            writeStatement(out, block.child(i), symbols);
+        }
+    }
+
+    /**
+     * Reads a BLOCK written by {@code writeBlock}.
+     *
+     * @param in
+     *            the input
+     * @param names
+     *            names by symbol id
+     * @return the block
+     * @updates in
+     */
+    static StatementNode readBlock(ByteBuffer in, List<String> names) {
+        return readBlock(in, names, 0);
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the binary form of {@code p}.
+     *
+     * @param p
+     *            the program
+     * @return the encoded program
+     * @ensures [decode(encode(p)) = p]
+     */
+    public static byte[] encode(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        Statement body = p.newBody();
+        p.swapBody(body);
+
+        SymbolTable symbols = new SymbolTable();
+        List<String> names = new ArrayList<>();
+        List<StatementNode> bodies = new ArrayList<>();
+        for (Map.Pair<String, Statement> instruction : context) {
+            names.add(instruction.key());
+            StatementNode node = StatementNode.of(instruction.value());
+            bodies.add(node);
+            symbols.intern(instruction.key());
+            internCalls(node, symbols);
+        }
+        StatementNode main = StatementNode.of(body);
+        internCalls(main, symbols);
+        p.swapContext(context);
+        p.swapBody(body);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC >>> (3 * Byte.SIZE));
+        out.write(MAGIC >>> (2 * Byte.SIZE));
+        out.write(MAGIC >>> Byte.SIZE);
+        out.write(MAGIC);
+        writeString(out, p.name());
+        writeSymbols(out, symbols);
+        writeVarInt(out, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            writeVarInt(out, symbols.id(names.get(i)));
+            writeBlock(out, bodies.get(i), symbols);
+        }
+        writeBlock(out, main, symbols);
+        return out.toByteArray();
+    }
+
+    /**
+     * Replaces {@code p} with the program encoded in {@code bytes}.
+     *
+     * @param bytes
+     *            the encoded program
+     * @param p
+     *            the program to fill in
+     * @replaces p
+     * @ensures <pre>
+     * if [bytes is a program written by encode] then
+     *  p = [the program in bytes]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static void decode(byte[] bytes, Program p) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert p != null : "Violation of: p is not null";
+
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            Reporter.assertElseFatalError(in.getInt() == MAGIC,
+                    "Error: not an encoded BL program");
+            String name = readString(in);
+            List<String> names = readSymbols(in);
+            int count = readVarInt(in);
+            Map<String, Statement> context = p.newContext();
+            for (int i = 0; i < count; i++) {
+                int id = readVarInt(in);
+                Reporter.assertElseFatalError(id < names.size(),
+                        "Error: invalid symbol id " + id);
+                Reporter.assertElseFatalError(!context.hasKey(names.get(id)),
+                        "Error: Instruction \"" + names.get(id)
+                                + "\" cannot be already defined");
+                Statement b = p.newBody();
+                readBlock(in, names).toStatement(b);
+                context.add(names.get(id), b);
+            }
+            Statement body = p.newBody();
+            readBlock(in, names).toStatement(body);
+            Reporter.assertElseFatalError(!in.hasRemaining(),
+                    "Error: trailing bytes after encoded program");
+            p.setName(name);
+            p.swapContext(context);
+            p.swapBody(body);
+        } catch (BufferUnderflowException e) {
+            Reporter.fatalErrorToConsole("Error: truncated encoded program");
+        }
+    }
+
+}
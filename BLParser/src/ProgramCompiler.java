@@ -0,0 +1,631 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+
+import components.map.Map;
+import components.program.Program;
+import components.statement.Statement.Condition;
+import components.utilities.Reporter;
+
+/**
+ * Compiles a BL program to a JVM class, so it runs as native branches and
+ * calls instead of being interpreted. The generated class implements
+ * {@code CompiledProgram}; each instruction becomes a static method, each
+ * primitive instruction and condition becomes a call to
+ * {@code CreatureActions}, and IF and WHILE become conditional jumps.
+ *
+ * <p>
+ * Given a {@code ProgramProfile}, the generated code also counts every
+ * statement it executes; without one it contains no counting code at all.
+ *
+ * <p>
+ * Classes are defined as hidden classes, which are not registered with any
+ * class loader: once a {@code CompiledProgram} is no longer reachable, its
+ * class can be unloaded like any other garbage.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramCompiler {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Internal name of every generated class; hidden classes are renamed
+     * when they are defined, so the name need not be unique.
+     */
+    private static final String CLASS_NAME = "CompiledBLProgram";
+
+    /**
+     * Internal name of the actions interface.
+     */
+    private static final String ACTIONS = "CreatureActions";
+
+    /**
+     * Descriptor of an instruction method.
+     */
+    private static final String INSTRUCTION_DESCRIPTOR = "(L" + ACTIONS
+            + ";)V";
+
+    /**
+     * Descriptor of an instruction method that counts statements.
+     */
+    private static final String PROFILED_DESCRIPTOR = "(L" + ACTIONS
+            + ";[J)V";
+
+    /**
+     * Name of the static method holding the program body.
+     */
+    private static final String BODY_METHOD = "body";
+
+    /**
+     * Opcode aload_0.
+     */
+    private static final int ALOAD_0 = 0x2A;
+
+    /**
+     * Opcode aload_1.
+     */
+    private static final int ALOAD_1 = 0x2B;
+
+    /**
+     * Opcode aload_2.
+     */
+    private static final int ALOAD_2 = 0x2C;
+
+    /**
+     * Opcode lconst_1.
+     */
+    private static final int LCONST_1 = 0x0A;
+
+    /**
+     * Opcode sipush.
+     */
+    private static final int SIPUSH = 0x11;
+
+    /**
+     * Opcode laload.
+     */
+    private static final int LALOAD = 0x2F;
+
+    /**
+     * Opcode lastore.
+     */
+    private static final int LASTORE = 0x50;
+
+    /**
+     * Opcode dup2.
+     */
+    private static final int DUP2 = 0x5C;
+
+    /**
+     * Opcode ladd.
+     */
+    private static final int LADD = 0x61;
+
+    /**
+     * Opcode ifeq.
+     */
+    private static final int IFEQ = 0x99;
+
+    /**
+     * Opcode ifne.
+     */
+    private static final int IFNE = 0x9A;
+
+    /**
+     * Opcode goto.
+     */
+    private static final int GOTO = 0xA7;
+
+    /**
+     * Opcode areturn.
+     */
+    private static final int ARETURN = 0xB0;
+
+    /**
+     * Opcode return.
+     */
+    private static final int RETURN = 0xB1;
+
+    /**
+     * Opcode invokespecial.
+     */
+    private static final int INVOKESPECIAL = 0xB7;
+
+    /**
+     * Opcode invokestatic.
+     */
+    private static final int INVOKESTATIC = 0xB8;
+
+    /**
+     * Opcode ldc_w.
+     */
+    private static final int LDC_W = 0x13;
+
+    /**
+     * Lookup in this class's package, used to define the hidden classes.
+     */
+    private static final Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * Name of the {@code CreatureActions} method for each primitive
+     * instruction.
+     */
+    private static final java.util.Map<String, String> PRIMITIVES;
+
+    static {
+        PRIMITIVES = new HashMap<>();
+        PRIMITIVES.put("move", "move");
+        PRIMITIVES.put("turnleft", "turnLeft");
+        PRIMITIVES.put("turnright", "turnRight");
+        PRIMITIVES.put("infect", "infect");
+        PRIMITIVES.put("skip", "skip");
+    }
+
+    /**
+     * The class being generated.
+     */
+    private final ClassFileWriter out;
+
+    /**
+     * Name of the method for each instruction, by instruction name.
+     */
+    private final java.util.Map<String, String> methods;
+
+    /**
+     * Whether the generated code counts the statements it executes.
+     */
+    private final boolean profiled;
+
+    /**
+     * Descriptor of the generated statement methods.
+     */
+    private final String descriptor;
+
+    /**
+     * Id of the next statement to be compiled, when profiling.
+     */
+    private int nextId;
+
+    /**
+     * Constructor.
+     *
+     * @param instructions
+     *            names of the instructions being compiled
+     * @param profiled
+     *            whether to generate counting code
+     */
+    private ProgramCompiler(Iterable<String> instructions,
+            boolean profiled) {
+        if (profiled) {
+            this.out = new ClassFileWriter(CLASS_NAME, "java/lang/Object",
+                    "ProfiledCode");
+            this.descriptor = PROFILED_DESCRIPTOR;
+        } else {
+            this.out = new ClassFileWriter(CLASS_NAME, "java/lang/Object",
+                    "CompiledProgram");
+            this.descriptor = INSTRUCTION_DESCRIPTOR;
+        }
+        this.profiled = profiled;
+        this.nextId = 0;
+        this.methods = new HashMap<>();
+        for (String name : instructions) {
+            this.methods.put(name, "i" + this.methods.size());
+        }
+    }
+
+    /**
+     * Returns the name of the {@code CreatureActions} test for {@code c} and
+     * writes to {@code negated[0]} whether c is its negation.
+     *
+     * @param c
+     *            the condition, not TRUE
+     * @param negated
+     *            receives whether c is a negated condition
+     * @return the test method name
+     */
+    private static String test(Condition c, boolean[] negated) {
+        negated[0] = false;
+        String name;
+        switch (c) {
+            case NEXT_IS_EMPTY:
+                name = "nextIsEmpty";
+                break;
+            case NEXT_IS_NOT_EMPTY:
+                name = "nextIsEmpty";
+                negated[0] = true;
+                break;
+            case NEXT_IS_WALL:
+                name = "nextIsWall";
+                break;
+            case NEXT_IS_NOT_WALL:
+                name = "nextIsWall";
+                negated[0] = true;
+                break;
+            case NEXT_IS_FRIEND:
+                name = "nextIsFriend";
+                break;
+            case NEXT_IS_NOT_FRIEND:
+                name = "nextIsFriend";
+                negated[0] = true;
+                break;
+            case NEXT_IS_ENEMY:
+                name = "nextIsEnemy";
+                break;
+            case NEXT_IS_NOT_ENEMY:
+                name = "nextIsEnemy";
+                negated[0] = true;
+                break;
+            default:
+                name = "random";
+                break;
+        }
+        return name;
+    }
+
+    /**
+     * Writes code that jumps to {@code label} if {@code c} is false.
+     *
+     * @param code
+     *            the method being written
+     * @param c
+     *            the condition
+     * @param label
+     *            where to jump when c is false
+     * @updates code
+     */
+    private void jumpUnless(ClassFileWriter.Code code, Condition c,
+            int label) {
+        if (c != Condition.TRUE) {
+            boolean[] negated = new boolean[1];
+            String test = test(c, negated);
+            code.op(ALOAD_0);
+            code.invokeInterface(
+                    this.out.interfaceMethodRef(ACTIONS, test, "()Z"));
+            if (negated[0]) {
+                code.branch(IFNE, label);
+            } else {
+                code.branch(IFEQ, label);
+            }
+        }
+    }
+
+    /**
+     * When profiling, writes code that adds one to the count of the next
+     * statement, with the counts in local 1, and moves on to the statement
+     * after it.
+     *
+     * @param code
+     *            the method being written
+     * @updates code, this
+     */
+    private void count(ClassFileWriter.Code code) {
+        if (this.profiled) {
+            code.op(ALOAD_1);
+            if (this.nextId <= Short.MAX_VALUE) {
+                code.op(SIPUSH, this.nextId);
+            } else {
+                code.op(LDC_W, this.out.integer(this.nextId));
+            }
+            code.op(DUP2);
+            code.op(LALOAD);
+            code.op(LCONST_1);
+            code.op(LADD);
+            code.op(LASTORE);
+            this.nextId++;
+        }
+    }
+
+    /**
+     * Writes the code for {@code s}, with the actions in local 0 and, when
+     * profiling, the counts in local 1.
+     *
+     * @param code
+     *            the method being written
+     * @param s
+     *            the statement
+     * @updates code, this
+     */
+    private void statement(ClassFileWriter.Code code, StatementNode s) {
+        this.count(code);
+        switch (s.kind()) {
+            case BLOCK:
+                for (int i = 0; i < s.childCount(); i++) {
+                    this.statement(code, s.child(i));
+                }
+                break;
+            case IF: {
+                int end = code.newLabel();
+                this.jumpUnless(code, s.condition(), end);
+                this.statement(code, s.child(0));
+                code.bind(end);
+                break;
+            }
+            case IF_ELSE: {
+                int elseLabel = code.newLabel();
+                int end = code.newLabel();
+                this.jumpUnless(code, s.condition(), elseLabel);
+                this.statement(code, s.child(0));
+                code.branch(GOTO, end);
+                code.bind(elseLabel);
+                this.statement(code, s.child(1));
+                code.bind(end);
+                break;
+            }
+            case WHILE: {
+                int top = code.newLabel();
+                int end = code.newLabel();
+                code.bind(top);
+                this.jumpUnless(code, s.condition(), end);
+                this.statement(code, s.child(0));
+                code.branch(GOTO, top);
+                code.bind(end);
+                break;
+            }
+            default: {
+                String primitive = PRIMITIVES.get(s.name());
+                code.op(ALOAD_0);
+                if (primitive != null) {
+                    code.invokeInterface(this.out.interfaceMethodRef(ACTIONS,
+                            primitive, "()V"));
+                } else {
+                    String method = this.methods.get(s.name());
+                    Reporter.assertElseFatalError(method != null,
+                            "Error: Instruction \"" + s.name()
+                                    + "\" is not defined");
+                    if (this.profiled) {
+                        code.op(ALOAD_1);
+                    }
+                    code.op(INVOKESTATIC, this.out.methodRef(CLASS_NAME,
+                            method, this.descriptor));
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds a static method named {@code name} whose body is {@code body},
+     * numbering its statements from {@code firstId} when profiling.
+     *
+     * @param name
+     *            the method name
+     * @param body
+     *            the BL statement it executes
+     * @param firstId
+     *            the id of body
+     * @updates this
+     */
+    private void addStatementMethod(String name, StatementNode body,
+            int firstId) {
+        ClassFileWriter.Code code = new ClassFileWriter.Code();
+        this.nextId = firstId;
+        this.statement(code, body);
+        code.op(RETURN);
+        if (this.profiled) {
+            final int maxStack = 6;
+            this.out.addMethod(ClassFileWriter.ACC_PRIVATE_STATIC, name,
+                    PROFILED_DESCRIPTOR, maxStack, 2, code);
+        } else {
+            this.out.addMethod(ClassFileWriter.ACC_PRIVATE_STATIC, name,
+                    INSTRUCTION_DESCRIPTOR, 1, 1, code);
+        }
+    }
+
+    /**
+     * Returns the class file for a program named {@code name} with the given
+     * instructions and body: a {@code CompiledProgram} if {@code profile} is
+     * null, or else a {@code ProfiledCode} counting statements by their ids
+     * in profile.
+     *
+     * @param name
+     *            the program name
+     * @param instructions
+     *            the instruction bodies, by name
+     * @param body
+     *            the program body
+     * @param profile
+     *            the profile numbering the statements, or null
+     * @return the class file
+     */
+    private static byte[] generate(String name,
+            java.util.Map<String, StatementNode> instructions,
+            StatementNode body, ProgramProfile profile) {
+        ProgramCompiler compiler = new ProgramCompiler(instructions.keySet(),
+                profile != null);
+        ClassFileWriter out = compiler.out;
+
+        ClassFileWriter.Code init = new ClassFileWriter.Code();
+        init.op(ALOAD_0);
+        init.op(INVOKESPECIAL,
+                out.methodRef("java/lang/Object", "<init>", "()V"));
+        init.op(RETURN);
+        out.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1,
+                init);
+
+        ClassFileWriter.Code nameCode = new ClassFileWriter.Code();
+        nameCode.op(LDC_W, out.string(name));
+        nameCode.op(ARETURN);
+        out.addMethod(ClassFileWriter.ACC_PUBLIC_FINAL, "name",
+                "()Ljava/lang/String;", 1, 1, nameCode);
+
+        ClassFileWriter.Code run = new ClassFileWriter.Code();
+        run.op(ALOAD_1);
+        if (profile != null) {
+            run.op(ALOAD_2);
+        }
+        run.op(INVOKESTATIC,
+                out.methodRef(CLASS_NAME, BODY_METHOD, compiler.descriptor));
+        run.op(RETURN);
+        if (profile != null) {
+            final int maxLocals = 3;
+            out.addMethod(ClassFileWriter.ACC_PUBLIC_FINAL, "run",
+                    PROFILED_DESCRIPTOR, 2, maxLocals, run);
+            compiler.addStatementMethod(BODY_METHOD, body,
+                    profile.bodyStart());
+        } else {
+            out.addMethod(ClassFileWriter.ACC_PUBLIC_FINAL, "run",
+                    INSTRUCTION_DESCRIPTOR, 1, 2, run);
+            compiler.addStatementMethod(BODY_METHOD, body, 0);
+        }
+        for (String instruction : instructions.keySet()) {
+            int firstId = 0;
+            if (profile != null) {
+                firstId = profile.instructionStart(instruction);
+            }
+            compiler.addStatementMethod(compiler.methods.get(instruction),
+                    instructions.get(instruction), firstId);
+        }
+        return out.toBytes();
+    }
+
+    /**
+     * Defines {@code bytes} as a new hidden class and returns an instance of
+     * it.
+     *
+     * @param bytes
+     *            the class file
+     * @param name
+     *            the program name, for error messages
+     * @return the new instance
+     */
+    private static Object define(byte[] bytes, String name) {
+        try {
+            Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            return hidden.findConstructor(hidden.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(
+                    "Cannot define class for program " + name, e);
+        }
+    }
+
+    /**
+     * A compiled program that counts statements into a stripe of a profile
+     * claimed for each run.
+     */
+    private static final class Profiled implements CompiledProgram {
+
+        /**
+         * The generated code.
+         */
+        private final ProfiledCode code;
+
+        /**
+         * The profile counted into.
+         */
+        private final ProgramProfile profile;
+
+        /**
+         * Constructor.
+         *
+         * @param code
+         *            the generated code
+         * @param profile
+         *            the profile counted into
+         */
+        Profiled(ProfiledCode code, ProgramProfile profile) {
+            this.code = code;
+            this.profile = profile;
+        }
+
+        @Override
+        public String name() {
+            return this.profile.name();
+        }
+
+        @Override
+        public void run(CreatureActions actions) {
+            long[] counts = this.profile.claim();
+            try {
+                this.code.run(actions, counts);
+            } finally {
+                this.profile.release(counts);
+            }
+        }
+
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the class file that {@code compile} would define for
+     * {@code p}.
+     *
+     * @param p
+     *            the program
+     * @return the class file
+     * @requires [every instruction p calls is primitive or in p.context]
+     */
+    public static byte[] classFile(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        java.util.Map<String, StatementNode> instructions = StatementNode
+                .contextOf(p);
+        StatementNode main = StatementNode.bodyOf(p);
+
+        try {
+            return generate(p.name(), instructions, main, null);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException(
+                    "Program " + p.name() + " is too large to compile", e);
+        }
+    }
+
+    /**
+     * Compiles {@code p} to a new hidden class and returns an instance of it.
+     *
+     * @param p
+     *            the program
+     * @return the compiled program
+     * @requires [every instruction p calls is primitive or in p.context]
+     * @ensures <pre>
+     * [compile.run(actions) makes the same calls on actions, in the same
+     *  order, as executing the body of p]
+     * </pre>
+     */
+    public static CompiledProgram compile(Program p) {
+        return (CompiledProgram) define(classFile(p), p.name());
+    }
+
+    /**
+     * Compiles the program of {@code profile} to a new hidden class that
+     * counts each statement it executes in {@code profile}, and returns an
+     * instance of it.
+     *
+     * @param profile
+     *            the profile of the program to compile
+     * @return the compiled program
+     * @requires <pre>
+     * [every instruction the program calls is primitive or in its context]
+     * </pre>
+     * @ensures <pre>
+     * [compile.run(actions) makes the same calls on actions as the program
+     *  compiled without a profile, and adds one to the count in profile of
+     *  every statement it executes]
+     * </pre>
+     */
+    public static CompiledProgram compile(ProgramProfile profile) {
+        assert profile != null : "Violation of: profile is not null";
+
+        byte[] bytes;
+        try {
+            bytes = generate(profile.name(), profile.instructions(),
+                    profile.body(), profile);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("Program " + profile.name()
+                    + " is too large to compile", e);
+        }
+        ProfiledCode code = (ProfiledCode) define(bytes, profile.name());
+        return new Profiled(code, profile);
+    }
+
+}
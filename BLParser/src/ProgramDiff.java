@@ -0,0 +1,578 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import components.map.Map;
+import components.program.Program;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement.Kind;
+import components.utilities.Tokenizer;
+
+/**
+ * Structural difference between two parsed BL programs. Instructions are
+ * matched by name, and statement trees are compared through the 64-bit
+ * structural hashes and sizes of {@code StatementNode} snapshots, so
+ * unchanged instructions and unchanged subtrees are skipped in O(1) each,
+ * without walking them. Two different subtrees with the same hash and size
+ * would be taken as unchanged; with 64-bit hashes that is vanishingly
+ * unlikely, and the cost would be a missed edit, not a wrong one.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramDiff {
+
+    /**
+     * A single statement-level change.
+     */
+    public static final class Edit {
+
+        /**
+         * Whether a statement was inserted or deleted.
+         */
+        public enum Type {
+            /**
+             * The statement is only in the new program.
+             */
+            INSERT,
+            /**
+             * The statement is only in the old program.
+             */
+            DELETE
+        }
+
+        /**
+         * Whether this is an insertion or deletion.
+         */
+        private final Type type;
+
+        /**
+         * Location of the statement, e.g. {@code 3.else.0}.
+         */
+        private final String path;
+
+        /**
+         * The inserted or deleted statement.
+         */
+        private final StatementNode statement;
+
+        /**
+         * Constructor from the parts of an edit.
+         *
+         * @param type
+         *            insertion or deletion
+         * @param path
+         *            location of the statement
+         * @param statement
+         *            the statement
+         */
+        Edit(Type type, String path, StatementNode statement) {
+            this.type = type;
+            this.path = path;
+            this.statement = statement;
+        }
+
+        /**
+         * Returns whether this is an insertion or deletion.
+         *
+         * @return the type
+         */
+        public Type type() {
+            return this.type;
+        }
+
+        /**
+         * Returns the location of the statement: indices into blocks,
+         * separated by dots, with {@code then}, {@code else}, or {@code do}
+         * naming the block of an IF, IF_ELSE, or WHILE.
+         *
+         * @return the path
+         */
+        public String path() {
+            return this.path;
+        }
+
+        /**
+         * Returns the inserted or deleted statement.
+         *
+         * @return the statement
+         */
+        public StatementNode statement() {
+            return this.statement;
+        }
+
+        @Override
+        public String toString() {
+            String first = this.statement.toString().trim();
+            int eol = first.indexOf('\n');
+            if (eol >= 0) {
+                first = first.substring(0, eol) + " ...";
+            }
+            return (this.type == Type.INSERT ? "+ " : "- ") + this.path + ": "
+                    + first;
+        }
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Largest product of block lengths aligned with the quadratic LCS; larger
+     * changed regions are reported as deleted and reinserted.
+     */
+    private static final long MAX_LCS_CELLS = 1L << 22;
+
+    /**
+     * Program names before and after.
+     */
+    private final String oldName, newName;
+
+    /**
+     * Names of instructions only in the new program, sorted.
+     */
+    private final List<String> added;
+
+    /**
+     * Names of instructions only in the old program, sorted.
+     */
+    private final List<String> removed;
+
+    /**
+     * Names of instructions in both programs whose bodies differ, sorted.
+     */
+    private final List<String> modified;
+
+    /**
+     * Statement edits for each modified instruction.
+     */
+    private final HashMap<String, List<Edit>> instructionEdits;
+
+    /**
+     * Statement edits to the BEGIN body.
+     */
+    private final List<Edit> bodyEdits;
+
+    /**
+     * Returns the path of child {@code i} under {@code path}.
+     *
+     * @param path
+     *            the path of the parent, or "" at the top
+     * @param i
+     *            the child label
+     * @return the child path
+     */
+    private static String childPath(String path, String i) {
+        return path.isEmpty() ? i : path + "." + i;
+    }
+
+    /**
+     * Appends to {@code edits} the differences between two non-BLOCK
+     * statements {@code a} and {@code b} that have the same label, recursing
+     * into their blocks.
+     *
+     * @param path
+     *            the location of a and b
+     * @param a
+     *            the old statement
+     * @param b
+     *            the new statement
+     * @param edits
+     *            the edits found so far
+     * @updates edits
+     * @requires a.sameLabel(b) and a.kind() != BLOCK
+     */
+    private static void diffCompound(String path, StatementNode a,
+            StatementNode b, List<Edit> edits) {
+        if (a.kind() == Kind.IF_ELSE) {
+            diffBlock(childPath(path, "then"), a.child(0), b.child(0), edits);
+            diffBlock(childPath(path, "else"), a.child(1), b.child(1), edits);
+        } else if (a.kind() == Kind.IF) {
+            diffBlock(childPath(path, "then"), a.child(0), b.child(0), edits);
+        } else if (a.kind() == Kind.WHILE) {
+            diffBlock(childPath(path, "do"), a.child(0), b.child(0), edits);
+        }
+    }
+
+    /**
+     * Appends to {@code edits} the differences between old positions
+     * {@code [aLo, aHi)} of BLOCK {@code a} and new positions
+     * {@code [bLo, bHi)} of BLOCK {@code b}, none of which were matched. A
+     * statement is recursed into when the two ranges pair it with a
+     * statement of the same label; otherwise it is deleted or inserted.
+     *
+     * @param path
+     *            the location of the blocks
+     * @param a
+     *            the old block
+     * @param aLo
+     *            first unmatched old position
+     * @param aHi
+     *            end of the unmatched old positions
+     * @param b
+     *            the new block
+     * @param bLo
+     *            first unmatched new position
+     * @param bHi
+     *            end of the unmatched new positions
+     * @param edits
+     *            the edits found so far
+     * @updates edits
+     */
+    private static void diffGap(String path, StatementNode a, int aLo,
+            int aHi, StatementNode b, int bLo, int bHi, List<Edit> edits) {
+        int i = aLo, j = bLo;
+        while (i < aHi && j < bHi && a.child(i).kind() != Kind.CALL
+                && a.child(i).sameLabel(b.child(j))) {
+            diffCompound(childPath(path, Integer.toString(j)), a.child(i),
+                    b.child(j), edits);
+            i++;
+            j++;
+        }
+        for (; i < aHi; i++) {
+            edits.add(new Edit(Edit.Type.DELETE,
+                    childPath(path, Integer.toString(i)), a.child(i)));
+        }
+        for (; j < bHi; j++) {
+            edits.add(new Edit(Edit.Type.INSERT,
+                    childPath(path, Integer.toString(j)), b.child(j)));
+        }
+    }
+
+    /**
+     * Reports whether {@code a} and {@code b} are taken to be the same
+     * subtree: their structural hashes and sizes match.
+     *
+     * @param a
+     *            the old subtree
+     * @param b
+     *            the new subtree
+     * @return true iff a and b have the same structural hash and size
+     */
+    private static boolean unchanged(StatementNode a, StatementNode b) {
+        return a.structuralHash() == b.structuralHash()
+                && a.size() == b.size();
+    }
+
+    /**
+     * Appends to {@code edits} the differences between BLOCKs {@code a} and
+     * {@code b}. Equal blocks cost O(1); otherwise the common prefix and
+     * suffix are skipped by hash and the rest is aligned by
+     * {@code diffAligned} unless it is too large.
+     *
+     * @param path
+     *            the location of the blocks
+     * @param a
+     *            the old block
+     * @param b
+     *            the new block
+     * @param edits
+     *            the edits found so far
+     * @updates edits
+     * @requires a and b are BLOCKs
+     */
+    private static void diffBlock(String path, StatementNode a,
+            StatementNode b, List<Edit> edits) {
+        if (!unchanged(a, b)) {
+            int aLo = 0, bLo = 0;
+            int aHi = a.childCount(), bHi = b.childCount();
+            while (aLo < aHi && bLo < bHi
+                    && unchanged(a.child(aLo), b.child(bLo))) {
+                aLo++;
+                bLo++;
+            }
+            while (aHi > aLo && bHi > bLo
+                    && unchanged(a.child(aHi - 1), b.child(bHi - 1))) {
+                aHi--;
+                bHi--;
+            }
+            int n = aHi - aLo, m = bHi - bLo;
+            if (n == 0 || m == 0 || (long) n * m > MAX_LCS_CELLS) {
+                diffGap(path, a, aLo, aHi, b, bLo, bHi, edits);
+            } else {
+                diffAligned(path, a, aLo, aHi, b, bLo, bHi, edits);
+            }
+        }
+    }
+
+    /**
+     * Appends to {@code edits} the differences between old positions
+     * {@code [aLo, aHi)} of BLOCK {@code a} and new positions
+     * {@code [bLo, bHi)} of BLOCK {@code b}, matching statements with equal
+     * hashes by a longest common subsequence and diffing the gaps between
+     * matches.
+     *
+     * @param path
+     *            the location of the blocks
+     * @param a
+     *            the old block
+     * @param aLo
+     *            first old position
+     * @param aHi
+     *            end of the old positions
+     * @param b
+     *            the new block
+     * @param bLo
+     *            first new position
+     * @param bHi
+     *            end of the new positions
+     * @param edits
+     *            the edits found so far
+     * @updates edits
+     */
+    private static void diffAligned(String path, StatementNode a, int aLo,
+            int aHi, StatementNode b, int bLo, int bHi, List<Edit> edits) {
+        int n = aHi - aLo, m = bHi - bLo;
+
+        //lcs[i][j] = LCS length of a[aLo + i, aHi) and b[bLo + j, bHi)
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            StatementNode ai = a.child(aLo + i);
+            for (int j = m - 1; j >= 0; j--) {
+                if (unchanged(ai, b.child(bLo + j))) {
+                    lcs[i][j] = lcs[i + 1][j + 1] + 1;
+                } else {
+                    lcs[i][j] = Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+                }
+            }
+        }
+        int i = 0, j = 0, gapI = 0, gapJ = 0;
+        while (i < n && j < m) {
+            if (unchanged(a.child(aLo + i), b.child(bLo + j))) {
+                diffGap(path, a, aLo + gapI, aLo + i, b, bLo + gapJ, bLo + j,
+                        edits);
+                i++;
+                j++;
+                gapI = i;
+                gapJ = j;
+            } else if (lcs[i + 1][j] >= lcs[i][j + 1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        diffGap(path, a, aLo + gapI, aHi, b, bLo + gapJ, bHi, edits);
+    }
+
+    /**
+     * Constructor; computes the difference from {@code before} to
+     * {@code after}.
+     *
+     * @param before
+     *            the old program
+     * @param after
+     *            the new program
+     */
+    private ProgramDiff(Program before, Program after) {
+        this.oldName = before.name();
+        this.newName = after.name();
+        this.added = new ArrayList<>();
+        this.removed = new ArrayList<>();
+        this.modified = new ArrayList<>();
+        this.instructionEdits = new HashMap<>();
+        this.bodyEdits = new ArrayList<>();
+
+        java.util.Map<String, StatementNode> oldInstructions = StatementNode
+                .contextOf(before);
+        java.util.Map<String, StatementNode> newInstructions = StatementNode
+                .contextOf(after);
+        for (java.util.Map.Entry<String, StatementNode> e : oldInstructions
+                .entrySet()) {
+            StatementNode newBody = newInstructions.get(e.getKey());
+            if (newBody == null) {
+                this.removed.add(e.getKey());
+            } else if (!unchanged(e.getValue(), newBody)) {
+                List<Edit> edits = new ArrayList<>();
+                diffBlock("", e.getValue(), newBody, edits);
+                this.modified.add(e.getKey());
+                this.instructionEdits.put(e.getKey(), edits);
+            }
+        }
+        for (String name : newInstructions.keySet()) {
+            if (!oldInstructions.containsKey(name)) {
+                this.added.add(name);
+            }
+        }
+        Collections.sort(this.added);
+        Collections.sort(this.removed);
+        Collections.sort(this.modified);
+
+        StatementNode oldBody = StatementNode.bodyOf(before);
+        StatementNode newBody = StatementNode.bodyOf(after);
+        if (!unchanged(oldBody, newBody)) {
+            diffBlock("", oldBody, newBody, this.bodyEdits);
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the structural difference from {@code before} to
+     * {@code after}. Neither program is changed.
+     *
+     * @param before
+     *            the old program
+     * @param after
+     *            the new program
+     * @return the difference
+     */
+    public static ProgramDiff compare(Program before, Program after) {
+        assert before != null : "Violation of: before is not null";
+        assert after != null : "Violation of: after is not null";
+        return new ProgramDiff(before, after);
+    }
+
+    /**
+     * Reports whether the programs differ in any way.
+     *
+     * @return true iff the programs are identical
+     */
+    public boolean isEmpty() {
+        return !this.nameChanged() && this.added.isEmpty()
+                && this.removed.isEmpty() && this.modified.isEmpty()
+                && this.bodyEdits.isEmpty();
+    }
+
+    /**
+     * Reports whether the program name changed.
+     *
+     * @return true iff the names differ
+     */
+    public boolean nameChanged() {
+        return !this.oldName.equals(this.newName);
+    }
+
+    /**
+     * Returns the names of instructions only in the new program, sorted.
+     *
+     * @return the added instructions
+     */
+    public List<String> addedInstructions() {
+        return Collections.unmodifiableList(this.added);
+    }
+
+    /**
+     * Returns the names of instructions only in the old program, sorted.
+     *
+     * @return the removed instructions
+     */
+    public List<String> removedInstructions() {
+        return Collections.unmodifiableList(this.removed);
+    }
+
+    /**
+     * Returns the names of instructions whose bodies changed, sorted.
+     *
+     * @return the modified instructions
+     */
+    public List<String> modifiedInstructions() {
+        return Collections.unmodifiableList(this.modified);
+    }
+
+    /**
+     * Returns the statement edits to the modified instruction {@code name}.
+     *
+     * @param name
+     *            the instruction name
+     * @return the edits to its body
+     * @requires name is in modifiedInstructions()
+     */
+    public List<Edit> instructionEdits(String name) {
+        assert this.instructionEdits.containsKey(name) : ""
+                + "Violation of: name is in modifiedInstructions()";
+        return Collections.unmodifiableList(this.instructionEdits.get(name));
+    }
+
+    /**
+     * Returns the statement edits to the BEGIN body.
+     *
+     * @return the edits to the body
+     */
+    public List<Edit> bodyEdits() {
+        return Collections.unmodifiableList(this.bodyEdits);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (this.nameChanged()) {
+            text.append("~ PROGRAM ").append(this.oldName).append(" -> ")
+                    .append(this.newName).append('\n');
+        }
+        for (String name : this.removed) {
+            text.append("- INSTRUCTION ").append(name).append('\n');
+        }
+        for (String name : this.added) {
+            text.append("+ INSTRUCTION ").append(name).append('\n');
+        }
+        for (String name : this.modified) {
+            text.append("~ INSTRUCTION ").append(name).append('\n');
+            for (Edit e : this.instructionEdits.get(name)) {
+                text.append("    ").append(e).append('\n');
+            }
+        }
+        if (!this.bodyEdits.isEmpty()) {
+            text.append("~ BEGIN\n");
+            for (Edit e : this.bodyEdits) {
+                text.append("    ").append(e).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file names
+         */
+        out.print("Enter old BL program file name: ");
+        String oldFile = in.nextLine();
+        out.print("Enter new BL program file name: ");
+        String newFile = in.nextLine();
+        /*
+         * Parse both programs
+         */
+        Program before = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(oldFile);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        before.parse(tokens);
+        Program after = new Program1Parse1();
+        file = new SimpleReader1L(newFile);
+        tokens = Tokenizer.tokens(file);
+        file.close();
+        after.parse(tokens);
+        /*
+         * Report the differences
+         */
+        ProgramDiff diff = compare(before, after);
+        if (diff.isEmpty()) {
+            out.println("*** Programs are identical ***");
+        } else {
+            out.print(diff.toString());
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,497 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import components.statement.Statement.Condition;
+import components.utilities.Reporter;
+
+/**
+ * Event-based BL parser: validates the same grammar as {@code Program1Parse1},
+ * including that END IF and END WHILE close the statements they follow,
+ * except that it does not accept USES clauses. Instead of building
+ * {@code Statement}s, it reports what it reads to a
+ * {@code ProgramHandler}. Tokens are recognized in place in the source text,
+ * keywords and conditions are matched against a fixed table, and names are
+ * interned in a symbol table kept by the parser, so once a parser has seen a
+ * name, reading it again allocates nothing. The table is dropped at the start
+ * of a parse once it holds more than {@code MAX_RETAINED_SYMBOLS} names, so a
+ * long-lived parser does not grow without bound. Nesting is tracked on an int
+ * stack rather than by recursion.
+ *
+ * <p>
+ * A parser may be reused for any number of programs, but not by several
+ * threads at once.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramEventParser {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Keywords, in token-kind order, followed by the condition strings in
+     * {@code Condition} order.
+     */
+    private static final String[] WORDS = { "PROGRAM", "IS", "INSTRUCTION",
+        "BEGIN", "END", "IF", "THEN", "ELSE", "WHILE", "DO", "next-is-empty",
+        "next-is-not-empty", "next-is-wall", "next-is-not-wall",
+        "next-is-friend", "next-is-not-friend", "next-is-enemy",
+        "next-is-not-enemy", "random", "true" };
+
+    /**
+     * Token kind of PROGRAM; each keyword's kind is its index in WORDS.
+     */
+    private static final int PROGRAM = 0;
+
+    /**
+     * Token kind of IS.
+     */
+    private static final int IS = 1;
+
+    /**
+     * Token kind of INSTRUCTION.
+     */
+    private static final int INSTRUCTION = 2;
+
+    /**
+     * Token kind of BEGIN.
+     */
+    private static final int BEGIN = 3;
+
+    /**
+     * Token kind of END.
+     */
+    private static final int END = 4;
+
+    /**
+     * Token kind of IF.
+     */
+    private static final int IF = 5;
+
+    /**
+     * Token kind of THEN.
+     */
+    private static final int THEN = 6;
+
+    /**
+     * Token kind of ELSE.
+     */
+    private static final int ELSE = 7;
+
+    /**
+     * Token kind of WHILE.
+     */
+    private static final int WHILE = 8;
+
+    /**
+     * Token kind of DO.
+     */
+    private static final int DO = 9;
+
+    /**
+     * Token kind of a condition.
+     */
+    private static final int CONDITION = 10;
+
+    /**
+     * Token kind of an identifier.
+     */
+    private static final int IDENTIFIER = 11;
+
+    /**
+     * Token kind at the end of the source.
+     */
+    private static final int END_OF_INPUT = 12;
+
+    /**
+     * Token kind of anything else.
+     */
+    private static final int INVALID = 13;
+
+    /**
+     * Open-statement marker for an IF still in its THEN block.
+     */
+    private static final int OPEN_THEN = 0;
+
+    /**
+     * Open-statement marker for an IF_ELSE in its ELSE block.
+     */
+    private static final int OPEN_ELSE = 1;
+
+    /**
+     * Open-statement marker for a WHILE.
+     */
+    private static final int OPEN_WHILE = 2;
+
+    /**
+     * Keywords and conditions; the id of each is its index in WORDS.
+     */
+    private static final SymbolTable VOCABULARY = new SymbolTable();
+
+    /**
+     * Conditions, by id in VOCABULARY minus CONDITION.
+     */
+    private static final Condition[] CONDITIONS = new Condition[WORDS.length
+            - CONDITION];
+
+    static {
+        for (String word : WORDS) {
+            VOCABULARY.intern(word);
+        }
+        for (int i = 0; i < CONDITIONS.length; i++) {
+            CONDITIONS[i] = Condition.valueOf(
+                    WORDS[CONDITION + i].replace('-', '_').toUpperCase());
+        }
+    }
+
+    /**
+     * Most names kept from one parse to the next.
+     */
+    static final int MAX_RETAINED_SYMBOLS = 4096;
+
+    /**
+     * Initial length of the definedIn and open arrays.
+     */
+    private static final int INITIAL_LENGTH = 16;
+
+    /**
+     * Names read by this parser since the symbol table was last dropped.
+     */
+    private SymbolTable symbols;
+
+    /**
+     * For each name id, the number of the parse in which it was last
+     * defined as an instruction.
+     */
+    private int[] definedIn;
+
+    /**
+     * Number of parses started by this parser.
+     */
+    private int parses;
+
+    /**
+     * Kinds of the IF and WHILE statements currently open, innermost last.
+     */
+    private int[] open;
+
+    /**
+     * Number of statements currently open.
+     */
+    private int depth;
+
+    /**
+     * Source being parsed.
+     */
+    private CharSequence source;
+
+    /**
+     * Start of the current token.
+     */
+    private int start;
+
+    /**
+     * End (exclusive) of the current token.
+     */
+    private int end;
+
+    /**
+     * Kind of the current token.
+     */
+    private int kind;
+
+    /**
+     * Vocabulary id of the current keyword or condition token.
+     */
+    private int word;
+
+    /**
+     * Reports a syntax error at the current token.
+     *
+     * @param expected
+     *            description of what was expected
+     */
+    private void error(String expected) {
+        String found;
+        if (this.kind == END_OF_INPUT) {
+            found = "end of input";
+        } else {
+            found = "\"" + this.source.subSequence(this.start, this.end)
+                    + "\"";
+        }
+        Reporter.fatalErrorToConsole(
+                "Error: expected " + expected + ", found: " + found);
+    }
+
+    /**
+     * Advances to the next token and classifies it.
+     *
+     * @updates start, end, kind, word
+     */
+    private void next() {
+        this.start = SourceTokenizer.skipWhitespace(this.source, this.end);
+        if (this.start == this.source.length()) {
+            this.end = this.start;
+            this.kind = END_OF_INPUT;
+        } else {
+            this.end = SourceTokenizer.tokenEnd(this.source, this.start);
+            char c = this.source.charAt(this.start);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                this.word = VOCABULARY.id(this.source, this.start, this.end);
+                if (this.word == SymbolTable.NO_SYMBOL) {
+                    this.kind = IDENTIFIER;
+                } else if (this.word >= CONDITION) {
+                    this.kind = CONDITION;
+                } else {
+                    this.kind = this.word;
+                }
+            } else {
+                this.kind = INVALID;
+            }
+        }
+    }
+
+    /**
+     * Advances to the next token and reports an error unless it is of kind
+     * {@code expected}.
+     *
+     * @param expected
+     *            the expected token kind
+     * @param description
+     *            description of the expected token, for the error message
+     */
+    private void expect(int expected, String description) {
+        this.next();
+        if (this.kind != expected) {
+            this.error(description);
+        }
+    }
+
+    /**
+     * Advances to the next token, which must be an identifier, and returns
+     * its id.
+     *
+     * @return the id of the identifier
+     */
+    private int expectIdentifier() {
+        this.expect(IDENTIFIER, "an identifier");
+        return this.symbols.intern(this.source, this.start, this.end);
+    }
+
+    /**
+     * Advances to the next token, which must be a condition, and returns it.
+     *
+     * @return the condition
+     */
+    private Condition expectCondition() {
+        this.expect(CONDITION, "a condition");
+        return CONDITIONS[this.word - CONDITION];
+    }
+
+    /**
+     * Records that a statement of kind {@code marker} is open.
+     *
+     * @param marker
+     *            OPEN_THEN or OPEN_WHILE
+     */
+    private void push(int marker) {
+        if (this.depth == this.open.length) {
+            this.open = Arrays.copyOf(this.open, 2 * this.depth);
+        }
+        this.open[this.depth] = marker;
+        this.depth++;
+    }
+
+    /**
+     * Reads a block through the END that closes it, reporting its statements
+     * to {@code handler}.
+     *
+     * @param handler
+     *            the event handler
+     */
+    private void block(ProgramHandler handler) {
+        this.depth = 0;
+        boolean closed = false;
+        while (!closed) {
+            this.next();
+            switch (this.kind) {
+                case IDENTIFIER:
+                    handler.call(this.symbols.name(this.symbols
+                            .intern(this.source, this.start, this.end)));
+                    break;
+                case IF: {
+                    Condition c = this.expectCondition();
+                    this.expect(THEN, "THEN");
+                    this.push(OPEN_THEN);
+                    handler.enterIf(c);
+                    break;
+                }
+                case WHILE: {
+                    Condition c = this.expectCondition();
+                    this.expect(DO, "DO");
+                    this.push(OPEN_WHILE);
+                    handler.enterWhile(c);
+                    break;
+                }
+                case ELSE:
+                    if (this.depth == 0
+                            || this.open[this.depth - 1] != OPEN_THEN) {
+                        this.error("a statement or END");
+                    }
+                    this.open[this.depth - 1] = OPEN_ELSE;
+                    handler.enterElse();
+                    break;
+                case END:
+                    if (this.depth == 0) {
+                        closed = true;
+                    } else {
+                        this.depth--;
+                        if (this.open[this.depth] == OPEN_WHILE) {
+                            this.expect(WHILE, "WHILE");
+                            handler.exitWhile();
+                        } else {
+                            this.expect(IF, "IF");
+                            handler.exitIf();
+                        }
+                    }
+                    break;
+                default:
+                    this.error("a statement or END");
+                    break;
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ProgramEventParser() {
+        this.symbols = new SymbolTable();
+        this.definedIn = new int[INITIAL_LENGTH];
+        this.parses = 0;
+        this.open = new int[INITIAL_LENGTH];
+        this.depth = 0;
+        this.source = null;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Parses the BL program in {@code source}, reporting it to
+     * {@code handler}.
+     *
+     * @param source
+     *            the program text
+     * @param handler
+     *            the event handler
+     * @updates handler
+     * @ensures <pre>
+     * if [source is a syntactically valid BL program] then
+     *  [handler has received the events of the program in source, ending
+     *   with endProgram]
+     * else
+     *  [handler has received the events up to the error]  and
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(CharSequence source, ProgramHandler handler) {
+        assert source != null : "Violation of: source is not null";
+        assert handler != null : "Violation of: handler is not null";
+
+        if (this.symbols.size() > MAX_RETAINED_SYMBOLS) {
+            this.symbols = new SymbolTable();
+            this.definedIn = new int[INITIAL_LENGTH];
+            this.parses = 0;
+        }
+        this.source = source;
+        this.end = 0;
+        this.parses++;
+        try {
+            this.expect(PROGRAM, "PROGRAM");
+            int programId = this.expectIdentifier();
+            handler.startProgram(this.symbols.name(programId));
+            this.expect(IS, "IS");
+
+            this.next();
+            while (this.kind == INSTRUCTION) {
+                int id = this.expectIdentifier();
+                if (id >= this.definedIn.length) {
+                    this.definedIn = Arrays.copyOf(this.definedIn,
+                            Math.max(2 * this.definedIn.length, id + 1));
+                }
+                String name = this.symbols.name(id);
+                if (this.definedIn[id] == this.parses) {
+                    Reporter.fatalErrorToConsole("Error: Instruction \""
+                            + name + "\" cannot be already defined");
+                }
+                this.definedIn[id] = this.parses;
+                handler.startInstruction(name);
+                this.expect(IS, "IS");
+                this.block(handler);
+                if (this.expectIdentifier() != id) {
+                    Reporter.fatalErrorToConsole(
+                            "start identifier does not match end identifier.");
+                }
+                handler.endInstruction(name);
+                this.next();
+            }
+
+            if (this.kind != BEGIN) {
+                this.error("INSTRUCTION or BEGIN");
+            }
+            handler.startBody();
+            this.block(handler);
+            handler.endBody();
+            if (this.expectIdentifier() != programId) {
+                Reporter.fatalErrorToConsole("Error: IDENTIFIER at end of "
+                        + "program must equal program name");
+            }
+            this.expect(END_OF_INPUT, "end of input");
+            handler.endProgram();
+        } finally {
+            this.source = null;
+        }
+    }
+
+    /**
+     * Parses the BL program in {@code file}, reporting it to
+     * {@code handler}.
+     *
+     * @param file
+     *            the file containing the program
+     * @param handler
+     *            the event handler
+     * @throws IOException
+     *             if the file cannot be read
+     * @updates handler
+     * @ensures [as for parse(source, handler), with source the text of file]
+     */
+    public void parse(Path file, ProgramHandler handler)
+            throws IOException {
+        assert file != null : "Violation of: file is not null";
+        this.parse(SpanFormatter.readSource(file), handler);
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Reports the number of names this parser is keeping for later parses.
+     *
+     * @return the number of names in the symbol table
+     */
+    int retainedSymbols() {
+        return this.symbols.size();
+    }
+
+}
@@ -0,0 +1,618 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import components.map.Map;
+import components.program.Program;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+
+/**
+ * Estimate of the heap a parsed {@code Program} retains, by category and by
+ * instruction, for sizing parser and simulation heaps.
+ *
+ * <p>
+ * The estimate walks the program through its kernel methods and prices each
+ * object of the OSU representation with a layout model of a 64-bit JVM with
+ * compressed references: a 12-byte object header, 4-byte references, and
+ * every object rounded up to 8 bytes. Each statement tree node is a tree
+ * object, a {@code StatementLabel}, and a {@code Sequence1L} of children on
+ * a {@code java.util.LinkedList}, with one list node per child; each whole
+ * statement adds a {@code Statement1} wrapper. The context is a
+ * {@code Map1L} on a {@code java.util.HashMap}. Strings are Latin-1 compact
+ * strings. A {@code Program1Parse1} also retains six more fields and its
+ * {@code SymbolTable}, whose arrays are counted; a program it holds in the
+ * shared form of a {@code NodeTable} has its {@code Statement} trees built
+ * by the walk, and is priced as those trees, because the node table itself
+ * is shared between programs. These are the layouts of the kernel classes,
+ * not measurements,
+ * so the numbers are estimates; they are meant for comparing programs and
+ * choosing limits, not for exact accounting.
+ *
+ * <p>
+ * Each distinct string object is counted once, so names the parser shares
+ * between the context and the calls cost nothing extra. A string is charged
+ * to the first thing that refers to it: the program name to the program,
+ * each instruction's name to that instruction, and a called name to the
+ * instruction (or body) that calls it first.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramFootprint {
+
+    /**
+     * The kinds of object the estimate distinguishes.
+     */
+    public enum Category {
+        /**
+         * The {@code Program} object itself.
+         */
+        PROGRAM,
+        /**
+         * Statement wrappers, tree nodes, labels and child sequences.
+         */
+        STATEMENT_NODES,
+        /**
+         * The program name, instruction names and called names.
+         */
+        STRINGS,
+        /**
+         * The context map, its table and its entries.
+         */
+        CONTEXT_MAP,
+        /**
+         * The {@code SymbolTable} a {@code Program1Parse1} keeps, without the
+         * names, which are counted as strings.
+         */
+        SYMBOL_TABLE
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Bytes of an object header.
+     */
+    private static final int HEADER = 12;
+
+    /**
+     * Bytes of an array header.
+     */
+    private static final int ARRAY_HEADER = 16;
+
+    /**
+     * Bytes of a reference.
+     */
+    private static final int REFERENCE = 4;
+
+    /**
+     * Bytes every object size is rounded up to.
+     */
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * Bytes of a {@code Program1}: name, context and body.
+     */
+    private static final long PROGRAM_BYTES = align(HEADER + 3 * REFERENCE);
+
+    /**
+     * Bytes of a {@code Program1Parse1}: a {@code Program1} plus limits,
+     * symbols, node table, shared context, shared body and library path.
+     */
+    private static final long PARSER_PROGRAM_BYTES = align(
+            HEADER + (3 + 6) * REFERENCE);
+
+    /**
+     * Bytes of a {@code SymbolTable} (names, slots, size), without its
+     * arrays.
+     */
+    private static final long SYMBOL_TABLE_BYTES = align(
+            HEADER + 2 * REFERENCE + Integer.BYTES);
+
+    /**
+     * Smallest name array of a {@code SymbolTable}.
+     */
+    private static final int MIN_SYMBOL_NAMES = 32;
+
+    /**
+     * Smallest hash table of a {@code SymbolTable}.
+     */
+    private static final int MIN_SYMBOL_SLOTS = 64;
+
+    /**
+     * Bytes of a {@code Statement1} wrapping a tree.
+     */
+    private static final long STATEMENT_BYTES = align(HEADER + REFERENCE);
+
+    /**
+     * Bytes of one tree node: a tree object with its label and children, the
+     * {@code StatementLabel} (kind, condition, name), the
+     * {@code Sequence1L} and its {@code LinkedList} (size, modCount, first,
+     * last).
+     */
+    private static final long NODE_BYTES = align(HEADER + 2 * REFERENCE)
+            + align(HEADER + 3 * REFERENCE) + align(HEADER + REFERENCE)
+            + align(HEADER + 2 * Integer.BYTES + 2 * REFERENCE);
+
+    /**
+     * Bytes of one {@code LinkedList} node: item, next and previous.
+     */
+    private static final long LIST_NODE_BYTES = align(HEADER + 3 * REFERENCE);
+
+    /**
+     * Bytes of a {@code Map1L} and its {@code HashMap} (table, three cached
+     * views, size, modCount, threshold, load factor), without the table.
+     */
+    private static final long MAP_BYTES = align(HEADER + REFERENCE)
+            + align(HEADER + 4 * REFERENCE + 3 * Integer.BYTES
+                    + Float.BYTES);
+
+    /**
+     * Bytes of one {@code HashMap} entry: hash, key, value and next.
+     */
+    private static final long ENTRY_BYTES = align(
+            HEADER + Integer.BYTES + 3 * REFERENCE);
+
+    /**
+     * Bytes of a {@code String} (hash, value, coder, hashIsZero), without
+     * its bytes.
+     */
+    private static final long STRING_BYTES = align(
+            HEADER + Integer.BYTES + REFERENCE + 2);
+
+    /**
+     * Smallest {@code HashMap} table once the map has an entry.
+     */
+    private static final int MIN_TABLE = 16;
+
+    /**
+     * Programs above the third quartile by more than this many
+     * interquartile ranges are reported as outliers.
+     */
+    private static final int OUTLIER_RANGES = 3;
+
+    /**
+     * The program name.
+     */
+    private final String name;
+
+    /**
+     * Estimated bytes by category.
+     */
+    private final EnumMap<Category, Long> categories;
+
+    /**
+     * Estimated bytes charged to each instruction, in context order.
+     */
+    private final LinkedHashMap<String, Long> instructions;
+
+    /**
+     * Estimated bytes charged to the body.
+     */
+    private final long body;
+
+    /**
+     * Walks one program, adding to the totals as it goes.
+     */
+    private static final class Walk {
+
+        /**
+         * String objects already counted.
+         */
+        private final Set<String> seen = Collections
+                .newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Bytes of statement objects.
+         */
+        private long nodes;
+
+        /**
+         * Bytes of strings.
+         */
+        private long strings;
+
+        /**
+         * Returns the bytes of {@code s} if it has not been counted yet,
+         * and counts it.
+         *
+         * @param s
+         *            the string
+         * @return its bytes, or 0 if already counted
+         */
+        long string(String s) {
+            long bytes = 0;
+            if (this.seen.add(s)) {
+                bytes = stringBytes(s);
+                this.strings += bytes;
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns the bytes of the whole statement {@code s}, with its
+         * wrapper, and of the strings it is the first to refer to.
+         *
+         * @param s
+         *            the statement
+         * @return its bytes
+         */
+        long statement(StatementNode s) {
+            this.nodes += STATEMENT_BYTES;
+            return STATEMENT_BYTES + this.tree(s);
+        }
+
+        /**
+         * Returns the bytes of the tree of {@code s} and of the strings it
+         * is the first to refer to.
+         *
+         * @param s
+         *            the statement
+         * @return its bytes
+         */
+        private long tree(StatementNode s) {
+            long bytes = NODE_BYTES + s.childCount() * LIST_NODE_BYTES;
+            this.nodes += bytes;
+            if (s.kind() == Statement.Kind.CALL) {
+                bytes += this.string(s.name());
+            }
+            for (int i = 0; i < s.childCount(); i++) {
+                bytes += this.tree(s.child(i));
+            }
+            return bytes;
+        }
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            the program name
+     * @param categories
+     *            the bytes by category
+     * @param instructions
+     *            the bytes charged to each instruction
+     * @param body
+     *            the bytes charged to the body
+     */
+    private ProgramFootprint(String name, EnumMap<Category, Long> categories,
+            LinkedHashMap<String, Long> instructions, long body) {
+        this.name = name;
+        this.categories = categories;
+        this.instructions = instructions;
+        this.body = body;
+    }
+
+    /**
+     * Returns {@code n} rounded up to the object alignment.
+     *
+     * @param n
+     *            a size in bytes
+     * @return the aligned size
+     */
+    private static long align(long n) {
+        return (n + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns the value at {@code fraction} of the way through
+     * {@code sorted}, by nearest rank.
+     *
+     * @param sorted
+     *            the values, ascending
+     * @param fraction
+     *            the fraction, in [0, 1]
+     * @return the percentile
+     * @requires |sorted| > 0
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the estimated bytes of a {@code String} equal to {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return its estimated bytes
+     */
+    public static long stringBytes(String s) {
+        return STRING_BYTES + align(ARRAY_HEADER + s.length());
+    }
+
+    /**
+     * Returns the estimated footprint of {@code p}.
+     *
+     * @param p
+     *            the program
+     * @return the footprint of p
+     */
+    public static ProgramFootprint of(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        Walk walk = new Walk();
+        walk.string(p.name());
+
+        java.util.Map<String, StatementNode> bodies = StatementNode
+                .contextOf(p);
+        List<String> keys = new ArrayList<>(bodies.keySet());
+        StatementNode bodyNode = StatementNode.bodyOf(p);
+
+        long table = 0;
+        if (!keys.isEmpty()) {
+            int capacity = MIN_TABLE;
+            final double loadFactor = 0.75;
+            while (keys.size() > capacity * loadFactor) {
+                capacity *= 2;
+            }
+            table = align(ARRAY_HEADER + (long) capacity * REFERENCE);
+        }
+        LinkedHashMap<String, Long> instructions = new LinkedHashMap<>();
+        for (String key : keys) {
+            instructions.put(key, ENTRY_BYTES + walk.string(key));
+        }
+        for (String key : keys) {
+            instructions.put(key, instructions.get(key)
+                    + walk.statement(bodies.get(key)));
+        }
+        long body = walk.statement(bodyNode);
+
+        long program = PROGRAM_BYTES;
+        long symbolTable = 0;
+        if (p instanceof Program1Parse1) {
+            program = PARSER_PROGRAM_BYTES;
+            SymbolTable symbols = ((Program1Parse1) p).symbols();
+            int names = MIN_SYMBOL_NAMES;
+            while (names < symbols.size()) {
+                names *= 2;
+            }
+            int slots = MIN_SYMBOL_SLOTS;
+            while (symbols.size() * 2 > slots) {
+                slots *= 2;
+            }
+            symbolTable = SYMBOL_TABLE_BYTES
+                    + align(ARRAY_HEADER + (long) names * REFERENCE)
+                    + align(ARRAY_HEADER + (long) slots * Integer.BYTES);
+            for (int id = 0; id < symbols.size(); id++) {
+                walk.string(symbols.name(id));
+            }
+        }
+
+        EnumMap<Category, Long> categories = new EnumMap<>(Category.class);
+        categories.put(Category.PROGRAM, program);
+        categories.put(Category.STATEMENT_NODES, walk.nodes);
+        categories.put(Category.STRINGS, walk.strings);
+        categories.put(Category.CONTEXT_MAP,
+                MAP_BYTES + table + keys.size() * ENTRY_BYTES);
+        categories.put(Category.SYMBOL_TABLE, symbolTable);
+        return new ProgramFootprint(p.name(), categories, instructions, body);
+    }
+
+    /**
+     * Returns the program name.
+     *
+     * @return the program name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the estimated bytes in category {@code c}.
+     *
+     * @param c
+     *            the category
+     * @return the estimated bytes
+     */
+    public long bytes(Category c) {
+        return this.categories.get(c);
+    }
+
+    /**
+     * Returns the estimated bytes the program retains in all.
+     *
+     * @return the estimated total bytes
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (long bytes : this.categories.values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the names of the instructions, in context order.
+     *
+     * @return the instruction names, unmodifiable
+     */
+    public Set<String> instructions() {
+        return Collections.unmodifiableSet(this.instructions.keySet());
+    }
+
+    /**
+     * Returns the estimated bytes charged to instruction {@code instr}: its
+     * statement, its context entry, and the strings it refers to first.
+     *
+     * @param instr
+     *            the instruction name
+     * @return the estimated bytes
+     * @requires instr is in instructions()
+     */
+    public long instructionBytes(String instr) {
+        Long bytes = this.instructions.get(instr);
+        assert bytes != null : "Violation of: instr is in instructions()";
+        return bytes;
+    }
+
+    /**
+     * Returns the estimated bytes charged to the body: its statement and the
+     * strings it refers to first.
+     *
+     * @return the estimated bytes
+     */
+    public long bodyBytes() {
+        return this.body;
+    }
+
+    /**
+     * Returns the name of the instruction charged the most bytes, or null if
+     * there are no instructions.
+     *
+     * @return the largest instruction, or null
+     */
+    public String largestInstruction() {
+        String largest = null;
+        for (String instr : this.instructions.keySet()) {
+            if (largest == null || this.instructions
+                    .get(instr) > this.instructions.get(largest)) {
+                largest = instr;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Returns a report of the estimate: the totals by category, then the
+     * body and each instruction, largest first.
+     *
+     * @return the report
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s: %,d bytes%n", this.name,
+                this.totalBytes()));
+        for (Category c : Category.values()) {
+            text.append(String.format("  %-16s %,12d%n",
+                    c.name().toLowerCase().replace('_', ' '), this.bytes(c)));
+        }
+        List<String> names = new ArrayList<>(this.instructions.keySet());
+        names.sort((a, b) -> Long.compare(this.instructions.get(b),
+                this.instructions.get(a)));
+        text.append(String.format("  %-16s %,12d%n", "(body)", this.body));
+        for (String instr : names) {
+            text.append(String.format("  %-16s %,12d%n", instr,
+                    this.instructions.get(instr)));
+        }
+        return text.toString();
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; parses every {@code .bl} file named by, or found under a
+     * directory named by, the command line arguments, and prints the total
+     * by category, the distribution of program sizes, and the outliers. With
+     * a single program, prints its full report instead.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if a directory cannot be listed
+     */
+    public static void main(String[] args) throws IOException {
+        final double median = 0.5, quartile1 = 0.25, quartile3 = 0.75,
+                p90 = 0.9, p99 = 0.99;
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            try (Stream<Path> paths = Files.walk(Paths.get(arg))) {
+                paths.filter(p -> p.toString().endsWith(".bl")).sorted()
+                        .forEach(files::add);
+            }
+        }
+        List<Path> parsed = new ArrayList<>();
+        List<ProgramFootprint> footprints = new ArrayList<>();
+        int failed = 0;
+        for (Path file : files) {
+            try {
+                Program p = new Program1Parse1();
+                p.parse(SourceTokenizer.tokens(SpanFormatter.readSource(file)));
+                footprints.add(of(p));
+                parsed.add(file);
+            } catch (IOException | RuntimeException e) {
+                failed++;
+            }
+        }
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("files:    " + files.size());
+        out.println("invalid:  " + failed);
+        if (footprints.size() == 1) {
+            out.print(footprints.get(0).report());
+        } else if (!footprints.isEmpty()) {
+            int n = footprints.size();
+            out.println(String.format("%-16s %14s %12s", "category",
+                    "total bytes", "mean bytes"));
+            for (Category c : Category.values()) {
+                long total = 0;
+                for (ProgramFootprint f : footprints) {
+                    total += f.bytes(c);
+                }
+                out.println(String.format("%-16s %,14d %,12d",
+                        c.name().toLowerCase().replace('_', ' '), total,
+                        total / n));
+            }
+
+            long[] sizes = new long[n];
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sizes[i] = footprints.get(i).totalBytes();
+                sum += sizes[i];
+            }
+            long[] sorted = sizes.clone();
+            Arrays.sort(sorted);
+            out.println("bytes per program:");
+            out.println(String.format("  %10s %10s %10s %10s %10s %10s",
+                    "min", "median", "p90", "p99", "max", "mean"));
+            out.println(String.format("  %,10d %,10d %,10d %,10d %,10d %,10d",
+                    sorted[0], percentile(sorted, median),
+                    percentile(sorted, p90), percentile(sorted, p99),
+                    sorted[n - 1], sum / n));
+
+            long q1 = percentile(sorted, quartile1);
+            long q3 = percentile(sorted, quartile3);
+            long fence = q3 + OUTLIER_RANGES * (q3 - q1);
+            out.println(String.format("outliers above %,d bytes:", fence));
+            boolean any = false;
+            for (int i = 0; i < n; i++) {
+                if (sizes[i] > fence) {
+                    ProgramFootprint f = footprints.get(i);
+                    String largest = f.largestInstruction();
+                    out.println(String.format("  %,10d  %s  largest: %s",
+                            sizes[i], parsed.get(i),
+                            largest == null
+                                    ? "(body) " + f.bodyBytes()
+                                    : largest + " "
+                                            + f.instructionBytes(largest)));
+                    any = true;
+                }
+            }
+            if (!any) {
+                out.println("  none");
+            }
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,115 @@
+import components.statement.Statement.Condition;
+
+/**
+ * Receives the events of {@code ProgramEventParser} as it reads a BL program,
+ * in source order. Every method does nothing by default, so a handler
+ * overrides only the events it needs.
+ *
+ * <p>
+ * For a valid program the events nest as the program does:
+ * {@code startProgram}, then {@code startInstruction} ...
+ * {@code endInstruction} for each instruction, then {@code startBody} ...
+ * {@code endBody}, then {@code endProgram}. Inside a block, each IF is
+ * {@code enterIf}, its THEN block, optionally {@code enterElse} and the ELSE
+ * block, then {@code exitIf}; each WHILE is {@code enterWhile}, its block,
+ * then {@code exitWhile}; each CALL is {@code call}. Names are canonical
+ * strings from the parser's symbol table, so they may be compared with
+ * {@code ==}.
+ * If the program is invalid, events stop at the error.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public interface ProgramHandler {
+
+    /**
+     * Called at the start of the program.
+     *
+     * @param name
+     *            the program name
+     */
+    default void startProgram(String name) {
+    }
+
+    /**
+     * Called at the start of an INSTRUCTION, before its body.
+     *
+     * @param name
+     *            the instruction name
+     */
+    default void startInstruction(String name) {
+    }
+
+    /**
+     * Called at the end of an INSTRUCTION, after its body.
+     *
+     * @param name
+     *            the instruction name
+     */
+    default void endInstruction(String name) {
+    }
+
+    /**
+     * Called at BEGIN, before the program body.
+     */
+    default void startBody() {
+    }
+
+    /**
+     * Called after the program body.
+     */
+    default void endBody() {
+    }
+
+    /**
+     * Called at the start of an IF or IF_ELSE, before its THEN block.
+     *
+     * @param c
+     *            the condition
+     */
+    default void enterIf(Condition c) {
+    }
+
+    /**
+     * Called at the ELSE of an IF_ELSE, between its two blocks.
+     */
+    default void enterElse() {
+    }
+
+    /**
+     * Called at the END IF of an IF or IF_ELSE.
+     */
+    default void exitIf() {
+    }
+
+    /**
+     * Called at the start of a WHILE, before its block.
+     *
+     * @param c
+     *            the condition
+     */
+    default void enterWhile(Condition c) {
+    }
+
+    /**
+     * Called at the END WHILE of a WHILE.
+     */
+    default void exitWhile() {
+    }
+
+    /**
+     * Called for each CALL.
+     *
+     * @param name
+     *            the name of the instruction called
+     */
+    default void call(String name) {
+    }
+
+    /**
+     * Called after the whole program has been read and found valid.
+     */
+    default void endProgram() {
+    }
+
+}
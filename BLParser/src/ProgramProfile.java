@@ -0,0 +1,591 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import components.map.Map;
+import components.program.Program;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.utilities.Reporter;
+
+/**
+ * Execution counts for a BL program run in profiling mode. Every statement
+ * of the program, blocks included, is numbered in pre-order: the
+ * instructions in context order, then the body. A program compiled with
+ * {@code ProgramCompiler.compile(profile)} adds one to the count of each
+ * statement it executes; a program compiled without a profile has no
+ * counting code at all.
+ *
+ * <p>
+ * Counts are kept in plain {@code long[]} arrays, so counting needs no
+ * boxing, lookups or atomic operations. There is a fixed number of these
+ * stripes, twice the number of processors rounded up to a power of two, so
+ * the profile does not grow with the number of threads that ever run the
+ * program. Each run claims a stripe for itself, starting from one chosen by
+ * a hash of the thread id, and releases it when it ends; a run that finds
+ * every stripe busy counts into an array of its own, which is added to a
+ * shared total when it ends. {@code counts} adds everything together. While
+ * the program is still running, the merged counts may lag slightly behind.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramProfile {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Width of the count column in the report.
+     */
+    private static final int COUNT_WIDTH = 12;
+
+    /**
+     * Name of the program.
+     */
+    private final String name;
+
+    /**
+     * Instruction bodies, by name in context order.
+     */
+    private final java.util.Map<String, StatementNode> instructions;
+
+    /**
+     * The program body.
+     */
+    private final StatementNode body;
+
+    /**
+     * Statement with each id.
+     */
+    private final StatementNode[] statements;
+
+    /**
+     * Id of the body of each instruction, by name.
+     */
+    private final java.util.Map<String, Integer> starts;
+
+    /**
+     * Id of the program body.
+     */
+    private final int bodyStart;
+
+    /**
+     * The count arrays runs claim; the length is a power of 2.
+     */
+    private final long[][] stripes;
+
+    /**
+     * Whether each stripe is claimed by a running program: 1 if so, else 0.
+     */
+    private final AtomicIntegerArray claimed;
+
+    /**
+     * Counts of the runs that found every stripe busy.
+     */
+    private final long[] overflow;
+
+    /**
+     * Numbers {@code s} and its descendants in pre-order from {@code id}.
+     *
+     * @param s
+     *            the statement
+     * @param id
+     *            the id of s
+     * @param ids
+     *            the statements by id so far
+     * @return the id after the last descendant of s
+     * @updates ids
+     */
+    private static int number(StatementNode s, int id,
+            List<StatementNode> ids) {
+        ids.add(s);
+        int next = id + 1;
+        for (int i = 0; i < s.childCount(); i++) {
+            next = number(s.child(i), next, ids);
+        }
+        return next;
+    }
+
+    /**
+     * Returns the number of primitive instructions executed by the
+     * statements with ids in {@code [start, end)}.
+     *
+     * @param counts
+     *            the merged counts
+     * @param start
+     *            the first id
+     * @param end
+     *            the id after the last
+     * @return the number of steps
+     */
+    private long steps(long[] counts, int start, int end) {
+        long steps = 0;
+        for (int id = start; id < end; id++) {
+            StatementNode s = this.statements[id];
+            if (s.kind() == Statement.Kind.CALL
+                    && !this.instructions.containsKey(s.name())) {
+                steps += counts[id];
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Returns the id after the last statement of the instruction or body
+     * starting at {@code start}.
+     *
+     * @param start
+     *            the id of an instruction body or the program body
+     * @return the end of its id range
+     */
+    private int end(int start) {
+        return start + this.statements[start].size();
+    }
+
+    /**
+     * Appends a report line: {@code count}, or blanks if it is negative,
+     * then {@code offset} spaces and {@code source}.
+     *
+     * @param text
+     *            the report being built
+     * @param count
+     *            the count, or -1 for none
+     * @param offset
+     *            the indentation of source
+     * @param source
+     *            the source text of the line
+     * @updates text
+     */
+    private static void line(StringBuilder text, long count, int offset,
+            String source) {
+        String column = "";
+        if (count >= 0) {
+            column = Long.toString(count);
+        }
+        for (int i = column.length(); i < COUNT_WIDTH; i++) {
+            text.append(' ');
+        }
+        text.append(column).append(" |");
+        if (!source.isEmpty()) {
+            for (int i = 0; i <= offset; i++) {
+                text.append(' ');
+            }
+            text.append(source);
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Appends the annotated text of the statement with id {@code id} and
+     * returns the id after its last descendant.
+     *
+     * @param text
+     *            the report being built
+     * @param counts
+     *            the merged counts
+     * @param id
+     *            the statement id
+     * @param offset
+     *            the indentation of the statement
+     * @return the id after the statement
+     * @updates text
+     */
+    private int appendStatement(StringBuilder text, long[] counts, int id,
+            int offset) {
+        StatementNode s = this.statements[id];
+        int next = id + 1;
+        int inner = offset + ProgramText.INDENT_SIZE;
+        switch (s.kind()) {
+            case BLOCK:
+                for (int i = 0; i < s.childCount(); i++) {
+                    next = this.appendStatement(text, counts, next, offset);
+                }
+                break;
+            case IF:
+                line(text, counts[id], offset, "IF "
+                        + ProgramText.conditionString(s.condition())
+                        + " THEN");
+                next = this.appendStatement(text, counts, next, inner);
+                line(text, -1, offset, "END IF");
+                break;
+            case IF_ELSE:
+                line(text, counts[id], offset, "IF "
+                        + ProgramText.conditionString(s.condition())
+                        + " THEN");
+                next = this.appendStatement(text, counts, next, inner);
+                line(text, counts[next], offset, "ELSE");
+                next = this.appendStatement(text, counts, next, inner);
+                line(text, -1, offset, "END IF");
+                break;
+            case WHILE:
+                line(text, counts[id], offset, "WHILE "
+                        + ProgramText.conditionString(s.condition())
+                        + " DO");
+                next = this.appendStatement(text, counts, next, inner);
+                line(text, -1, offset, "END WHILE");
+                break;
+            default:
+                line(text, counts[id], offset, s.name());
+                break;
+        }
+        return next;
+    }
+
+    /**
+     * Appends one row of the hot-spot table.
+     *
+     * @param text
+     *            the report being built
+     * @param label
+     *            the instruction name or BEGIN
+     * @param calls
+     *            the number of times it was entered
+     * @param steps
+     *            the primitive instructions it executed
+     * @param total
+     *            the primitive instructions executed in all
+     * @updates text
+     */
+    private static void hotSpot(StringBuilder text, String label, long calls,
+            long steps, long total) {
+        final double percent = 100.0;
+        double share = 0;
+        if (total > 0) {
+            share = percent * steps / total;
+        }
+        text.append(String.format("%12d %12d %6.1f%%  %s%n", calls, steps,
+                share, label));
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor; numbers the statements of {@code p}, with every count
+     * zero.
+     *
+     * @param p
+     *            the program to profile
+     */
+    public ProgramProfile(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        this.name = p.name();
+        this.instructions = StatementNode.contextOf(p);
+        this.body = StatementNode.bodyOf(p);
+
+        List<StatementNode> ids = new ArrayList<>();
+        this.starts = new HashMap<>();
+        int next = 0;
+        for (String instruction : this.instructions.keySet()) {
+            this.starts.put(instruction, next);
+            next = number(this.instructions.get(instruction), next, ids);
+        }
+        this.bodyStart = next;
+        number(this.body, next, ids);
+        this.statements = ids.toArray(new StatementNode[0]);
+
+        int stripeCount = Integer.highestOneBit(
+                2 * Runtime.getRuntime().availableProcessors() - 1) * 2;
+        this.stripes = new long[stripeCount][this.statements.length];
+        this.claimed = new AtomicIntegerArray(stripeCount);
+        this.overflow = new long[this.statements.length];
+    }
+
+    /*
+     * Package-private members used by ProgramCompiler ------------------------
+     */
+
+    /**
+     * Returns the instruction bodies, by name in context order.
+     *
+     * @return the instruction bodies
+     */
+    java.util.Map<String, StatementNode> instructions() {
+        return this.instructions;
+    }
+
+    /**
+     * Returns the program body.
+     *
+     * @return the body
+     */
+    StatementNode body() {
+        return this.body;
+    }
+
+    /**
+     * Returns the id of the body of instruction {@code instruction}.
+     *
+     * @param instruction
+     *            the instruction name
+     * @return the id of its body
+     * @requires instruction is in instructions()
+     */
+    int instructionStart(String instruction) {
+        return this.starts.get(instruction);
+    }
+
+    /**
+     * Returns the id of the program body.
+     *
+     * @return the id of the body
+     */
+    int bodyStart() {
+        return this.bodyStart;
+    }
+
+    /**
+     * Claims a count array for one run on the current thread: a free stripe,
+     * probing from the one the thread id hashes to, or a new array if every
+     * stripe is busy. The caller must pass it to {@code release} when the run
+     * ends.
+     *
+     * @return the counts for this run
+     */
+    long[] claim() {
+        int mask = this.stripes.length - 1;
+        long id = Thread.currentThread().getId();
+        int home = (int) (id ^ (id >>> Integer.SIZE)) * 0x9E3779B9;
+        long[] counts = null;
+        for (int i = 0; counts == null && i < this.stripes.length; i++) {
+            int slot = (home + i) & mask;
+            if (this.claimed.compareAndSet(slot, 0, 1)) {
+                counts = this.stripes[slot];
+            }
+        }
+        if (counts == null) {
+            counts = new long[this.statements.length];
+        }
+        return counts;
+    }
+
+    /**
+     * Releases {@code counts}, claimed by {@code claim}, at the end of a
+     * run.
+     *
+     * @param counts
+     *            the counts of the run
+     */
+    void release(long[] counts) {
+        int slot = 0;
+        while (slot < this.stripes.length && this.stripes[slot] != counts) {
+            slot++;
+        }
+        if (slot < this.stripes.length) {
+            this.claimed.set(slot, 0);
+        } else {
+            synchronized (this.overflow) {
+                for (int id = 0; id < counts.length; id++) {
+                    this.overflow[id] += counts[id];
+                }
+            }
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the name of the profiled program.
+     *
+     * @return the program name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of statements, blocks included.
+     *
+     * @return the number of statement ids
+     */
+    public int size() {
+        return this.statements.length;
+    }
+
+    /**
+     * Returns the execution count of every statement, by id, summed over
+     * all threads.
+     *
+     * @return the merged counts
+     */
+    public long[] counts() {
+        long[] counts;
+        synchronized (this.overflow) {
+            counts = this.overflow.clone();
+        }
+        for (long[] counted : this.stripes) {
+            for (int id = 0; id < counts.length; id++) {
+                counts[id] += counted[id];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of times instruction {@code instruction} was
+     * called.
+     *
+     * @param instruction
+     *            the instruction name
+     * @return the number of calls
+     * @requires [instruction is in the context of the program]
+     */
+    public long calls(String instruction) {
+        assert this.starts.containsKey(instruction) : ""
+                + "Violation of: instruction is in the context";
+        return this.counts()[this.starts.get(instruction)];
+    }
+
+    /**
+     * Returns the number of primitive instructions executed directly by the
+     * body of instruction {@code instruction}, not counting those executed
+     * by the instructions it calls.
+     *
+     * @param instruction
+     *            the instruction name
+     * @return the number of steps
+     * @requires [instruction is in the context of the program]
+     */
+    public long steps(String instruction) {
+        assert this.starts.containsKey(instruction) : ""
+                + "Violation of: instruction is in the context";
+        int start = this.starts.get(instruction);
+        return this.steps(this.counts(), start, this.end(start));
+    }
+
+    /**
+     * Returns the number of primitive instructions executed directly by the
+     * program body.
+     *
+     * @return the number of steps
+     */
+    public long bodySteps() {
+        return this.steps(this.counts(), this.bodyStart,
+                this.end(this.bodyStart));
+    }
+
+    /**
+     * Returns the number of primitive instructions executed in all.
+     *
+     * @return the number of steps
+     */
+    public long totalSteps() {
+        return this.steps(this.counts(), 0, this.statements.length);
+    }
+
+    /**
+     * Returns the report: a table of the instructions and the body by the
+     * primitive instructions each executed, hottest first, followed by the
+     * pretty-printed program with the execution count of each statement in
+     * the margin. The count beside an INSTRUCTION or BEGIN line is the
+     * number of times it was entered, and beside ELSE the number of times
+     * the ELSE block was taken.
+     *
+     * @return the report
+     */
+    public String report() {
+        long[] counts = this.counts();
+        List<String> labels = new ArrayList<>(this.instructions.keySet());
+        labels.add("BEGIN");
+        int[] order = new int[labels.size()];
+        long[] steps = new long[labels.size()];
+        long total = 0;
+        for (int i = 0; i < order.length; i++) {
+            int start = this.bodyStart;
+            if (i < this.instructions.size()) {
+                start = this.starts.get(labels.get(i));
+            }
+            order[i] = start;
+            steps[i] = this.steps(counts, start, this.end(start));
+            total += steps[i];
+        }
+        Integer[] rank = new Integer[order.length];
+        for (int i = 0; i < rank.length; i++) {
+            rank[i] = i;
+        }
+        Arrays.sort(rank, (a, b) -> Long.compare(steps[b], steps[a]));
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%12s %12s %7s  %s%n", "calls", "steps",
+                "share", "instruction"));
+        for (int i : rank) {
+            hotSpot(text, labels.get(i), counts[order[i]], steps[i], total);
+        }
+        text.append('\n');
+
+        line(text, -1, 0, "PROGRAM " + this.name + " IS");
+        line(text, -1, 0, "");
+        for (String instruction : this.instructions.keySet()) {
+            int start = this.starts.get(instruction);
+            line(text, counts[start], ProgramText.INSTRUCTION_INDENT,
+                    "INSTRUCTION " + instruction + " IS");
+            this.appendStatement(text, counts, start,
+                    ProgramText.INDENT_SIZE);
+            line(text, -1, ProgramText.INSTRUCTION_INDENT,
+                    "END " + instruction);
+            line(text, -1, 0, "");
+        }
+        line(text, counts[this.bodyStart], 0, "BEGIN");
+        this.appendStatement(text, counts, this.bodyStart,
+                ProgramText.INDENT_SIZE);
+        line(text, -1, 0, "END " + this.name);
+        return text.toString();
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; runs the program in the file named by the first argument
+     * for the number of primitive instructions given by the second (default
+     * one million) on each of the number of threads given by the third
+     * (default one), then prints the report.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        Reporter.assertElseFatalError(args.length >= 1,
+                "Usage: ProgramProfile file [steps [threads]]");
+        final long defaultSteps = 1_000_000;
+        long steps = args.length > 1 ? Long.parseLong(args[1]) : defaultSteps;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        Program p = new Program1Parse1();
+        p.parse(SourceTokenizer
+                .tokens(SpanFormatter.readSource(Paths.get(args[0]))));
+        ProgramProfile profile = new ProgramProfile(p);
+        CompiledProgram compiled = ProgramCompiler.compile(profile);
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = new Thread(
+                    () -> ExecutionBenchmark.runFor(compiled, steps));
+            running[i].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+
+        SimpleWriter out = new SimpleWriter1L();
+        out.print(profile.report());
+        out.close();
+    }
+
+}
@@ -0,0 +1,357 @@
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import components.program.Program;
+
+/**
+ * A registry of parsed programs by name that can be reloaded while
+ * simulations keep running them.
+ *
+ * <p>
+ * Each name has a slot holding its current {@code Version}: an immutable
+ * snapshot of one parse of the program, with its statement trees, its
+ * {@code ProgramCode} and its {@code CompiledProgram} all built before it
+ * is published. Looking a version up is a lock-free map read and a volatile
+ * read of the slot. Publishing a new version is one atomic swap of the
+ * slot, so a reader sees either the whole old version or the whole new one.
+ *
+ * <p>
+ * An executor does not look the name up on every run; it holds a
+ * {@code Handle}, which caches a version, and calls {@code refresh} at its
+ * safe points (for a compiled program, between runs of the body) to pick up
+ * whatever has been published since. Nothing else refers to an old version,
+ * so once every handle has moved past it the garbage collector frees it,
+ * and with it its generated hidden class.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramRegistry {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Slot holding the current version of each program, by name.
+     */
+    private final ConcurrentHashMap<String, AtomicReference<Version>> slots;
+
+    /**
+     * Source of version numbers.
+     */
+    private final AtomicLong versions;
+
+    /**
+     * One immutable, fully prepared version of a program.
+     */
+    public static final class Version {
+
+        /**
+         * The version number.
+         */
+        private final long number;
+
+        /**
+         * The program name.
+         */
+        private final String name;
+
+        /**
+         * The program body.
+         */
+        private final StatementNode body;
+
+        /**
+         * The instruction bodies, by name.
+         */
+        private final java.util.Map<String, StatementNode> context;
+
+        /**
+         * The program flattened for {@code ExecutionState}.
+         */
+        private final ProgramCode code;
+
+        /**
+         * The program compiled to bytecode.
+         */
+        private final CompiledProgram compiled;
+
+        /**
+         * Constructor; reads and compiles {@code p} but does not change it.
+         *
+         * @param number
+         *            the version number
+         * @param p
+         *            the program
+         */
+        private Version(long number, Program p) {
+            this.number = number;
+            this.name = p.name();
+            this.body = StatementNode.bodyOf(p);
+            this.context = Collections
+                    .unmodifiableMap(StatementNode.contextOf(p));
+            this.code = ProgramCode.compile(p);
+            this.compiled = ProgramCompiler.compile(p);
+        }
+
+        /**
+         * Returns the version number; later publishes have larger numbers.
+         *
+         * @return the version number
+         */
+        public long number() {
+            return this.number;
+        }
+
+        /**
+         * Returns the program name.
+         *
+         * @return the program name
+         */
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * Returns the program body.
+         *
+         * @return the body
+         */
+        public StatementNode body() {
+            return this.body;
+        }
+
+        /**
+         * Returns the instruction bodies, by name, unmodifiable.
+         *
+         * @return the instruction bodies
+         */
+        public java.util.Map<String, StatementNode> context() {
+            return this.context;
+        }
+
+        /**
+         * Returns the program flattened for {@code ExecutionState}.
+         *
+         * @return the program code
+         */
+        public ProgramCode code() {
+            return this.code;
+        }
+
+        /**
+         * Returns the program compiled to bytecode.
+         *
+         * @return the compiled program
+         */
+        public CompiledProgram compiled() {
+            return this.compiled;
+        }
+
+    }
+
+    /**
+     * An executor's view of one registered program: the version it is
+     * running, replaced only when the executor calls {@code refresh}. A
+     * handle is meant to be used by one thread.
+     */
+    public static final class Handle {
+
+        /**
+         * The registry slot.
+         */
+        private final AtomicReference<Version> slot;
+
+        /**
+         * The version in use.
+         */
+        private Version version;
+
+        /**
+         * Constructor.
+         *
+         * @param slot
+         *            the registry slot
+         */
+        private Handle(AtomicReference<Version> slot) {
+            this.slot = slot;
+            this.version = slot.get();
+        }
+
+        /**
+         * Returns the version in use.
+         *
+         * @return the version
+         */
+        public Version version() {
+            return this.version;
+        }
+
+        /**
+         * Switches to the current version if a newer one has been published
+         * since, and reports whether it did. Call this only at safe points.
+         *
+         * @return true iff the version in use changed
+         * @updates this
+         */
+        public boolean refresh() {
+            Version current = this.slot.get();
+            boolean changed = current != this.version;
+            this.version = current;
+            return changed;
+        }
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ProgramRegistry() {
+        this.slots = new ConcurrentHashMap<>();
+        this.versions = new AtomicLong();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Prepares a new version of {@code p} and makes it the current version
+     * of {@code p.name} unless a version with a larger number has been
+     * published meanwhile, and returns whichever is current afterwards. The
+     * preparation runs on the calling thread; only the final swap is visible
+     * to readers. If two versions of the same program are published at once,
+     * the one with the larger number wins, and both calls return it.
+     *
+     * @param p
+     *            the program
+     * @return the current version of p.name once the new version has been
+     *         offered
+     * @ensures <pre>
+     * if [every instruction p calls is primitive or in p.context] then
+     *  [the new version or a later one is current for p.name]  and
+     *  publish = [the current version for p.name]  and
+     *  publish.number >= [number of the new version]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public Version publish(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        Version version = new Version(this.versions.incrementAndGet(), p);
+        /*
+         * Swap while the map holds the entry, so that a concurrent remove
+         * comes either before (and the new version goes in a fresh slot) or
+         * after (and removes it), never between finding the slot and
+         * updating it.
+         */
+        AtomicReference<Version> slot = this.slots.compute(version.name(),
+                (k, s) -> {
+                    AtomicReference<Version> kept = s == null
+                            ? new AtomicReference<>() : s;
+                    kept.accumulateAndGet(version,
+                            (old, v) -> old != null
+                                    && old.number() > v.number() ? old : v);
+                    return kept;
+                });
+        return slot.get();
+    }
+
+    /**
+     * Parses the BL program in {@code file} and compiles it on
+     * {@code executor}, then publishes it; the current version is untouched
+     * if this fails.
+     *
+     * @param file
+     *            the file containing the BL program
+     * @param executor
+     *            the executor for parsing and compiling
+     * @return a future for the published version
+     * @ensures <pre>
+     * [reload completes with what publish returns for the parsed program, or
+     *  exceptionally with the I/O, syntax or compilation error encountered]
+     * </pre>
+     */
+    public CompletableFuture<Version> reload(Path file,
+            ExecutorService executor) {
+        assert file != null : "Violation of: file is not null";
+        assert executor != null : "Violation of: executor is not null";
+
+        return Program1Parse1Async.parseAsync(file, executor)
+                .thenApplyAsync(this::publish, executor);
+    }
+
+    /**
+     * Parses and publishes the BL program in {@code file} on the default
+     * executor of {@code Program1Parse1Async}.
+     *
+     * @param file
+     *            the file containing the BL program
+     * @return a future for the published version
+     */
+    public CompletableFuture<Version> reload(Path file) {
+        return this.reload(file, Program1Parse1Async.defaultExecutor());
+    }
+
+    /**
+     * Returns the current version of program {@code name}, or null if there
+     * is none. Does not lock.
+     *
+     * @param name
+     *            the program name
+     * @return the current version, or null
+     */
+    public Version current(String name) {
+        AtomicReference<Version> slot = this.slots.get(name);
+        return slot == null ? null : slot.get();
+    }
+
+    /**
+     * Returns a handle on program {@code name} starting at its current
+     * version.
+     *
+     * @param name
+     *            the program name
+     * @return the handle
+     * @requires [name has been published]
+     */
+    public Handle handle(String name) {
+        AtomicReference<Version> slot = this.slots.get(name);
+        assert slot != null : "Violation of: name has been published";
+        return new Handle(slot);
+    }
+
+    /**
+     * Removes program {@code name}. Existing handles keep the version they
+     * have, and see no further publishes.
+     *
+     * @param name
+     *            the program name
+     * @return true iff name was registered
+     */
+    public boolean remove(String name) {
+        return this.slots.remove(name) != null;
+    }
+
+    /**
+     * Returns the names of the registered programs.
+     *
+     * @return the names, unmodifiable
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(this.slots.keySet());
+    }
+
+}
@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement.Condition;
+
+/**
+ * {@code ProgramHandler} that gathers corpus statistics: how many programs,
+ * instructions and statements were read, how many calls were to primitive
+ * instructions, which other instructions were called, and the deepest
+ * nesting of IF and WHILE statements. Counts from a program are added to the
+ * totals only when the whole program has been read, so a program with a
+ * syntax error contributes nothing.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramStatistics implements ProgramHandler {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Index in {@code current} of the instruction count.
+     */
+    private static final int INSTRUCTIONS = 0;
+
+    /**
+     * Index in {@code current} of the statement count.
+     */
+    private static final int STATEMENTS = 1;
+
+    /**
+     * Index in {@code current} of the primitive call count.
+     */
+    private static final int PRIMITIVE_CALLS = 2;
+
+    /**
+     * Index in {@code current} of the instruction call count.
+     */
+    private static final int INSTRUCTION_CALLS = 3;
+
+    /**
+     * Programs read completely.
+     */
+    private long programs;
+
+    /**
+     * Instructions defined in programs read completely.
+     */
+    private long instructions;
+
+    /**
+     * Statements, other than blocks, in programs read completely.
+     */
+    private long statements;
+
+    /**
+     * Calls to primitive instructions in programs read completely.
+     */
+    private long primitiveCalls;
+
+    /**
+     * Calls to defined instructions in programs read completely.
+     */
+    private long instructionCalls;
+
+    /**
+     * Deepest nesting in programs read completely.
+     */
+    private int maxDepth;
+
+    /**
+     * Names of the non-primitive instructions called.
+     */
+    private final Set<String> called;
+
+    /**
+     * Counts for the program being read: instructions, statements,
+     * primitive calls, instruction calls.
+     */
+    private final long[] current;
+
+    /**
+     * Current nesting depth.
+     */
+    private int depth;
+
+    /**
+     * Deepest nesting in the program being read.
+     */
+    private int currentMaxDepth;
+
+    /**
+     * Names of the non-primitive instructions called by the program being
+     * read.
+     */
+    private final List<String> currentCalled;
+
+    /**
+     * Reports whether {@code name} is a primitive BL instruction.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff name is primitive
+     */
+    private static boolean isPrimitive(String name) {
+        return name.equals("move") || name.equals("turnleft")
+                || name.equals("turnright") || name.equals("infect")
+                || name.equals("skip");
+    }
+
+    /**
+     * Records entry into an IF or WHILE.
+     */
+    private void enter() {
+        this.current[STATEMENTS]++;
+        this.depth++;
+        this.currentMaxDepth = Math.max(this.currentMaxDepth, this.depth);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ProgramStatistics() {
+        this.called = new TreeSet<>();
+        this.current = new long[INSTRUCTION_CALLS + 1];
+        this.currentCalled = new ArrayList<>();
+    }
+
+    /*
+     * ProgramHandler events --------------------------------------------------
+     */
+
+    @Override
+    public void startProgram(String name) {
+        Arrays.fill(this.current, 0);
+        this.depth = 0;
+        this.currentMaxDepth = 0;
+        this.currentCalled.clear();
+    }
+
+    @Override
+    public void startInstruction(String name) {
+        this.current[INSTRUCTIONS]++;
+    }
+
+    @Override
+    public void enterIf(Condition c) {
+        this.enter();
+    }
+
+    @Override
+    public void exitIf() {
+        this.depth--;
+    }
+
+    @Override
+    public void enterWhile(Condition c) {
+        this.enter();
+    }
+
+    @Override
+    public void exitWhile() {
+        this.depth--;
+    }
+
+    @Override
+    public void call(String name) {
+        this.current[STATEMENTS]++;
+        if (isPrimitive(name)) {
+            this.current[PRIMITIVE_CALLS]++;
+        } else {
+            this.current[INSTRUCTION_CALLS]++;
+            this.currentCalled.add(name);
+        }
+    }
+
+    @Override
+    public void endProgram() {
+        this.programs++;
+        this.instructions += this.current[INSTRUCTIONS];
+        this.statements += this.current[STATEMENTS];
+        this.primitiveCalls += this.current[PRIMITIVE_CALLS];
+        this.instructionCalls += this.current[INSTRUCTION_CALLS];
+        this.maxDepth = Math.max(this.maxDepth, this.currentMaxDepth);
+        this.called.addAll(this.currentCalled);
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the number of programs read completely.
+     *
+     * @return the number of programs
+     */
+    public long programs() {
+        return this.programs;
+    }
+
+    /**
+     * Returns the number of instructions defined.
+     *
+     * @return the number of instructions
+     */
+    public long instructions() {
+        return this.instructions;
+    }
+
+    /**
+     * Returns the number of statements, not counting blocks.
+     *
+     * @return the number of statements
+     */
+    public long statements() {
+        return this.statements;
+    }
+
+    /**
+     * Returns the number of calls to primitive instructions.
+     *
+     * @return the number of primitive calls
+     */
+    public long primitiveCalls() {
+        return this.primitiveCalls;
+    }
+
+    /**
+     * Returns the number of calls to defined instructions.
+     *
+     * @return the number of instruction calls
+     */
+    public long instructionCalls() {
+        return this.instructionCalls;
+    }
+
+    /**
+     * Returns the deepest nesting of IF and WHILE statements.
+     *
+     * @return the maximum depth
+     */
+    public int maxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Returns the names of the non-primitive instructions called, sorted.
+     *
+     * @return the called instruction names
+     */
+    public Set<String> calledInstructions() {
+        return Collections.unmodifiableSet(this.called);
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method; reads every {@code .bl} file named by, or found under a
+     * directory named by, the command line arguments, and prints the totals.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if a directory cannot be listed
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            try (Stream<Path> paths = Files.walk(Paths.get(arg))) {
+                paths.filter(p -> p.toString().endsWith(".bl"))
+                        .forEach(files::add);
+            }
+        }
+        ProgramEventParser parser = new ProgramEventParser();
+        ProgramStatistics stats = new ProgramStatistics();
+        int failed = 0;
+        for (Path file : files) {
+            try {
+                parser.parse(file, stats);
+            } catch (IOException | RuntimeException e) {
+                failed++;
+            }
+        }
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("files:             " + files.size());
+        out.println("invalid:           " + failed);
+        out.println("programs:          " + stats.programs());
+        out.println("instructions:      " + stats.instructions());
+        out.println("statements:        " + stats.statements());
+        out.println("primitive calls:   " + stats.primitiveCalls());
+        out.println("instruction calls: " + stats.instructionCalls());
+        out.println("max depth:         " + stats.maxDepth());
+        out.println("called:            " + stats.calledInstructions());
+        out.close();
+    }
+
+}
@@ -0,0 +1,222 @@
+import components.map.Map;
+import components.map.Map.Pair;
+import components.program.Program;
+import components.statement.Statement;
+import components.statement.Statement.Condition;
+
+/**
+ * Utility class that renders BL programs and statements as text in the same
+ * layout as {@code prettyPrint}, but into a {@code StringBuilder} so the text
+ * can be written to any channel or stream.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class ProgramText {
+
+    /**
+     * Indentation added for each nested block.
+     */
+    public static final int INDENT_SIZE = 4;
+
+    /**
+     * Indentation of INSTRUCTION and its matching END.
+     */
+    public static final int INSTRUCTION_INDENT = 2;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private ProgramText() {
+    }
+
+    /**
+     * Appends {@code n} spaces to {@code text}.
+     *
+     * @param text
+     *            the text being built
+     * @param n
+     *            the number of spaces
+     * @updates text
+     * @ensures text = #text * [n spaces]
+     */
+    private static void indent(StringBuilder text, int n) {
+        for (int i = 0; i < n; i++) {
+            text.append(' ');
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the BL spelling of {@code c}, e.g. {@code next-is-empty}.
+     *
+     * @param c
+     *            the condition
+     * @return the condition string for c
+     * @ensures conditionString = [condition string corresponding to c]
+     */
+    public static String conditionString(Condition c) {
+        assert c != null : "Violation of: c is not null";
+        return c.name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * Appends the pretty-printed text of {@code s}, indented by
+     * {@code offset} spaces, to {@code text}.
+     *
+     * @param text
+     *            the text being built
+     * @param s
+     *            the statement to print
+     * @param offset
+     *            the indentation of s
+     * @updates text
+     * @requires offset >= 0
+     * @ensures text = #text * [pretty print of s indented by offset]
+     */
+    public static void appendStatement(StringBuilder text, Statement s,
+            int offset) {
+        assert text != null : "Violation of: text is not null";
+        assert s != null : "Violation of: s is not null";
+        assert offset >= 0 : "Violation of: offset >= 0";
+
+        switch (s.kind()) {
+            case BLOCK: {
+                for (int i = 0; i < s.lengthOfBlock(); i++) {
+                    Statement child = s.removeFromBlock(i);
+                    appendStatement(text, child, offset);
+                    s.addToBlock(i, child);
+                }
+                break;
+            }
+            case IF: {
+                Statement body = s.newInstance();
+                Condition c = s.disassembleIf(body);
+                indent(text, offset);
+                text.append("IF ").append(conditionString(c))
+                        .append(" THEN\n");
+                appendStatement(text, body, offset + INDENT_SIZE);
+                indent(text, offset);
+                text.append("END IF\n");
+                s.assembleIf(c, body);
+                break;
+            }
+            case IF_ELSE: {
+                Statement thenBody = s.newInstance();
+                Statement elseBody = s.newInstance();
+                Condition c = s.disassembleIfElse(thenBody, elseBody);
+                indent(text, offset);
+                text.append("IF ").append(conditionString(c))
+                        .append(" THEN\n");
+                appendStatement(text, thenBody, offset + INDENT_SIZE);
+                indent(text, offset);
+                text.append("ELSE\n");
+                appendStatement(text, elseBody, offset + INDENT_SIZE);
+                indent(text, offset);
+                text.append("END IF\n");
+                s.assembleIfElse(c, thenBody, elseBody);
+                break;
+            }
+            case WHILE: {
+                Statement body = s.newInstance();
+                Condition c = s.disassembleWhile(body);
+                indent(text, offset);
+                text.append("WHILE ").append(conditionString(c))
+                        .append(" DO\n");
+                appendStatement(text, body, offset + INDENT_SIZE);
+                indent(text, offset);
+                text.append("END WHILE\n");
+                s.assembleWhile(c, body);
+                break;
+            }
+            case CALL: {
+                String name = s.disassembleCall();
+                indent(text, offset);
+                text.append(name).append('\n');
+                s.assembleCall(name);
+                break;
+            }
+            default: {
+                // this should never happen
+                break;
+            }
+        }
+    }
+
+    /**
+     * Appends the pretty-printed text of the instruction {@code name} with
+     * body {@code body}, followed by a blank line, to {@code text}.
+     *
+     * @param text
+     *            the text being built
+     * @param name
+     *            the instruction name
+     * @param body
+     *            the instruction body
+     * @updates text
+     * @ensures text = #text * [pretty print of the instruction] * "\n"
+     */
+    public static void appendInstruction(StringBuilder text, String name,
+            Statement body) {
+        assert text != null : "Violation of: text is not null";
+        assert name != null : "Violation of: name is not null";
+        assert body != null : "Violation of: body is not null";
+
+        indent(text, INSTRUCTION_INDENT);
+        text.append("INSTRUCTION ").append(name).append(" IS\n");
+        appendStatement(text, body, INDENT_SIZE);
+        indent(text, INSTRUCTION_INDENT);
+        text.append("END ").append(name).append("\n\n");
+    }
+
+    /**
+     * Appends the pretty-printed text of {@code p} to {@code text}.
+     *
+     * @param text
+     *            the text being built
+     * @param p
+     *            the program to print
+     * @updates text
+     * @ensures text = #text * [pretty print of p]
+     */
+    public static void appendProgram(StringBuilder text, Program p) {
+        assert text != null : "Violation of: text is not null";
+        assert p != null : "Violation of: p is not null";
+
+        text.append("PROGRAM ").append(p.name()).append(" IS\n\n");
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        for (Pair<String, Statement> instruction : context) {
+            appendInstruction(text, instruction.key(), instruction.value());
+        }
+        p.swapContext(context);
+        Statement body = p.newBody();
+        p.swapBody(body);
+        text.append("BEGIN\n");
+        appendStatement(text, body, INDENT_SIZE);
+        text.append("END ").append(p.name()).append('\n');
+        p.swapBody(body);
+    }
+
+    /**
+     * Returns the pretty-printed text of {@code p}.
+     *
+     * @param p
+     *            the program to print
+     * @return the text of p
+     * @ensures programString = [pretty print of p]
+     */
+    public static String programString(Program p) {
+        StringBuilder text = new StringBuilder();
+        appendProgram(text, p);
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,357 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records where each token, each INSTRUCTION, and the BEGIN body of a parsed
+ * BL program appear in its source text, so unchanged regions can be copied
+ * straight from the source instead of being pretty-printed again. Offsets are
+ * character offsets into the text given to the parser; when the source is
+ * decoded as ISO-8859-1 (see {@code SpanFormatter.readSource}) they are also
+ * byte offsets into the file.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class SourceMap {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the growable arrays.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Start offset of each token, by token index.
+     */
+    private int[] tokenStarts;
+
+    /**
+     * End offset (exclusive) of each token, by token index.
+     */
+    private int[] tokenEnds;
+
+    /**
+     * Number of tokens recorded.
+     */
+    private int tokenCount;
+
+    /**
+     * Names of the instructions, in source order.
+     */
+    private String[] instructionNames;
+
+    /**
+     * Start offset of each instruction (at its INSTRUCTION keyword), in source
+     * order.
+     */
+    private int[] instructionStarts;
+
+    /**
+     * End offset (exclusive) of each instruction (after its closing name), in
+     * source order.
+     */
+    private int[] instructionEnds;
+
+    /**
+     * Number of instructions recorded.
+     */
+    private int instructionCount;
+
+    /**
+     * Source-order index of each instruction, by name.
+     */
+    private final HashMap<String, Integer> instructionIndex;
+
+    /**
+     * Names of the libraries in USES clauses, in source order.
+     */
+    private final List<String> libraryNames;
+
+    /**
+     * Names of the instructions added to the program from libraries.
+     */
+    private final Set<String> libraryInstructions;
+
+    /**
+     * Start offset of the BEGIN body.
+     */
+    private int bodyStart;
+
+    /**
+     * End offset (exclusive) of the BEGIN body.
+     */
+    private int bodyEnd;
+
+    /**
+     * Returns the end offset of the token range {@code [firstToken, endToken)},
+     * or the start of {@code endToken} if the range is empty.
+     *
+     * @param firstToken
+     *            index of the first token
+     * @param endToken
+     *            index just past the last token
+     * @return the end offset of the range
+     */
+    private int rangeEnd(int firstToken, int endToken) {
+        int end;
+        if (endToken > firstToken) {
+            end = this.tokenEnds[endToken - 1];
+        } else {
+            end = this.tokenStarts[firstToken];
+        }
+        return end;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public SourceMap() {
+        this.tokenStarts = new int[INITIAL_CAPACITY];
+        this.tokenEnds = new int[INITIAL_CAPACITY];
+        this.tokenCount = 0;
+        this.instructionNames = new String[INITIAL_CAPACITY];
+        this.instructionStarts = new int[INITIAL_CAPACITY];
+        this.instructionEnds = new int[INITIAL_CAPACITY];
+        this.instructionCount = 0;
+        this.instructionIndex = new HashMap<>();
+        this.libraryNames = new ArrayList<>();
+        this.libraryInstructions = new HashSet<>();
+        this.bodyStart = 0;
+        this.bodyEnd = 0;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Records the next token, which occupies {@code [start, end)}.
+     *
+     * @param start
+     *            start offset of the token
+     * @param end
+     *            end offset (exclusive) of the token
+     * @updates this
+     * @requires start <= end
+     */
+    void addToken(int start, int end) {
+        assert start <= end : "Violation of: start <= end";
+
+        if (this.tokenCount == this.tokenStarts.length) {
+            this.tokenStarts = Arrays.copyOf(this.tokenStarts,
+                    this.tokenCount * 2);
+            this.tokenEnds = Arrays.copyOf(this.tokenEnds, this.tokenCount * 2);
+        }
+        this.tokenStarts[this.tokenCount] = start;
+        this.tokenEnds[this.tokenCount] = end;
+        this.tokenCount++;
+    }
+
+    /**
+     * Records the instruction {@code name}, made of the tokens with indices
+     * {@code [firstToken, endToken)}.
+     *
+     * @param name
+     *            the instruction name
+     * @param firstToken
+     *            index of the INSTRUCTION token
+     * @param endToken
+     *            index just past the instruction's closing name
+     * @updates this
+     * @requires firstToken < endToken <= [number of tokens recorded]
+     */
+    void addInstruction(String name, int firstToken, int endToken) {
+        assert firstToken < endToken && endToken <= this.tokenCount : ""
+                + "Violation of: firstToken < endToken <= token count";
+
+        int i = this.instructionCount;
+        if (i == this.instructionNames.length) {
+            this.instructionNames = Arrays.copyOf(this.instructionNames, i * 2);
+            this.instructionStarts = Arrays.copyOf(this.instructionStarts,
+                    i * 2);
+            this.instructionEnds = Arrays.copyOf(this.instructionEnds, i * 2);
+        }
+        this.instructionNames[i] = name;
+        this.instructionStarts[i] = this.tokenStarts[firstToken];
+        this.instructionEnds[i] = this.rangeEnd(firstToken, endToken);
+        this.instructionIndex.put(name, i);
+        this.instructionCount++;
+    }
+
+    /**
+     * Records that the source uses library {@code name}.
+     *
+     * @param name
+     *            the library name
+     * @updates this
+     */
+    void addLibrary(String name) {
+        this.libraryNames.add(name);
+    }
+
+    /**
+     * Records that instruction {@code name} was added to the program from a
+     * library rather than parsed from the source.
+     *
+     * @param name
+     *            the instruction name
+     * @updates this
+     */
+    void addLibraryInstruction(String name) {
+        this.libraryInstructions.add(name);
+    }
+
+    /**
+     * Records the BEGIN body as the tokens with indices
+     * {@code [firstToken, endToken)}.
+     *
+     * @param firstToken
+     *            index of the first token after BEGIN
+     * @param endToken
+     *            index of the END token that closes the body
+     * @updates this
+     * @requires firstToken <= endToken < [number of tokens recorded]
+     */
+    void setBody(int firstToken, int endToken) {
+        assert firstToken <= endToken && endToken < this.tokenCount : ""
+                + "Violation of: firstToken <= endToken < token count";
+
+        this.bodyStart = this.tokenStarts[firstToken];
+        this.bodyEnd = this.rangeEnd(firstToken, endToken);
+    }
+
+    /**
+     * Returns the number of instructions in the source.
+     *
+     * @return the number of instructions
+     */
+    public int instructionCount() {
+        return this.instructionCount;
+    }
+
+    /**
+     * Returns the source-order index of instruction {@code name}, or -1 if
+     * the source has no such instruction.
+     *
+     * @param name
+     *            the instruction name
+     * @return the index of the instruction
+     */
+    public int indexOf(String name) {
+        Integer i = this.instructionIndex.get(name);
+        int index = -1;
+        if (i != null) {
+            index = i;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the name of the {@code i}-th instruction in the source.
+     *
+     * @param i
+     *            the source-order index
+     * @return the instruction name
+     * @requires 0 <= i < instructionCount()
+     */
+    public String instructionName(int i) {
+        assert 0 <= i && i < this.instructionCount : ""
+                + "Violation of: 0 <= i < instructionCount()";
+        return this.instructionNames[i];
+    }
+
+    /**
+     * Returns the offset of the INSTRUCTION keyword of the {@code i}-th
+     * instruction.
+     *
+     * @param i
+     *            the source-order index
+     * @return the start offset
+     * @requires 0 <= i < instructionCount()
+     */
+    public int instructionStart(int i) {
+        assert 0 <= i && i < this.instructionCount : ""
+                + "Violation of: 0 <= i < instructionCount()";
+        return this.instructionStarts[i];
+    }
+
+    /**
+     * Returns the offset just past the closing name of the {@code i}-th
+     * instruction.
+     *
+     * @param i
+     *            the source-order index
+     * @return the end offset (exclusive)
+     * @requires 0 <= i < instructionCount()
+     */
+    public int instructionEnd(int i) {
+        assert 0 <= i && i < this.instructionCount : ""
+                + "Violation of: 0 <= i < instructionCount()";
+        return this.instructionEnds[i];
+    }
+
+    /**
+     * Returns the number of USES clauses in the source.
+     *
+     * @return the number of libraries used
+     */
+    public int libraryCount() {
+        return this.libraryNames.size();
+    }
+
+    /**
+     * Returns the name of the library in the {@code i}-th USES clause.
+     *
+     * @param i
+     *            the source-order index
+     * @return the library name
+     * @requires 0 <= i < libraryCount()
+     */
+    public String libraryName(int i) {
+        assert 0 <= i && i < this.libraryNames.size() : ""
+                + "Violation of: 0 <= i < libraryCount()";
+        return this.libraryNames.get(i);
+    }
+
+    /**
+     * Reports whether instruction {@code name} was added to the program from
+     * a library.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff name came from a used library
+     */
+    public boolean isLibraryInstruction(String name) {
+        return this.libraryInstructions.contains(name);
+    }
+
+    /**
+     * Returns the offset of the first token of the BEGIN body.
+     *
+     * @return the start offset
+     */
+    public int bodyStart() {
+        return this.bodyStart;
+    }
+
+    /**
+     * Returns the offset just past the last token of the BEGIN body.
+     *
+     * @return the end offset (exclusive)
+     */
+    public int bodyEnd() {
+        return this.bodyEnd;
+    }
+
+}
@@ -0,0 +1,280 @@
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.utilities.Tokenizer;
+
+/**
+ * Utility class that tokenizes BL source text that is already in memory,
+ * producing the same tokens as {@code Tokenizer.tokens} does for a
+ * {@code SimpleReader}, and that can stop at a token limit instead of
+ * reading the whole input first.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class SourceTokenizer {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private SourceTokenizer() {
+    }
+
+    /**
+     * Reports whether {@code c} is a BL whitespace character.
+     *
+     * @param c
+     *            the character to check
+     * @return true iff c is whitespace
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Reports whether {@code c} can start an identifier, keyword, or
+     * condition.
+     *
+     * @param c
+     *            the character to check
+     * @return true iff c is a letter
+     */
+    private static boolean isWordStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Reports whether {@code c} can continue an identifier, keyword, or
+     * condition.
+     *
+     * @param c
+     *            the character to check
+     * @return true iff c is a letter, a digit, or '-'
+     */
+    private static boolean isWordPart(char c) {
+        return isWordStart(c) || (c >= '0' && c <= '9') || c == '-';
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the position just past the token that starts at {@code start}
+     * in {@code source}.
+     *
+     * @param source
+     *            the source text
+     * @param start
+     *            the position of the first character of the token
+     * @return the position just past the end of the token
+     * @requires 0 <= start < |source| and [source[start] is not whitespace]
+     * @ensures <pre>
+     * source[start, tokenEnd) is the longest word (letter followed by
+     *  letters, digits, and '-') or the longest run of characters that are
+     *  neither whitespace nor letters starting at start
+     * </pre>
+     */
+    public static int tokenEnd(CharSequence source, int start) {
+        assert source != null : "Violation of: source is not null";
+        assert 0 <= start && start < source.length() : ""
+                + "Violation of: 0 <= start < |source|";
+
+        int end = start + 1;
+        if (isWordStart(source.charAt(start))) {
+            while (end < source.length() && isWordPart(source.charAt(end))) {
+                end++;
+            }
+        } else {
+            while (end < source.length() && !isWhitespace(source.charAt(end))
+                    && !isWordStart(source.charAt(end))) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the position of the first non-whitespace character of
+     * {@code source} at or after {@code pos}, or {@code |source|} if there is
+     * none.
+     *
+     * @param source
+     *            the source text
+     * @param pos
+     *            the position to start from
+     * @return the position of the next token
+     * @requires 0 <= pos <= |source|
+     * @ensures <pre>
+     * pos <= skipWhitespace <= |source|  and
+     *  [source[pos, skipWhitespace) is all whitespace]  and
+     *  [skipWhitespace = |source|  or  source[skipWhitespace] is not whitespace]
+     * </pre>
+     */
+    public static int skipWhitespace(CharSequence source, int pos) {
+        assert source != null : "Violation of: source is not null";
+        assert 0 <= pos && pos <= source.length() : ""
+                + "Violation of: 0 <= pos <= |source|";
+
+        int i = pos;
+        while (i < source.length() && isWhitespace(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Tokenizes the entire BL {@code source} and returns the sequence of
+     * tokens followed by {@code Tokenizer.END_OF_INPUT}.
+     *
+     * @param source
+     *            the source text
+     * @return the tokens of source
+     * @ensures <pre>
+     * tokens =
+     *   [the non-whitespace tokens in source] * <Tokenizer.END_OF_INPUT>
+     * </pre>
+     */
+    public static Queue<String> tokens(CharSequence source) {
+        return tokens(source, null);
+    }
+
+    /**
+     * Tokenizes the entire BL {@code source} as {@code tokens(source)} does,
+     * also recording the position of every token, including a zero-length
+     * END_OF_INPUT at the end of source, in {@code spans} when it is not
+     * {@code null}.
+     *
+     * @param source
+     *            the source text
+     * @param spans
+     *            the source map to record token positions in, or null
+     * @return the tokens of source
+     * @updates spans
+     * @ensures <pre>
+     * tokens =
+     *   [the non-whitespace tokens in source] * <Tokenizer.END_OF_INPUT>  and
+     *  [spans records the position of each of those tokens, in order]
+     * </pre>
+     */
+    public static Queue<String> tokens(CharSequence source, SourceMap spans) {
+        return tokens(source, spans, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tokenizes {@code source} as {@code tokens(source, spans)} does, but
+     * stops as soon as it finds more than {@code maxTokens} tokens, so that
+     * hostile input cannot make the queue any larger than that.
+     *
+     * @param source
+     *            the source text
+     * @param spans
+     *            the source map to record token positions in, or null
+     * @param maxTokens
+     *            the most tokens, not counting END_OF_INPUT, to accept
+     * @return the tokens of source
+     * @updates spans
+     * @requires maxTokens >= 0
+     * @ensures <pre>
+     * if [source has at most maxTokens tokens] then
+     *  tokens =
+     *    [the non-whitespace tokens in source] * <Tokenizer.END_OF_INPUT>  and
+     *   [spans records the position of each of those tokens, in order]
+     * else
+     *  [throws ParseLimitException for TOKENS]
+     * </pre>
+     */
+    public static Queue<String> tokens(CharSequence source, SourceMap spans,
+            int maxTokens) {
+        assert source != null : "Violation of: source is not null";
+        assert maxTokens >= 0 : "Violation of: maxTokens >= 0";
+
+        Queue<String> tokens = new Queue1L<>();
+        addTokens(source, tokens, spans, maxTokens);
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        if (spans != null) {
+            spans.addToken(source.length(), source.length());
+        }
+        return tokens;
+    }
+
+    /**
+     * Tokenizes the rest of {@code in} a line at a time, as
+     * {@code Tokenizer.tokens(in)} does, but stops as soon as it finds more
+     * than {@code maxTokens} tokens. At most one line and {@code maxTokens}
+     * tokens are ever held in memory.
+     *
+     * @param in
+     *            the input stream
+     * @param maxTokens
+     *            the most tokens, not counting END_OF_INPUT, to accept
+     * @return the tokens of in
+     * @updates in
+     * @requires in.is_open  and  maxTokens >= 0
+     * @ensures <pre>
+     * if [#in.content has at most maxTokens tokens] then
+     *  tokens =
+     *    [the non-whitespace tokens in #in.content] *
+     *    <Tokenizer.END_OF_INPUT>  and
+     *  in.content = <>
+     * else
+     *  [throws ParseLimitException for TOKENS]
+     * </pre>
+     */
+    public static Queue<String> tokens(SimpleReader in, int maxTokens) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        assert maxTokens >= 0 : "Violation of: maxTokens >= 0";
+
+        Queue<String> tokens = new Queue1L<>();
+        while (!in.atEOS()) {
+            addTokens(in.nextLine(), tokens, null, maxTokens);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        return tokens;
+    }
+
+    /**
+     * Appends the tokens of {@code source} to {@code tokens}, recording their
+     * positions in {@code spans} when it is not {@code null}.
+     *
+     * @param source
+     *            the source text
+     * @param tokens
+     *            the tokens so far
+     * @param spans
+     *            the source map to record token positions in, or null
+     * @param maxTokens
+     *            the most tokens {@code tokens} may hold
+     * @updates tokens, spans
+     * @ensures <pre>
+     * if |#tokens| + [number of tokens in source] <= maxTokens then
+     *  tokens = #tokens * [the non-whitespace tokens in source]
+     * else
+     *  [throws ParseLimitException for TOKENS]
+     * </pre>
+     */
+    private static void addTokens(CharSequence source, Queue<String> tokens,
+            SourceMap spans, int maxTokens) {
+        int count = tokens.length();
+        int pos = skipWhitespace(source, 0);
+        while (pos < source.length()) {
+            if (count == maxTokens) {
+                throw new ParseLimitException(ParseLimitException.Limit.TOKENS,
+                        maxTokens);
+            }
+            int end = tokenEnd(source, pos);
+            tokens.enqueue(source.subSequence(pos, end).toString());
+            count++;
+            if (spans != null) {
+                spans.addToken(pos, end);
+            }
+            pos = skipWhitespace(source, end);
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.program.Program;
+import components.statement.Statement;
+
+/**
+ * Formats a BL program that was parsed with
+ * {@code Program1Parse1.parseWithSpans}, copying the source text of every
+ * unchanged instruction and body straight from the source file with
+ * {@code FileChannel.transferTo} and pretty-printing only what changed.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class SpanFormatter {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private SpanFormatter() {
+    }
+
+    /**
+     * Writes {@code text} to {@code out} and clears it.
+     *
+     * @param text
+     *            the pending text
+     * @param out
+     *            the output channel
+     * @throws IOException
+     *             if writing fails
+     * @clears text
+     */
+    private static void flush(StringBuilder text, WritableByteChannel out)
+            throws IOException {
+        ByteBuffer bytes = StandardCharsets.ISO_8859_1.encode(text.toString());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        text.setLength(0);
+    }
+
+    /**
+     * Copies bytes {@code [start, end)} of {@code source} to {@code out}
+     * without passing them through the Java heap.
+     *
+     * @param source
+     *            the source file
+     * @param start
+     *            the first byte to copy
+     * @param end
+     *            the byte just past the last one to copy
+     * @param out
+     *            the output channel
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    private static void copy(FileChannel source, long start, long end,
+            WritableByteChannel out) throws IOException {
+        long pos = start;
+        while (pos < end) {
+            long n = source.transferTo(pos, end - pos, out);
+            if (n <= 0) {
+                throw new IOException("Source file ended before byte " + end);
+            }
+            pos += n;
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reads the whole of {@code file} as ISO-8859-1 text, so character
+     * offsets in the result are byte offsets in the file.
+     *
+     * @param file
+     *            the BL source file
+     * @return the contents of file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static String readSource(Path file) throws IOException {
+        return new String(Files.readAllBytes(file),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes {@code p} to {@code out} in the layout of {@code prettyPrint}.
+     * Each instruction whose name is not in {@code modified} and that appears
+     * in {@code spans}, and the body if {@code bodyModified} is false, is
+     * copied unchanged from {@code source}; everything else is
+     * pretty-printed. USES clauses are kept, and instructions come out in
+     * source order, followed by any instructions that are new since the
+     * source was parsed; instructions the used libraries provide are left
+     * out.
+     *
+     * @param p
+     *            the program to write
+     * @param spans
+     *            the source map from parsing source
+     * @param source
+     *            the file that p was parsed from
+     * @param modified
+     *            names of the instructions changed since parsing
+     * @param bodyModified
+     *            whether the body has changed since parsing
+     * @param out
+     *            the output channel
+     * @throws IOException
+     *             if reading or writing fails
+     * @requires <pre>
+     * [spans was produced by parsing the contents of source]  and
+     * [every instruction of p that changed since then is in modified]
+     * </pre>
+     */
+    public static void write(Program p, SourceMap spans, FileChannel source,
+            Set<String> modified, boolean bodyModified,
+            WritableByteChannel out) throws IOException {
+        assert p != null : "Violation of: p is not null";
+        assert spans != null : "Violation of: spans is not null";
+        assert source != null : "Violation of: source is not null";
+        assert modified != null : "Violation of: modified is not null";
+        assert out != null : "Violation of: out is not null";
+
+        StringBuilder text = new StringBuilder();
+        text.append("PROGRAM ").append(p.name()).append(" IS\n\n");
+        for (int i = 0; i < spans.libraryCount(); i++) {
+            for (int k = 0; k < ProgramText.INSTRUCTION_INDENT; k++) {
+                text.append(' ');
+            }
+            text.append("USES ").append(spans.libraryName(i)).append('\n');
+        }
+        if (spans.libraryCount() > 0) {
+            text.append('\n');
+        }
+
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+
+        //instructions still in the program, in source order
+        for (int i = 0; i < spans.instructionCount(); i++) {
+            String name = spans.instructionName(i);
+            if (context.hasKey(name)) {
+                if (modified.contains(name)) {
+                    ProgramText.appendInstruction(text, name,
+                            context.value(name));
+                } else {
+                    for (int k = 0; k < ProgramText.INSTRUCTION_INDENT; k++) {
+                        text.append(' ');
+                    }
+                    flush(text, out);
+                    copy(source, spans.instructionStart(i),
+                            spans.instructionEnd(i), out);
+                    text.append("\n\n");
+                }
+            }
+        }
+
+        //instructions added since the source was parsed, other than those
+        //the used libraries provide
+        for (Pair<String, Statement> instruction : context) {
+            if (spans.indexOf(instruction.key()) < 0
+                    && !spans.isLibraryInstruction(instruction.key())) {
+                ProgramText.appendInstruction(text, instruction.key(),
+                        instruction.value());
+            }
+        }
+        p.swapContext(context);
+
+        text.append("BEGIN\n");
+        if (bodyModified) {
+            Statement body = p.newBody();
+            p.swapBody(body);
+            ProgramText.appendStatement(text, body, ProgramText.INDENT_SIZE);
+            p.swapBody(body);
+        } else if (spans.bodyEnd() > spans.bodyStart()) {
+            for (int k = 0; k < ProgramText.INDENT_SIZE; k++) {
+                text.append(' ');
+            }
+            flush(text, out);
+            copy(source, spans.bodyStart(), spans.bodyEnd(), out);
+            text.append('\n');
+        }
+        text.append("END ").append(p.name()).append('\n');
+        flush(text, out);
+    }
+
+}
@@ -1,3 +1,5 @@
+import java.util.ArrayList;
+
 import components.queue.Queue;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
@@ -21,6 +23,11 @@ public final class Statement1Parse1 extends Statement1 {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Resource limits enforced by {@code parse} and {@code parseBlock}.
+     */
+    private final ParseLimits limits;
+
     /**
      * Converts {@code c} into the corresponding {@code Condition}.
      *
@@ -43,9 +50,14 @@ public final class Statement1Parse1 extends Statement1 {
      * @param tokens
      *            the input tokens
      * @param s
-     *            the parsed statement
+     *            the parsed statement, or null to build only the hash-consed
+     *            node
+     * @param state
+     *            the resource accounting for this parse
+     * @return the hash-consed node for s if state is sharing subtrees, else
+     *         null
      * @replaces s
-     * @updates tokens
+     * @updates tokens, state
      * @requires <pre>
      * [<"IF"> is a prefix of tokens]  and
      *  [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
@@ -58,9 +70,11 @@ public final class Statement1Parse1 extends Statement1 {
      *  [reports an appropriate error message to the console and terminates client]
      * </pre>
      */
-    private static void parseIf(Queue<String> tokens, Statement s) {
+    private static StatementNode parseIf(Queue<String> tokens, Statement s,
+            ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
-        assert s != null : "Violation of: s is not null";
+        assert s != null || state.isSharing() : ""
+                + "Violation of: s is not null or state is sharing";
         assert tokens.length() > 0 && tokens.front().equals("IF") : ""
                 + "Violation of: <\"IF\"> is proper prefix of tokens";
 
@@ -80,26 +94,40 @@ public final class Statement1Parse1 extends Statement1 {
                 "token is invalid");
 
         //create new statement and parse block
-        Statement s1 = s.newInstance();
-        s1.parseBlock(tokens);
+        state.enterNested();
+        Statement s1 = s == null ? null : s.newInstance();
+        StatementNode n1 = parseBlock(tokens, s1, state);
+        StatementNode node = null;
         if (tokens.front().equals("ELSE")) {
             Reporter.assertElseFatalError(tokens.dequeue().equals("ELSE"),
                     "Invalid token");
             //create new statement for ELSE
-            Statement s2 = s.newInstance();
-            s2.parseBlock(tokens);
-            s.assembleIfElse(c, s1, s2);
+            Statement s2 = s == null ? null : s.newInstance();
+            StatementNode n2 = parseBlock(tokens, s2, state);
+            if (s != null) {
+                s.assembleIfElse(c, s1, s2);
+            }
+            if (state.isSharing()) {
+                node = state.share(StatementNode.ifElseNode(c, n1, n2));
+            }
         } else {
-            s.assembleIf(c, s1);
+            if (s != null) {
+                s.assembleIf(c, s1);
+            }
+            if (state.isSharing()) {
+                node = state.share(StatementNode.ifNode(c, n1));
+            }
         }
+        state.exitNested();
         /*
          * Dequeue end.
          */
         Reporter.assertElseFatalError(tokens.dequeue().equals("END"),
                 "Invalid token");
         String endKind = tokens.dequeue();
-        Reporter.assertElseFatalError(Tokenizer.isKeyword(endKind),
+        Reporter.assertElseFatalError(endKind.equals("IF"),
                 "Invalid token");
+        return node;
     }
 
     /**
@@ -108,9 +136,14 @@ public final class Statement1Parse1 extends Statement1 {
      * @param tokens
      *            the input tokens
      * @param s
-     *            the parsed statement
+     *            the parsed statement, or null to build only the hash-consed
+     *            node
+     * @param state
+     *            the resource accounting for this parse
+     * @return the hash-consed node for s if state is sharing subtrees, else
+     *         null
      * @replaces s
-     * @updates tokens
+     * @updates tokens, state
      * @requires <pre>
      * [<"WHILE"> is a prefix of tokens]  and
      *  [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
@@ -123,9 +156,11 @@ public final class Statement1Parse1 extends Statement1 {
      *  [reports an appropriate error message to the console and terminates client]
      * </pre>
      */
-    private static void parseWhile(Queue<String> tokens, Statement s) {
+    private static StatementNode parseWhile(Queue<String> tokens,
+            Statement s, ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
-        assert s != null : "Violation of: s is not null";
+        assert s != null || state.isSharing() : ""
+                + "Violation of: s is not null or state is sharing";
         assert tokens.length() > 0 && tokens.front().equals("WHILE") : ""
                 + "Violation of: <\"WHILE\"> is proper prefix of tokens";
 
@@ -145,9 +180,17 @@ public final class Statement1Parse1 extends Statement1 {
                 "Invalid token");
 
         //create new statement and parse block
-        Statement s1 = s.newInstance();
-        s1.parseBlock(tokens);
-        s.assembleWhile(con, s1);
+        state.enterNested();
+        Statement s1 = s == null ? null : s.newInstance();
+        StatementNode n1 = parseBlock(tokens, s1, state);
+        if (s != null) {
+            s.assembleWhile(con, s1);
+        }
+        StatementNode node = null;
+        if (state.isSharing()) {
+            node = state.share(StatementNode.whileNode(con, n1));
+        }
+        state.exitNested();
 
         String error = tokens.dequeue();
 
@@ -155,9 +198,9 @@ public final class Statement1Parse1 extends Statement1 {
         Reporter.assertElseFatalError(error.equals("END"),
                 "Invalid token test" + error);
         String endKind = tokens.dequeue();
-        Reporter.assertElseFatalError(Tokenizer.isKeyword(endKind),
+        Reporter.assertElseFatalError(endKind.equals("WHILE"),
                 "Invalid token");
-
+        return node;
     }
 
     /**
@@ -166,9 +209,14 @@ public final class Statement1Parse1 extends Statement1 {
      * @param tokens
      *            the input tokens
      * @param s
-     *            the parsed statement
+     *            the parsed statement, or null to build only the hash-consed
+     *            node
+     * @param state
+     *            the resource accounting for this parse
+     * @return the hash-consed node for s if state is sharing subtrees, else
+     *         null
      * @replaces s
-     * @updates tokens
+     * @updates tokens, state
      * @requires [identifier string is a proper prefix of tokens]
      * @ensures <pre>
      * s =
@@ -176,10 +224,12 @@ public final class Statement1Parse1 extends Statement1 {
      *  #tokens = [identifier string at start of #tokens] * tokens
      * </pre>
      */
-    private static void parseCall(Queue<String> tokens, Statement s) {
+    private static StatementNode parseCall(Queue<String> tokens,
+            Statement s, ParseState state) {
 
         assert tokens != null : "Violation of: tokens is not null";
-        assert s != null : "Violation of: s is not null";
+        assert s != null || state.isSharing() : ""
+                + "Violation of: s is not null or state is sharing";
         assert tokens.length() > 0
                 && Tokenizer.isIdentifier(tokens.front()) : ""
                         + "Violation of: identifier string is proper prefix of"
@@ -189,8 +239,136 @@ public final class Statement1Parse1 extends Statement1 {
         String name = tokens.dequeue();
         Reporter.assertElseFatalError(Tokenizer.isIdentifier(name),
                 "Invalid token");
-        s.assembleCall(name);
+        name = state.internIdentifier(name);
+        if (s != null) {
+            s.assembleCall(name);
+        }
+        StatementNode node = null;
+        if (state.isSharing()) {
+            node = state.share(StatementNode.call(name));
+        }
+        return node;
+    }
+
+    /**
+     * Parses a single BL statement from {@code tokens} into {@code s},
+     * charging the work to {@code state}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param s
+     *            the parsed statement, or null to build only the hash-consed
+     *            node
+     * @param state
+     *            the resource accounting for this parse
+     * @return the hash-consed node for s if state is sharing subtrees, else
+     *         null
+     * @replaces s
+     * @updates tokens, state
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a statement string is a proper prefix of #tokens]  and
+     *    [the statement is within the limits of state] then
+     *  s = [Statement corresponding to statement string at start of #tokens]  and
+     *  #tokens = [statement string at start of #tokens] * tokens
+     * else
+     *  [reports an appropriate error message to the console and terminates client]
+     * </pre>
+     */
+    static StatementNode parseStatement(Queue<String> tokens, Statement s,
+            ParseState state) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert state != null : "Violation of: state is not null";
+        assert s != null || state.isSharing() : ""
+                + "Violation of: s is not null or state is sharing";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+
+        String name = tokens.front();
+        Reporter.assertElseFatalError(
+                Tokenizer.isIdentifier(name) || Tokenizer.isKeyword(name),
+                "Invalid token");
+        state.tick();
+
+        //parse and execute WHILE or IF or CALL
+        StatementNode node;
+        if (name.equals("WHILE")) {
+            node = parseWhile(tokens, s, state);
+        } else if (name.equals("IF")) {
+            node = parseIf(tokens, s, state);
+        } else {
+            node = parseCall(tokens, s, state);
+        }
+        return node;
+    }
+
+    /**
+     * Parses a maximally long sequence of BL statements from {@code tokens}
+     * into the BLOCK {@code s}, charging the work to {@code state}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param s
+     *            the parsed block, or null to build only the hash-consed node
+     * @param state
+     *            the resource accounting for this parse
+     * @return the hash-consed node for s if state is sharing subtrees, else
+     *         null
+     * @replaces s
+     * @updates tokens, state
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [there is a block string b that is a proper prefix of #tokens]  and
+     *    [b is within the limits of state] then
+     *  s = [BLOCK Statement corresponding to b]  and
+     *  #tokens = b * tokens
+     * else
+     *  [reports an appropriate error message to the console and terminates client]
+     * </pre>
+     */
+    static StatementNode parseBlock(Queue<String> tokens, Statement s,
+            ParseState state) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert state != null : "Violation of: state is not null";
+        assert s != null || state.isSharing() : ""
+                + "Violation of: s is not null or state is sharing";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+
+        Statement block = null;
+        Statement next = null;
+        if (s != null) {
+            block = s.newInstance();
+            next = s.newInstance();
+        }
+        ArrayList<StatementNode> nodes = null;
+        if (state.isSharing()) {
+            nodes = new ArrayList<>();
+        }
 
+        //parse statements until there are no more statements/blocks to parse
+        while (Tokenizer.isIdentifier(tokens.front())
+                || tokens.front().equals("IF")
+                || tokens.front().equals("WHILE")) {
+            StatementNode node = parseStatement(tokens, next, state);
+            if (block != null) {
+                block.addToBlock(block.lengthOfBlock(), next);
+            }
+            if (nodes != null) {
+                nodes.add(node);
+            }
+        }
+        //transfer parsed block to s
+        if (s != null) {
+            s.transferFrom(block);
+        }
+
+        StatementNode blockNode = null;
+        if (nodes != null) {
+            blockNode = state.share(StatementNode
+                    .block(nodes.toArray(new StatementNode[nodes.size()])));
+        }
+        return blockNode;
     }
 
     /*
@@ -202,32 +380,40 @@ public final class Statement1Parse1 extends Statement1 {
      */
     public Statement1Parse1() {
         super();
+        this.limits = ParseLimits.UNLIMITED;
+    }
+
+    /**
+     * Constructor that enforces {@code limits} in {@code parse} and
+     * {@code parseBlock}.
+     *
+     * @param limits
+     *            the resource limits to enforce
+     */
+    public Statement1Parse1(ParseLimits limits) {
+        super();
+        assert limits != null : "Violation of: limits is not null";
+        this.limits = limits;
     }
 
     /*
      * Public methods ---------------------------------------------------------
      */
 
+    @Override
+    public Statement newInstance() {
+        return new Statement1Parse1(this.limits);
+    }
+
     @Override
     public void parse(Queue<String> tokens) {
         assert tokens != null : "Violation of: tokens is not null";
         assert tokens.length() > 0 : ""
                 + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
 
-        String name = tokens.front();
-        Reporter.assertElseFatalError(
-                Tokenizer.isIdentifier(name) || Tokenizer.isKeyword(name),
-                "Invalid token");
-
-        //parse and execute WHILE or IF or CALL
-        if (name.equals("WHILE")) {
-            parseWhile(tokens, this);
-        } else if (name.equals("IF")) {
-            parseIf(tokens, this);
-        } else {
-            parseCall(tokens, this);
-        }
-
+        ParseState state = new ParseState(this.limits);
+        state.checkTokens(tokens);
+        parseStatement(tokens, this, state);
     }
 
     @Override
@@ -236,18 +422,9 @@ public final class Statement1Parse1 extends Statement1 {
         assert tokens.length() > 0 : ""
                 + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
 
-        Statement s = this.newInstance();
-
-        //parse statements until there are no more statements/blocks to parse
-        while (Tokenizer.isIdentifier(tokens.front())
-                || tokens.front().equals("IF")
-                || tokens.front().equals("WHILE")) {
-            this.parse(tokens);
-            s.addToBlock(s.lengthOfBlock(), this);
-        }
-        //transfer parsed block to current block
-        this.transferFrom(s);
-
+        ParseState state = new ParseState(this.limits);
+        state.checkTokens(tokens);
+        parseBlock(tokens, this, state);
     }
 
     /*
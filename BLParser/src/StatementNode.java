@@ -0,0 +1,472 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import components.map.Map;
+import components.program.Program;
+import components.statement.Statement;
+import components.statement.Statement.Condition;
+import components.statement.Statement.Kind;
+
+/**
+ * Immutable snapshot of a BL {@code Statement} tree. Every node caches a
+ * 64-bit structural hash computed bottom-up, so two subtrees with different
+ * hashes are known to differ in O(1), and equal subtrees are confirmed
+ * without walking them when they are the same object.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class StatementNode {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Shared empty child array.
+     */
+    private static final StatementNode[] NO_CHILDREN = new StatementNode[0];
+
+    /**
+     * Multiplier used when combining hashes (the 64-bit golden ratio).
+     */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Kind of this statement.
+     */
+    private final Kind kind;
+
+    /**
+     * Condition of an IF, IF_ELSE, or WHILE; null otherwise.
+     */
+    private final Condition condition;
+
+    /**
+     * Instruction name of a CALL; null otherwise.
+     */
+    private final String name;
+
+    /**
+     * Children: the statements of a BLOCK, the body of an IF or WHILE, or the
+     * THEN and ELSE blocks of an IF_ELSE.
+     */
+    private final StatementNode[] children;
+
+    /**
+     * Structural hash of this subtree.
+     */
+    private final long hash;
+
+    /**
+     * Number of nodes in this subtree.
+     */
+    private final int size;
+
+    /**
+     * Finalizes {@code h} so every input bit affects every output bit.
+     *
+     * @param h
+     *            the value to mix
+     * @return the mixed value
+     */
+    private static long mix(long h) {
+        long z = h;
+        final int s1 = 30, s2 = 27, s3 = 31;
+        z = (z ^ (z >>> s1)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> s2)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> s3);
+    }
+
+    /**
+     * Constructor from the parts of a node.
+     *
+     * @param kind
+     *            the kind
+     * @param condition
+     *            the condition, or null
+     * @param name
+     *            the CALL name, or null
+     * @param children
+     *            the children; not copied
+     */
+    private StatementNode(Kind kind, Condition condition, String name,
+            StatementNode[] children) {
+        this.kind = kind;
+        this.condition = condition;
+        this.name = name;
+        this.children = children;
+        long h = kind.ordinal() + 1;
+        if (condition != null) {
+            h = h * MIX + condition.ordinal() + 1;
+        }
+        if (name != null) {
+            h = h * MIX + name.hashCode();
+        }
+        int n = 1;
+        for (StatementNode child : children) {
+            h = h * MIX + child.hash;
+            n += child.size;
+        }
+        this.hash = mix(h);
+        this.size = n;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns a BLOCK node with the given statements.
+     *
+     * @param statements
+     *            the statements of the block; not copied
+     * @return the BLOCK node
+     * @requires [no element of statements is a BLOCK]
+     */
+    public static StatementNode block(StatementNode... statements) {
+        assert statements != null : "Violation of: statements is not null";
+        return new StatementNode(Kind.BLOCK, null, null,
+                statements.length == 0 ? NO_CHILDREN : statements);
+    }
+
+    /**
+     * Returns an IF node.
+     *
+     * @param c
+     *            the condition
+     * @param body
+     *            the body
+     * @return the IF node
+     * @requires body is a BLOCK
+     */
+    public static StatementNode ifNode(Condition c, StatementNode body) {
+        assert c != null : "Violation of: c is not null";
+        assert body.kind == Kind.BLOCK : "Violation of: body is a BLOCK";
+        return new StatementNode(Kind.IF, c, null,
+                new StatementNode[] { body });
+    }
+
+    /**
+     * Returns an IF_ELSE node.
+     *
+     * @param c
+     *            the condition
+     * @param thenBody
+     *            the THEN block
+     * @param elseBody
+     *            the ELSE block
+     * @return the IF_ELSE node
+     * @requires thenBody and elseBody are BLOCKs
+     */
+    public static StatementNode ifElseNode(Condition c, StatementNode thenBody,
+            StatementNode elseBody) {
+        assert c != null : "Violation of: c is not null";
+        assert thenBody.kind == Kind.BLOCK : ""
+                + "Violation of: thenBody is a BLOCK";
+        assert elseBody.kind == Kind.BLOCK : ""
+                + "Violation of: elseBody is a BLOCK";
+        return new StatementNode(Kind.IF_ELSE, c, null,
+                new StatementNode[] { thenBody, elseBody });
+    }
+
+    /**
+     * Returns a WHILE node.
+     *
+     * @param c
+     *            the condition
+     * @param body
+     *            the body
+     * @return the WHILE node
+     * @requires body is a BLOCK
+     */
+    public static StatementNode whileNode(Condition c, StatementNode body) {
+        assert c != null : "Violation of: c is not null";
+        assert body.kind == Kind.BLOCK : "Violation of: body is a BLOCK";
+        return new StatementNode(Kind.WHILE, c, null,
+                new StatementNode[] { body });
+    }
+
+    /**
+     * Returns a CALL node.
+     *
+     * @param name
+     *            the instruction name
+     * @return the CALL node
+     */
+    public static StatementNode call(String name) {
+        assert name != null : "Violation of: name is not null";
+        return new StatementNode(Kind.CALL, null, name, NO_CHILDREN);
+    }
+
+    /**
+     * Returns an immutable snapshot of {@code s}.
+     *
+     * @param s
+     *            the statement to copy
+     * @return the snapshot of s
+     * @ensures [of is structurally equal to s]
+     */
+    public static StatementNode of(Statement s) {
+        assert s != null : "Violation of: s is not null";
+
+        StatementNode node;
+        switch (s.kind()) {
+            case BLOCK: {
+                StatementNode[] statements = new StatementNode[s
+                        .lengthOfBlock()];
+                for (int i = 0; i < statements.length; i++) {
+                    Statement child = s.removeFromBlock(i);
+                    statements[i] = of(child);
+                    s.addToBlock(i, child);
+                }
+                node = block(statements);
+                break;
+            }
+            case IF: {
+                Statement body = s.newInstance();
+                Condition c = s.disassembleIf(body);
+                node = ifNode(c, of(body));
+                s.assembleIf(c, body);
+                break;
+            }
+            case IF_ELSE: {
+                Statement thenBody = s.newInstance();
+                Statement elseBody = s.newInstance();
+                Condition c = s.disassembleIfElse(thenBody, elseBody);
+                node = ifElseNode(c, of(thenBody), of(elseBody));
+                s.assembleIfElse(c, thenBody, elseBody);
+                break;
+            }
+            case WHILE: {
+                Statement body = s.newInstance();
+                Condition c = s.disassembleWhile(body);
+                node = whileNode(c, of(body));
+                s.assembleWhile(c, body);
+                break;
+            }
+            default: {
+                String name = s.disassembleCall();
+                node = call(name);
+                s.assembleCall(name);
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns an immutable snapshot of the body of {@code p}.
+     *
+     * @param p
+     *            the program
+     * @return the snapshot of p.body
+     * @ensures [bodyOf is structurally equal to p.body]
+     */
+    public static StatementNode bodyOf(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        Statement body = p.newBody();
+        p.swapBody(body);
+        StatementNode node = of(body);
+        p.swapBody(body);
+        return node;
+    }
+
+    /**
+     * Returns immutable snapshots of the instruction bodies of {@code p}, by
+     * name, in the order p.context iterates over them.
+     *
+     * @param p
+     *            the program
+     * @return the snapshots of the bodies in p.context
+     * @ensures <pre>
+     * [contextOf has the same keys as p.context, each mapped to a snapshot
+     *  structurally equal to its body]
+     * </pre>
+     */
+    public static java.util.Map<String, StatementNode> contextOf(Program p) {
+        assert p != null : "Violation of: p is not null";
+
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        java.util.Map<String, StatementNode> nodes = new LinkedHashMap<>();
+        for (Map.Pair<String, Statement> instruction : context) {
+            nodes.put(instruction.key(), of(instruction.value()));
+        }
+        p.swapContext(context);
+        return nodes;
+    }
+
+    /**
+     * Replaces {@code s} with a new statement tree equal to this.
+     *
+     * @param s
+     *            the statement to fill in
+     * @replaces s
+     * @ensures [s is structurally equal to this]
+     */
+    public void toStatement(Statement s) {
+        assert s != null : "Violation of: s is not null";
+
+        switch (this.kind) {
+            case BLOCK: {
+                Statement block = s.newInstance();
+                Statement child = s.newInstance();
+                for (StatementNode statement : this.children) {
+                    statement.toStatement(child);
+                    block.addToBlock(block.lengthOfBlock(), child);
+                }
+                s.transferFrom(block);
+                break;
+            }
+            case IF: {
+                Statement body = s.newInstance();
+                this.children[0].toStatement(body);
+                s.assembleIf(this.condition, body);
+                break;
+            }
+            case IF_ELSE: {
+                Statement thenBody = s.newInstance();
+                Statement elseBody = s.newInstance();
+                this.children[0].toStatement(thenBody);
+                this.children[1].toStatement(elseBody);
+                s.assembleIfElse(this.condition, thenBody, elseBody);
+                break;
+            }
+            case WHILE: {
+                Statement body = s.newInstance();
+                this.children[0].toStatement(body);
+                s.assembleWhile(this.condition, body);
+                break;
+            }
+            default: {
+                s.assembleCall(this.name);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the kind of this statement.
+     *
+     * @return the kind
+     */
+    public Kind kind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the condition of this IF, IF_ELSE, or WHILE.
+     *
+     * @return the condition
+     * @requires kind() is IF, IF_ELSE, or WHILE
+     */
+    public Condition condition() {
+        assert this.condition != null : ""
+                + "Violation of: kind() is IF, IF_ELSE, or WHILE";
+        return this.condition;
+    }
+
+    /**
+     * Returns the instruction name of this CALL.
+     *
+     * @return the name
+     * @requires kind() = CALL
+     */
+    public String name() {
+        assert this.kind == Kind.CALL : "Violation of: kind() = CALL";
+        return this.name;
+    }
+
+    /**
+     * Returns the number of children: statements of a BLOCK, 1 for IF and
+     * WHILE, 2 for IF_ELSE, 0 for CALL.
+     *
+     * @return the number of children
+     */
+    public int childCount() {
+        return this.children.length;
+    }
+
+    /**
+     * Returns the {@code i}-th child of this.
+     *
+     * @param i
+     *            the child index
+     * @return the child
+     * @requires 0 <= i < childCount()
+     */
+    public StatementNode child(int i) {
+        assert 0 <= i && i < this.children.length : ""
+                + "Violation of: 0 <= i < childCount()";
+        return this.children[i];
+    }
+
+    /**
+     * Returns the 64-bit structural hash of this subtree.
+     *
+     * @return the structural hash
+     */
+    public long structuralHash() {
+        return this.hash;
+    }
+
+    /**
+     * Returns the number of nodes in this subtree.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Reports whether this node has the same kind, condition, and CALL name
+     * as {@code other}, ignoring children.
+     *
+     * @param other
+     *            the node to compare with
+     * @return true iff the labels match
+     */
+    public boolean sameLabel(StatementNode other) {
+        return this.kind == other.kind && this.condition == other.condition
+                && (this.name == null ? other.name == null
+                        : this.name.equals(other.name));
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public boolean equals(Object obj) {
+        boolean result;
+        if (obj == this) {
+            result = true;
+        } else if (!(obj instanceof StatementNode)) {
+            result = false;
+        } else {
+            StatementNode other = (StatementNode) obj;
+            result = this.hash == other.hash && this.size == other.size
+                    && this.sameLabel(other)
+                    && Arrays.equals(this.children, other.children);
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.hash ^ (this.hash >>> Integer.SIZE));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        Statement s = new Statement1Parse1();
+        this.toStatement(s);
+        ProgramText.appendStatement(text, s, 0);
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,284 @@
+import java.util.Arrays;
+
+/**
+ * Per-program table that maps each distinct identifier to a dense
+ * {@code int} id in {@code [0, size())} and keeps one canonical
+ * {@code String} per identifier. Executors can use the ids as indices into
+ * their own arrays instead of hashing names on every call.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public final class SymbolTable {
+
+    /**
+     * Id returned by {@code id} for names not in the table.
+     */
+    public static final int NO_SYMBOL = -1;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial number of slots in the hash table; must be a power of 2.
+     */
+    private static final int INITIAL_SLOTS = 64;
+
+    /**
+     * Canonical names, indexed by id.
+     */
+    private String[] names;
+
+    /**
+     * Open-addressing hash table of ids plus one; 0 marks an empty slot.
+     */
+    private int[] slots;
+
+    /**
+     * Number of symbols in the table.
+     */
+    private int size;
+
+    /**
+     * Returns the slot where {@code name} is or would be stored.
+     *
+     * @param name
+     *            the name to look up
+     * @return the slot index
+     */
+    private int find(String name) {
+        int mask = this.slots.length - 1;
+        int h = name.hashCode();
+        int i = (h ^ (h >>> 16)) & mask;
+        while (this.slots[i] != 0) {
+            String s = this.names[this.slots[i] - 1];
+            if (s == name || s.equals(name)) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the slot where the name {@code text[start, end)} is or would be
+     * stored, without creating a string.
+     *
+     * @param text
+     *            the text holding the name
+     * @param start
+     *            start of the name in text
+     * @param end
+     *            end (exclusive) of the name in text
+     * @return the slot index
+     */
+    private int find(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int k = start; k < end; k++) {
+            h = 31 * h + text.charAt(k);
+        }
+        int mask = this.slots.length - 1;
+        int i = (h ^ (h >>> 16)) & mask;
+        int length = end - start;
+        boolean found = false;
+        while (!found && this.slots[i] != 0) {
+            String s = this.names[this.slots[i] - 1];
+            found = s.length() == length;
+            for (int k = 0; found && k < length; k++) {
+                found = s.charAt(k) == text.charAt(start + k);
+            }
+            if (!found) {
+                i = (i + 1) & mask;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Stores {@code name} as a new symbol in empty slot {@code i}.
+     *
+     * @param i
+     *            the empty slot where name belongs
+     * @param name
+     *            the name
+     * @return the id of name
+     */
+    private int add(int i, String name) {
+        int id = this.size;
+        if (id == this.names.length) {
+            this.names = Arrays.copyOf(this.names, id * 2);
+        }
+        this.names[id] = name;
+        this.size++;
+        this.slots[i] = id + 1;
+        if (this.size * 2 > this.slots.length) {
+            this.grow();
+        }
+        return id;
+    }
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void grow() {
+        this.slots = new int[this.slots.length * 2];
+        for (int id = 0; id < this.size; id++) {
+            this.slots[this.find(this.names[id])] = id + 1;
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public SymbolTable() {
+        this.names = new String[INITIAL_SLOTS / 2];
+        this.slots = new int[INITIAL_SLOTS];
+        this.size = 0;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code name} to this if it is not already present and returns its
+     * id.
+     *
+     * @param name
+     *            the identifier
+     * @return the id of name
+     * @updates this
+     * @ensures <pre>
+     * [name is in this]  and  name(intern) equals name  and
+     *  [ids of names already in #this are unchanged]
+     * </pre>
+     */
+    public int intern(String name) {
+        assert name != null : "Violation of: name is not null";
+
+        int i = this.find(name);
+        int id;
+        if (this.slots[i] != 0) {
+            id = this.slots[i] - 1;
+        } else {
+            id = this.add(i, name);
+        }
+        return id;
+    }
+
+    /**
+     * Adds the name {@code text[start, end)} to this if it is not already
+     * present and returns its id. A string is created only the first time a
+     * name is added.
+     *
+     * @param text
+     *            the text holding the name
+     * @param start
+     *            start of the name in text
+     * @param end
+     *            end (exclusive) of the name in text
+     * @return the id of the name
+     * @updates this
+     * @requires 0 <= start <= end <= |text|
+     * @ensures <pre>
+     * [text[start, end) is in this]  and  name(intern) = text[start, end)  and
+     *  [ids of names already in #this are unchanged]
+     * </pre>
+     */
+    public int intern(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= start && start <= end && end <= text.length() : ""
+                + "Violation of: 0 <= start <= end <= |text|";
+
+        int i = this.find(text, start, end);
+        int id;
+        if (this.slots[i] != 0) {
+            id = this.slots[i] - 1;
+        } else {
+            id = this.add(i, text.subSequence(start, end).toString());
+        }
+        return id;
+    }
+
+    /**
+     * Returns the canonical copy of {@code name}, adding it to this if
+     * necessary. All calls with equal names return the same object.
+     *
+     * @param name
+     *            the identifier
+     * @return the canonical string equal to name
+     * @updates this
+     * @ensures canonical equals name and [name is in this]
+     */
+    public String canonical(String name) {
+        int id = this.intern(name);
+        return this.names[id];
+    }
+
+    /**
+     * Returns the id of {@code name}, or {@code NO_SYMBOL} if it is not in
+     * this.
+     *
+     * @param name
+     *            the identifier
+     * @return the id of name
+     */
+    public int id(String name) {
+        assert name != null : "Violation of: name is not null";
+
+        int slot = this.slots[this.find(name)];
+        return slot - 1;
+    }
+
+    /**
+     * Returns the id of the name {@code text[start, end)}, or
+     * {@code NO_SYMBOL} if it is not in this, without creating a string.
+     *
+     * @param text
+     *            the text holding the name
+     * @param start
+     *            start of the name in text
+     * @param end
+     *            end (exclusive) of the name in text
+     * @return the id of the name
+     * @requires 0 <= start <= end <= |text|
+     */
+    public int id(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= start && start <= end && end <= text.length() : ""
+                + "Violation of: 0 <= start <= end <= |text|";
+
+        int slot = this.slots[this.find(text, start, end)];
+        return slot - 1;
+    }
+
+    /**
+     * Returns the canonical name with id {@code id}.
+     *
+     * @param id
+     *            the id
+     * @return the name with that id
+     * @requires 0 <= id < size()
+     */
+    public String name(int id) {
+        assert 0 <= id && id < this.size : "Violation of: 0 <= id < size()";
+
+        return this.names[id];
+    }
+
+    /**
+     * Returns the number of symbols in this; ids are {@code 0} through
+     * {@code size() - 1}.
+     *
+     * @return the number of symbols
+     */
+    public int size() {
+        return this.size;
+    }
+
+}
@@ -0,0 +1,356 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import components.program.Program;
+
+/**
+ * JUnit test fixture for {@code ProgramCode} and {@code ExecutionState}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ExecutionStateTest {
+
+    /**
+     * Primitive instructions each traced run executes.
+     */
+    private static final int STEPS = 300;
+
+    /**
+     * Program exercising every condition, calls and nesting.
+     */
+    private static final String CONDITIONS = "PROGRAM C IS\n"
+            + "  INSTRUCTION a IS\n"
+            + "    IF next-is-not-empty THEN move END IF\n"
+            + "    IF next-is-wall THEN turnleft ELSE b END IF\n"
+            + "    IF next-is-friend THEN infect END IF\n"
+            + "    IF next-is-not-enemy THEN turnleft END IF\n"
+            + "  END a\n"
+            + "  INSTRUCTION b IS\n"
+            + "    WHILE next-is-not-friend DO turnright END WHILE\n"
+            + "    skip\n"
+            + "  END b\n"
+            + "BEGIN\n"
+            + "  WHILE next-is-empty DO a END WHILE\n"
+            + "  IF random THEN a ELSE skip END IF\n"
+            + "END C\n";
+
+    /**
+     * Returns the calls the tree interpreter makes repeating the body of
+     * {@code p} until {@code STEPS} primitive instructions.
+     *
+     * @param p
+     *            the program
+     * @return the recorded calls
+     */
+    private static String interpreted(Program p) {
+        java.util.Map<String, StatementNode> context = StatementNode
+                .contextOf(p);
+        StatementNode body = StatementNode.bodyOf(p);
+        TestSupport.Trace trace = new TestSupport.Trace(STEPS, 1);
+        try {
+            while (true) {
+                ExecutionBenchmark.interpret(body, context, trace);
+            }
+        } catch (TestSupport.Stop e) {
+            return trace.calls();
+        }
+    }
+
+    /**
+     * Returns the calls creature 0 of {@code state} makes stepping until
+     * {@code STEPS} primitive instructions.
+     *
+     * @param state
+     *            the execution state
+     * @return the recorded calls
+     */
+    private static String stepped(ExecutionState state) {
+        TestSupport.Trace trace = new TestSupport.Trace(STEPS, 1);
+        try {
+            while (true) {
+                state.step(0, trace);
+            }
+        } catch (TestSupport.Stop e) {
+            return trace.calls();
+        }
+    }
+
+    /**
+     * Returns the benchmark and test programs compiled.
+     *
+     * @return the programs
+     */
+    private static ProgramCode[] programs() {
+        final int instructions = 10, statements = 5, depth = 30;
+        return new ProgramCode[] {
+            ProgramCode.compile(
+                    TestSupport.parse(ParserBenchmark.smallProgram())),
+            ProgramCode.compile(TestSupport.parse(
+                    ParserBenchmark.wideProgram(instructions, statements))),
+            ProgramCode.compile(
+                    TestSupport.parse(ParserBenchmark.deepProgram(depth))),
+            ProgramCode.compile(TestSupport.parse(CONDITIONS)) };
+    }
+
+    /**
+     * Test of stepping making the same calls as the tree interpreter.
+     */
+    @Test
+    public final void testSameCallsAsInterpreter() {
+        final int instructions = 10, statements = 5, depth = 30;
+        String[] sources = { ParserBenchmark.smallProgram(),
+            ParserBenchmark.wideProgram(instructions, statements),
+            ParserBenchmark.deepProgram(depth), CONDITIONS };
+        for (String source : sources) {
+            Program p = TestSupport.parse(source);
+            ExecutionState state = new ExecutionState(1, instructions, 0,
+                    ProgramCode.compile(p));
+            assertEquals(interpreted(p), stepped(state));
+        }
+    }
+
+    /**
+     * Test of every step executing exactly one primitive instruction.
+     */
+    @Test
+    public final void testStepReturnsPrimitive() {
+        ExecutionState state = new ExecutionState(1, 4, 0,
+                ProgramCode.compile(TestSupport.parse(CONDITIONS)));
+        TestSupport.Trace trace = new TestSupport.Trace(STEPS, 7);
+        for (int i = 0; i < STEPS - 1; i++) {
+            int primitive = state.step(0, trace);
+            char last = trace.lastCall();
+            assertEquals("mlris".charAt(primitive), last);
+        }
+    }
+
+    /**
+     * Test of a loop with no primitive instruction not hanging a step.
+     */
+    @Test
+    public final void testNoAction() {
+        ExecutionState state = new ExecutionState(1, 1, 0, ProgramCode
+                .compile(TestSupport.parse("PROGRAM N IS BEGIN WHILE true DO "
+                        + "IF random THEN END IF END WHILE END N")));
+        assertEquals(ExecutionState.NO_ACTION,
+                state.step(0, new TestSupport.Trace(STEPS, 1)));
+    }
+
+    /**
+     * Test of exceeding the call depth being reported.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testCallDepthExceeded() {
+        ExecutionState state = new ExecutionState(1, 1, 0,
+                ProgramCode.compile(TestSupport.parse("PROGRAM D IS\n"
+                        + "  INSTRUCTION a IS move END a\n"
+                        + "  INSTRUCTION b IS a END b\n"
+                        + "BEGIN b END D")));
+        state.step(0, new TestSupport.Trace(STEPS, 1));
+    }
+
+    /**
+     * Test of a call to an undefined instruction being reported.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testUndefinedInstruction() {
+        ProgramCode.compile(TestSupport.parse("PROGRAM U IS BEGIN jump END U"));
+    }
+
+    /**
+     * Test of a restored checkpoint continuing exactly where the original
+     * left off.
+     */
+    @Test
+    public final void testCheckpointRestore() throws IOException {
+        final int creatures = 1000, depth = 12, registerCount = 3;
+        ProgramCode[] programs = programs();
+        ExecutionState state = new ExecutionState(creatures, depth,
+                registerCount, programs);
+        CreatureActions actions = new ExecutionBenchmark.StepBudget(
+                Long.MAX_VALUE);
+        for (int i = 0; i < creatures; i++) {
+            state.start(i, i % programs.length);
+            for (int r = 0; r < registerCount; r++) {
+                state.setRegister(i, r, (long) i * registerCount + r);
+            }
+            for (int s = 0; s < i % depth; s++) {
+                state.step(i, actions);
+            }
+        }
+        Path file = Files.createTempFile("state", ".bls");
+        try {
+            state.checkpoint(file);
+            ExecutionState restored = ExecutionState.restore(file, programs);
+            assertEquals(creatures, restored.creatures());
+            for (int i = 0; i < creatures; i++) {
+                assertEquals(state.programId(i), restored.programId(i));
+                assertEquals(state.pc(i), restored.pc(i));
+                assertEquals(state.depth(i), restored.depth(i));
+                for (int r = 0; r < registerCount; r++) {
+                    assertEquals(state.register(i, r),
+                            restored.register(i, r));
+                }
+            }
+            for (int i = 0; i < creatures; i++) {
+                assertEquals(state.step(i, new TestSupport.Trace(STEPS, i)),
+                        restored.step(i, new TestSupport.Trace(STEPS, i)));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of a checkpoint being refused with different programs.
+     */
+    @Test
+    public final void testRestoreDifferentPrograms() throws IOException {
+        ProgramCode[] programs = programs();
+        ExecutionState state = new ExecutionState(2, 2, 0, programs);
+        Path file = Files.createTempFile("state", ".bls");
+        try {
+            state.checkpoint(file);
+            ProgramCode[] changed = programs.clone();
+            changed[1] = ProgramCode.compile(TestSupport.parse(CONDITIONS));
+            boolean refused = false;
+            try {
+                ExecutionState.restore(file, changed);
+            } catch (RuntimeException e) {
+                refused = true;
+            }
+            assertTrue(refused);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Overwrites the four bytes of {@code file} at {@code position} with
+     * {@code value}, little-endian.
+     *
+     * @param file
+     *            the file
+     * @param position
+     *            the byte offset
+     * @param value
+     *            the new value
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void patchInt(Path file, long position, int value)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).putInt(value);
+            bytes.flip();
+            channel.write(bytes, position);
+        }
+    }
+
+    /**
+     * Reports whether restoring {@code file} with {@code programs} is
+     * refused.
+     *
+     * @param file
+     *            the checkpoint file
+     * @param programs
+     *            the programs
+     * @return true iff restore reported an error
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static boolean refused(Path file, ProgramCode... programs)
+            throws IOException {
+        boolean refused = false;
+        try {
+            ExecutionState.restore(file, programs);
+        } catch (RuntimeException e) {
+            refused = true;
+        }
+        return refused;
+    }
+
+    /**
+     * Test of a checkpoint replacing the old one without leaving a temporary
+     * file behind.
+     */
+    @Test
+    public final void testCheckpointReplaces() throws IOException {
+        ProgramCode[] programs = programs();
+        Path dir = Files.createTempDirectory("state");
+        Path file = dir.resolve("creatures.bls");
+        try {
+            new ExecutionState(3, 2, 0, programs).checkpoint(file);
+            new ExecutionState(2, 2, 0, programs).checkpoint(file);
+            assertEquals(2, ExecutionState.restore(file, programs)
+                    .creatures());
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Test of a header whose sizes do not match the file being refused
+     * before anything is allocated from them.
+     */
+    @Test
+    public final void testRestoreCorruptHeader() throws IOException {
+        ProgramCode[] programs = programs();
+        Path file = Files.createTempFile("state", ".bls");
+        try {
+            new ExecutionState(2, 2, 0, programs).checkpoint(file);
+            patchInt(file, Integer.BYTES, Integer.MAX_VALUE);
+            assertTrue(refused(file, programs));
+            new ExecutionState(2, 2, 0, programs).checkpoint(file);
+            patchInt(file, 2 * Integer.BYTES, Integer.MAX_VALUE);
+            assertTrue(refused(file, programs));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of a saved return address outside its program being refused.
+     */
+    @Test
+    public final void testRestoreCorruptReturnAddress() throws IOException {
+        final int depth = 2;
+        ProgramCode code = ProgramCode.compile(TestSupport.parse(
+                "PROGRAM C IS\n" + "  INSTRUCTION a IS move END a\n"
+                        + "BEGIN a END C"));
+        ExecutionState state = new ExecutionState(1, depth, 0, code);
+        state.start(0, 0);
+        state.step(0, new TestSupport.Trace(STEPS, 1));
+        assertEquals(1, state.depth(0));
+        Path file = Files.createTempFile("state", ".bls");
+        try {
+            state.checkpoint(file);
+            assertFalse(refused(file, code));
+            patchInt(file, Files.size(file) - depth * Integer.BYTES,
+                    code.length());
+            assertTrue(refused(file, code));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
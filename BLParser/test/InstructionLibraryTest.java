@@ -0,0 +1,216 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+
+/**
+ * JUnit test fixture for {@code InstructionLibrary}, {@code LibraryPath} and
+ * USES clauses in {@code Program1Parse1}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class InstructionLibraryTest {
+
+    /**
+     * A library defining the instructions of {@code PROGRAM_FILE} and one
+     * more.
+     */
+    private static final String LIBRARY_FILE = "test/library1.bl";
+
+    /**
+     * A valid BL program with two instructions.
+     */
+    private static final String PROGRAM_FILE = "test/program1.bl";
+
+    /**
+     * The body of {@code PROGRAM_FILE}, using the library instead of
+     * defining its instructions.
+     */
+    private static final String USING_PROGRAM = "PROGRAM Test IS\n"
+            + "  USES Common\n"
+            + "BEGIN\n"
+            + "  infect\n"
+            + "  WHILE true DO\n"
+            + "    two\n"
+            + "    IF next-is-empty THEN\n"
+            + "      move\n"
+            + "    END IF\n"
+            + "    two\n"
+            + "    one\n"
+            + "  END WHILE\n"
+            + "END Test\n";
+
+    /**
+     * Returns the compiled {@code LIBRARY_FILE}.
+     *
+     * @return the library
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static InstructionLibrary library() throws IOException {
+        return InstructionLibrary
+                .compile(SpanFormatter.readSource(Paths.get(LIBRARY_FILE)));
+    }
+
+    /**
+     * Returns a parser that finds the library in {@code LIBRARY_FILE}.
+     *
+     * @return the parser
+     * @throws IOException
+     *             if the library cannot be read
+     */
+    private static Program1Parse1 parser() throws IOException {
+        LibraryPath path = new LibraryPath();
+        path.add(library());
+        return new Program1Parse1(ParseLimits.UNLIMITED, null, path);
+    }
+
+    /**
+     * Returns the number of instructions in {@code p}.
+     *
+     * @param p
+     *            the program
+     * @return |p.context|
+     */
+    private static int contextSize(Program p) {
+        Map<String, Statement> c = p.newContext();
+        p.swapContext(c);
+        int size = c.size();
+        p.swapContext(c);
+        return size;
+    }
+
+    /**
+     * Test of compiling the library and reading it back from bytes.
+     */
+    @Test
+    public final void testCompileRoundTrip() throws IOException {
+        InstructionLibrary lib = library();
+        InstructionLibrary copy = InstructionLibrary.fromBytes(lib.toBytes());
+        assertEquals("Common", copy.name());
+        assertEquals(Arrays.asList("one", "two", "unused"),
+                copy.instructionNames());
+        for (String name : lib.instructionNames()) {
+            assertEquals(lib.instruction(name), copy.instruction(name));
+        }
+        assertFalse(copy.hasInstruction("three"));
+    }
+
+    /**
+     * Test of a program using the library parsing to the same program as
+     * the one defining the instructions itself, less the unused one.
+     */
+    @Test
+    public final void testUsesMatchesInlineDefinitions() throws IOException {
+        Program1Parse1 p = parser();
+        p.parseWithSpans(USING_PROGRAM);
+        Program expected = new Program1();
+        SimpleReader in = new SimpleReader1L(PROGRAM_FILE);
+        expected.parse(in);
+        in.close();
+        assertEquals(expected, p);
+    }
+
+    /**
+     * Test of library instructions called only from other library
+     * instructions being added, and names being canonical.
+     */
+    @Test
+    public final void testTransitiveCalls() throws IOException {
+        Program1Parse1 p = parser();
+        p.parseWithSpans("PROGRAM P IS USES Common BEGIN two END P");
+        assertEquals(2, contextSize(p));
+        assertTrue(p.symbols().id("one") != SymbolTable.NO_SYMBOL);
+    }
+
+    /**
+     * Test of loading a library from a directory on the path.
+     */
+    @Test
+    public final void testResolveFromDirectory() throws IOException {
+        Path dir = Files.createTempDirectory("libs");
+        Path file = dir.resolve("Common" + InstructionLibrary.EXTENSION);
+        library().write(file);
+        try {
+            Program1Parse1 p = new Program1Parse1(ParseLimits.UNLIMITED,
+                    new NodeTable(), new LibraryPath(dir));
+            p.parseWithSpans(USING_PROGRAM);
+            assertEquals(Arrays.asList("two", "one"),
+                    Arrays.asList(p.sharedContext().keySet()
+                            .toArray(new String[0])));
+        } finally {
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Test of a library name that is not an identifier never reaching the
+     * file system.
+     */
+    @Test
+    public final void testResolveRejectsPath() throws IOException {
+        Path dir = Files.createTempDirectory("libs");
+        Path sub = Files.createDirectory(dir.resolve("sub"));
+        Path file = dir.resolve("Common" + InstructionLibrary.EXTENSION);
+        library().write(file);
+        try {
+            boolean refused = false;
+            try {
+                new LibraryPath(sub).resolve("../Common");
+            } catch (RuntimeException e) {
+                refused = true;
+            }
+            assertTrue(refused);
+        } finally {
+            Files.delete(file);
+            Files.delete(sub);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Test of a local instruction clashing with a library instruction.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testLocalDuplicateOfLibrary() throws IOException {
+        parser().parseWithSpans("PROGRAM P IS USES Common\n"
+                + "  INSTRUCTION one IS move END one\n"
+                + "BEGIN one END P");
+    }
+
+    /**
+     * Test of a library that cannot be found.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testMissingLibrary() throws IOException {
+        parser().parseWithSpans("PROGRAM P IS USES Missing BEGIN move END P");
+    }
+
+    /**
+     * Test of a library defining an instruction twice.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testDuplicateInLibrary() {
+        InstructionLibrary.compile("LIBRARY L IS\n"
+                + "  INSTRUCTION a IS move END a\n"
+                + "  INSTRUCTION a IS skip END a\n"
+                + "END L");
+    }
+
+}
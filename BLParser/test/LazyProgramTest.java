@@ -0,0 +1,172 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code LazyProgram}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class LazyProgramTest {
+
+    /**
+     * A valid BL program with three instructions.
+     */
+    private static final String FILE_NAME = "test/program3.bl";
+
+    /**
+     * Returns the lazily parsed {@code FILE_NAME}.
+     *
+     * @return the scanned program
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static LazyProgram scan() throws IOException {
+        return LazyProgram.scan(SpanFormatter.readSource(Paths.get(FILE_NAME)));
+    }
+
+    /**
+     * Test of scan finding instructions without parsing any bodies.
+     */
+    @Test
+    public final void testScanParsesNothing() throws IOException {
+        LazyProgram p = scan();
+        assertEquals("Test", p.name());
+        assertEquals(Arrays.asList("one", "two", "three"),
+                p.instructionNames());
+        for (String name : p.instructionNames()) {
+            assertFalse(p.isMaterialized(name));
+        }
+    }
+
+    /**
+     * Test of instruction parsing only the body that is read.
+     */
+    @Test
+    public final void testInstructionMaterializesOnce() throws IOException {
+        LazyProgram p = scan();
+        StatementNode one = p.instruction("one");
+        assertTrue(p.isMaterialized("one"));
+        assertFalse(p.isMaterialized("two"));
+        assertSame(one, p.instruction("one"));
+        assertEquals(3, one.size());
+    }
+
+    /**
+     * Test of reachableInstructions on a program that calls everything.
+     */
+    @Test
+    public final void testReachableInstructions() throws IOException {
+        LazyProgram p = scan();
+        assertEquals(new LinkedHashSet<>(Arrays.asList("three", "two", "one")),
+                p.reachableInstructions());
+    }
+
+    /**
+     * Test of reachableInstructions leaving unused bodies unparsed.
+     */
+    @Test
+    public final void testUnreachableNotParsed() {
+        LazyProgram p = LazyProgram.scan("PROGRAM P IS\n"
+                + "  INSTRUCTION a IS move END a\n"
+                + "  INSTRUCTION b IS IF true THEN a END IF END b\n"
+                + "BEGIN WHILE true DO turnleft END WHILE END P\n");
+        assertTrue(p.reachableInstructions().isEmpty());
+        assertFalse(p.isMaterialized("a"));
+        assertFalse(p.isMaterialized("b"));
+    }
+
+    /**
+     * Test of toProgram matching the reference parse.
+     */
+    @Test
+    public final void testToProgramMatchesReference() throws IOException {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        pRef.parse(file);
+        file.close();
+        Program pTest = new Program1Parse1();
+        scan().toProgram(pTest);
+        assertEquals(pRef, pTest);
+    }
+
+    /**
+     * Test of concurrent readers seeing the same parsed body.
+     */
+    @Test
+    public final void testConcurrentMaterialization()
+            throws IOException, InterruptedException {
+        final LazyProgram p = scan();
+        final StatementNode[] seen = new StatementNode[4];
+        Thread[] threads = new Thread[seen.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int k = i;
+            threads[i] = new Thread(() -> seen[k] = p.instruction("three"));
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (StatementNode node : seen) {
+            assertSame(seen[0], node);
+        }
+    }
+
+    /**
+     * Returns the limit exceeded by scanning {@code source} with
+     * {@code limits}, or {@code null} if none was.
+     *
+     * @param source
+     *            the program text
+     * @param limits
+     *            the limits to enforce
+     * @return the exceeded limit
+     */
+    private static ParseLimitException.Limit exceeded(String source,
+            ParseLimits limits) {
+        ParseLimitException.Limit limit = null;
+        try {
+            LazyProgram.scan(source, limits);
+        } catch (ParseLimitException e) {
+            limit = e.limit();
+        }
+        return limit;
+    }
+
+    /**
+     * Test of scan enforcing the token and depth limits on bodies it skips.
+     */
+    @Test
+    public final void testScanLimits() {
+        final int depth = 3;
+        String source = ParserBenchmark.deepProgram(depth);
+        assertEquals(null, exceeded(source, ParseLimits.UNLIMITED));
+        assertEquals(ParseLimitException.Limit.TOKENS, exceeded(source,
+                new ParseLimits(depth, 100, 100, 100, 60_000)));
+        assertEquals(ParseLimitException.Limit.DEPTH, exceeded(source,
+                new ParseLimits(1000, 100, depth - 1, 100, 60_000)));
+    }
+
+    /**
+     * Test of scan rejecting a program name that is not an identifier.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testScanInvalidProgramName() {
+        LazyProgram.scan("PROGRAM ( IS BEGIN move END (");
+    }
+
+}
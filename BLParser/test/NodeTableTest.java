@@ -0,0 +1,171 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for hash-consed parsing with {@code NodeTable}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class NodeTableTest {
+
+    /**
+     * A valid BL program with repeated subtrees.
+     */
+    private static final String FILE_NAME = "test/program3.bl";
+
+    /**
+     * Returns the tokens of {@code FILE_NAME}.
+     *
+     * @return the tokens
+     */
+    private static Queue<String> tokens() {
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Test of parse with sharing still producing the ordinary program.
+     */
+    @Test
+    public final void testParseSharedMatchesReference() {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        pRef.parse(file);
+        file.close();
+        Program pTest = new Program1Parse1(ParseLimits.UNLIMITED,
+                new NodeTable());
+        pTest.parse(tokens());
+        assertEquals(pRef, pTest);
+    }
+
+    /**
+     * Test of repeated subtrees sharing one node.
+     */
+    @Test
+    public final void testRepeatedSubtreesShared() {
+        NodeTable nodes = new NodeTable();
+        Program1Parse1 p = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        p.parse(tokens());
+        StatementNode two = p.sharedContext().get("two");
+        StatementNode three = p.sharedContext().get("three");
+        //"one" as the first statement of both instructions
+        assertSame(two.child(0), three.child(0));
+        assertTrue(nodes.size() < nodes.requests());
+    }
+
+    /**
+     * Test of equal programs parsed against one table being identical.
+     */
+    @Test
+    public final void testEqualProgramsIdentical() {
+        NodeTable nodes = new NodeTable();
+        Program1Parse1 p1 = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        p1.parse(tokens());
+        Program1Parse1 p2 = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        p2.parse(tokens());
+        assertSame(p1.sharedBody(), p2.sharedBody());
+        assertSame(p1.sharedContext().get("three"),
+                p2.sharedContext().get("three"));
+    }
+
+    /**
+     * Test of equalsShared comparing programs in shared form by reference.
+     */
+    @Test
+    public final void testEqualsShared() {
+        NodeTable nodes = new NodeTable();
+        Program1Parse1 p1 = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        p1.parse(tokens());
+        Program1Parse1 p2 = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        p2.parse(tokens());
+        assertTrue(p1.equalsShared(p2));
+        Program1Parse1 moved = new Program1Parse1(ParseLimits.UNLIMITED,
+                nodes);
+        moved.transferFrom(p2);
+        assertTrue(p1.equalsShared(moved));
+        Program1Parse1 p3 = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        Queue<String> tokens = new Queue1L<>();
+        for (String token : "PROGRAM Test IS BEGIN move END Test".split(" ")) {
+            tokens.enqueue(token);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        p3.parse(tokens);
+        assertFalse(p1.equalsShared(p3));
+    }
+
+    /**
+     * Test of the Statement trees being built only on first use, and of the
+     * shared form being rebuilt from them afterwards.
+     */
+    @Test
+    public final void testMaterializeOnSwap() {
+        NodeTable nodes = new NodeTable();
+        Program1Parse1 p = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        p.parse(tokens());
+        StatementNode body = p.sharedBody();
+        StatementNode two = p.sharedContext().get("two");
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        pRef.parse(file);
+        file.close();
+        assertEquals(pRef, p);
+        assertSame(body, p.sharedBody());
+        assertSame(two, p.sharedContext().get("two"));
+        Program1Parse1 q = new Program1Parse1(ParseLimits.UNLIMITED, nodes);
+        q.transferFrom(p);
+        assertEquals(pRef, q);
+    }
+
+    /**
+     * Test of parses on several threads sharing one table.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public final void testConcurrentParses() throws InterruptedException {
+        final int threads = 4, rounds = 50;
+        NodeTable nodes = new NodeTable();
+        Program1Parse1 reference = new Program1Parse1(ParseLimits.UNLIMITED,
+                nodes);
+        reference.parse(tokens());
+        long perParse = nodes.requests();
+        Program1Parse1[] last = new Program1Parse1[threads];
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int slot = t;
+            running[t] = new Thread(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    Program1Parse1 p = new Program1Parse1(
+                            ParseLimits.UNLIMITED, nodes);
+                    p.parse(tokens());
+                    last[slot] = p;
+                }
+            });
+            running[t].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        assertEquals((1 + threads * rounds) * perParse, nodes.requests());
+        for (Program1Parse1 p : last) {
+            assertSame(reference.sharedBody(), p.sharedBody());
+        }
+    }
+
+}
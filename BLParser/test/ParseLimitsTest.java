@@ -0,0 +1,185 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for parsing with {@code ParseLimits}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ParseLimitsTest {
+
+    /**
+     * A valid BL program with three instructions nested two deep.
+     */
+    private static final String PROGRAM_FILE = "test/program3.bl";
+
+    /**
+     * A valid sequence of BL statements nested two deep.
+     */
+    private static final String STATEMENT_FILE = "test/statement1.bl";
+
+    /**
+     * Returns the tokens of the file {@code fileName}.
+     *
+     * @param fileName
+     *            the file to tokenize
+     * @return the tokens
+     */
+    private static Queue<String> tokens(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Parses {@code PROGRAM_FILE} with {@code limits} and returns the limit
+     * that was exceeded, or {@code null} if none was.
+     *
+     * @param limits
+     *            the limits to enforce
+     * @return the exceeded limit
+     */
+    private static ParseLimitException.Limit exceeded(ParseLimits limits) {
+        ParseLimitException.Limit limit = null;
+        try {
+            new Program1Parse1(limits).parse(tokens(PROGRAM_FILE));
+        } catch (ParseLimitException e) {
+            limit = e.limit();
+        }
+        return limit;
+    }
+
+    /**
+     * Test of parse within generous limits.
+     */
+    @Test
+    public final void testParseWithinLimits() {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(PROGRAM_FILE);
+        pRef.parse(file);
+        file.close();
+        Program pTest = new Program1Parse1(
+                new ParseLimits(1000, 3, 2, 9, 60_000));
+        pTest.parse(tokens(PROGRAM_FILE));
+        assertEquals(pRef, pTest);
+    }
+
+    /**
+     * Test of parse with too low a token limit.
+     */
+    @Test
+    public final void testParseTooManyTokens() {
+        assertEquals(ParseLimitException.Limit.TOKENS,
+                exceeded(new ParseLimits(10, 100, 100, 100, 60_000)));
+    }
+
+    /**
+     * Test of parse with too low an instruction limit.
+     */
+    @Test
+    public final void testParseTooManyInstructions() {
+        assertEquals(ParseLimitException.Limit.INSTRUCTIONS,
+                exceeded(new ParseLimits(1000, 2, 100, 100, 60_000)));
+    }
+
+    /**
+     * Test of parse with too low a depth limit.
+     */
+    @Test
+    public final void testParseTooDeep() {
+        assertEquals(ParseLimitException.Limit.DEPTH,
+                exceeded(new ParseLimits(1000, 100, 1, 100, 60_000)));
+    }
+
+    /**
+     * Test of parse with too low an identifier length limit.
+     */
+    @Test
+    public final void testParseIdentifierTooLong() {
+        assertEquals(ParseLimitException.Limit.IDENTIFIER_LENGTH,
+                exceeded(new ParseLimits(1000, 100, 100, 4, 60_000)));
+    }
+
+    /**
+     * Test of newInstance keeping the limits of the original.
+     */
+    @Test
+    public final void testNewInstanceKeepsLimits() {
+        ParseLimitException.Limit limit = null;
+        Program p = new Program1Parse1(new ParseLimits(10, 100, 100, 100,
+                60_000)).newInstance();
+        try {
+            p.parse(tokens(PROGRAM_FILE));
+        } catch (ParseLimitException e) {
+            limit = e.limit();
+        }
+        assertEquals(ParseLimitException.Limit.TOKENS, limit);
+    }
+
+    /**
+     * Test of Statement newInstance keeping the limits of the original.
+     */
+    @Test(expected = ParseLimitException.class)
+    public final void testStatementNewInstanceKeepsLimits() {
+        Statement s = new Statement1Parse1(
+                new ParseLimits(1000, 100, 1, 100, 60_000)).newInstance();
+        s.parseBlock(tokens(STATEMENT_FILE));
+    }
+
+    /**
+     * Test of the token limit stopping parse(SimpleReader) while it reads.
+     */
+    @Test
+    public final void testReaderTooManyTokens() {
+        ParseLimitException.Limit limit = null;
+        SimpleReader file = new SimpleReader1L(PROGRAM_FILE);
+        try {
+            new Program1Parse1(new ParseLimits(10, 100, 100, 100, 60_000))
+                    .parse(file);
+        } catch (ParseLimitException e) {
+            limit = e.limit();
+        }
+        file.close();
+        assertEquals(ParseLimitException.Limit.TOKENS, limit);
+    }
+
+    /**
+     * Test of the token limit stopping tokenizing before the rest of the
+     * input is queued.
+     */
+    @Test
+    public final void testTokenizerStopsAtLimit() {
+        final int maxTokens = 3;
+        assertEquals(maxTokens + 1, SourceTokenizer
+                .tokens("move move move", null, maxTokens).length());
+        ParseLimitException.Limit limit = null;
+        try {
+            SourceTokenizer.tokens("move move move move", null, maxTokens);
+        } catch (ParseLimitException e) {
+            limit = e.limit();
+        }
+        assertEquals(ParseLimitException.Limit.TOKENS, limit);
+    }
+
+    /**
+     * Test of Statement parseBlock with too low a depth limit.
+     */
+    @Test(expected = ParseLimitException.class)
+    public final void testParseBlockTooDeep() {
+        Statement s = new Statement1Parse1(
+                new ParseLimits(1000, 100, 1, 100, 60_000));
+        s.parseBlock(tokens(STATEMENT_FILE));
+    }
+
+}
@@ -0,0 +1,349 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+
+/**
+ * JUnit test fixture for {@code ParserDaemon}, {@code ParserClient} and
+ * {@code ProgramCodec}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ParserDaemonTest {
+
+    /**
+     * A valid BL program with three instructions.
+     */
+    private static final String FILE_NAME = "test/program3.bl";
+
+    /**
+     * FILE_NAME relative to the daemon's root.
+     */
+    private static final String ROOT_FILE_NAME = "program3.bl";
+
+    /**
+     * Directory holding the socket file.
+     */
+    private static Path directory;
+
+    /**
+     * The running daemon.
+     */
+    private static ParserDaemon daemon;
+
+    /**
+     * Executor for the daemon's connections and accept loop.
+     */
+    private static ExecutorService executor;
+
+    /**
+     * Starts the daemon.
+     *
+     * @throws IOException
+     *             if the socket cannot be bound
+     */
+    @BeforeClass
+    public static void startDaemon() throws IOException {
+        directory = Files.createTempDirectory("daemon");
+        executor = Executors.newCachedThreadPool();
+        daemon = new ParserDaemon(directory.resolve("bl.sock"),
+                Paths.get("test"), ParserDaemon.DEFAULT_LIMITS, executor);
+        executor.execute(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    /**
+     * Stops the daemon.
+     *
+     * @throws IOException
+     *             if the socket cannot be removed
+     */
+    @AfterClass
+    public static void stopDaemon() throws IOException {
+        daemon.close();
+        executor.shutdownNow();
+        Files.delete(directory);
+    }
+
+    /**
+     * Returns the reference parse of {@code FILE_NAME}.
+     *
+     * @return the parsed program
+     */
+    private static Program referenceParse() {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Returns a client connected to the daemon.
+     *
+     * @return the client
+     * @throws IOException
+     *             if the connection fails
+     */
+    private static ParserClient connect() throws IOException {
+        return new ParserClient(directory.resolve("bl.sock"));
+    }
+
+    /**
+     * Test of ProgramCodec round trip.
+     */
+    @Test
+    public final void testCodecRoundTrip() {
+        Program pRef = referenceParse();
+        byte[] bytes = ProgramCodec.encode(pRef);
+        Program pTest = new Program1Parse1();
+        ProgramCodec.decode(bytes, pTest);
+        assertEquals(pRef, pTest);
+        assertEquals(referenceParse(), pRef);
+    }
+
+    /**
+     * Returns the bytes of an encoded program: MAGIC followed by
+     * {@code rest}.
+     *
+     * @param rest
+     *            the bytes after MAGIC
+     * @return the encoded program
+     */
+    private static byte[] encoded(byte... rest) {
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES + rest.length);
+        bytes.putInt(ProgramCodec.MAGIC).put(rest);
+        return bytes.array();
+    }
+
+    /**
+     * Test of decode rejecting a length whose varint is negative.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testDecodeNegativeLength() {
+        final byte more = (byte) 0x80, top = 0x0F;
+        ProgramCodec.decode(encoded(more, more, more, more, top),
+                new Program1Parse1());
+    }
+
+    /**
+     * Returns an encoded program whose body is {@code depth} nested WHILE
+     * statements.
+     *
+     * @param depth
+     *            the nesting depth
+     * @return the encoded program
+     */
+    private static byte[] nestedWhiles(int depth) {
+        final int header = 3;
+        final byte whileTag = 3;
+        // empty name, no symbols, no instructions, then the body, each
+        // block holding one WHILE until the innermost, empty, block
+        byte[] rest = new byte[header + 2 * depth + 1];
+        for (int i = 0; i < depth; i++) {
+            rest[header + 2 * i] = 1;
+            rest[header + 2 * i + 1] = whileTag;
+        }
+        return encoded(rest);
+    }
+
+    /**
+     * Test of decode accepting statements nested MAX_DEPTH deep.
+     */
+    @Test
+    public final void testDecodeMaxDepth() {
+        Program p = new Program1Parse1();
+        ProgramCodec.decode(nestedWhiles(ProgramCodec.MAX_DEPTH), p);
+        Statement body = p.newBody();
+        p.swapBody(body);
+        assertEquals(1, body.lengthOfBlock());
+    }
+
+    /**
+     * Test of decode rejecting statements nested more than MAX_DEPTH deep
+     * before it runs out of stack.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testDecodeTooDeep() {
+        ProgramCodec.decode(nestedWhiles(ProgramCodec.MAX_DEPTH + 1),
+                new Program1Parse1());
+    }
+
+    /**
+     * Test of a pretty-print request by path.
+     */
+    @Test
+    public final void testPrettyPrintPath() throws IOException {
+        try (ParserClient client = connect()) {
+            ParserClient.Reply reply = client.request(
+                    ParserDaemon.PRETTY_PRINT, ParserDaemon.PATH,
+                    ROOT_FILE_NAME);
+            assertTrue(reply.ok());
+            assertEquals(ProgramText.programString(referenceParse()),
+                    reply.text());
+        }
+    }
+
+    /**
+     * Test of several requests on one connection, including a binary reply.
+     */
+    @Test
+    public final void testEncodeAndCheckSource() throws IOException {
+        String source = SpanFormatter.readSource(Paths.get(FILE_NAME));
+        try (ParserClient client = connect()) {
+            ParserClient.Reply reply = client.request(ParserDaemon.ENCODE,
+                    ParserDaemon.SOURCE, source);
+            assertTrue(reply.ok());
+            Program p = new Program1Parse1();
+            ProgramCodec.decode(reply.payload(), p);
+            assertEquals(referenceParse(), p);
+
+            reply = client.request(ParserDaemon.CHECK, ParserDaemon.SOURCE,
+                    source);
+            assertTrue(reply.ok());
+            assertEquals("OK: program Test, 3 instructions", reply.text());
+        }
+    }
+
+    /**
+     * Test of a syntax error returned as a diagnostic, leaving the
+     * connection usable.
+     */
+    @Test
+    public final void testDiagnostic() throws IOException {
+        try (ParserClient client = connect()) {
+            ParserClient.Reply reply = client.request(ParserDaemon.CHECK,
+                    ParserDaemon.SOURCE, "PROGRAM P IS BEGIN move END Q");
+            assertFalse(reply.ok());
+            assertFalse(reply.text().isEmpty());
+
+            reply = client.request(ParserDaemon.CHECK, ParserDaemon.SOURCE,
+                    "PROGRAM P IS BEGIN move END P");
+            assertTrue(reply.ok());
+        }
+    }
+
+    /**
+     * Test of PATH requests being refused outside the daemon's root.
+     */
+    @Test
+    public final void testPathOutsideRoot() throws IOException {
+        try (ParserClient client = connect()) {
+            ParserClient.Reply reply = client.request(ParserDaemon.CHECK,
+                    ParserDaemon.PATH, "../src/ParserDaemon.java");
+            assertFalse(reply.ok());
+
+            reply = client.request(ParserDaemon.CHECK, ParserDaemon.PATH,
+                    Paths.get("src/ParserDaemon.java").toAbsolutePath()
+                            .toString());
+            assertFalse(reply.ok());
+        }
+    }
+
+    /**
+     * Test of a program beyond the daemon's limits returned as a
+     * diagnostic, leaving the connection usable.
+     */
+    @Test
+    public final void testLimitDiagnostic() throws IOException {
+        String deep = ParserBenchmark
+                .deepProgram(ParserDaemon.DEFAULT_LIMITS.maxDepth() + 1);
+        try (ParserClient client = connect()) {
+            ParserClient.Reply reply = client.request(ParserDaemon.CHECK,
+                    ParserDaemon.SOURCE, deep);
+            assertFalse(reply.ok());
+
+            reply = client.request(ParserDaemon.CHECK, ParserDaemon.SOURCE,
+                    "PROGRAM P IS BEGIN move END P");
+            assertTrue(reply.ok());
+        }
+    }
+
+    /**
+     * Test of the socket file being accessible to its owner only.
+     */
+    @Test
+    public final void testSocketOwnerOnly() throws IOException {
+        assertEquals(PosixFilePermissions.fromString("rw-------"),
+                Files.getPosixFilePermissions(directory.resolve("bl.sock")));
+    }
+
+    /**
+     * Test of a second daemon refusing the socket of a running one.
+     */
+    @Test
+    public final void testRefusesLiveSocket() {
+        boolean refused = false;
+        try {
+            new ParserDaemon(directory.resolve("bl.sock"), null,
+                    ParserDaemon.DEFAULT_LIMITS, executor).close();
+        } catch (IOException e) {
+            refused = true;
+        }
+        assertTrue(refused);
+        assertTrue(Files.exists(directory.resolve("bl.sock")));
+    }
+
+    /**
+     * Test of a daemon refusing to replace a file that is not a socket.
+     */
+    @Test
+    public final void testRefusesOtherFile() throws IOException {
+        Path file = Files.write(directory.resolve("notes.txt"),
+                new byte[] { 'x' });
+        boolean refused = false;
+        try {
+            new ParserDaemon(file, null, ParserDaemon.DEFAULT_LIMITS,
+                    executor).close();
+        } catch (IOException e) {
+            refused = true;
+        }
+        assertTrue(refused);
+        assertEquals(1, Files.size(file));
+        Files.delete(file);
+    }
+
+    /**
+     * Test of a daemon replacing a socket nothing is listening on.
+     */
+    @Test
+    public final void testReplacesStaleSocket() throws IOException {
+        Path socket = directory.resolve("stale.sock");
+        ServerSocketChannel old = ServerSocketChannel
+                .open(StandardProtocolFamily.UNIX);
+        old.bind(UnixDomainSocketAddress.of(socket));
+        old.close();
+        assertTrue(Files.exists(socket));
+        new ParserDaemon(socket, null, ParserDaemon.DEFAULT_LIMITS, executor)
+                .close();
+        assertFalse(Files.exists(socket));
+    }
+
+}
@@ -0,0 +1,107 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.queue.Queue;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture comparing the {@code ParserEngine}s on the generated
+ * programs used by {@code ParserBenchmark}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ParserEngineTest {
+
+    /**
+     * Parses {@code source} with every engine and checks the results agree.
+     *
+     * @param source
+     *            the program text
+     */
+    private static void assertEnginesAgree(String source) {
+        Program expected = ParserEngine.RECURSIVE_DESCENT.newProgram();
+        expected.parse(SourceTokenizer.tokens(source));
+        for (ParserEngine engine : ParserEngine.values()) {
+            Program p = engine.newProgram();
+            p.parse(SourceTokenizer.tokens(source));
+            assertEquals(expected, p);
+        }
+    }
+
+    /**
+     * Test of the engines on a small program.
+     */
+    @Test
+    public final void testSmall() {
+        assertEnginesAgree(ParserBenchmark.smallProgram());
+    }
+
+    /**
+     * Test of the engines on a wide program.
+     */
+    @Test
+    public final void testWide() {
+        final int instructions = 30, statements = 9;
+        assertEnginesAgree(
+                ParserBenchmark.wideProgram(instructions, statements));
+    }
+
+    /**
+     * Test of the engines on a deep program.
+     */
+    @Test
+    public final void testDeep() {
+        final int depth = 50;
+        assertEnginesAgree(ParserBenchmark.deepProgram(depth));
+    }
+
+    /**
+     * Test of every engine rejecting a mismatched END.
+     */
+    @Test
+    public final void testMismatchedEnd() {
+        final String source = ""
+                + "PROGRAM P IS BEGIN IF true THEN move END WHILE END P";
+        for (ParserEngine engine : ParserEngine.values()) {
+            boolean refused = false;
+            try {
+                engine.newProgram().parse(SourceTokenizer.tokens(source));
+            } catch (RuntimeException e) {
+                refused = true;
+            }
+            assertTrue(engine + " accepted a mismatched END", refused);
+        }
+    }
+
+    /**
+     * Test of every engine leaving END_OF_INPUT in the tokens.
+     */
+    @Test
+    public final void testEndOfInputLeft() {
+        for (ParserEngine engine : ParserEngine.values()) {
+            Queue<String> tokens = SourceTokenizer
+                    .tokens(ParserBenchmark.smallProgram());
+            engine.newProgram().parse(tokens);
+            assertEquals(1, tokens.length());
+            assertEquals(Tokenizer.END_OF_INPUT, tokens.front());
+        }
+    }
+
+    /**
+     * Test of the table-driven engine enforcing the nesting limit.
+     */
+    @Test(expected = ParseLimitException.class)
+    public final void testDepthLimit() {
+        final int maxDepth = 10, depth = 11;
+        ParseLimits limits = new ParseLimits(Integer.MAX_VALUE,
+                Integer.MAX_VALUE, maxDepth, Integer.MAX_VALUE,
+                Long.MAX_VALUE);
+        Program p = ParserEngine.TABLE_DRIVEN.newProgram(limits);
+        p.parse(SourceTokenizer.tokens(ParserBenchmark.deepProgram(depth)));
+    }
+
+}
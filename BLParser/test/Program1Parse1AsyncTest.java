@@ -0,0 +1,119 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code Program1Parse1Async}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class Program1Parse1AsyncTest {
+
+    /**
+     * Returns the reference parse of the BL program in {@code fileName}.
+     *
+     * @param fileName
+     *            the file to parse
+     * @return the parsed program
+     */
+    private static Program referenceParse(String fileName) {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        pRef.parse(file);
+        file.close();
+        return pRef;
+    }
+
+    /**
+     * Test of parseAsync on syntactically valid input.
+     */
+    @Test
+    public final void testParseAsyncValid() throws Exception {
+        Program pRef = referenceParse("test/program3.bl");
+        Program pTest = Program1Parse1Async
+                .parseAsync(Paths.get("test/program3.bl")).get();
+        assertEquals(pRef, pTest);
+    }
+
+    /**
+     * Test of parseAsync with a timeout on syntactically valid input.
+     */
+    @Test
+    public final void testParseAsyncValidWithTimeout() throws Exception {
+        Program pRef = referenceParse("test/program5.bl");
+        Program pTest = Program1Parse1Async
+                .parseAsync(Paths.get("test/program5.bl"),
+                        Program1Parse1Async.defaultExecutor(), 1,
+                        TimeUnit.MINUTES)
+                .get();
+        assertEquals(pRef, pTest);
+    }
+
+    /**
+     * Test of parseAsync on syntactically invalid input.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseAsyncError() throws Throwable {
+        CompletableFuture<Program> p = Program1Parse1Async
+                .parseAsync(Paths.get("test/program2.bl"));
+        try {
+            p.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Test of parseAsync on a file that does not exist.
+     */
+    @Test
+    public final void testParseAsyncMissingFile() {
+        Path missing = Paths.get("test/no-such-program.bl");
+        CompletableFuture<Program> p = Program1Parse1Async
+                .parseAsync(missing);
+        assertTrue(p.isCompletedExceptionally());
+    }
+
+    /**
+     * Test of cancelling a pending parseAsync.
+     */
+    @Test
+    public final void testParseAsyncCancel() throws Exception {
+        /*
+         * Keep the only executor thread busy so the read cannot start
+         */
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<Program> p = Program1Parse1Async
+                .parseAsync(Paths.get("test/program1.bl"), executor);
+        p.cancel(true);
+        release.countDown();
+        executor.shutdown();
+        assertTrue(p.isCancelled());
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+
+}
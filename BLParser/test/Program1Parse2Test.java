@@ -0,0 +1,19 @@
+import components.program.Program;
+import components.program.Program1;
+
+/**
+ * Customized JUnit test fixture for {@code Program1Parse2}.
+ */
+public class Program1Parse2Test extends ProgramTest {
+
+    @Override
+    protected final Program constructorTest() {
+        return new Program1Parse2();
+    }
+
+    @Override
+    protected final Program constructorRef() {
+        return new Program1();
+    }
+
+}
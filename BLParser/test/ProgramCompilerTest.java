@@ -0,0 +1,146 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code ProgramCompiler}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ProgramCompilerTest {
+
+    /**
+     * Primitive instructions each traced run may execute.
+     */
+    private static final int STEPS = 500;
+
+    /**
+     * Returns the calls made by running {@code run} on a fresh
+     * {@code Trace} until it stops or returns.
+     *
+     * @param run
+     *            runs a program against the given actions
+     * @return the recorded calls
+     */
+    private static String trace(
+            java.util.function.Consumer<TestSupport.Trace> run) {
+        TestSupport.Trace trace = new TestSupport.Trace(STEPS, 1);
+        String calls;
+        try {
+            run.accept(trace);
+            calls = trace.calls();
+        } catch (TestSupport.Stop e) {
+            calls = trace.calls() + ".";
+        }
+        return calls;
+    }
+
+    /**
+     * Checks that the compiled {@code p} makes the same calls as the tree
+     * interpreter.
+     *
+     * @param p
+     *            the program
+     */
+    private static void checkSameCalls(Program p) {
+        java.util.Map<String, StatementNode> context = StatementNode
+                .contextOf(p);
+        StatementNode body = StatementNode.bodyOf(p);
+        CompiledProgram compiled = ProgramCompiler.compile(p);
+        assertEquals(p.name(), compiled.name());
+        String expected = trace(
+                t -> ExecutionBenchmark.interpret(body, context, t));
+        assertTrue(expected.length() > 0);
+        assertEquals(expected, trace(compiled::run));
+    }
+
+    /**
+     * Test of the test programs compiling to code with the same behavior.
+     */
+    @Test
+    public final void testTestPrograms() {
+        for (String file : new String[] { "test/program1.bl",
+            "test/program3.bl", "test/program5.bl" }) {
+            Program p = new Program1Parse1();
+            SimpleReader in = new SimpleReader1L(file);
+            p.parse(in);
+            in.close();
+            checkSameCalls(p);
+        }
+    }
+
+    /**
+     * Test of every condition, negated conditions, and nesting.
+     */
+    @Test
+    public final void testConditions() {
+        checkSameCalls(TestSupport.parse("PROGRAM C IS\n"
+                + "  INSTRUCTION a IS\n"
+                + "    IF next-is-not-empty THEN move END IF\n"
+                + "    IF next-is-wall THEN turnleft ELSE turnright END IF\n"
+                + "    IF next-is-not-wall THEN skip END IF\n"
+                + "    IF next-is-friend THEN infect END IF\n"
+                + "    IF next-is-not-friend THEN move END IF\n"
+                + "    IF next-is-enemy THEN infect END IF\n"
+                + "    IF next-is-not-enemy THEN turnleft END IF\n"
+                + "  END a\n"
+                + "BEGIN\n"
+                + "  WHILE true DO\n"
+                + "    WHILE next-is-empty DO a END WHILE\n"
+                + "    IF random THEN a ELSE skip END IF\n"
+                + "  END WHILE\n"
+                + "END C\n"));
+    }
+
+    /**
+     * Test of the benchmark workloads, including deep nesting.
+     */
+    @Test
+    public final void testBenchmarkPrograms() {
+        final int instructions = 20, statements = 10, depth = 60;
+        checkSameCalls(TestSupport.parse(ParserBenchmark.smallProgram()));
+        checkSameCalls(TestSupport.parse(
+                ParserBenchmark.wideProgram(instructions, statements)));
+        checkSameCalls(TestSupport.parse(ParserBenchmark.deepProgram(depth)));
+    }
+
+    /**
+     * Test of a call to an undefined instruction being reported.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testUndefinedInstruction() {
+        ProgramCompiler
+                .compile(TestSupport.parse("PROGRAM U IS BEGIN jump END U"));
+    }
+
+    /**
+     * Test of the generated class being unloaded once the program is no
+     * longer reachable. Unloading needs a full collection, so the test is
+     * skipped, not failed, when {@code System.gc} has been disabled or when
+     * the collector never clears even an ordinary unreachable object.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the collector
+     */
+    @Test
+    public final void testClassUnloaded() throws InterruptedException {
+        CompiledProgram compiled = ProgramCompiler
+                .compile(TestSupport.parse(ParserBenchmark.smallProgram()));
+        WeakReference<Class<?>> cls = new WeakReference<>(
+                compiled.getClass());
+        assertTrue(compiled.getClass().isHidden());
+        compiled = null;
+        TestSupport.awaitCollected(cls);
+        assertNull(cls.get());
+    }
+
+}
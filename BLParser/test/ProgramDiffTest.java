@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.program.Program;
+
+/**
+ * JUnit test fixture for {@code ProgramDiff}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ProgramDiffTest {
+
+    /**
+     * Test of compare on identical programs.
+     */
+    @Test
+    public final void testCompareIdentical() {
+        String source = "PROGRAM P IS INSTRUCTION a IS move END a "
+                + "BEGIN a WHILE true DO turnleft END WHILE END P";
+        ProgramDiff diff = ProgramDiff.compare(TestSupport.parse(source),
+                TestSupport.parse(source));
+        assertTrue(diff.isEmpty());
+    }
+
+    /**
+     * Test of compare on added, removed, and modified instructions.
+     */
+    @Test
+    public final void testCompareInstructions() {
+        Program before = TestSupport
+                .parse("PROGRAM P IS INSTRUCTION a IS move END a "
+                        + "INSTRUCTION b IS skip END b "
+                        + "INSTRUCTION c IS infect END c BEGIN a END P");
+        Program after = TestSupport
+                .parse("PROGRAM P IS INSTRUCTION a IS move END a "
+                        + "INSTRUCTION c IS infect move END c "
+                        + "INSTRUCTION d IS turnleft END d BEGIN a END P");
+        ProgramDiff diff = ProgramDiff.compare(before, after);
+        assertEquals(Arrays.asList("d"), diff.addedInstructions());
+        assertEquals(Arrays.asList("b"), diff.removedInstructions());
+        assertEquals(Arrays.asList("c"), diff.modifiedInstructions());
+        List<ProgramDiff.Edit> edits = diff.instructionEdits("c");
+        assertEquals(1, edits.size());
+        assertEquals(ProgramDiff.Edit.Type.INSERT, edits.get(0).type());
+        assertEquals("1", edits.get(0).path());
+        assertTrue(diff.bodyEdits().isEmpty());
+    }
+
+    /**
+     * Test of compare on an edit nested inside the body.
+     */
+    @Test
+    public final void testCompareNestedBodyEdit() {
+        Program before = TestSupport.parse("PROGRAM P IS BEGIN move "
+                + "IF random THEN skip ELSE infect END IF turnleft END P");
+        Program after = TestSupport.parse("PROGRAM P IS BEGIN move "
+                + "IF random THEN skip ELSE move END IF turnleft END P");
+        ProgramDiff diff = ProgramDiff.compare(before, after);
+        List<ProgramDiff.Edit> edits = diff.bodyEdits();
+        assertEquals(2, edits.size());
+        assertEquals("1.else.0", edits.get(0).path());
+        assertEquals(ProgramDiff.Edit.Type.DELETE, edits.get(0).type());
+        assertEquals("1.else.0", edits.get(1).path());
+        assertEquals(ProgramDiff.Edit.Type.INSERT, edits.get(1).type());
+    }
+
+}
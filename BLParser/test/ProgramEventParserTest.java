@@ -0,0 +1,195 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import components.statement.Statement.Condition;
+
+/**
+ * JUnit test fixture for {@code ProgramEventParser} and
+ * {@code ProgramStatistics}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ProgramEventParserTest {
+
+    /**
+     * Handler that records every event as text.
+     */
+    private static final class Trace implements ProgramHandler {
+
+        /**
+         * The events so far, separated by spaces.
+         */
+        private final StringBuilder events = new StringBuilder();
+
+        /**
+         * Records one event.
+         *
+         * @param event
+         *            the event
+         */
+        private void add(String event) {
+            if (this.events.length() > 0) {
+                this.events.append(' ');
+            }
+            this.events.append(event);
+        }
+
+        @Override
+        public void startProgram(String name) {
+            this.add("program:" + name);
+        }
+
+        @Override
+        public void startInstruction(String name) {
+            this.add("instruction:" + name);
+        }
+
+        @Override
+        public void endInstruction(String name) {
+            this.add("end:" + name);
+        }
+
+        @Override
+        public void startBody() {
+            this.add("begin");
+        }
+
+        @Override
+        public void endBody() {
+            this.add("end-body");
+        }
+
+        @Override
+        public void enterIf(Condition c) {
+            this.add("if:" + c);
+        }
+
+        @Override
+        public void enterElse() {
+            this.add("else");
+        }
+
+        @Override
+        public void exitIf() {
+            this.add("end-if");
+        }
+
+        @Override
+        public void enterWhile(Condition c) {
+            this.add("while:" + c);
+        }
+
+        @Override
+        public void exitWhile() {
+            this.add("end-while");
+        }
+
+        @Override
+        public void call(String name) {
+            this.add(name);
+        }
+
+        @Override
+        public void endProgram() {
+            this.add("done");
+        }
+
+    }
+
+    /**
+     * Test of the events of a small program.
+     */
+    @Test
+    public final void testEvents() {
+        Trace trace = new Trace();
+        new ProgramEventParser().parse("PROGRAM P IS\n"
+                + "  INSTRUCTION a IS move END a\n"
+                + "BEGIN\n"
+                + "  WHILE true DO\n"
+                + "    IF next-is-wall THEN a ELSE infect END IF\n"
+                + "  END WHILE\n"
+                + "END P\n", trace);
+        assertEquals("program:P instruction:a move end:a begin "
+                + "while:TRUE if:NEXT_IS_WALL a else infect end-if "
+                + "end-while end-body done", trace.events.toString());
+    }
+
+    /**
+     * Test of the test programs being accepted or rejected as by the
+     * reference parser.
+     */
+    @Test
+    public final void testValidity() throws IOException {
+        ProgramEventParser parser = new ProgramEventParser();
+        final boolean[] valid = { true, false, true, false, true, false };
+        for (int i = 0; i < valid.length; i++) {
+            String file = "test/program" + (i + 1) + ".bl";
+            boolean accepted = true;
+            try {
+                parser.parse(Paths.get(file), new ProgramHandler() {
+                });
+            } catch (RuntimeException e) {
+                accepted = false;
+            }
+            assertEquals(file, valid[i], accepted);
+        }
+    }
+
+    /**
+     * Test of a duplicate instruction being rejected.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testDuplicateInstruction() {
+        new ProgramEventParser().parse("PROGRAM P IS\n"
+                + "  INSTRUCTION a IS move END a\n"
+                + "  INSTRUCTION a IS skip END a\n"
+                + "BEGIN a END P\n", new ProgramHandler() {
+                });
+    }
+
+    /**
+     * Test of a reused parser not keeping every name it has ever read.
+     */
+    @Test
+    public final void testSymbolsBounded() {
+        ProgramEventParser parser = new ProgramEventParser();
+        final int programs = 2 * ProgramEventParser.MAX_RETAINED_SYMBOLS;
+        for (int i = 0; i < programs; i++) {
+            parser.parse("PROGRAM P" + i + " IS\n"
+                    + "  INSTRUCTION a" + i + " IS move END a" + i + "\n"
+                    + "BEGIN a" + i + " END P" + i + "\n",
+                    new ProgramHandler() {
+                    });
+        }
+        assertTrue(parser.retainedSymbols()
+                <= ProgramEventParser.MAX_RETAINED_SYMBOLS + 2);
+    }
+
+    /**
+     * Test of ProgramStatistics over the same program read twice.
+     */
+    @Test
+    public final void testStatistics() throws IOException {
+        ProgramEventParser parser = new ProgramEventParser();
+        ProgramStatistics stats = new ProgramStatistics();
+        parser.parse(Paths.get("test/program3.bl"), stats);
+        parser.parse(Paths.get("test/program3.bl"), stats);
+        final int statements = 23, primitive = 6, depth = 2;
+        assertEquals(2, stats.programs());
+        assertEquals(2 * 3, stats.instructions());
+        assertEquals(2 * statements, stats.statements());
+        assertEquals(2 * primitive, stats.primitiveCalls());
+        assertEquals(new TreeSet<>(Arrays.asList("one", "two", "three")),
+                stats.calledInstructions());
+        assertEquals(depth, stats.maxDepth());
+    }
+
+}
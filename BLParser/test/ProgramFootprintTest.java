@@ -0,0 +1,99 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code ProgramFootprint}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ProgramFootprintTest {
+
+    /**
+     * Test of the estimate for the smallest program, by category.
+     */
+    @Test
+    public final void testSmallestProgram() {
+        ProgramFootprint f = ProgramFootprint
+                .of(TestSupport.parse("PROGRAM P IS BEGIN move END P"));
+        assertEquals("P", f.name());
+        assertEquals(48, f.bytes(ProgramFootprint.Category.PROGRAM));
+        assertEquals(232,
+                f.bytes(ProgramFootprint.Category.STATEMENT_NODES));
+        assertEquals(96, f.bytes(ProgramFootprint.Category.STRINGS));
+        assertEquals(64, f.bytes(ProgramFootprint.Category.CONTEXT_MAP));
+        assertEquals(24 + 144 + 272,
+                f.bytes(ProgramFootprint.Category.SYMBOL_TABLE));
+        assertEquals(880, f.totalBytes());
+        assertEquals(0, f.instructions().size());
+        assertEquals(232 + 48, f.bodyBytes());
+    }
+
+    /**
+     * Test of every byte being charged to the program, an instruction or the
+     * body.
+     */
+    @Test
+    public final void testChargesAddUp() {
+        for (String file : new String[] { "test/program1.bl",
+            "test/program3.bl", "test/program5.bl" }) {
+            Program p = new Program1Parse1();
+            SimpleReader in = new SimpleReader1L(file);
+            p.parse(in);
+            in.close();
+            ProgramFootprint f = ProgramFootprint.of(p);
+            long charged = f.bodyBytes();
+            for (String instr : f.instructions()) {
+                charged += f.instructionBytes(instr);
+            }
+            long unattributed = f.bytes(ProgramFootprint.Category.PROGRAM)
+                    + f.bytes(ProgramFootprint.Category.SYMBOL_TABLE)
+                    + ProgramFootprint.stringBytes(p.name())
+                    + ProgramFootprint
+                            .of(TestSupport.parse("PROGRAM P IS BEGIN END P"))
+                            .bytes(ProgramFootprint.Category.CONTEXT_MAP);
+            assertTrue(f.totalBytes() - charged >= unattributed);
+            assertTrue(f.report().startsWith(p.name() + ": "));
+        }
+    }
+
+    /**
+     * Test of a name called many times being counted once.
+     */
+    @Test
+    public final void testSharedStrings() {
+        ProgramFootprint once = ProgramFootprint.of(TestSupport.parse(
+                "PROGRAM P IS\n" + "  INSTRUCTION go IS move END go\n"
+                        + "BEGIN go END P"));
+        ProgramFootprint thrice = ProgramFootprint.of(TestSupport.parse(
+                "PROGRAM P IS\n" + "  INSTRUCTION go IS move move move END go\n"
+                        + "BEGIN go go go END P"));
+        assertEquals(once.bytes(ProgramFootprint.Category.STRINGS),
+                thrice.bytes(ProgramFootprint.Category.STRINGS));
+        assertTrue(thrice.bytes(
+                ProgramFootprint.Category.STATEMENT_NODES) > once.bytes(
+                        ProgramFootprint.Category.STATEMENT_NODES));
+    }
+
+    /**
+     * Test of the largest instruction being found.
+     */
+    @Test
+    public final void testLargestInstruction() {
+        final int instructions = 10, statements = 8;
+        ProgramFootprint f = ProgramFootprint.of(TestSupport.parse(
+                ParserBenchmark.wideProgram(instructions, statements)
+                        .replace("INSTRUCTION i3 IS\n",
+                                "INSTRUCTION i3 IS\n"
+                                        + "move move move move move\n")));
+        assertEquals(instructions, f.instructions().size());
+        assertEquals("i3", f.largestInstruction());
+    }
+
+}
@@ -0,0 +1,138 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code ProgramProfile} and profiled compilation in
+ * {@code ProgramCompiler}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ProgramProfileTest {
+
+    /**
+     * A valid BL program with three instructions.
+     */
+    private static final String FILE_NAME = "test/program3.bl";
+
+    /**
+     * Primitive instructions each run is allowed.
+     */
+    private static final int STEPS = 10_000;
+
+    /**
+     * Returns {@code FILE_NAME} parsed.
+     *
+     * @return the program
+     */
+    private static Program program() {
+        Program p = new Program1Parse1();
+        SimpleReader in = new SimpleReader1L(FILE_NAME);
+        p.parse(in);
+        in.close();
+        return p;
+    }
+
+    /**
+     * Test of the statement numbering.
+     */
+    @Test
+    public final void testNumbering() {
+        ProgramProfile profile = new ProgramProfile(program());
+        assertEquals("Test", profile.name());
+        assertEquals(0, profile.instructionStart("one"));
+        assertTrue(profile.bodyStart() > profile.instructionStart("three"));
+        assertEquals(profile.size(), profile.counts().length);
+        assertEquals(0, profile.totalSteps());
+    }
+
+    /**
+     * Test of a single run being counted exactly.
+     */
+    @Test
+    public final void testSingleRun() {
+        ProgramProfile profile = new ProgramProfile(program());
+        ExecutionBenchmark.runFor(ProgramCompiler.compile(profile), STEPS);
+        /*
+         * The run executes STEPS primitives and is stopped by the next one,
+         * which is counted before it throws
+         */
+        assertEquals(STEPS + 1, profile.totalSteps());
+        assertEquals(profile.totalSteps(),
+                profile.steps("one") + profile.steps("two")
+                        + profile.steps("three") + profile.bodySteps());
+        assertTrue(profile.calls("one") > 0);
+        assertEquals(1, profile.counts()[profile.bodyStart()]);
+    }
+
+    /**
+     * Test of counts from several threads being merged exactly.
+     */
+    @Test
+    public final void testThreadsMerged() throws InterruptedException {
+        ProgramProfile profile = new ProgramProfile(program());
+        CompiledProgram compiled = ProgramCompiler.compile(profile);
+        final int threads = 4;
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = new Thread(
+                    () -> ExecutionBenchmark.runFor(compiled, STEPS));
+            running[i].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        assertEquals((long) threads * (STEPS + 1), profile.totalSteps());
+        assertEquals(threads, profile.counts()[profile.bodyStart()]);
+    }
+
+    /**
+     * Test of counts staying exact when more threads run at once than there
+     * are stripes, and of later threads reusing the same stripes.
+     */
+    @Test
+    public final void testMoreThreadsThanStripes()
+            throws InterruptedException {
+        ProgramProfile profile = new ProgramProfile(program());
+        CompiledProgram compiled = ProgramCompiler.compile(profile);
+        final int threads = 4 * Runtime.getRuntime().availableProcessors()
+                + 1, rounds = 3, steps = 1000;
+        for (int round = 0; round < rounds; round++) {
+            Thread[] running = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                running[i] = new Thread(
+                        () -> ExecutionBenchmark.runFor(compiled, steps));
+                running[i].start();
+            }
+            for (Thread thread : running) {
+                thread.join();
+            }
+        }
+        assertEquals((long) rounds * threads * (steps + 1),
+                profile.totalSteps());
+        assertEquals(rounds * threads,
+                profile.counts()[profile.bodyStart()]);
+    }
+
+    /**
+     * Test of the report annotating the pretty-printed program.
+     */
+    @Test
+    public final void testReport() {
+        ProgramProfile profile = new ProgramProfile(program());
+        ExecutionBenchmark.runFor(ProgramCompiler.compile(profile), STEPS);
+        String report = profile.report();
+        String calls = Long.toString(profile.calls("two"));
+        assertTrue(report, report.contains(
+                calls + " |   INSTRUCTION two IS\n"));
+        assertTrue(report, report.contains("             |   END two\n"));
+        assertTrue(report, report.contains("           1 | BEGIN\n"));
+    }
+
+}
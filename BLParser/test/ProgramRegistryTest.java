@@ -0,0 +1,230 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import components.program.Program;
+
+/**
+ * JUnit test fixture for {@code ProgramRegistry}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class ProgramRegistryTest {
+
+    /**
+     * Returns program {@code name} whose body is {@code body}.
+     *
+     * @param name
+     *            the program name
+     * @param body
+     *            the statements of the body
+     * @return the program
+     */
+    private static Program program(String name, String body) {
+        Program p = new Program1Parse1();
+        p.parse(SourceTokenizer.tokens("PROGRAM " + name + " IS\n"
+                + "  INSTRUCTION go IS " + body + " END go\n"
+                + "BEGIN go END " + name + "\n"));
+        return p;
+    }
+
+    /**
+     * Test of publishing and looking up versions.
+     */
+    @Test
+    public final void testPublishAndCurrent() {
+        ProgramRegistry registry = new ProgramRegistry();
+        assertNull(registry.current("A"));
+        ProgramRegistry.Version v1 = registry.publish(program("A", "move"));
+        assertSame(v1, registry.current("A"));
+        assertEquals("A", v1.name());
+        assertEquals("A", v1.compiled().name());
+        assertEquals("A", v1.code().name());
+        assertTrue(v1.context().containsKey("go"));
+        ProgramRegistry.Version v2 = registry.publish(program("A", "skip"));
+        assertTrue(v2.number() > v1.number());
+        assertSame(v2, registry.current("A"));
+        assertEquals(1, registry.names().size());
+        assertTrue(registry.remove("A"));
+        assertNull(registry.current("A"));
+        assertFalse(registry.remove("A"));
+    }
+
+    /**
+     * Test of a handle keeping its version until it refreshes.
+     */
+    @Test
+    public final void testHandleRefresh() {
+        ProgramRegistry registry = new ProgramRegistry();
+        ProgramRegistry.Version v1 = registry.publish(program("A", "move"));
+        ProgramRegistry.Handle handle = registry.handle("A");
+        assertSame(v1, handle.version());
+        assertFalse(handle.refresh());
+        ProgramRegistry.Version v2 = registry.publish(program("A", "skip"));
+        assertSame(v1, handle.version());
+        assertTrue(handle.refresh());
+        assertSame(v2, handle.version());
+    }
+
+    /**
+     * Test of a failed publish leaving the current version in place.
+     */
+    @Test
+    public final void testFailedPublish() {
+        ProgramRegistry registry = new ProgramRegistry();
+        ProgramRegistry.Version v1 = registry.publish(program("A", "move"));
+        boolean failed = false;
+        try {
+            //jump is not defined
+            registry.publish(program("A", "jump"));
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        assertSame(v1, registry.current("A"));
+    }
+
+    /**
+     * Test of concurrent publishes each returning the version that is
+     * current afterwards, never one that lost.
+     */
+    @Test
+    public final void testConcurrentPublishReturnsWinner()
+            throws InterruptedException {
+        final int publishers = 4, publishes = 25;
+        ProgramRegistry registry = new ProgramRegistry();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[publishers];
+        for (int t = 0; t < publishers; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    long last = 0;
+                    for (int i = 0; i < publishes; i++) {
+                        ProgramRegistry.Version v = registry
+                                .publish(program("A", "move"));
+                        if (v.number() < last || v.number() > registry
+                                .current("A").number()) {
+                            throw new AssertionError("lost version returned");
+                        }
+                        last = v.number();
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    /**
+     * Test of reloading from a file in the background.
+     */
+    @Test
+    public final void testReload() throws IOException, InterruptedException,
+            ExecutionException {
+        ProgramRegistry registry = new ProgramRegistry();
+        Path file = Files.createTempFile("reload", ".bl");
+        try {
+            Files.write(file, "PROGRAM R IS BEGIN turnleft END R"
+                    .getBytes(StandardCharsets.UTF_8));
+            ProgramRegistry.Version v = registry.reload(file).get();
+            assertSame(v, registry.current("R"));
+            assertEquals("R", v.name());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of an old version being freed once no handle uses it. Like the
+     * class-unloading test of {@code ProgramCompilerTest}, it is skipped
+     * when the collector cannot be made to run.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the collector
+     */
+    @Test
+    public final void testOldVersionFreed() throws InterruptedException {
+        ProgramRegistry registry = new ProgramRegistry();
+        ProgramRegistry.Handle handle = registry
+                .handle(registry.publish(program("A", "move")).name());
+        WeakReference<ProgramRegistry.Version> old = new WeakReference<>(
+                handle.version());
+        WeakReference<Class<?>> oldClass = new WeakReference<>(
+                handle.version().compiled().getClass());
+        registry.publish(program("A", "skip"));
+        assertTrue(handle.refresh());
+        TestSupport.awaitCollected(old, oldClass);
+        assertNull(old.get());
+        assertNull(oldClass.get());
+    }
+
+    /**
+     * Test of executors running concurrently with publishes seeing only
+     * whole versions, in order, and ending on the last one.
+     */
+    @Test
+    public final void testConcurrentSwap() throws InterruptedException {
+        final int executors = 4, publishes = 50, steps = 200;
+        ProgramRegistry registry = new ProgramRegistry();
+        registry.publish(program("A", "move"));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] last = new long[executors];
+        Thread[] threads = new Thread[executors];
+        for (int t = 0; t < executors; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    ProgramRegistry.Handle handle = registry.handle("A");
+                    long seen = handle.version().number();
+                    boolean finished = false;
+                    while (!finished) {
+                        finished = done.get();
+                        handle.refresh();
+                        ProgramRegistry.Version v = handle.version();
+                        if (v.number() < seen) {
+                            throw new AssertionError("version went back");
+                        }
+                        seen = v.number();
+                        ExecutionBenchmark.runFor(v.compiled(), steps);
+                    }
+                    last[id] = seen;
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (int i = 0; i < publishes; i++) {
+            registry.publish(program("A", i % 2 == 0 ? "skip" : "move"));
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        for (long number : last) {
+            assertEquals(registry.current("A").number(), number);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code Program1Parse1.parseWithSpans} and
+ * {@code SpanFormatter}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class SpanFormatterTest {
+
+    /**
+     * A valid BL program with three instructions.
+     */
+    private static final String FILE_NAME = "test/program3.bl";
+
+    /**
+     * Parses {@code FILE_NAME} with spans, formats it with {@code modified}
+     * and {@code bodyModified}, and returns the formatted text.
+     *
+     * @param modified
+     *            names of the instructions to pretty-print
+     * @param bodyModified
+     *            whether to pretty-print the body
+     * @return the formatted program
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    private static String format(Set<String> modified, boolean bodyModified)
+            throws IOException {
+        Path sourceFile = Paths.get(FILE_NAME);
+        Program1Parse1 p = new Program1Parse1();
+        SourceMap spans = p.parseWithSpans(SpanFormatter.readSource(sourceFile));
+        Path outFile = Files.createTempFile("formatted", ".bl");
+        try (FileChannel source = FileChannel.open(sourceFile);
+                FileChannel out = FileChannel.open(outFile,
+                        StandardOpenOption.WRITE)) {
+            SpanFormatter.write(p, spans, source, modified, bodyModified, out);
+        }
+        String text = SpanFormatter.readSource(outFile);
+        Files.delete(outFile);
+        return text;
+    }
+
+    /**
+     * Returns the reference parse of {@code text}.
+     *
+     * @param text
+     *            the program text
+     * @return the parsed program
+     * @throws IOException
+     *             if the temporary file cannot be written
+     */
+    private static Program referenceParse(String text) throws IOException {
+        Path file = Files.createTempFile("program", ".bl");
+        Files.write(file, text.getBytes("ISO-8859-1"));
+        Program p = new Program1();
+        SimpleReader in = new SimpleReader1L(file.toString());
+        p.parse(in);
+        in.close();
+        Files.delete(file);
+        return p;
+    }
+
+    /**
+     * Test of parseWithSpans recording instruction positions.
+     */
+    @Test
+    public final void testParseWithSpans() throws IOException {
+        String source = SpanFormatter.readSource(Paths.get(FILE_NAME));
+        SourceMap spans = new Program1Parse1().parseWithSpans(source);
+        assertEquals(3, spans.instructionCount());
+        int i = spans.indexOf("two");
+        String text = source.substring(spans.instructionStart(i),
+                spans.instructionEnd(i));
+        assertTrue(text.startsWith("INSTRUCTION two IS"));
+        assertTrue(text.endsWith("END two"));
+        assertTrue(source.substring(spans.bodyStart(), spans.bodyEnd())
+                .startsWith("infect"));
+    }
+
+    /**
+     * Test of write with nothing modified.
+     */
+    @Test
+    public final void testWriteUnchanged() throws IOException {
+        String text = format(Collections.<String>emptySet(), false);
+        assertTrue(text.contains("INSTRUCTION one IS\n     move"));
+        assertEquals(referenceParse(SpanFormatter.readSource(
+                Paths.get(FILE_NAME))), referenceParse(text));
+    }
+
+    /**
+     * Test of write with one instruction and the body modified.
+     */
+    @Test
+    public final void testWriteModified() throws IOException {
+        String text = format(Collections.singleton("one"), true);
+        assertTrue(text.contains("  INSTRUCTION one IS\n    move\n"));
+        assertEquals(referenceParse(SpanFormatter.readSource(
+                Paths.get(FILE_NAME))), referenceParse(text));
+    }
+
+}
@@ -0,0 +1,127 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code SymbolTable}.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+public class SymbolTableTest {
+
+    /**
+     * Test of intern assigning dense ids.
+     */
+    @Test
+    public final void testInternDenseIds() {
+        SymbolTable t = new SymbolTable();
+        assertEquals(0, t.intern("one"));
+        assertEquals(1, t.intern("two"));
+        assertEquals(0, t.intern("one"));
+        assertEquals(2, t.size());
+        assertEquals("two", t.name(1));
+    }
+
+    /**
+     * Test of canonical returning one object per name.
+     */
+    @Test
+    public final void testCanonicalShared() {
+        SymbolTable t = new SymbolTable();
+        String first = t.canonical(new String("move"));
+        String second = t.canonical(new String("move"));
+        assertSame(first, second);
+    }
+
+    /**
+     * Test of canonical adding the name that makes the table grow.
+     */
+    @Test
+    public final void testCanonicalAcrossGrowth() {
+        SymbolTable t = new SymbolTable();
+        final int count = 1000;
+        for (int i = 0; i < count; i++) {
+            assertEquals("name" + i, t.canonical("name" + i));
+        }
+        assertEquals(count, t.size());
+    }
+
+    /**
+     * Test of the range forms of intern and id.
+     */
+    @Test
+    public final void testRangeLookup() {
+        SymbolTable t = new SymbolTable();
+        String text = "  move turnleft move";
+        final int s1 = 2, e1 = 6, s2 = 7, e2 = 15, s3 = 16, e3 = 20;
+        assertEquals(SymbolTable.NO_SYMBOL, t.id(text, s1, e1));
+        assertEquals(0, t.intern(text, s1, e1));
+        assertEquals(1, t.intern(text, s2, e2));
+        assertEquals(0, t.intern(text, s3, e3));
+        assertEquals(1, t.id("turnleft"));
+        assertEquals(0, t.id(text, s3, e3));
+        assertEquals("move", t.name(0));
+    }
+
+    /**
+     * Test of id for names that are and are not present, across growth.
+     */
+    @Test
+    public final void testIdAfterGrowth() {
+        SymbolTable t = new SymbolTable();
+        final int count = 1000;
+        for (int i = 0; i < count; i++) {
+            t.intern("name" + i);
+        }
+        assertEquals(count, t.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, t.id("name" + i));
+        }
+        assertEquals(SymbolTable.NO_SYMBOL, t.id("missing"));
+    }
+
+    /**
+     * Test of the symbol table built by Program1Parse1.parse.
+     */
+    @Test
+    public final void testProgramSymbols() {
+        SimpleReader file = new SimpleReader1L("test/program3.bl");
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        Program1Parse1 p = new Program1Parse1();
+        p.parse(tokens);
+        SymbolTable symbols = p.symbols();
+        assertTrue(symbols.id("one") != SymbolTable.NO_SYMBOL);
+        assertTrue(symbols.id("turnright") != SymbolTable.NO_SYMBOL);
+        assertEquals(SymbolTable.NO_SYMBOL, symbols.id("Test"));
+    }
+
+    /**
+     * Test of the symbol table moving with transferFrom and being reset by
+     * clear.
+     */
+    @Test
+    public final void testKernelMethodsMoveSymbols() {
+        SimpleReader file = new SimpleReader1L("test/program3.bl");
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        Program1Parse1 p = new Program1Parse1();
+        p.parse(tokens);
+        SymbolTable symbols = p.symbols();
+        Program1Parse1 q = new Program1Parse1();
+        q.transferFrom(p);
+        assertSame(symbols, q.symbols());
+        assertEquals(0, p.symbols().size());
+        q.clear();
+        assertEquals(0, q.symbols().size());
+    }
+
+}
@@ -0,0 +1,217 @@
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+
+import org.junit.Assume;
+
+import components.program.Program;
+
+/**
+ * Helpers shared by the JUnit test fixtures.
+ *
+ * @author Layan Abdallah & Oak Hodous
+ *
+ */
+final class TestSupport {
+
+    /**
+     * Thrown by {@code Trace} to stop a program.
+     */
+    static final class Stop extends RuntimeException {
+
+        /**
+         * Serial version.
+         */
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    /**
+     * Actions that record every call, answer conditions from a fixed
+     * sequence, and stop the program after a given number of primitives.
+     */
+    static final class Trace implements CreatureActions {
+
+        /**
+         * The calls so far, one letter each.
+         */
+        private final StringBuilder calls = new StringBuilder();
+
+        /**
+         * Primitive instructions to execute before stopping.
+         */
+        private final int maxSteps;
+
+        /**
+         * Primitive instructions executed.
+         */
+        private int steps;
+
+        /**
+         * State of the condition sequence.
+         */
+        private int seed;
+
+        /**
+         * Constructor.
+         *
+         * @param maxSteps
+         *            primitive instructions to execute before throwing
+         *            {@code Stop}
+         * @param seed
+         *            the initial state of the condition sequence
+         */
+        Trace(int maxSteps, int seed) {
+            this.maxSteps = maxSteps;
+            this.seed = seed;
+        }
+
+        /**
+         * Returns the calls so far, one letter each: m, l, r, i and s for
+         * the primitives and E, W, F, N and R for the conditions.
+         *
+         * @return the recorded calls
+         */
+        String calls() {
+            return this.calls.toString();
+        }
+
+        /**
+         * Returns the letter of the most recent call.
+         *
+         * @return the last recorded call
+         * @requires [at least one call has been recorded]
+         */
+        char lastCall() {
+            return this.calls.charAt(this.calls.length() - 1);
+        }
+
+        /**
+         * Records a primitive instruction.
+         *
+         * @param call
+         *            its letter
+         */
+        private void step(char call) {
+            this.calls.append(call);
+            this.steps++;
+            if (this.steps == this.maxSteps) {
+                throw new Stop();
+            }
+        }
+
+        /**
+         * Records a test and returns its answer.
+         *
+         * @param test
+         *            its letter
+         * @return the next answer in the sequence
+         */
+        private boolean test(char test) {
+            final int multiplier = 1103515245, increment = 12345;
+            this.calls.append(test);
+            this.seed = this.seed * multiplier + increment;
+            return (this.seed & (1 << 16)) != 0;
+        }
+
+        @Override
+        public void move() {
+            this.step('m');
+        }
+
+        @Override
+        public void turnLeft() {
+            this.step('l');
+        }
+
+        @Override
+        public void turnRight() {
+            this.step('r');
+        }
+
+        @Override
+        public void infect() {
+            this.step('i');
+        }
+
+        @Override
+        public void skip() {
+            this.step('s');
+        }
+
+        @Override
+        public boolean nextIsEmpty() {
+            return this.test('E');
+        }
+
+        @Override
+        public boolean nextIsWall() {
+            return this.test('W');
+        }
+
+        @Override
+        public boolean nextIsFriend() {
+            return this.test('F');
+        }
+
+        @Override
+        public boolean nextIsEnemy() {
+            return this.test('N');
+        }
+
+        @Override
+        public boolean random() {
+            return this.test('R');
+        }
+
+    }
+
+    /**
+     * No-argument constructor--private to prevent instantiation.
+     */
+    private TestSupport() {
+    }
+
+    /**
+     * Returns {@code source} parsed.
+     *
+     * @param source
+     *            the program text
+     * @return the program
+     */
+    static Program parse(String source) {
+        Program p = new Program1Parse1();
+        p.parse(SourceTokenizer.tokens(source));
+        return p;
+    }
+
+    /**
+     * Runs the collector until every one of {@code refs} has been cleared,
+     * giving up after about a second. Collection cannot be forced, so the
+     * calling test is skipped, not failed, when {@code System.gc} has been
+     * disabled or when the collector never clears even an ordinary
+     * unreachable object; the caller then checks {@code refs} itself.
+     *
+     * @param refs
+     *            the references expected to be cleared
+     * @throws InterruptedException
+     *             if interrupted while waiting for the collector
+     */
+    static void awaitCollected(WeakReference<?>... refs)
+            throws InterruptedException {
+        Assume.assumeFalse(ManagementFactory.getRuntimeMXBean()
+                .getInputArguments().contains("-XX:+DisableExplicitGC"));
+        WeakReference<Object> sentinel = new WeakReference<>(new Object());
+        final int attempts = 50, pause = 20;
+        boolean cleared = false;
+        for (int i = 0; i < attempts && !cleared; i++) {
+            System.gc();
+            Thread.sleep(pause);
+            cleared = true;
+            for (WeakReference<?> ref : refs) {
+                cleared &= ref.get() == null;
+            }
+        }
+        Assume.assumeTrue(sentinel.get() == null);
+    }
+
+}